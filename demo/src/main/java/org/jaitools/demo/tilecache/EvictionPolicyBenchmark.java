@@ -0,0 +1,188 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.demo.tilecache;
+
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.media.jai.TiledImage;
+
+import org.jaitools.tilecache.ClockEvictionPolicy;
+import org.jaitools.tilecache.ComparatorEvictionPolicy;
+import org.jaitools.tilecache.DiskMemTileCache;
+import org.jaitools.tilecache.EvictionPolicy;
+import org.jaitools.tilecache.LRUEvictionPolicy;
+import org.jaitools.tilecache.MappedTileStore;
+import org.jaitools.tilecache.TileAccessTimeComparator;
+import org.jaitools.tilecache.TinyLFUEvictionPolicy;
+
+
+/**
+ * Compares the hit ratios and run times of the eviction policies available
+ * for {@code DiskMemTileCache} with several patterns of tile access:
+ * <ul>
+ * <li> scanline: repeated passes through the image in row-major order
+ * <li> random: tiles chosen uniformly at random
+ * <li> skewed: 80% of requests go to 20% of the tiles
+ * <li> hot + scan: requests for a small working set mixed with a scan
+ *      through the whole image
+ * </ul>
+ * The cache has memory for one eighth of the image's tiles.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class EvictionPolicyBenchmark {
+
+    private static final int TILE_WIDTH = 16;
+    private static final int NUM_X_TILES = 32;
+    private static final int NUM_Y_TILES = 32;
+    private static final int NUM_TILES = NUM_X_TILES * NUM_Y_TILES;
+    private static final int CACHE_TILES = NUM_TILES / 8;
+    private static final int TRACE_LENGTH = 50000;
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args ignored
+     */
+    public static void main(String[] args) {
+        EvictionPolicyBenchmark me = new EvictionPolicyBenchmark();
+        me.benchmark();
+    }
+
+    private void benchmark() {
+        Random rand = new Random(42);
+        Map<String, int[]> traces = new HashMap<String, int[]>();
+        String[] traceNames = {"scanline", "random", "skewed", "hot + scan"};
+
+        int[] trace = new int[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            trace[i] = i % NUM_TILES;
+        }
+        traces.put(traceNames[0], trace);
+
+        trace = new int[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            trace[i] = rand.nextInt(NUM_TILES);
+        }
+        traces.put(traceNames[1], trace);
+
+        trace = new int[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            if (rand.nextDouble() < 0.8) {
+                trace[i] = rand.nextInt(NUM_TILES / 5);
+            } else {
+                trace[i] = NUM_TILES / 5 + rand.nextInt(NUM_TILES - NUM_TILES / 5);
+            }
+        }
+        traces.put(traceNames[2], trace);
+
+        trace = new int[TRACE_LENGTH];
+        int scan = 0;
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            if (i % 2 == 0) {
+                trace[i] = rand.nextInt(CACHE_TILES / 2);
+            } else {
+                trace[i] = scan;
+                scan = (scan + 1) % NUM_TILES;
+            }
+        }
+        traces.put(traceNames[3], trace);
+
+        System.out.println(String.format("%d tiles, cache capacity %d tiles, %d requests per trace",
+                NUM_TILES, CACHE_TILES, TRACE_LENGTH));
+        System.out.println();
+        System.out.println(String.format("%-12s %-12s %10s %10s", "trace", "policy", "hit ratio", "time (ms)"));
+
+        for (String traceName : traceNames) {
+            for (String policyName : new String[] {"LRU", "CLOCK", "TinyLFU", "Comparator"}) {
+                runTrace(traceName, traces.get(traceName), policyName);
+            }
+            System.out.println();
+        }
+    }
+
+    private void runTrace(String traceName, int[] trace, String policyName) {
+        EvictionPolicy policy;
+        if (policyName.equals("LRU")) {
+            policy = new LRUEvictionPolicy();
+        } else if (policyName.equals("CLOCK")) {
+            policy = new ClockEvictionPolicy();
+        } else if (policyName.equals("TinyLFU")) {
+            policy = new TinyLFUEvictionPolicy(NUM_TILES);
+        } else {
+            policy = new ComparatorEvictionPolicy(new TileAccessTimeComparator());
+        }
+
+        SampleModel sm = new BandedSampleModel(DataBuffer.TYPE_BYTE, TILE_WIDTH, TILE_WIDTH, 1);
+        TiledImage image = new TiledImage(0, 0, 
+                TILE_WIDTH * NUM_X_TILES, TILE_WIDTH * NUM_Y_TILES, 0, 0, sm, null);
+
+        MappedTileStore store = new MappedTileStore();
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(DiskMemTileCache.KEY_TILE_STORE, store);
+        params.put(DiskMemTileCache.KEY_INITIAL_MEMORY_CAPACITY, 
+                (long) CACHE_TILES * TILE_WIDTH * TILE_WIDTH);
+
+        DiskMemTileCache cache = new DiskMemTileCache(params);
+        cache.setEvictionPolicy(policy);
+        cache.setMemoryThreshold(1.0f);
+
+        try {
+            for (int y = 0; y < NUM_Y_TILES; y++) {
+                for (int x = 0; x < NUM_X_TILES; x++) {
+                    cache.add(image, x, y, image.getWritableTile(x, y));
+                }
+            }
+
+            int hits = 0;
+            long start = System.nanoTime();
+            for (int index : trace) {
+                int x = index % NUM_X_TILES;
+                int y = index / NUM_X_TILES;
+                if (cache.containsResidentTile(image, x, y)) {
+                    hits++;
+                }
+                cache.getTile(image, x, y);
+            }
+            long elapsed = (System.nanoTime() - start) / 1000000;
+
+            System.out.println(String.format("%-12s %-12s %10.3f %10d",
+                    traceName, policyName, (double) hits / trace.length, elapsed));
+
+        } finally {
+            cache.flush();
+            store.dispose();
+        }
+    }
+
+}
@@ -35,6 +35,9 @@ import java.util.Set;
 
 import org.apache.commons.collections.keyvalue.MultiKey;
 import org.jaitools.CollectionFactory;
+import org.jaitools.numeric.AbstractHistogram;
+import org.jaitools.numeric.FrequencyTable;
+import org.jaitools.numeric.HistogramProcessor;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.Statistic;
 import org.jaitools.numeric.StreamingSampleStats;
@@ -169,12 +172,21 @@ public class ClassifiedStats {
         
         //Populate the results list by scanning for statistics.
         for (Statistic s : stats.getStatistics()) {
+            AbstractHistogram histogram = null;
+            FrequencyTable frequencyTable = null;
+            if (s == Statistic.HISTOGRAM) {
+                HistogramProcessor hp = (HistogramProcessor) stats.getProcessor(s);
+                histogram = hp.getHistogram();
+                frequencyTable = hp.getFrequencyTable();
+            }
+
             Result r = new Result(band, s, ranges,
                     stats.getStatisticValue(s),
                     stats.getNumOffered(s),
                     stats.getNumAccepted(s),
                     stats.getNumNaN(s),
-                    stats.getNumNoData(s), classificationKey);
+                    stats.getNumNoData(s), classificationKey,
+                    histogram, frequencyTable);
             rs.add(r);
         }
         group.put(classificationKey, rs);
@@ -36,6 +36,7 @@ import javax.media.jai.OperationDescriptorImpl;
 import javax.media.jai.ROI;
 import javax.media.jai.registry.RenderedRegistryMode;
 
+import org.jaitools.numeric.AbstractHistogram;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.RangeExtendedComparator;
 import org.jaitools.numeric.RangeUtils;
@@ -56,6 +57,12 @@ import org.jaitools.numeric.Statistic;
  * calculations, allowing it to handle very large images for statistics other than
  * {@link org.jaitools.numeric.Statistic#MEDIAN}, for which the
  * {@link org.jaitools.numeric.Statistic#APPROX_MEDIAN} alternative is provided.
+ * Percentiles such as {@link org.jaitools.numeric.Statistic#PERCENTILE_95} are
+ * estimated with bounded memory from a {@link org.jaitools.numeric.QuantileSketch}.
+ * {@link org.jaitools.numeric.Statistic#MODE}, {@code MINORITY} and {@code VARIETY}
+ * are counted exactly, with memory proportional to the number of distinct values;
+ * {@link org.jaitools.numeric.Statistic#APPROX_VARIETY} estimates the number of
+ * distinct values with bounded memory.
  * <p>
  * Note that the source name for this operator are "dataImage" 
  * 
@@ -251,6 +258,12 @@ import org.jaitools.numeric.Statistic;
  * 1 and 4 (starting from index 0).
  * </td><td>null (no NODATA values defined)</td>
  * </tr>
+ * <tr>
+ * <td>histogramBins</td><td>AbstractHistogram</td>
+ * <td>Bins to use for {@code Statistic.HISTOGRAM}. The histogram passed
+ * is only used as a template: each class gets its own empty copy.
+ * </td><td>null (count each distinct value)</td>
+ * </tr>
  * <Caption>Parameters</Caption>
  * </table>
  *
@@ -287,6 +300,7 @@ public class ClassifiedStatsDescriptor extends OperationDescriptorImpl {
     static final int NODATA_RANGES_ARG = 8;
     static final int NODATA_CLASSIFIER_ARG = 9;
     static final int NODATA_PIVOT_CLASSIFIER_ARG = 10;
+    static final int HISTOGRAM_BINS_ARG = 11;
 
     private static final String[] paramNames = {
         "classifiers",
@@ -299,7 +313,8 @@ public class ClassifiedStatsDescriptor extends OperationDescriptorImpl {
         "rangeLocalStats", 
         "noDataRanges",
         "noDataClassifiers",
-        "noDataPivotClassifiers"
+        "noDataPivotClassifiers",
+        "histogramBins"
         
     };
 
@@ -314,7 +329,8 @@ public class ClassifiedStatsDescriptor extends OperationDescriptorImpl {
         Boolean.class, 
         Collection.class,
         Double[].class,
-        Double[].class
+        Double[].class,
+        AbstractHistogram.class
     };
 
     @SuppressWarnings("rawtypes")
@@ -328,7 +344,8 @@ public class ClassifiedStatsDescriptor extends OperationDescriptorImpl {
         Range.Type.UNDEFINED, 
         Boolean.FALSE, 
         (Collection) null,
-        null, null
+        null, null,
+        (AbstractHistogram) null
     };
     
 
@@ -411,6 +428,13 @@ public class ClassifiedStatsDescriptor extends OperationDescriptorImpl {
                                 + "the i-th element of the array refers to the i-th pivot classifier raster source",
                         paramNames[NODATA_PIVOT_CLASSIFIER_ARG],
                         paramDefaults[NODATA_PIVOT_CLASSIFIER_ARG]) },
+                {
+                    "arg11Desc",
+                    String.format(
+                        "%s (default %s) - an optional histogram defining the bins "
+                                + "to use for Statistic.HISTOGRAM",
+                        paramNames[HISTOGRAM_BINS_ARG],
+                        paramDefaults[HISTOGRAM_BINS_ARG]) },
 
             },
 
@@ -46,6 +46,8 @@ import javax.media.jai.iterator.RandomIterFactory;
 
 import org.apache.commons.collections.keyvalue.MultiKey;
 import org.jaitools.CollectionFactory;
+import org.jaitools.numeric.AbstractHistogram;
+import org.jaitools.numeric.HistogramProcessor;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.Range.Type;
 import org.jaitools.numeric.RangeUtils;
@@ -158,6 +160,11 @@ public class ClassifiedStatsOpImage extends NullOpImage {
     /** Compute separated statistics on ranges if true */
     private final boolean rangeLocalStats;
 
+    /**
+     * Optional bins for the HISTOGRAM statistic (exact counts are used if {@code null})
+     */
+    private final AbstractHistogram histogramBins;
+
     /**
      * Define whether provided ranges of values need to be included or excluded
      * from statistics computations
@@ -250,6 +257,38 @@ public class ClassifiedStatsOpImage extends NullOpImage {
             final Double[] noDataPivotClassifiers
             ) {
 
+        this(dataImage, classifierImages, pivotClassifierImages, config, layout,
+                stats, bands, roi, ranges, rangesType, rangeLocalStats,
+                noDataRanges, noDataClassifiers, noDataPivotClassifiers, null);
+    }
+
+    /**
+     * Constructor with bins for the {@code HISTOGRAM} statistic.
+     * Other arguments are as for the constructor above.
+     * 
+     * @param histogramBins
+     *            an optional histogram defining the bins to use when
+     *            {@link Statistic#HISTOGRAM} is requested; if {@code null}
+     *            each distinct data value is counted
+     */
+    public ClassifiedStatsOpImage(
+            final RenderedImage dataImage, 
+            final RenderedImage[] classifierImages,
+            final RenderedImage[] pivotClassifierImages,
+            final Map<?, ?> config, 
+            final ImageLayout layout, 
+            final Statistic[] stats, 
+            final Integer[] bands, 
+            final ROI roi,
+            final Collection<Range<Double>> ranges, 
+            final Range.Type rangesType, 
+            final boolean rangeLocalStats,
+            final Collection<Range<Double>> noDataRanges, 
+            final Double[] noDataClassifiers,
+            final Double[] noDataPivotClassifiers,
+            final AbstractHistogram histogramBins
+            ) {
+
         super(dataImage, layout, config, OpImage.OP_COMPUTE_BOUND);
 
         this.dataImage = dataImage;
@@ -317,6 +356,8 @@ public class ClassifiedStatsOpImage extends NullOpImage {
                 this.noDataForPivotClassifierImages[i] = noDataPivotClassifiers[i];
             }
         }
+
+        this.histogramBins = histogramBins == null ? null : histogramBins.copy();
     }
 
     /**
@@ -412,6 +453,12 @@ public class ClassifiedStatsOpImage extends NullOpImage {
             sampleStats.addNoDataRange(r);
         }
         sampleStats.setStatistics(stats);
+        if (histogramBins != null) {
+            HistogramProcessor hp = (HistogramProcessor) sampleStats.getProcessor(Statistic.HISTOGRAM);
+            if (hp != null) {
+                hp.setBins(histogramBins);
+            }
+        }
         resultsPerBand.put(classifierKey, sampleStats);
         return sampleStats;
     }
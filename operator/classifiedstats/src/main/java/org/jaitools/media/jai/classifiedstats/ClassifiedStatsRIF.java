@@ -38,6 +38,7 @@ import javax.media.jai.ImageLayout;
 import javax.media.jai.ROI;
 import javax.media.jai.RasterFactory;
 
+import org.jaitools.numeric.AbstractHistogram;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.Statistic;
 
@@ -127,6 +128,9 @@ public class ClassifiedStatsRIF implements RenderedImageFactory {
 
         ROI roi = (ROI) paramBlock.getObjectParameter(ClassifiedStatsDescriptor.ROI_ARG);
 
+        AbstractHistogram histogramBins = (AbstractHistogram) paramBlock.getObjectParameter(
+                ClassifiedStatsDescriptor.HISTOGRAM_BINS_ARG);
+
         return new ClassifiedStatsOpImage(
                 dataImage, 
                 classifierImages, 
@@ -141,7 +145,8 @@ public class ClassifiedStatsRIF implements RenderedImageFactory {
                 rangeLocalStats,
                 noDataRanges,
                 noDataClassifiers, 
-                noDataPivotClassifiers
+                noDataPivotClassifiers,
+                histogramBins
                 );
     }
 }
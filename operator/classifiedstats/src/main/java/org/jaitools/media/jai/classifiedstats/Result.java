@@ -30,6 +30,8 @@ import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.collections.keyvalue.MultiKey;
+import org.jaitools.numeric.AbstractHistogram;
+import org.jaitools.numeric.FrequencyTable;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.Statistic;
 
@@ -53,6 +55,8 @@ public class Result {
     private long numAccepted;
     private long numNaN;
     private long numNoData;
+    private AbstractHistogram histogram;
+    private FrequencyTable frequencyTable;
 
     /**
      * Create a new {@code Result} object. This is intended for use by the
@@ -83,6 +87,35 @@ public class Result {
         this.classifierKeys = classifierKeys;
     }
 
+    /**
+     * Create a new {@code Result} object for the {@code Statistic.HISTOGRAM}
+     * statistic. This is intended for use by the {@code ClassifiedStats} class
+     * rather than client code. One of {@code histogram} and {@code frequencyTable}
+     * will be {@code null}.
+     * 
+     * @param imageBand data image band
+     * @param stat the statistic to which this result pertains
+     * @param ranges list of ranges (if any) used to filter data image values
+     * @param value the calculated value of the statistic
+     * @param numOffered number of data image values considered for inclusion
+     * @param numAccepted number of data image values actually used for calculating
+     *        this result
+     * @param numNaN number of NaN values read from the data image
+     * @param numNoData number of NoData values read from the data image
+     * @param classifierKeys the classifier keys (multikey) associated to this result
+     * @param histogram binned counts of data image values
+     * @param frequencyTable counts of distinct data image values
+     */
+    public Result(int imageBand, Statistic stat, List<Range<Double>> ranges, 
+                  Double value, long numOffered, long numAccepted, long numNaN, 
+                  long numNoData, MultiKey classifierKeys,
+                  AbstractHistogram histogram, FrequencyTable frequencyTable) {
+        this(imageBand, stat, ranges, value, numOffered, numAccepted, numNaN,
+                numNoData, classifierKeys);
+        this.histogram = histogram;
+        this.frequencyTable = frequencyTable;
+    }
+
     /**
      * Get the ranges (if defined) that were used to filter data image
      * values for inclusion in the calculation of this result.
@@ -173,6 +206,27 @@ public class Result {
         return classifierKeys;
     }
 
+    /**
+     * Get the binned counts of data image values. This is only available
+     * for the {@code Statistic.HISTOGRAM} statistic when bins were specified.
+     * 
+     * @return the histogram or {@code null}
+     */
+    public AbstractHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Get the counts of distinct data image values. This is only available
+     * for the {@code Statistic.HISTOGRAM} statistic when bins were not
+     * specified.
+     * 
+     * @return the frequency table or {@code null}
+     */
+    public FrequencyTable getFrequencyTable() {
+        return frequencyTable;
+    }
+
     @Override
     public String toString() {
         String rangess = ranges != null && !ranges.isEmpty() ? ranges.toString() : "";
@@ -43,10 +43,14 @@ import javax.media.jai.util.ImagingListener;
 
 import org.apache.commons.collections.keyvalue.MultiKey;
 import org.jaitools.CollectionFactory;
+import org.jaitools.numeric.AbstractHistogram;
+import org.jaitools.numeric.FixedWidthHistogram;
+import org.jaitools.numeric.FrequencyTable;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.Statistic;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  * Unit tests for the ClassifiedStats operator
@@ -289,4 +293,86 @@ public class ClassifiedStatsTest {
         }
     }
 
+    @Test
+    public void testHistogramExactCounts() throws IOException {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info("   test histogram with exact counts");
+        }
+
+        RenderedOp op = createHistogramOp(null);
+        ClassifiedStats stats = (ClassifiedStats) op.getProperty(ClassifiedStatsDescriptor.CLASSIFIED_STATS_PROPERTY);
+
+        Map<MultiKey, List<Result>> results = stats.band(0).statistic(Statistic.HISTOGRAM).results().get(0);
+        assertFalse(results.isEmpty());
+
+        for (List<Result> rs : results.values()) {
+            Result r = rs.get(0);
+            assertNull(r.getHistogram());
+
+            FrequencyTable table = r.getFrequencyTable();
+            assertNotNull(table);
+            assertEquals(r.getNumAccepted(), table.getTotal());
+            assertEquals(table.size(), r.getValue(), 1.0e-6);
+        }
+    }
+
+    @Test
+    public void testHistogramBins() throws IOException {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info("   test histogram with bins");
+        }
+
+        AbstractHistogram template = new FixedWidthHistogram(0, 256, 16);
+        RenderedOp op = createHistogramOp(template);
+        ClassifiedStats stats = (ClassifiedStats) op.getProperty(ClassifiedStatsDescriptor.CLASSIFIED_STATS_PROPERTY);
+
+        Map<MultiKey, List<Result>> results = stats.band(0).statistic(Statistic.HISTOGRAM).results().get(0);
+        assertTrue(results.size() > 1);
+
+        List<AbstractHistogram> histograms = CollectionFactory.list();
+        for (List<Result> rs : results.values()) {
+            Result r = rs.get(0);
+            assertNull(r.getFrequencyTable());
+
+            AbstractHistogram hist = r.getHistogram();
+            assertNotNull(hist);
+            assertNotSame(template, hist);
+            assertEquals(template.getNumBins(), hist.getNumBins());
+            assertEquals(r.getNumAccepted(), hist.getTotal());
+
+            // each class has its own copy of the bins
+            for (AbstractHistogram other : histograms) {
+                assertNotSame(other, hist);
+            }
+            histograms.add(hist);
+        }
+
+        // the template is not changed
+        assertEquals(0, template.getTotal());
+    }
+
+    private RenderedOp createHistogramOp(AbstractHistogram bins) throws IOException {
+        InputStream sample = ClassifiedStatsTest.class.getResourceAsStream("sample.tif");
+        InputStream classifierStripes = ClassifiedStatsTest.class.getResourceAsStream("5stripes.tif");
+        try {
+            RenderedImage sampleImage = ImageIO.read(sample);
+            RenderedImage stripedImage = ImageIO.read(classifierStripes);
+
+            ParameterBlockJAI pb = new ParameterBlockJAI("ClassifiedStats");
+            pb.addSource(sampleImage);
+            pb.setParameter("classifiers", new RenderedImage[]{stripedImage});
+            pb.setParameter("stats", new Statistic[]{Statistic.HISTOGRAM});
+            pb.setParameter("bands", new Integer[]{0});
+            if (bins != null) {
+                pb.setParameter("histogramBins", bins);
+            }
+
+            return JAI.create("ClassifiedStats", pb);
+
+        } finally {
+            sample.close();
+            classifierStripes.close();
+        }
+    }
+
 }
@@ -44,6 +44,7 @@ import org.jaitools.jts.SmootherControl;
 import org.jaitools.jts.Utils;
 import org.jaitools.media.jai.AttributeOpImage;
 import org.jaitools.numeric.CompareOp;
+import org.jaitools.numeric.DoubleRange;
 import org.jaitools.numeric.Range;
 
 import org.locationtech.jts.geom.LineString;
@@ -94,7 +95,7 @@ public class ContourOpImage extends AttributeOpImage {
     /** List of Numbers to treat as NO_DATA */
     private List<Double> noDataNumbers;
     /** List of Ranges to treat as NO_DATA */
-    private List<Range<Double>> noDataRanges;
+    private List<DoubleRange> noDataRanges;
 
     /** Whether to use strict NODATA exclusion */
     private final boolean strictNodata;
@@ -207,7 +208,7 @@ public class ContourOpImage extends AttributeOpImage {
                     Range r = (Range) oelem;
                     Double min = r.getMin().doubleValue();
                     Double max = r.getMax().doubleValue();
-                    Range<Double> rd = new Range<Double>(
+                    DoubleRange rd = new DoubleRange(
                             min, r.isMinIncluded(), max, r.isMaxIncluded());
                     this.noDataRanges.add(rd);
 
@@ -764,7 +765,7 @@ public class ContourOpImage extends AttributeOpImage {
             }
         }
 
-        for (Range r : noDataRanges) {
+        for (DoubleRange r : noDataRanges) {
             if (r.contains(value)) {
                 return true;
             }
@@ -50,6 +50,11 @@ import org.jaitools.numeric.Statistic;
  * pixel is not contained in the ROI.
  * </ul>
  * The two options may be used together.
+ * <p>
+ * With categorical data, the {@code MODE} statistic acts as a majority filter
+ * and {@code VARIETY} gives the number of distinct values in each neighbourhood.
+ * The {@code HISTOGRAM} statistic is not supported by this operator and
+ * is rejected when the parameters are validated.
  *
  * <p>
  * <b>Summary of parameters:</b>
@@ -235,6 +240,14 @@ public class KernelStatsDescriptor extends OperationDescriptorImpl {
             return false;
         }
 
+        Statistic[] stats = (Statistic[]) pb.getObjectParameter(STATS_ARG_INDEX);
+        for (Statistic stat : stats) {
+            if (stat == Statistic.HISTOGRAM) {
+                msg.append("the HISTOGRAM statistic is not supported by KernelStats");
+                return false;
+            }
+        }
+
         return true;
     }
 
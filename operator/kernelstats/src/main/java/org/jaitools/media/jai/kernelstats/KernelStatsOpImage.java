@@ -725,6 +725,25 @@ public class KernelStatsOpImage extends AreaOpImage {
                 case SUM:
                     return SampleStats.sum(values, ignoreNaN);
 
+                case PERCENTILE_5:
+                case PERCENTILE_10:
+                case PERCENTILE_25:
+                case PERCENTILE_75:
+                case PERCENTILE_90:
+                case PERCENTILE_95:
+                    return SampleStats.quantile(values, stat.getQuantile(), ignoreNaN);
+
+                case MODE:
+                    return SampleStats.mode(values, ignoreNaN);
+
+                case MINORITY:
+                    return SampleStats.minority(values, ignoreNaN);
+
+                // neighbourhoods are small enough to count exactly
+                case VARIETY:
+                case APPROX_VARIETY:
+                    return SampleStats.variety(values, ignoreNaN);
+
                 default:
                 throw new IllegalArgumentException("Unrecognized KernelStatstic arg");
             }
@@ -130,13 +130,37 @@ public class TestKernelStats {
         assertTrue(img.getSampleModel().getDataType() == DataBuffer.TYPE_DOUBLE);
     }
 
+    /**
+     * The HISTOGRAM statistic is not supported and should be rejected
+     * when the operation is created
+     */
+    @Test
+    public void testHistogramRejected() {
+        System.out.println("   test HISTOGRAM rejected");
+
+        ParameterBlockJAI pb = new ParameterBlockJAI("kernelstats");
+        pb.setSource("source0", getConstIntImage(1, 10, 10));
+        pb.setParameter("stats", new Statistic[]{Statistic.MEAN, Statistic.HISTOGRAM});
+
+        KernelJAI kernel = new KernelJAI(3, 3, new float[]{1f, 1f, 1f, 1f, 1f, 1f, 1f, 1f, 1f});
+        pb.setParameter("kernel", kernel);
+
+        boolean gotException = false;
+        try {
+            JAI.create("kernelstats", pb);
+        } catch (IllegalArgumentException ex) {
+            gotException = true;
+        }
+        assertTrue("Failed to reject HISTOGRAM statistic", gotException);
+    }
+
     /**
      * Test all statistics with a constant image
      */
     @Test
     public void testStatisticsWithConstImage() {
         for (Statistic stat : Statistic.values()) {
-            if (stat != Statistic.APPROX_MEDIAN) {
+            if (stat != Statistic.APPROX_MEDIAN && stat != Statistic.HISTOGRAM) {
                 System.out.println("   test " + stat.toString() + " with const image");
                 testWithConstImage(stat);
             }
@@ -158,7 +182,7 @@ public class TestKernelStats {
         RenderedImage testImg = op.getAsBufferedImage();
 
         for (Statistic stat : Statistic.values()) {
-            if (stat != Statistic.APPROX_MEDIAN) {
+            if (stat != Statistic.APPROX_MEDIAN && stat != Statistic.HISTOGRAM) {
                 System.out.println("   test " + stat.toString() + " with float image");
                 testWithFloatImage(stat, testImg);
             }
@@ -191,9 +215,22 @@ public class TestKernelStats {
             case MEAN:
             case MEDIAN:
             case MIN:
+            case PERCENTILE_5:
+            case PERCENTILE_10:
+            case PERCENTILE_25:
+            case PERCENTILE_75:
+            case PERCENTILE_90:
+            case PERCENTILE_95:
+            case MODE:
+            case MINORITY:
                 expValue = value;
                 break;
 
+            case VARIETY:
+            case APPROX_VARIETY:
+                expValue = 1;
+                break;
+
             case RANGE:
             case SDEV:
             case VARIANCE:
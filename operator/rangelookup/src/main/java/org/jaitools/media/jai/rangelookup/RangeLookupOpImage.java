@@ -44,6 +44,11 @@ import org.jaitools.numeric.Range;
  * This is a variation on the JAI {@linkplain javax.media.jai.operator.LookupDescriptor}.
  * It works with a {@linkplain RangeLookupTable} object in which each entry maps
  * a source image value range to a destination image value.
+ * <p>
+ * When the source image has byte, short or ushort data, the table is expanded
+ * on first use into a dense array holding the destination value for every
+ * possible source value, so that each pixel costs a single array access.
+ * Other source data types are looked up in the table pixel by pixel.
  *
  * @see RangeLookupDescriptor
  * 
@@ -58,6 +63,24 @@ public class RangeLookupOpImage extends PointOpImage {
     private final Number defaultValue;
     private final boolean hasDefault;
 
+    /*
+     * Dense lookup arrays indexed by source value for 8 and 16 bit
+     * data, built on first use
+     */
+    private volatile byte[] byteLut;
+    private volatile short[] shortLut;
+    private volatile short[] ushortLut;
+
+    /*
+     * Dense lookup arrays for 8 and 16 bit source data with a wider
+     * destination type. Source data are then promoted to the destination
+     * type, so these are keyed by the source image's data type.
+     */
+    private final int sourceDataType;
+    private volatile int[] intLut;
+    private volatile float[] floatLut;
+    private volatile double[] doubleLut;
+
      /**
      * Constructor
      * @param source a RenderedImage.
@@ -86,6 +109,7 @@ public class RangeLookupOpImage extends PointOpImage {
         this.table = table;
         this.defaultValue = defaultValue;
         this.hasDefault = defaultValue != null;
+        this.sourceDataType = source.getSampleModel().getDataType();
     }
 
     /**
@@ -121,7 +145,11 @@ public class RangeLookupOpImage extends PointOpImage {
                 lookupAsByteData(srcAcc, destAcc);
                 break;
             case DataBuffer.TYPE_INT:
-                lookupAsIntData(srcAcc, destAcc);
+                if (hasDenseSource()) {
+                    lookupAsIntDataFromLut(srcAcc, destAcc);
+                } else {
+                    lookupAsIntData(srcAcc, destAcc);
+                }
                 break;
             case DataBuffer.TYPE_SHORT:
                 lookupAsShortData(srcAcc, destAcc);
@@ -130,10 +158,18 @@ public class RangeLookupOpImage extends PointOpImage {
                 lookupAsUShortData(srcAcc, destAcc);
                 break;
             case DataBuffer.TYPE_FLOAT:
-                lookupAsFloatData(srcAcc, destAcc);
+                if (hasDenseSource()) {
+                    lookupAsFloatDataFromLut(srcAcc, destAcc);
+                } else {
+                    lookupAsFloatData(srcAcc, destAcc);
+                }
                 break;
             case DataBuffer.TYPE_DOUBLE:
-                lookupAsDoubleData(srcAcc, destAcc);
+                if (hasDenseSource()) {
+                    lookupAsDoubleDataFromLut(srcAcc, destAcc);
+                } else {
+                    lookupAsDoubleData(srcAcc, destAcc);
+                }
                 break;
         }
 
@@ -160,43 +196,19 @@ public class RangeLookupOpImage extends PointOpImage {
         int srcPixelStride = srcAcc.getPixelStride();
         int srcScanlineStride = srcAcc.getScanlineStride();
 
-        Range lastRange = null;
-        
-        byte typedDefaultValue = hasDefault ? defaultValue.byteValue() : Byte.MIN_VALUE;
-        byte destinationValue = typedDefaultValue;
+        final byte[] lut = getByteLut();
         
         for (int k = 0; k < destBands; k++) {
-            int destY = destAcc.getY();
             byte destBandData[] = destData[k];
             byte srcBandData[] = srcData[k];
             int srcScanlineOffset = srcBandOffsets[k];
             int dstScanlineOffset = dstBandOffsets[k];
-            for (int j = 0; j < destHeight; j++, destY++) {
-                int destX = destAcc.getX();
+            for (int j = 0; j < destHeight; j++) {
                 int srcPixelOffset = srcScanlineOffset;
                 int dstPixelOffset = dstScanlineOffset;
 
-                for (int i = 0; i < destWidth; i++, destX++) {
-                    // input value
-                    byte val = (byte) (srcBandData[srcPixelOffset] & 0xff);
-
-                    // === destination value
-                    if (lastRange == null || !lastRange.contains(val)) {
-                        // nullify the current rane
-                        lastRange = null;
-
-                        // get a new one if the value falls within some
-                        LookupItem item = table.getLookupItem(val);
-                        if (item != null) {
-                            lastRange = item.getRange();
-                            destinationValue = item.getValue().byteValue();
-                        } else {
-                            // no match: set destination to default value (if defined)
-                            // or source value
-                            destinationValue = hasDefault ? typedDefaultValue : val;
-                        }
-                    }
-                    destBandData[dstPixelOffset] = destinationValue;
+                for (int i = 0; i < destWidth; i++) {
+                    destBandData[dstPixelOffset] = lut[srcBandData[srcPixelOffset] & 0xff];
                     srcPixelOffset += srcPixelStride;
                     dstPixelOffset += dstPixelStride;
                 }
@@ -219,43 +231,21 @@ public class RangeLookupOpImage extends PointOpImage {
 
         int[] srcBandOffsets = srcAcc.getBandOffsets();
         int srcPixelStride = srcAcc.getPixelStride();
-        int srcScanlineStride = srcAcc.getScanlineStride();    
-        
-        Range lastRange = null;
-        
-        short typedDefaultValue = hasDefault ? defaultValue.shortValue() : Short.MIN_VALUE;
-        short destinationValue = typedDefaultValue;
+        int srcScanlineStride = srcAcc.getScanlineStride();
+
+        final short[] lut = getShortLut();
         
         for (int k = 0; k < destBands; k++) {
-            int destY = destAcc.getY();
             short destBandData[] = destData[k];
             short srcBandData[] = srcData[k];
             int srcScanlineOffset = srcBandOffsets[k];
             int dstScanlineOffset = dstBandOffsets[k];
-            for (int j = 0; j < destHeight; j++, destY++) {
-                int destX = destAcc.getX();
+            for (int j = 0; j < destHeight; j++) {
                 int srcPixelOffset = srcScanlineOffset;
                 int dstPixelOffset = dstScanlineOffset;
 
-                for (int i = 0; i < destWidth; i++, destX++) {
-                    short val = srcBandData[srcPixelOffset];
-                    // === destination value
-                    if (lastRange == null || !lastRange.contains(val)) {
-                        // nullify the current rane
-                        lastRange = null;
-
-                        // get a new one if the value falls within some
-                        LookupItem item = table.getLookupItem(val);
-                        if (item != null) {
-                            lastRange = item.getRange();
-                            destinationValue = item.getValue().shortValue();
-                        } else {
-                            // no match: set destination to default value (if defined)
-                            // or source value
-                            destinationValue = hasDefault ? typedDefaultValue : val;
-                        }
-                    }
-                    destBandData[dstPixelOffset] = destinationValue;
+                for (int i = 0; i < destWidth; i++) {
+                    destBandData[dstPixelOffset] = lut[srcBandData[srcPixelOffset] & 0xffff];
                     srcPixelOffset += srcPixelStride;
                     dstPixelOffset += dstPixelStride;
                 }
@@ -278,45 +268,21 @@ public class RangeLookupOpImage extends PointOpImage {
 
         int[] srcBandOffsets = srcAcc.getBandOffsets();
         int srcPixelStride = srcAcc.getPixelStride();
-        int srcScanlineStride = srcAcc.getScanlineStride();        
+        int srcScanlineStride = srcAcc.getScanlineStride();
 
-        Range lastRange = null;
+        final short[] lut = getUShortLut();
         
-        short typedDefaultValue = hasDefault ? defaultValue.shortValue() : 0;
-        short destinationValue = typedDefaultValue;
-
         for (int k = 0; k < destBands; k++) {
-            int destY = destAcc.getY();
             short destBandData[] = destData[k];
             short srcBandData[] = srcData[k];
             int srcScanlineOffset = srcBandOffsets[k];
             int dstScanlineOffset = dstBandOffsets[k];
-            for (int j = 0; j < destHeight; j++, destY++) {
-                int destX = destAcc.getX();
+            for (int j = 0; j < destHeight; j++) {
                 int srcPixelOffset = srcScanlineOffset;
                 int dstPixelOffset = dstScanlineOffset;
 
-                for (int i = 0; i < destWidth; i++, destX++) {
-                    int val = srcBandData[srcPixelOffset]  & 0xffff;
-                    
-                    // === destination value
-                    if(lastRange==null|| !lastRange.contains(val)){
-                        // nullify the current range
-                        lastRange=null;
-                        
-                        // get a new one if the value falls within some
-                        LookupItem item = table.getLookupItem(val);
-
-                        if (item != null) {
-                            lastRange = item.getRange();
-                            destinationValue = item.getValue().shortValue();
-                        } else {
-                            // no match: set destination to default value (if defined)
-                            // or source value
-                            destinationValue = hasDefault ? typedDefaultValue : (short) val;
-                        }
-                    }                    
-                    destBandData[dstPixelOffset] = destinationValue;
+                for (int i = 0; i < destWidth; i++) {
+                    destBandData[dstPixelOffset] = lut[srcBandData[srcPixelOffset] & 0xffff];
                     srcPixelOffset += srcPixelStride;
                     dstPixelOffset += dstPixelStride;
                 }
@@ -386,6 +352,44 @@ public class RangeLookupOpImage extends PointOpImage {
         }
     }
 
+    private void lookupAsIntDataFromLut(RasterAccessor srcAcc, RasterAccessor destAcc) {
+        int srcData[][] = srcAcc.getIntDataArrays();
+        int destData[][] = destAcc.getIntDataArrays();
+        int destWidth = destAcc.getWidth();
+        int destHeight = destAcc.getHeight();
+        int destBands = destAcc.getNumBands();
+
+        int[] dstBandOffsets = destAcc.getBandOffsets();
+        int dstPixelStride = destAcc.getPixelStride();
+        int dstScanlineStride = destAcc.getScanlineStride();
+
+        int[] srcBandOffsets = srcAcc.getBandOffsets();
+        int srcPixelStride = srcAcc.getPixelStride();
+        int srcScanlineStride = srcAcc.getScanlineStride();
+
+        final int[] lut = getIntLut();
+        final int mask = lut.length - 1;
+
+        for (int k = 0; k < destBands; k++) {
+            int destBandData[] = destData[k];
+            int srcBandData[] = srcData[k];
+            int srcScanlineOffset = srcBandOffsets[k];
+            int dstScanlineOffset = dstBandOffsets[k];
+            for (int j = 0; j < destHeight; j++) {
+                int srcPixelOffset = srcScanlineOffset;
+                int dstPixelOffset = dstScanlineOffset;
+
+                for (int i = 0; i < destWidth; i++) {
+                    destBandData[dstPixelOffset] = lut[srcBandData[srcPixelOffset] & mask];
+                    srcPixelOffset += srcPixelStride;
+                    dstPixelOffset += dstPixelStride;
+                }
+                srcScanlineOffset += srcScanlineStride;
+                dstScanlineOffset += dstScanlineStride;
+            }
+        }
+    }
+
     private void lookupAsFloatData(RasterAccessor srcAcc, RasterAccessor destAcc) {
         float srcData[][] = srcAcc.getFloatDataArrays();
         float destData[][] = destAcc.getFloatDataArrays();
@@ -445,6 +449,44 @@ public class RangeLookupOpImage extends PointOpImage {
         }
     }
 
+    private void lookupAsFloatDataFromLut(RasterAccessor srcAcc, RasterAccessor destAcc) {
+        float srcData[][] = srcAcc.getFloatDataArrays();
+        float destData[][] = destAcc.getFloatDataArrays();
+        int destWidth = destAcc.getWidth();
+        int destHeight = destAcc.getHeight();
+        int destBands = destAcc.getNumBands();
+
+        int[] dstBandOffsets = destAcc.getBandOffsets();
+        int dstPixelStride = destAcc.getPixelStride();
+        int dstScanlineStride = destAcc.getScanlineStride();
+
+        int[] srcBandOffsets = srcAcc.getBandOffsets();
+        int srcPixelStride = srcAcc.getPixelStride();
+        int srcScanlineStride = srcAcc.getScanlineStride();
+
+        final float[] lut = getFloatLut();
+        final int mask = lut.length - 1;
+
+        for (int k = 0; k < destBands; k++) {
+            float destBandData[] = destData[k];
+            float srcBandData[] = srcData[k];
+            int srcScanlineOffset = srcBandOffsets[k];
+            int dstScanlineOffset = dstBandOffsets[k];
+            for (int j = 0; j < destHeight; j++) {
+                int srcPixelOffset = srcScanlineOffset;
+                int dstPixelOffset = dstScanlineOffset;
+
+                for (int i = 0; i < destWidth; i++) {
+                    destBandData[dstPixelOffset] = lut[(int) srcBandData[srcPixelOffset] & mask];
+                    srcPixelOffset += srcPixelStride;
+                    dstPixelOffset += dstPixelStride;
+                }
+                srcScanlineOffset += srcScanlineStride;
+                dstScanlineOffset += dstScanlineStride;
+            }
+        }
+    }
+
     private void lookupAsDoubleData(RasterAccessor srcAcc, RasterAccessor destAcc) {
         double srcData[][] = srcAcc.getDoubleDataArrays();
         double destData[][] = destAcc.getDoubleDataArrays();
@@ -504,4 +546,224 @@ public class RangeLookupOpImage extends PointOpImage {
             }
         }
     }
+
+    private void lookupAsDoubleDataFromLut(RasterAccessor srcAcc, RasterAccessor destAcc) {
+        double srcData[][] = srcAcc.getDoubleDataArrays();
+        double destData[][] = destAcc.getDoubleDataArrays();
+        int destWidth = destAcc.getWidth();
+        int destHeight = destAcc.getHeight();
+        int destBands = destAcc.getNumBands();
+
+        int[] dstBandOffsets = destAcc.getBandOffsets();
+        int dstPixelStride = destAcc.getPixelStride();
+        int dstScanlineStride = destAcc.getScanlineStride();
+
+        int[] srcBandOffsets = srcAcc.getBandOffsets();
+        int srcPixelStride = srcAcc.getPixelStride();
+        int srcScanlineStride = srcAcc.getScanlineStride();
+
+        final double[] lut = getDoubleLut();
+        final int mask = lut.length - 1;
+
+        for (int k = 0; k < destBands; k++) {
+            double destBandData[] = destData[k];
+            double srcBandData[] = srcData[k];
+            int srcScanlineOffset = srcBandOffsets[k];
+            int dstScanlineOffset = dstBandOffsets[k];
+            for (int j = 0; j < destHeight; j++) {
+                int srcPixelOffset = srcScanlineOffset;
+                int dstPixelOffset = dstScanlineOffset;
+
+                for (int i = 0; i < destWidth; i++) {
+                    destBandData[dstPixelOffset] = lut[(int) srcBandData[srcPixelOffset] & mask];
+                    srcPixelOffset += srcPixelStride;
+                    dstPixelOffset += dstPixelStride;
+                }
+                srcScanlineOffset += srcScanlineStride;
+                dstScanlineOffset += dstScanlineStride;
+            }
+        }
+    }
+
+    /**
+     * Gets the lookup array for byte data, building it if necessary. The array
+     * is indexed by unsigned source value and holds the destination value for
+     * each, with unmatched values set to the default value or passed through.
+     * 
+     * @return lookup array of length 256
+     */
+    private byte[] getByteLut() {
+        byte[] lut = byteLut;
+        if (lut == null) {
+            byte typedDefaultValue = hasDefault ? defaultValue.byteValue() : Byte.MIN_VALUE;
+            lut = new byte[1 << 8];
+            for (int i = 0; i < lut.length; i++) {
+                byte val = (byte) i;
+                LookupItem item = table.getLookupItem(val);
+                if (item != null) {
+                    lut[i] = item.getValue().byteValue();
+                } else {
+                    lut[i] = hasDefault ? typedDefaultValue : val;
+                }
+            }
+            byteLut = lut;
+        }
+        return lut;
+    }
+
+    /**
+     * Gets the lookup array for signed short data, building it if necessary.
+     * The array is indexed by source value masked with {@code 0xffff}.
+     * 
+     * @return lookup array of length 65536
+     */
+    private short[] getShortLut() {
+        short[] lut = shortLut;
+        if (lut == null) {
+            short typedDefaultValue = hasDefault ? defaultValue.shortValue() : Short.MIN_VALUE;
+            lut = new short[1 << 16];
+            for (int i = 0; i < lut.length; i++) {
+                short val = (short) i;
+                LookupItem item = table.getLookupItem(val);
+                if (item != null) {
+                    lut[i] = item.getValue().shortValue();
+                } else {
+                    lut[i] = hasDefault ? typedDefaultValue : val;
+                }
+            }
+            shortLut = lut;
+        }
+        return lut;
+    }
+
+    /**
+     * Gets the lookup array for unsigned short data, building it if necessary.
+     * 
+     * @return lookup array of length 65536
+     */
+    private short[] getUShortLut() {
+        short[] lut = ushortLut;
+        if (lut == null) {
+            short typedDefaultValue = hasDefault ? defaultValue.shortValue() : 0;
+            lut = new short[1 << 16];
+            for (int i = 0; i < lut.length; i++) {
+                LookupItem item = table.getLookupItem(i);
+                if (item != null) {
+                    lut[i] = item.getValue().shortValue();
+                } else {
+                    lut[i] = hasDefault ? typedDefaultValue : (short) i;
+                }
+            }
+            ushortLut = lut;
+        }
+        return lut;
+    }
+
+    /**
+     * Tests if the source image has 8 or 16 bit integral data, for which
+     * dense lookup arrays are used with int, float and double destinations.
+     *
+     * @return {@code true} if the source data type is byte, short or ushort
+     */
+    private boolean hasDenseSource() {
+        return sourceDataType == DataBuffer.TYPE_BYTE ||
+                sourceDataType == DataBuffer.TYPE_SHORT ||
+                sourceDataType == DataBuffer.TYPE_USHORT;
+    }
+
+    /**
+     * Gets the length of the dense lookup arrays for the source data type.
+     *
+     * @return 256 for byte data or 65536 for short and ushort data
+     */
+    private int getSourceLutLength() {
+        return sourceDataType == DataBuffer.TYPE_BYTE ? 1 << 8 : 1 << 16;
+    }
+
+    /**
+     * Gets the source value, as promoted to a wider data type, for an
+     * index into a dense lookup array. Byte and ushort values are unsigned.
+     *
+     * @param index array index
+     * @return the source value
+     */
+    private int getSourceValue(int index) {
+        return sourceDataType == DataBuffer.TYPE_SHORT ? (short) index : index;
+    }
+
+    /**
+     * Gets the lookup array for int destination data with an 8 or 16 bit
+     * source, building it if necessary. The array is indexed by the source
+     * value masked with {@code 0xff} or {@code 0xffff}.
+     *
+     * @return lookup array of length 256 or 65536
+     */
+    private int[] getIntLut() {
+        int[] lut = intLut;
+        if (lut == null) {
+            int typedDefaultValue = hasDefault ? defaultValue.intValue() : Integer.MIN_VALUE;
+            lut = new int[getSourceLutLength()];
+            for (int i = 0; i < lut.length; i++) {
+                int val = getSourceValue(i);
+                LookupItem item = table.getLookupItem(val);
+                if (item != null) {
+                    lut[i] = item.getValue().intValue();
+                } else {
+                    lut[i] = hasDefault ? typedDefaultValue : val;
+                }
+            }
+            intLut = lut;
+        }
+        return lut;
+    }
+
+    /**
+     * Gets the lookup array for float destination data with an 8 or 16 bit
+     * source, building it if necessary.
+     *
+     * @return lookup array of length 256 or 65536
+     */
+    private float[] getFloatLut() {
+        float[] lut = floatLut;
+        if (lut == null) {
+            float typedDefaultValue = hasDefault ? defaultValue.floatValue() : Float.NaN;
+            lut = new float[getSourceLutLength()];
+            for (int i = 0; i < lut.length; i++) {
+                float val = getSourceValue(i);
+                LookupItem item = table.getLookupItem(val);
+                if (item != null) {
+                    lut[i] = item.getValue().floatValue();
+                } else {
+                    lut[i] = hasDefault ? typedDefaultValue : val;
+                }
+            }
+            floatLut = lut;
+        }
+        return lut;
+    }
+
+    /**
+     * Gets the lookup array for double destination data with an 8 or 16 bit
+     * source, building it if necessary.
+     *
+     * @return lookup array of length 256 or 65536
+     */
+    private double[] getDoubleLut() {
+        double[] lut = doubleLut;
+        if (lut == null) {
+            double typedDefaultValue = hasDefault ? defaultValue.doubleValue() : Double.NaN;
+            lut = new double[getSourceLutLength()];
+            for (int i = 0; i < lut.length; i++) {
+                double val = getSourceValue(i);
+                LookupItem item = table.getLookupItem(val);
+                if (item != null) {
+                    lut[i] = item.getValue().doubleValue();
+                } else {
+                    lut[i] = hasDefault ? typedDefaultValue : val;
+                }
+            }
+            doubleLut = lut;
+        }
+        return lut;
+    }
 }
@@ -30,6 +30,7 @@ import java.util.List;
 
 import org.jaitools.numeric.NumberOperations;
 import org.jaitools.numeric.Range;
+import org.jaitools.numeric.RangeSet;
 import org.jaitools.numeric.RangeUtils;
 
 
@@ -62,6 +63,13 @@ import org.jaitools.numeric.RangeUtils;
 public class RangeLookupTable<T extends Number & Comparable<? super T>, U extends Number & Comparable<? super U>> {
     
     private final List<LookupItem<T, U>> items;
+
+    /*
+     * Source ranges compiled for primitive lookup; null if they
+     * cannot be represented exactly as doubles
+     */
+    private volatile RangeSet rangeSet;
+    private final boolean compilable;
     
     /**
      * Private constructor called from the Builder's build method.
@@ -71,6 +79,13 @@ public class RangeLookupTable<T extends Number & Comparable<? super T>, U extend
         
         // Sort the lookup items on the basis of their source ranges
         Collections.sort(this.items, new LookupItemComparator<T, U>());
+
+        boolean exact = true;
+        for (LookupItem<T, U> item : items) {
+            exact &= isExactDouble(item.getRange().getMin()) &&
+                    isExactDouble(item.getRange().getMax());
+        }
+        this.compilable = exact;
     }
 
     /**
@@ -84,10 +99,21 @@ public class RangeLookupTable<T extends Number & Comparable<? super T>, U extend
     public LookupItem<T, U> getLookupItem(T srcValue) {
         if (items.isEmpty()) {
             return null;
-            
+        }
+
+        RangeSet set = getRangeSet();
+        if (set != null && isExactDouble(srcValue)) {
+            /*
+             * Binary search over primitive bounds of the source ranges
+             */
+            int index = set.indexOf(srcValue.doubleValue());
+            return index < 0 ? null : items.get(index);
+
         } else {
             /*
-             * Binary search for source value in items sorted by source range
+             * Binary search for source value in items sorted by source range.
+             * Only used for Long values which cannot be held as doubles and
+             * for Byte values above 127.
              */
             int lo = 0;
             int hi = items.size() - 1;
@@ -114,6 +140,57 @@ public class RangeLookupTable<T extends Number & Comparable<? super T>, U extend
         }
     }
 
+    /**
+     * Gets the source ranges compiled into a {@code RangeSet}, recompiling
+     * them if the {@code NumberOperations} tolerance has changed.
+     * 
+     * @return the compiled ranges or {@code null} if not available
+     */
+    private RangeSet getRangeSet() {
+        if (!compilable) {
+            return null;
+        }
+
+        double tol = isFloatTable() ?
+                NumberOperations.getFloatTolerance() : NumberOperations.getDoubleTolerance();
+
+        RangeSet set = rangeSet;
+        if (set == null || set.getTolerance() != tol) {
+            List<Range<T>> ranges = new ArrayList<Range<T>>(items.size());
+            for (LookupItem<T, U> item : items) {
+                ranges.add(item.getRange());
+            }
+            set = RangeSet.createIndexed(ranges, tol);
+            rangeSet = set;
+        }
+        return set;
+    }
+
+    /**
+     * Tests if the source ranges are of type Float.
+     */
+    private boolean isFloatTable() {
+        return items.get(0).getRange().getMin() instanceof Float ||
+                items.get(0).getRange().getMax() instanceof Float;
+    }
+
+    /**
+     * Tests if a value (possibly {@code null}) can be converted to
+     * double without loss of precision. Byte values above 127 are
+     * excluded because {@code NumberOperations} treats bytes as unsigned
+     * whereas {@code Number.doubleValue} does not.
+     */
+    private static boolean isExactDouble(Number value) {
+        if (value instanceof Byte) {
+            return value.byteValue() >= 0;
+        }
+        if (value instanceof Long) {
+            long lval = value.longValue();
+            return (long) (double) lval == lval;
+        }
+        return true;
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
@@ -69,6 +69,58 @@ public class RangeLookupFallbackTest extends TestBase {
     }
     
     
+    @Test
+    public void byteDefaultValue() throws Exception {
+        assertTypedLookup(true, Byte.valueOf((byte) 0), ImageDataType.BYTE, 
+                Byte.valueOf((byte) MATCH_VALUE), Byte.valueOf((byte) DEFAULT_VALUE));
+    }
+    
+    @Test
+    public void bytePassThroughSourceValue() throws Exception {
+        assertTypedLookup(false, Byte.valueOf((byte) 0), ImageDataType.BYTE, 
+                Byte.valueOf((byte) MATCH_VALUE), null);
+    }
+    
+    
+    @Test
+    public void shortDefaultValue() throws Exception {
+        // negative match value so that the destination is TYPE_SHORT
+        assertTypedLookup(true, Short.valueOf((short) -128), ImageDataType.SHORT, 
+                Short.valueOf((short) -MATCH_VALUE), Short.valueOf((short) DEFAULT_VALUE));
+    }
+    
+    @Test
+    public void shortPassThroughSourceValue() throws Exception {
+        assertTypedLookup(false, Short.valueOf((short) -128), ImageDataType.SHORT, 
+                Short.valueOf((short) -MATCH_VALUE), null);
+    }
+    
+    
+    @Test
+    public void byteToIntDefaultValue() throws Exception {
+        assertTypedLookup(true, Byte.valueOf((byte) 0), ImageDataType.BYTE, 
+                Integer.valueOf(MATCH_VALUE), Integer.valueOf(DEFAULT_VALUE), ImageDataType.INT);
+    }
+    
+    @Test
+    public void byteToFloatPassThroughSourceValue() throws Exception {
+        assertTypedLookup(false, Byte.valueOf((byte) 0), ImageDataType.BYTE, 
+                Float.valueOf(MATCH_VALUE), null, ImageDataType.FLOAT);
+    }
+    
+    @Test
+    public void shortToDoubleDefaultValue() throws Exception {
+        assertTypedLookup(true, Short.valueOf((short) -128), ImageDataType.SHORT, 
+                Double.valueOf(-MATCH_VALUE), Double.valueOf(DEFAULT_VALUE), ImageDataType.DOUBLE);
+    }
+    
+    @Test
+    public void shortToIntPassThroughSourceValue() throws Exception {
+        assertTypedLookup(false, Short.valueOf((short) -128), ImageDataType.SHORT, 
+                Integer.valueOf(-MATCH_VALUE), null, ImageDataType.INT);
+    }
+    
+    
     private void assertLookup(boolean useDefault) {
         int minValue = 0;
         int maxValue = WIDTH * WIDTH;
@@ -111,4 +163,67 @@ public class RangeLookupFallbackTest extends TestBase {
             
         } while (srcIter.next() && destIter.next());
     }
+
+    /*
+     * Tests lookups where the destination image has the same data type 
+     * as the source image. For 8 and 16 bit images these use a dense lookup
+     * array. The 16 x 16 source image covers all byte values.
+     */
+    private void assertTypedLookup(boolean useDefault, Number startValue,
+            ImageDataType dataType, Number matchValue, Number defaultValue) {
+        assertTypedLookup(useDefault, startValue, dataType, matchValue, defaultValue, dataType);
+    }
+
+    /*
+     * Tests lookups where the destination image data type is set by the
+     * class of the match value. For 8 and 16 bit source images with int,
+     * float or double destinations these also use a dense lookup array.
+     */
+    @SuppressWarnings("unchecked")
+    private void assertTypedLookup(boolean useDefault, Number startValue,
+            ImageDataType dataType, Number matchValue, Number defaultValue,
+            ImageDataType destDataType) {
+        
+        final int width = 16;
+        int minValue = startValue.intValue();
+        int maxValue = minValue + width * width - 1;
+        int third = (maxValue - minValue) / 3;
+        
+        RenderedImage srcImage = createTestImage(startValue, dataType, width, width);
+        
+        // raw types since the match value class varies with the test
+        RangeLookupTable.Builder typedBuilder = new RangeLookupTable.Builder();
+        typedBuilder.add(Range.create(minValue, true, minValue + third, true), matchValue);
+        typedBuilder.add(Range.create(maxValue - third, true, maxValue, true), matchValue);
+        RangeLookupTable table = typedBuilder.build();
+        
+        ParameterBlockJAI pb = new ParameterBlockJAI("RangeLookup");
+        pb.setSource("source0", srcImage);
+        pb.setParameter("table", table);
+        
+        if (useDefault) {
+            pb.setParameter("default", defaultValue);
+        }
+        
+        RenderedOp destImage = JAI.create("RangeLookup", pb);
+        assertEquals(destDataType.getDataBufferType(), destImage.getSampleModel().getDataType());
+        
+        SimpleIterator srcIter = new SimpleIterator(srcImage, null, null);
+        SimpleIterator destIter = new SimpleIterator(destImage, null, null);
+        do {
+            int srcValue = srcIter.getSample().intValue();
+            int destValue = destIter.getSample().intValue();
+            
+            if (table.getLookupItem(srcValue) != null) {
+                assertEquals(matchValue.intValue(), destValue);
+                
+            } else if (useDefault) {
+                assertEquals(defaultValue.intValue(), destValue);
+                
+            } else {
+                assertEquals(srcValue, destValue);
+            }
+            
+        } while (srcIter.next() && destIter.next());
+    }
 }
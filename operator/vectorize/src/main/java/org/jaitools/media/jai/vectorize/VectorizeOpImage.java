@@ -57,6 +57,7 @@ import org.locationtech.jts.operation.polygonize.Polygonizer;
 import org.jaitools.CollectionFactory;
 import org.jaitools.jts.Utils;
 import org.jaitools.media.jai.AttributeOpImage;
+import org.jaitools.numeric.RangeSet;
 
 /**
  * Vectorize regions of uniform value in an image.
@@ -138,6 +139,9 @@ public class VectorizeOpImage extends AttributeOpImage {
 
     // Set of values that indicate 'outside' or 'no data' areas in the raster
     private SortedSet<Double> outsideValues;
+
+    // outsideValues compiled for fast matching of sample values
+    private final RangeSet outsideSet;
     
     // Flag indicating whether the boundaries between adjacent inside regions
     // should be vectorized
@@ -220,6 +224,9 @@ public class VectorizeOpImage extends AttributeOpImage {
         } else {
             this.outsideValues.addAll(outsideValues);
         }
+        // isDifferent treats values up to EPSILON apart as equal, whereas
+        // the RangeSet tolerance is exclusive, hence the next double up
+        this.outsideSet = RangeSet.createPoints(this.outsideValues, Math.nextUp(EPSILON));
         
         this.insideEdges = insideEdges;
         this.removeCollinear=removeCollinear;
@@ -711,12 +718,7 @@ public class VectorizeOpImage extends AttributeOpImage {
     }
 
     private boolean isOutside(double value) {
-        for (Double d : outsideValues) {
-            if (isDifferent(d, value) == 0) {
-                return true;
-            }
-        }
-        return false;
+        return outsideSet.contains(value);
     }
 
     /**
@@ -30,6 +30,9 @@ import java.util.List;
 import java.util.SortedSet;
 
 import org.jaitools.CollectionFactory;
+import org.jaitools.numeric.AbstractHistogram;
+import org.jaitools.numeric.FrequencyTable;
+import org.jaitools.numeric.HistogramProcessor;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.Statistic;
 import org.jaitools.numeric.StreamingSampleStats;
@@ -102,6 +105,19 @@ import org.jaitools.numeric.StreamingSampleStats;
  *
  * }</pre>
  *
+ * Counts of values per zone, eg. land cover classes, are obtained by requesting
+ * {@code Statistic.HISTOGRAM}. The counts are held by the {@code Result}, as a
+ * {@code FrequencyTable} of distinct values or, if bins were specified with the
+ * {@code histogramBins} parameter, as a histogram...
+ * <pre><code>
+ * for (Result r : allStats.statistic(Statistic.HISTOGRAM).results()) {
+ *     FrequencyTable table = r.getFrequencyTable();
+ *     double[] classes = table.getValues();
+ *     long[] counts = table.getCounts();
+ *     ...
+ * }
+ * </code></pre>
+ *
  * @see Result
  * @see ZonalStatsDescriptor
  *
@@ -160,12 +176,21 @@ public class ZonalStats {
      */
     void setResults(int band, int zone, StreamingSampleStats stats, List<Range> includedRanges) {
         for (Statistic s : stats.getStatistics()) {
+            AbstractHistogram histogram = null;
+            FrequencyTable frequencyTable = null;
+            if (s == Statistic.HISTOGRAM) {
+                HistogramProcessor hp = (HistogramProcessor) stats.getProcessor(s);
+                histogram = hp.getHistogram();
+                frequencyTable = hp.getFrequencyTable();
+            }
+
             Result r = new Result(band, zone, s, includedRanges,
                     stats.getStatisticValue(s),
                     stats.getNumOffered(s),
                     stats.getNumAccepted(s),
                     stats.getNumNaN(s),
-                    stats.getNumNoData(s));
+                    stats.getNumNoData(s),
+                    histogram, frequencyTable);
 
             results.add(r);
         }
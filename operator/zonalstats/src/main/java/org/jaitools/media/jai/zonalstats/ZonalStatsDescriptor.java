@@ -38,6 +38,7 @@ import javax.media.jai.OperationDescriptorImpl;
 import javax.media.jai.ROI;
 import javax.media.jai.registry.RenderedRegistryMode;
 
+import org.jaitools.numeric.AbstractHistogram;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.RangeExtendedComparator;
 import org.jaitools.numeric.RangeUtils;
@@ -61,6 +62,12 @@ import org.jaitools.numeric.Statistic;
  * calculations, allowing it to handle very large images for statistics other than
  * {@link org.jaitools.numeric.Statistic#MEDIAN}, for which the
  * {@link org.jaitools.numeric.Statistic#APPROX_MEDIAN} alternative is provided.
+ * Percentiles such as {@link org.jaitools.numeric.Statistic#PERCENTILE_95} are
+ * estimated with bounded memory from a {@link org.jaitools.numeric.QuantileSketch}.
+ * {@link org.jaitools.numeric.Statistic#MODE}, {@code MINORITY} and {@code VARIETY}
+ * are counted exactly, with memory proportional to the number of distinct values;
+ * {@link org.jaitools.numeric.Statistic#APPROX_VARIETY} estimates the number of
+ * distinct values with bounded memory.
  * <p>
  * Note that the source names for this operator are "dataImage" and "zoneImage"
  * rather than the more typical JAI names "source0", "source1".
@@ -214,6 +221,17 @@ import org.jaitools.numeric.Statistic;
  * }
  * }</pre>
  *
+ * Requesting {@code Statistic.HISTOGRAM} gives a frequency table of data
+ * values for each zone. By default each distinct value is counted exactly
+ * and the table is available from {@link Result#getFrequencyTable()}. For
+ * continuous data it is usually better to provide bins with the
+ * "histogramBins" parameter, in which case the counts are available from
+ * {@link Result#getHistogram()}:
+ * <pre>{@code
+ * pb.setParameter("stats", new Statistic[]{Statistic.MEAN, Statistic.HISTOGRAM});
+ * pb.setParameter("histogramBins", new FixedWidthHistogram(0, 100, 20));
+ * }</pre>
+ *
  * <b>Parameters</b>
  * <table border="1">
  * <caption>Zonal Status Parameters</caption>
@@ -253,6 +271,12 @@ import org.jaitools.numeric.Statistic;
  * <td>Ranges of values to treat specifically as NODATA
  * </td><td>null (no NODATA values defined)</td>
  * </tr>
+ * <tr>
+ * <td>histogramBins</td><td>AbstractHistogram</td>
+ * <td>Bins to use for {@code Statistic.HISTOGRAM}. The histogram passed
+ * is only used as a template: each zone gets its own empty copy.
+ * </td><td>null (count each distinct value)</td>
+ * </tr>
  * </table>
  *
  * @see Result
@@ -288,6 +312,7 @@ public class ZonalStatsDescriptor extends OperationDescriptorImpl {
     static final int RANGES_TYPE_ARG = 5;
     static final int RANGE_LOCAL_STATS_ARG = 6;
     static final int NODATA_RANGES_ARG = 7;
+    static final int HISTOGRAM_BINS_ARG = 8;
 
     private static final String[] paramNames = {
         "stats", 
@@ -297,7 +322,8 @@ public class ZonalStatsDescriptor extends OperationDescriptorImpl {
         "ranges", 
         "rangesType", 
         "rangeLocalStats", 
-        "noDataRanges"
+        "noDataRanges",
+        "histogramBins"
     };
 
     private static final Class<?>[] paramClasses = {
@@ -308,7 +334,8 @@ public class ZonalStatsDescriptor extends OperationDescriptorImpl {
         Collection.class, 
         Range.Type.class, 
         Boolean.class, 
-        Collection.class 
+        Collection.class,
+        AbstractHistogram.class
     };
 
     private static final Object[] paramDefaults = {
@@ -318,7 +345,8 @@ public class ZonalStatsDescriptor extends OperationDescriptorImpl {
         (Collection) null, 
         Range.Type.UNDEFINED, 
         Boolean.FALSE, 
-        (Collection) null
+        (Collection) null,
+        (AbstractHistogram) null
     };
     
 
@@ -374,6 +402,11 @@ public class ZonalStatsDescriptor extends OperationDescriptorImpl {
                         String.format("%s (default %s) - an optional Collection of Ranges "
                             + "defining values to treat as NODATA",
                             paramNames[NODATA_RANGES_ARG], paramDefaults[NODATA_RANGES_ARG])},
+                {
+                        "arg8Desc",
+                        String.format("%s (default %s) - an optional histogram defining the bins "
+                            + "to use for Statistic.HISTOGRAM",
+                            paramNames[HISTOGRAM_BINS_ARG], paramDefaults[HISTOGRAM_BINS_ARG])},
 
         },
 
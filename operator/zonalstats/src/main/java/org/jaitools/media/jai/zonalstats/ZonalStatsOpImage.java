@@ -46,6 +46,8 @@ import javax.media.jai.ROI;
 
 import org.jaitools.CollectionFactory;
 import org.jaitools.imageutils.iterator.SimpleIterator;
+import org.jaitools.numeric.AbstractHistogram;
+import org.jaitools.numeric.HistogramProcessor;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.RangeUtils;
 import org.jaitools.numeric.Statistic;
@@ -68,6 +70,9 @@ import org.jaitools.numeric.StreamingSampleStats;
 public class ZonalStatsOpImage extends NullOpImage {
     private final static Logger LOGGER = Logger.getLogger("org.jaitools.zonalstats");
 
+    /* Number of samples collected per band before offering them as a batch */
+    private static final int STRIP_LENGTH = 4096;
+
     private final Integer[] srcBands;
 
     private final ROI roi;
@@ -93,6 +98,9 @@ public class ZonalStatsOpImage extends NullOpImage {
      * from statistics computations */
     private Range.Type rangesType;
 
+    /** Optional bins for the HISTOGRAM statistic (exact counts are used if {@code null}) */
+    private final AbstractHistogram histogramBins;
+
     private SortedSet<Integer> zones;
 
     /**
@@ -144,6 +152,32 @@ public class ZonalStatsOpImage extends NullOpImage {
             final boolean rangeLocalStats,
             Collection<Range<Double>> noDataRanges) {
 
+        this(dataImage, zoneImage, config, layout, stats, bands, roi,
+                dataToZoneTransform, ranges, rangesType, rangeLocalStats,
+                noDataRanges, null);
+    }
+
+    /**
+     * Constructor with bins for the {@code HISTOGRAM} statistic.
+     * Other arguments are as for the constructor above.
+     *
+     * @param histogramBins an optional histogram defining the bins to use when
+     *     {@link Statistic#HISTOGRAM} is requested; if {@code null} each distinct
+     *     data value is counted
+     */
+    public ZonalStatsOpImage(RenderedImage dataImage, RenderedImage zoneImage,
+            Map<?, ?> config,
+            ImageLayout layout,
+            Statistic[] stats,
+            Integer[] bands,
+            ROI roi,
+            AffineTransform dataToZoneTransform,
+            Collection<Range<Double>> ranges,
+            Range.Type rangesType,
+            final boolean rangeLocalStats,
+            Collection<Range<Double>> noDataRanges,
+            AbstractHistogram histogramBins) {
+
         super(dataImage, layout, config, OpImage.OP_COMPUTE_BOUND);
 
         this.dataImage = dataImage;
@@ -202,6 +236,8 @@ public class ZonalStatsOpImage extends NullOpImage {
                 this.noDataRanges.add(new Range<Double>(r));
             }
         }
+
+        this.histogramBins = histogramBins == null ? null : histogramBins.copy();
     }
 
     /**
@@ -267,10 +303,26 @@ public class ZonalStatsOpImage extends NullOpImage {
             sampleStats.addNoDataRange(r);
         }
         sampleStats.setStatistics(stats);
+        setHistogramBins(sampleStats);
         resultsPerBand.put(zone, sampleStats);
         return sampleStats;
     }
 
+    /**
+     * Passes the histogram bins, if provided, to the sampler's
+     * {@code HISTOGRAM} processor.
+     *
+     * @param sampleStats the sampler
+     */
+    private void setHistogramBins(StreamingSampleStats sampleStats) {
+        if (histogramBins != null) {
+            HistogramProcessor hp = (HistogramProcessor) sampleStats.getProcessor(Statistic.HISTOGRAM);
+            if (hp != null) {
+                hp.setBins(histogramBins);
+            }
+        }
+    }
+
     /**
      * Used to calculate statistics when a zone image was provided.
      *
@@ -367,19 +419,11 @@ public class ZonalStatsOpImage extends NullOpImage {
                 sampleStats.addNoDataRange(r);
             }
             sampleStats.setStatistics(stats);
+            setHistogramBins(sampleStats);
             sampleStatsPerBand[index] = sampleStats;
         }
 
-        SimpleIterator dataIter = new SimpleIterator(dataImage, dataImageBounds, null);
-        do {
-            if (roi == null || roi.contains(dataIter.getPos())) {
-                for (int k = 0; k < srcBands.length; k++) {
-                    double value = dataIter.getSample(srcBands[k]).doubleValue();
-                    sampleStatsPerBand[k].offer(value);
-                }
-            }
-        } while (dataIter.next() );
-        dataIter.done();
+        offerSamples(sampleStatsPerBand);
 
         // get the results
         final ZonalStats zs = new ZonalStats();
@@ -404,6 +448,39 @@ public class ZonalStatsOpImage extends NullOpImage {
         return zs;
     }
 
+    /**
+     * Offers data image samples within the ROI, if any, to the statistics
+     * object for each band. Samples are collected into strips and offered
+     * as arrays so that NaN, NoData and range tests are done once per strip.
+     *
+     * @param sampleStatsPerBand statistics objects, in the order of {@code srcBands}
+     */
+    private void offerSamples(StreamingSampleStats[] sampleStatsPerBand) {
+        final double[][] strips = new double[srcBands.length][STRIP_LENGTH];
+        int n = 0;
+
+        SimpleIterator dataIter = new SimpleIterator(dataImage, dataImageBounds, null);
+        do {
+            if (roi == null || roi.contains(dataIter.getPos())) {
+                for (int k = 0; k < srcBands.length; k++) {
+                    strips[k][n] = dataIter.getSample(srcBands[k]).doubleValue();
+                }
+
+                if (++n == STRIP_LENGTH) {
+                    for (int k = 0; k < srcBands.length; k++) {
+                        sampleStatsPerBand[k].offer(strips[k], 0, n);
+                    }
+                    n = 0;
+                }
+            }
+        } while (dataIter.next());
+        dataIter.done();
+
+        for (int k = 0; k < srcBands.length; k++) {
+            sampleStatsPerBand[k].offer(strips[k], 0, n);
+        }
+    }
+
     /**
      * Used to calculate statistics when range local statistics are required.
      *
@@ -439,19 +516,11 @@ public class ZonalStatsOpImage extends NullOpImage {
                     sampleStats.addNoDataRange(noDataRange);
                 }
                 sampleStats.setStatistics(stats);
+                setHistogramBins(sampleStats);
                 sampleStatsPerBand[index] = sampleStats;
             }
 
-            SimpleIterator dataIter = new SimpleIterator(dataImage, dataImageBounds, null);
-            do {
-                    if (roi == null || roi.contains(dataIter.getPos())) {
-                        for (int k = 0; k < srcBands.length; k++) {
-                            final double value = dataIter.getSample(srcBands[k]).doubleValue();
-                            sampleStatsPerBand[k].offer(value);
-                        }
-                    }
-            } while (dataIter.next());
-            dataIter.done();
+            offerSamples(sampleStatsPerBand);
 
             // get the results
             for (int index = 0; index < srcBands.length; index++) {
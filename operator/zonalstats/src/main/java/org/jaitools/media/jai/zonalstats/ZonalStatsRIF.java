@@ -42,6 +42,7 @@ import javax.media.jai.RasterFactory;
 import com.sun.media.jai.opimage.RIFUtil;
 import com.sun.media.jai.util.ImageUtil;
 
+import org.jaitools.numeric.AbstractHistogram;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.Statistic;
 
@@ -65,7 +66,7 @@ public class ZonalStatsRIF implements RenderedImageFactory {
      *
      * @param paramBlock specifies the source image, the optional zone image,
      * and the following parameters: "stats", "band", "roi", "zoneTransform", "ranges",
-     * "rangesType", "rangeLocalStats"
+     * "rangesType", "rangeLocalStats", "noDataRanges", "histogramBins"
      *
      * @param renderHints optional RenderingHints object
      */
@@ -98,6 +99,9 @@ public class ZonalStatsRIF implements RenderedImageFactory {
         Object rngType = paramBlock.getObjectParameter(ZonalStatsDescriptor.RANGES_TYPE_ARG);
         Range.Type rangesType = rngType != null ? (Range.Type) rngType : rng != null ? Range.Type.EXCLUDE : Range.Type.UNDEFINED;
 
+        AbstractHistogram histogramBins =
+                (AbstractHistogram) paramBlock.getObjectParameter(ZonalStatsDescriptor.HISTOGRAM_BINS_ARG);
+
         SampleModel sm = layout.getSampleModel(null);
         if (sm == null || sm.getNumBands() != stats.length) {
 
@@ -139,7 +143,8 @@ public class ZonalStatsRIF implements RenderedImageFactory {
                 ranges,
                 rangesType,
                 rangeLocalStats,
-                noDataRanges
+                noDataRanges,
+                histogramBins
                 );
     }
 }
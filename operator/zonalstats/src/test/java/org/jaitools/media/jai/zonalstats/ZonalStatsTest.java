@@ -47,6 +47,9 @@ import javax.media.jai.iterator.RectIterFactory;
 import javax.media.jai.iterator.WritableRectIter;
 
 import org.jaitools.CollectionFactory;
+import org.jaitools.numeric.AbstractHistogram;
+import org.jaitools.numeric.FixedWidthHistogram;
+import org.jaitools.numeric.FrequencyTable;
 import org.jaitools.numeric.Range;
 import org.jaitools.numeric.Statistic;
 
@@ -419,6 +422,76 @@ public class ZonalStatsTest {
         }
     }
 
+    @Test
+    public void testHistogramExactCounts() {
+        // System.out.println("   test histogram with exact counts");
+
+        ParameterBlockJAI pb = new ParameterBlockJAI("ZonalStats");
+        pb.setSource("dataImage", twoValueImage);
+        pb.setParameter("stats", new Statistic[]{Statistic.HISTOGRAM});
+        RenderedOp op = JAI.create("ZonalStats", pb);
+        assertSingleResult(op, Statistic.HISTOGRAM, 2.0);
+
+        ZonalStats stats = (ZonalStats) op.getProperty(ZonalStatsDescriptor.ZONAL_STATS_PROPERTY);
+        Result r = stats.statistic(Statistic.HISTOGRAM).results().get(0);
+        assertNull(r.getHistogram());
+
+        FrequencyTable table = r.getFrequencyTable();
+        assertNotNull(table);
+        assertEquals(WIDTH * WIDTH / 2, table.getCount(1.0));
+        assertEquals(WIDTH * WIDTH / 2, table.getCount(10.0));
+        assertEquals(0, table.getCount(5.0));
+    }
+
+    @Test
+    public void testHistogramBinsPerZone() {
+        // System.out.println("   test histogram with bins per zone");
+
+        int numBins = MAX_DATUM - MIN_DATUM + 1;
+        AbstractHistogram template = new FixedWidthHistogram(MIN_DATUM - 0.5, MAX_DATUM + 0.5, numBins);
+
+        // the two value image has zone 1 in the upper half and zone 10 in the lower half
+        ParameterBlockJAI pb = new ParameterBlockJAI("ZonalStats");
+        pb.setSource("dataImage", dataImage);
+        pb.setSource("zoneImage", twoValueImage);
+        pb.setParameter("stats", new Statistic[]{Statistic.HISTOGRAM});
+        pb.setParameter("histogramBins", template);
+        RenderedOp op = JAI.create("ZonalStats", pb);
+        ZonalStats stats = (ZonalStats) op.getProperty(ZonalStatsDescriptor.ZONAL_STATS_PROPERTY);
+
+        long[][] expected = new long[2][numBins];
+        RectIter iter = RectIterFactory.create(dataImage, null);
+        int y = 0;
+        do {
+            int zoneIndex = y < WIDTH / 2 ? 0 : 1;
+            do {
+                expected[zoneIndex][iter.getSample() - MIN_DATUM]++;
+            } while( !iter.nextPixelDone() );
+            iter.startPixels();
+            y++;
+        } while( !iter.nextLineDone() );
+
+        int[] zones = {1, 10};
+        AbstractHistogram[] histograms = new AbstractHistogram[zones.length];
+        for (int i = 0; i < zones.length; i++) {
+            Result r = stats.zone(zones[i]).statistic(Statistic.HISTOGRAM).results().get(0);
+            assertNull(r.getFrequencyTable());
+
+            histograms[i] = r.getHistogram();
+            assertNotNull(histograms[i]);
+            assertNotSame(template, histograms[i]);
+            assertEquals(WIDTH * WIDTH / 2, histograms[i].getTotal());
+
+            for (int bin = 0; bin < numBins; bin++) {
+                assertEquals(expected[i][bin], histograms[i].getCount(bin));
+            }
+        }
+
+        // each zone has its own copy of the bins and the template is not changed
+        assertNotSame(histograms[0], histograms[1]);
+        assertEquals(0, template.getTotal());
+    }
+
     private void assertSingleResult(RenderedOp op, Statistic stat, Double value) {
         ZonalStats stats = (ZonalStats) op.getProperty(ZonalStatsDescriptor.ZONAL_STATS_PROPERTY);
         Result r = stats.band(0).zone(0).statistic(stat).results().get(0);
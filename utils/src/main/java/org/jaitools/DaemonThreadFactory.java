@@ -102,7 +102,7 @@ public class DaemonThreadFactory implements ThreadFactory {
         try {
             Thread t = new Thread(r);
             t.setDaemon(true);
-            t.setName("daemon-" + threadCount.getAndIncrement());
+            t.setName(rootName + threadCount.getAndIncrement());
             t.setPriority(priority);
             return t;
         } finally {
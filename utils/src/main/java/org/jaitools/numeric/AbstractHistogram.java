@@ -0,0 +1,425 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.Arrays;
+
+/**
+ * Base class for histograms with primitive bins and counts, intended for
+ * binning very large numbers of values. Sub-classes define the bin edges
+ * and how a value is assigned to a bin.
+ * <p>
+ * Each bin includes its lower edge and excludes its upper edge, except for
+ * the last bin which includes both. Values below the first bin, above the
+ * last bin, or NaN are not binned but are counted separately. Counts are
+ * held as {@code long} values.
+ * <p>
+ * Histograms with identical bins can be combined with {@link #merge(AbstractHistogram)},
+ * eg. when values have been binned in parallel. Instances are not thread-safe.
+ *
+ * @see FixedWidthHistogram
+ * @see EdgeHistogram
+ * @see LogHistogram
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public abstract class AbstractHistogram {
+
+    /** Constant indicating that a value does not fall in any bin */
+    public static final int NO_BIN = -1;
+
+    /** Bin counts */
+    protected final long[] counts;
+
+    private long numBelow;
+    private long numAbove;
+    private long numNaN;
+
+    /**
+     * Creates a new histogram.
+     *
+     * @param numBins number of bins
+     * @throws IllegalArgumentException if {@code numBins} is less than 1
+     */
+    protected AbstractHistogram(int numBins) {
+        if (numBins < 1) {
+            throw new IllegalArgumentException("numBins must be at least 1");
+        }
+        counts = new long[numBins];
+    }
+
+    /**
+     * Creates a copy of another histogram, including its counts.
+     *
+     * @param other the histogram to copy
+     */
+    protected AbstractHistogram(AbstractHistogram other) {
+        counts = other.counts.clone();
+        numBelow = other.numBelow;
+        numAbove = other.numAbove;
+        numNaN = other.numNaN;
+    }
+
+    /**
+     * Finds the bin for a value which is known to lie between the
+     * lower edge of the first bin and the upper edge of the last bin
+     * (inclusive).
+     *
+     * @param value the value
+     * @return the bin index
+     */
+    protected abstract int findBin(double value);
+
+    /**
+     * Gets the lower edge of a bin.
+     *
+     * @param bin bin index
+     * @return lower edge
+     */
+    public abstract double getBinMin(int bin);
+
+    /**
+     * Gets the upper edge of a bin.
+     *
+     * @param bin bin index
+     * @return upper edge
+     */
+    public abstract double getBinMax(int bin);
+
+    /**
+     * Creates a copy of this histogram, including its counts.
+     *
+     * @return a new histogram
+     */
+    public abstract AbstractHistogram copy();
+
+    /**
+     * Tests if another histogram has the same bins as this one.
+     *
+     * @param other the other histogram, which will be of the same class
+     * @return {@code true} if the bins are the same
+     */
+    protected abstract boolean hasSameBins(AbstractHistogram other);
+
+    /**
+     * Gets the number of bins.
+     *
+     * @return number of bins
+     */
+    public int getNumBins() {
+        return counts.length;
+    }
+
+    /**
+     * Gets the lower edge of the first bin.
+     *
+     * @return minimum binned value
+     */
+    public double getMin() {
+        return getBinMin(0);
+    }
+
+    /**
+     * Gets the upper edge of the last bin.
+     *
+     * @return maximum binned value
+     */
+    public double getMax() {
+        return getBinMax(counts.length - 1);
+    }
+
+    /**
+     * Gets the bin for a value. The value is not added to the histogram.
+     *
+     * @param value the value
+     * @return the bin index or {@link #NO_BIN}
+     */
+    public int getBin(double value) {
+        if (value >= getMin() && value <= getMax()) {
+            return findBin(value);
+        }
+        return NO_BIN;
+    }
+
+    /**
+     * Adds a value to the histogram.
+     *
+     * @param value the value
+     * @return the index of the bin that the value was allocated to or
+     *         {@link #NO_BIN}
+     */
+    public int add(double value) {
+        int bin = NO_BIN;
+        if (value != value) {
+            numNaN++;
+        } else if (value < getMin()) {
+            numBelow++;
+        } else if (value > getMax()) {
+            numAbove++;
+        } else {
+            bin = findBin(value);
+            counts[bin]++;
+        }
+        return bin;
+    }
+
+    /**
+     * Adds a portion of an array of values to the histogram.
+     *
+     * @param values the values
+     * @param offset index of the first value to add
+     * @param length number of values to add
+     * @throws IndexOutOfBoundsException if {@code offset} and {@code length}
+     *         do not specify a valid portion of the array
+     */
+    public void add(double[] values, int offset, int length) {
+        checkBounds(values.length, offset, length);
+        final double min = getMin();
+        final double max = getMax();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            double v = values[i];
+            if (v >= min && v <= max) {
+                counts[findBin(v)]++;
+            } else if (v < min) {
+                numBelow++;
+            } else if (v > max) {
+                numAbove++;
+            } else {
+                numNaN++;
+            }
+        }
+    }
+
+    /**
+     * Adds a portion of an array of float values to the histogram.
+     *
+     * @param values the values
+     * @param offset index of the first value to add
+     * @param length number of values to add
+     * @throws IndexOutOfBoundsException if {@code offset} and {@code length}
+     *         do not specify a valid portion of the array
+     */
+    public void add(float[] values, int offset, int length) {
+        checkBounds(values.length, offset, length);
+        final double min = getMin();
+        final double max = getMax();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            double v = values[i];
+            if (v >= min && v <= max) {
+                counts[findBin(v)]++;
+            } else if (v < min) {
+                numBelow++;
+            } else if (v > max) {
+                numAbove++;
+            } else {
+                numNaN++;
+            }
+        }
+    }
+
+    /**
+     * Adds a portion of an array of integer values to the histogram.
+     *
+     * @param values the values
+     * @param offset index of the first value to add
+     * @param length number of values to add
+     * @throws IndexOutOfBoundsException if {@code offset} and {@code length}
+     *         do not specify a valid portion of the array
+     */
+    public void add(int[] values, int offset, int length) {
+        checkBounds(values.length, offset, length);
+        final double min = getMin();
+        final double max = getMax();
+        for (int i = offset, end = offset + length; i < end; i++) {
+            double v = values[i];
+            if (v < min) {
+                numBelow++;
+            } else if (v > max) {
+                numAbove++;
+            } else {
+                counts[findBin(v)]++;
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     *
+     * @param other the other histogram
+     * @throws IllegalArgumentException if {@code other} is {@code null}, this
+     *         histogram, or a histogram with different bins
+     */
+    public void merge(AbstractHistogram other) {
+        if (other == null || other == this) {
+            throw new IllegalArgumentException("can't merge a histogram with null or itself");
+        }
+        if (other.getClass() != getClass() || !hasSameBins(other)) {
+            throw new IllegalArgumentException("histograms have different bins");
+        }
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        numBelow += other.numBelow;
+        numAbove += other.numAbove;
+        numNaN += other.numNaN;
+    }
+
+    /**
+     * Sets all counts to zero.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        numBelow = numAbove = numNaN = 0;
+    }
+
+    /**
+     * Gets the count for a bin.
+     *
+     * @param bin bin index
+     * @return the count
+     */
+    public long getCount(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * Gets a copy of the bin counts.
+     *
+     * @return the counts
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * Gets the cumulative bin counts: element {@code i} is the
+     * number of values in bins {@code 0} to {@code i}.
+     *
+     * @return the cumulative counts
+     */
+    public long[] getCumulativeCounts() {
+        long[] cum = new long[counts.length];
+        long sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            sum += counts[i];
+            cum[i] = sum;
+        }
+        return cum;
+    }
+
+    /**
+     * Gets the total number of values in all bins.
+     *
+     * @return number of binned values
+     */
+    public long getTotal() {
+        long sum = 0;
+        for (long c : counts) {
+            sum += c;
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the number of values that were less than the lower
+     * edge of the first bin.
+     *
+     * @return number of values below the bins
+     */
+    public long getNumBelow() {
+        return numBelow;
+    }
+
+    /**
+     * Gets the number of values that were greater than the upper
+     * edge of the last bin.
+     *
+     * @return number of values above the bins
+     */
+    public long getNumAbove() {
+        return numAbove;
+    }
+
+    /**
+     * Gets the number of NaN values offered.
+     *
+     * @return number of NaN values
+     */
+    public long getNumNaN() {
+        return numNaN;
+    }
+
+    /**
+     * Estimates a quantile of the binned values, interpolating linearly
+     * within the bin that contains it. Values outside the bins are ignored.
+     * Where a bin has an infinite edge its finite edge is returned.
+     *
+     * @param p the probability; must be in the interval [0, 1]
+     * @return the estimated quantile or {@code Double.NaN} if the
+     *         histogram has no binned values
+     * @throws IllegalArgumentException if {@code p} is out of range
+     */
+    public double getQuantile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("p must be between 0 and 1");
+        }
+
+        long total = getTotal();
+        if (total == 0) {
+            return Double.NaN;
+        }
+
+        double target = p * total;
+        long cum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 && cum + counts[i] >= target) {
+                double lo = getBinMin(i);
+                double hi = getBinMax(i);
+                if (Double.isInfinite(lo)) {
+                    return hi;
+                } else if (Double.isInfinite(hi)) {
+                    return lo;
+                }
+
+                double frac = (target - cum) / counts[i];
+                return lo + frac * (hi - lo);
+            }
+            cum += counts[i];
+        }
+
+        return getBinMax(counts.length - 1);  // not reached
+    }
+
+    private static void checkBounds(int arrayLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new IndexOutOfBoundsException(
+                    "offset and length must lie within the values array");
+        }
+    }
+}
@@ -29,11 +29,17 @@ import java.util.List;
 import java.util.Map;
 
 import org.jaitools.CollectionFactory;
-import org.jaitools.numeric.Range.Type;
 
 
 /**
  * Abstract base class for statistics processors used with {@code StreamingSampleStats}.
+ * <p>
+ * Sample values are handled as primitive {@code doubles}: sub-classes override
+ * {@link #update(double)} and the {@code offer(Double)} method simply unboxes its
+ * argument. Sub-classes written for earlier versions, which implement
+ * {@link #update(Double)} instead, continue to work. NoData and include /
+ * exclude ranges are compiled into a {@link RangeSet} the first time a sample
+ * is tested after they change.
  *
  * @author Michael Bedward
  * @author Daniele Romagnoli, GeoSolutions S.A.S.
@@ -64,6 +70,17 @@ public abstract class AbstractProcessor implements Processor {
     /* Ranges of data values to treat as NoData and exclude from calculations */
     private List<Range<Double>> noDataRanges;
 
+    /* Compiled forms of ranges and noDataRanges; null when out of date */
+    private RangeSet compiledRanges;
+    private RangeSet compiledNoData;
+
+    /* Incremented whenever ranges, NoData ranges or the ranges type change */
+    private int rangesModCount;
+
+    /* Work space for offering arrays of samples */
+    private double[] acceptedBuffer;
+    private final int[] filterCounts = new int[2];
+
 
     /**
      * Default constructor.
@@ -96,6 +113,8 @@ public abstract class AbstractProcessor implements Processor {
         if (noData != null) {
             // copy the input Range defensively
             noDataRanges.add(new Range<Double>(noData));
+            compiledNoData = null;
+            rangesModCount++;
         }
     }
 
@@ -105,6 +124,8 @@ public abstract class AbstractProcessor implements Processor {
     public void addNoDataValue(Double noData) {
         if (noData != null && !noData.isNaN()) {
             noDataRanges.add(new Range<Double>(noData));
+            compiledNoData = null;
+            rangesModCount++;
         }
     }
 
@@ -134,12 +155,175 @@ public abstract class AbstractProcessor implements Processor {
      * {@inheritDoc}
      */
     public void offer(Double sample) {
+        if (sample == null) {
+            numOffered++;
+        } else {
+            offer(sample.doubleValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void offer(double sample) {
         numOffered++;
         if (update(sample)) {
             numAccepted++;
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void offer(double[] samples, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > samples.length) {
+            throw new IndexOutOfBoundsException(
+                    "offset and length must lie within the samples array");
+        }
+
+        if (acceptedBuffer == null || acceptedBuffer.length < length) {
+            acceptedBuffer = new double[length];
+        }
+
+        int n = selectAccepted(samples, offset, length, acceptedBuffer, filterCounts);
+        offerAccepted(acceptedBuffer, n, length, filterCounts[0], filterCounts[1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Sub-classes support merging by overriding {@link #mergeData(AbstractProcessor)}.
+     */
+    public void merge(Processor other) {
+        checkMergeable(other);
+
+        AbstractProcessor ap = (AbstractProcessor) other;
+        long used = mergeData(ap);
+
+        numOffered += ap.numOffered;
+        numAccepted += used;
+        numNaN += ap.numNaN;
+        numNoData += ap.numNoData;
+    }
+
+    /**
+     * Checks that another processor can be merged into this one.
+     *
+     * @param other the other processor
+     *
+     * @throws IllegalArgumentException if {@code other} is {@code null},
+     *         this processor, of a different class or has different ranges
+     */
+    void checkMergeable(Processor other) {
+        if (other == null) {
+            throw new IllegalArgumentException("other processor must not be null");
+        }
+        if (other == this) {
+            throw new IllegalArgumentException("cannot merge a processor with itself");
+        }
+        if (other.getClass() != getClass()) {
+            throw new IllegalArgumentException("cannot merge a " + other.getClass().getName() +
+                    " into a " + getClass().getName());
+        }
+        if (other.getRangesType() != rangesType ||
+                !other.getRanges().equals(ranges) ||
+                !other.getNoDataRanges().equals(noDataRanges)) {
+            throw new IllegalArgumentException(
+                    "cannot merge processors with different ranges or NoData ranges");
+        }
+    }
+
+    /**
+     * Merges the calculation state of another processor, of the same class
+     * as this one, into this processor. The sample counts are updated by
+     * the caller after this method returns, so {@link #getNumAccepted()}
+     * gives the count prior to the merge.
+     * <p>
+     * The default implementation throws an {@code UnsupportedOperationException}.
+     * Sub-classes which override this method should also override
+     * {@link #supportsMerge()}.
+     *
+     * @param other the other processor
+     *
+     * @return the number of the other processor's accepted samples that
+     *         are now included in this processor's calculations
+     *
+     * @throws UnsupportedOperationException if merging is not supported
+     */
+    protected long mergeData(AbstractProcessor other) {
+        throw new UnsupportedOperationException(
+                getClass().getName() + " does not support merging");
+    }
+
+    /**
+     * Copies those sample values that would be accepted by this processor
+     * to a destination array, counting NaN and NoData values on the way.
+     * This processor's own counts are not changed.
+     *
+     * @param samples sample values
+     * @param offset index of the first value to test
+     * @param length number of values to test
+     * @param dest destination array for accepted values, starting at index 0;
+     *        must have room for {@code length} values
+     * @param counts receives the number of NaN values at index 0 and the
+     *        number of NoData values (including NaN) at index 1
+     *
+     * @return number of values copied to {@code dest}
+     */
+    int selectAccepted(double[] samples, int offset, int length, double[] dest, int[] counts) {
+        ensureCompiled();
+
+        final int end = offset + length;
+        int n = 0;
+        int numNaNFound = 0;
+
+        if (compiledNoData.isEmpty() && !hasActiveRanges()) {
+            // only NaN values to exclude: branch-free compaction
+            for (int i = offset; i < end; i++) {
+                double value = samples[i];
+                dest[n] = value;
+                n += (value == value) ? 1 : 0;
+            }
+            numNaNFound = length - n;
+            counts[0] = counts[1] = numNaNFound;
+            return n;
+        }
+
+        int numNoDataFound = 0;
+        for (int i = offset; i < end; i++) {
+            double value = samples[i];
+            if (value != value) {
+                numNaNFound++;
+            } else if (compiledNoData.contains(value)) {
+                numNoDataFound++;
+            } else if (inRanges(value)) {
+                dest[n++] = value;
+            }
+        }
+
+        counts[0] = numNaNFound;
+        counts[1] = numNaNFound + numNoDataFound;
+        return n;
+    }
+
+    /**
+     * Offers values that have already been filtered with
+     * {@link #selectAccepted}, updating this processor's counts.
+     *
+     * @param accepted accepted values, starting at index 0
+     * @param n number of accepted values
+     * @param offered number of values that were filtered
+     * @param nNaN number of NaN values found by the filter
+     * @param nNoData number of NoData values (including NaN) found by the filter
+     */
+    void offerAccepted(double[] accepted, int n, int offered, int nNaN, int nNoData) {
+        numOffered += offered;
+        numNaN += nNaN;
+        numNoData += nNoData;
+        if (n > 0) {
+            numAccepted += updateAccepted(accepted, 0, n);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -152,14 +336,72 @@ public abstract class AbstractProcessor implements Processor {
     }
 
     /**
-     * Processes a sample value.
+     * Processes a sample value. Implementations normally call
+     * {@link #isAccepted(double)} first and ignore the sample if it is
+     * rejected.
+     * <p>
+     * Sub-classes should override this method. The default implementation
+     * boxes the value and calls {@link #update(Double)}.
      * 
      * @param sample the sample value
      *
      * @return {@code true} if the sample is accepted;
      *         {@code false} otherwise
      */
-    protected abstract boolean update(Double sample);
+    protected boolean update(double sample) {
+        return update(Double.valueOf(sample));
+    }
+
+    /**
+     * Processes a sample value. This method is only called by the default
+     * implementation of {@link #update(double)} and is retained for
+     * sub-classes written for earlier versions.
+     *
+     * @param sample the sample value
+     *
+     * @return {@code true} if the sample is accepted;
+     *         {@code false} otherwise
+     *
+     * @throws UnsupportedOperationException if neither this method nor
+     *         {@link #update(double)} has been overridden
+     *
+     * @deprecated Override {@link #update(double)} instead.
+     */
+    @Deprecated
+    protected boolean update(Double sample) {
+        throw new UnsupportedOperationException(
+                getClass().getSimpleName() + " must override update(double)");
+    }
+
+    /**
+     * Processes sample values that are already known to pass this processor's
+     * NaN, NoData and range tests. The number of accepted samples is
+     * updated by the caller after this method returns, so
+     * {@link #getNumAccepted()} gives the count prior to these values.
+     * <p>
+     * The default implementation passes each value to {@link #update(double)}.
+     * Sub-classes override it with a loop over the array which avoids
+     * repeating the tests.
+     *
+     * @param samples sample values
+     * @param offset index of the first value
+     * @param length number of values
+     *
+     * @return the number of values used in calculations
+     */
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        int n = 0;
+        long prevAccepted = numAccepted;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (update(samples[i])) {
+                // update relies on the count being current
+                numAccepted++;
+                n++;
+            }
+        }
+        numAccepted = prevAccepted;
+        return n;
+    }
 
     /**
      * {@inheritDoc}
@@ -171,6 +413,8 @@ public abstract class AbstractProcessor implements Processor {
             }
             // copy the input Range defensively
             ranges.add(new Range<Double>(range));
+            compiledRanges = null;
+            rangesModCount++;
         }
     }
 
@@ -188,6 +432,8 @@ public abstract class AbstractProcessor implements Processor {
             }
             // copy the input Range defensively
             ranges.add(new Range<Double>(range));
+            compiledRanges = null;
+            rangesModCount++;
         }
     }
 
@@ -213,6 +459,7 @@ public abstract class AbstractProcessor implements Processor {
             throw new UnsupportedOperationException("Cannot change RangesType once already defined");
         }
         this.rangesType = rangesType;
+        rangesModCount++;
     }
 
     /**
@@ -229,37 +476,84 @@ public abstract class AbstractProcessor implements Processor {
         if (sample == null) {
             return false;
         }
-        if (sample.isNaN()) {
+        return isAccepted(sample.doubleValue());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isAccepted(double sample) {
+        if (Double.isNaN(sample)) {
             numNaN++;
             numNoData++;
             return false;
         }
 
-        if (noDataRanges != null){
-            for (Range<Double> r : noDataRanges) {
-                if (r.contains(sample)) {
-                    numNoData++;
-                    return false;
-                }
-            }
+        ensureCompiled();
+        if (compiledNoData.contains(sample)) {
+            numNoData++;
+            return false;
+        }
+
+        return inRanges(sample);
+    }
+
+    /**
+     * Compiles the NoData and include / exclude ranges if they
+     * have changed since last used.
+     */
+    private void ensureCompiled() {
+        double tol = NumberOperations.getDoubleTolerance();
+        if (compiledNoData == null || compiledNoData.getTolerance() != tol) {
+            compiledNoData = RangeSet.create(noDataRanges, tol);
+            compiledRanges = RangeSet.create(ranges, tol);
+        } else if (compiledRanges == null || compiledRanges.getTolerance() != tol) {
+            compiledRanges = RangeSet.create(ranges, tol);
         }
+    }
+
+    /**
+     * Gets a count which changes whenever the include / exclude ranges,
+     * NoData ranges or ranges type of this processor are modified.
+     *
+     * @return the modification count
+     */
+    int getRangesModCount() {
+        return rangesModCount;
+    }
+
+    /**
+     * Tests if include / exclude ranges will affect which samples are accepted.
+     *
+     * @return {@code true} if ranges are in use
+     */
+    private boolean hasActiveRanges() {
+        return !compiledRanges.isEmpty() &&
+                (rangesType == Range.Type.INCLUDE || rangesType == Range.Type.EXCLUDE);
+    }
 
-        if (ranges == null || ranges.isEmpty()) {
+    /**
+     * Tests a non-NaN sample against the include / exclude ranges.
+     * Must be called after {@link #ensureCompiled()}.
+     *
+     * @param sample the sample value
+     * @return {@code true} if the sample is accepted
+     */
+    private boolean inRanges(double sample) {
+        if (compiledRanges.isEmpty()) {
             return true;
         }
 
-        boolean isAccepted = rangesType == Type.INCLUDE ? false : true;
-        for (Range<Double> r : ranges) {
-            switch (rangesType) {
-                case EXCLUDE:
-                    isAccepted &= !r.contains(sample);
-                    break;
-                case INCLUDE:
-                    isAccepted |= r.contains(sample);
-                    break;
-            }
+        switch (rangesType) {
+            case EXCLUDE:
+                return !compiledRanges.contains(sample);
+
+            case INCLUDE:
+                return compiledRanges.contains(sample);
+
+            default:
+                return true;
         }
-        return isAccepted;
     }
 
     /**
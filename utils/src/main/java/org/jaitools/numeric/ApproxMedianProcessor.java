@@ -117,7 +117,7 @@ public class ApproxMedianProcessor extends AbstractProcessor {
     /**
      * {@inheritDoc}
      */
-    protected boolean update(Double sample) {
+    protected boolean update(double sample) {
     	if (isAccepted(sample)) {
             if (buf0.isFull()) {
                 cascade(0);
@@ -130,6 +130,55 @@ public class ApproxMedianProcessor extends AbstractProcessor {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        int i = offset;
+        final int end = offset + length;
+        while (i < end) {
+            if (buf0.isFull()) {
+                cascade(0);
+            }
+            int n = Math.min(end - i, BASE - buf0.pos);
+            System.arraycopy(samples, i, buf0.data, buf0.pos, n);
+            buf0.pos += n;
+            i += n;
+        }
+
+        needsCalculation = true;
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsMerge() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Each value held by the other processor at a given level of the
+     * remedian is added to this processor at the same level, so that
+     * the merged estimate is based on all samples offered to either.
+     */
+    @Override
+    protected long mergeData(AbstractProcessor other) {
+        ApproxMedianProcessor amp = (ApproxMedianProcessor) other;
+        for (int level = 0; level < amp.buffers.size(); level++) {
+            Buffer buf = amp.buffers.get(level);
+            for (int i = 0; i < buf.pos; i++) {
+                addAtLevel(level, buf.data[i]);
+            }
+        }
+
+        needsCalculation = true;
+        return amp.getNumAccepted();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -176,6 +225,22 @@ public class ApproxMedianProcessor extends AbstractProcessor {
         throw new IllegalArgumentException(stat + " not supported by " + getClass().getName());
     }
 
+    /*
+     * Add a value to the buffer at the given level, creating the
+     * buffer if necessary and cascading it first if it is full.
+     */
+    private void addAtLevel(int level, double value) {
+        while (buffers.size() <= level) {
+            buffers.add(new Buffer());
+        }
+
+        Buffer buf = buffers.get(level);
+        if (buf.isFull()) {
+            cascade(level);
+        }
+        buf.add(value);
+    }
+
     /*
      * Calculate the median of the values in the full buffer at
      * the given level and store the result in the next
@@ -0,0 +1,173 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Processor for the {@code Statistic.APPROX_VARIETY} statistic: the number
+ * of distinct sample values. Accepted samples are counted with a
+ * {@linkplain DistinctCounter}, which is exact for small numbers of distinct
+ * values and uses the HyperLogLog algorithm, with fixed memory, beyond that.
+ * <p>
+ * The precision of the counter can be set, before any samples are offered,
+ * with {@link #setPrecision(int)}. For a processor working within a
+ * {@code StreamingSampleStats} object:
+ * <pre><code>
+ * StreamingSampleStats strmStats = new StreamingSampleStats();
+ * strmStats.setStatistic(Statistic.APPROX_VARIETY);
+ * DistinctCountProcessor p = (DistinctCountProcessor)
+ *         strmStats.getProcessor(Statistic.APPROX_VARIETY);
+ * p.setPrecision(14);
+ * </code></pre>
+ *
+ * @see Statistic
+ * @see StreamingSampleStats
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class DistinctCountProcessor extends AbstractProcessor {
+
+    private static final Set<Statistic> SUPPORTED = Collections.singleton(Statistic.APPROX_VARIETY);
+
+    private DistinctCounter counter;
+
+    /**
+     * Creates a new processor with the default counter precision.
+     */
+    public DistinctCountProcessor() {
+        this(DistinctCounter.DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a new processor.
+     *
+     * @param precision precision of the counter
+     * @see DistinctCounter#DistinctCounter(int)
+     */
+    public DistinctCountProcessor(int precision) {
+        counter = new DistinctCounter(precision);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<Statistic> getSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Sets the precision of the counter.
+     *
+     * @param precision precision of the counter
+     *
+     * @throws IllegalStateException if samples have already been offered
+     * @throws IllegalArgumentException if {@code precision} is out of range
+     * @see DistinctCounter#DistinctCounter(int)
+     */
+    public void setPrecision(int precision) {
+        if (getNumOffered() > 0) {
+            throw new IllegalStateException("precision must be set before samples are offered");
+        }
+        counter = new DistinctCounter(precision);
+    }
+
+    /**
+     * Gets a copy of the counter of accepted samples.
+     *
+     * @return a copy of the counter
+     */
+    public DistinctCounter getCounter() {
+        return new DistinctCounter(counter);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean update(double sample) {
+        if (isAccepted(sample)) {
+            counter.add(sample);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        counter.add(samples, offset, length);
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The processors must also use the same counter precision.
+     */
+    @Override
+    void checkMergeable(Processor other) {
+        super.checkMergeable(other);
+        if (((DistinctCountProcessor) other).counter.getPrecision() != counter.getPrecision()) {
+            throw new IllegalArgumentException(
+                    "cannot merge processors with different counter precision");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsMerge() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long mergeData(AbstractProcessor other) {
+        counter.merge(((DistinctCountProcessor) other).counter);
+        return other.getNumAccepted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Double get(Statistic stat) {
+        if (SUPPORTED.contains(stat)) {
+            return (double) counter.getCount();
+        }
+
+        throw new IllegalArgumentException(stat + " not supported by " + getClass().getName());
+    }
+}
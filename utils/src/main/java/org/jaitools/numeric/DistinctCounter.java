@@ -0,0 +1,280 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+/**
+ * Counts the distinct values in a stream of samples with bounded memory.
+ * Values are counted exactly, in a {@linkplain FrequencyTable}, until more
+ * than a quarter as many distinct values as there are registers have been
+ * seen. The counter then switches to the HyperLogLog algorithm described in:
+ * <blockquote>
+ * Philippe Flajolet, &Eacute;ric Fusy, Olivier Gandouet and Fr&eacute;d&eacute;ric
+ * Meunier (2007). HyperLogLog: the analysis of a near-optimal cardinality
+ * estimation algorithm. Conference on Analysis of Algorithms (AofA).
+ * </blockquote>
+ * Each value is hashed; the leading bits of the hash select one of
+ * 2<sup>p</sup> registers, which records the longest run of leading zeros
+ * seen among the remaining bits. The count is estimated from the harmonic
+ * mean of the registers, with linear counting used for small counts.
+ * <p>
+ * Accuracy is controlled by the precision {@code p}. The relative standard
+ * error of the estimate is roughly {@code 1.04 / sqrt(2^p)}: about 1.6% for
+ * the default {@code p} of 12, which uses 4096 bytes of registers and counts
+ * up to 1024 distinct values exactly. See {@link #getRelativeError()}.
+ * <p>
+ * Counters with the same precision can be merged, so separate parts of a data
+ * set can be processed in parallel. Values are compared as for
+ * {@code FrequencyTable}: {@code -0.0} is counted as {@code 0.0} and all NaN
+ * values are counted as one value. This class is not thread-safe.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class DistinctCounter {
+
+    /** Default precision. */
+    public static final int DEFAULT_PRECISION = 12;
+
+    /** Minimum precision. */
+    public static final int MIN_PRECISION = 4;
+
+    /** Maximum precision. */
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final int maxExact;
+
+    /* Exactly one of these is non-null */
+    private FrequencyTable exact;
+    private byte[] registers;
+
+    /**
+     * Creates a new counter with the default precision.
+     */
+    public DistinctCounter() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a new counter.
+     *
+     * @param precision the base 2 logarithm of the number of registers:
+     *        larger values give more accurate counts at the cost of more memory
+     *
+     * @throws IllegalArgumentException if {@code precision} is less than
+     *         {@link #MIN_PRECISION} or greater than {@link #MAX_PRECISION}
+     */
+    public DistinctCounter(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+
+        this.precision = precision;
+        this.maxExact = (1 << precision) / 4;
+        this.exact = new FrequencyTable();
+    }
+
+    /**
+     * Creates a copy of an existing counter.
+     *
+     * @param other the counter to copy
+     */
+    public DistinctCounter(DistinctCounter other) {
+        precision = other.precision;
+        maxExact = other.maxExact;
+        exact = other.exact == null ? null : new FrequencyTable(other.exact);
+        registers = other.registers == null ? null : other.registers.clone();
+    }
+
+    /**
+     * Gets the precision of this counter.
+     *
+     * @return the precision {@code p}
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Tests if this counter is still counting values exactly.
+     *
+     * @return {@code true} if the count is exact
+     */
+    public boolean isExact() {
+        return exact != null;
+    }
+
+    /**
+     * Gets the approximate relative standard error of counts
+     * once they are no longer exact.
+     *
+     * @return the relative error
+     */
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        if (exact != null) {
+            exact.add(value);
+            if (exact.size() > maxExact) {
+                switchToRegisters();
+            }
+        } else {
+            addHash(FrequencyTable.mix(FrequencyTable.toKey(value)));
+        }
+    }
+
+    /**
+     * Adds a portion of an array of values.
+     *
+     * @param values the values
+     * @param offset index of the first value to add
+     * @param length number of values to add
+     */
+    public void add(double[] values, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            add(values[i]);
+        }
+    }
+
+    /**
+     * Merges another counter into this one. Afterwards this counter
+     * counts the values added to either counter. The other counter
+     * is not changed.
+     *
+     * @param other the other counter
+     *
+     * @throws IllegalArgumentException if {@code other} is {@code null}, this
+     *         counter or has a different precision
+     */
+    public void merge(DistinctCounter other) {
+        if (other == null || other == this) {
+            throw new IllegalArgumentException("other counter must be a different, non-null counter");
+        }
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("cannot merge counters with different precision");
+        }
+
+        if (other.exact != null) {
+            for (double value : other.exact.getValues()) {
+                add(value);
+            }
+        } else {
+            if (exact != null) {
+                switchToRegisters();
+            }
+            for (int i = 0; i < registers.length; i++) {
+                if (other.registers[i] > registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all values, returning the counter to exact counting.
+     */
+    public void clear() {
+        exact = new FrequencyTable();
+        registers = null;
+    }
+
+    /**
+     * Gets the number of distinct values. This is exact while
+     * {@link #isExact()} returns {@code true} and an estimate
+     * thereafter.
+     *
+     * @return the (estimated) number of distinct values
+     */
+    public long getCount() {
+        if (exact != null) {
+            return exact.size();
+        }
+
+        int m = registers.length;
+        double sum = 0;
+        int numZero = 0;
+        for (byte r : registers) {
+            sum += Math.scalb(1.0, -r);
+            if (r == 0) {
+                numZero++;
+            }
+        }
+
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && numZero > 0) {
+            // linear counting is more accurate for small counts
+            estimate = m * Math.log((double) m / numZero);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Moves the values counted exactly into registers.
+     */
+    private void switchToRegisters() {
+        registers = new byte[1 << precision];
+        FrequencyTable values = exact;
+        exact = null;
+        for (double value : values.getValues()) {
+            addHash(FrequencyTable.mix(FrequencyTable.toKey(value)));
+        }
+    }
+
+    /**
+     * Records a hashed value in its register.
+     */
+    private void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the guard bit limits the rank to 64 - precision + 1
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+}
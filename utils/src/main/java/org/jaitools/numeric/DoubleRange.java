@@ -0,0 +1,152 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+
+/**
+ * A {@code Range<Double>} which caches its end-points as primitive values and
+ * provides a {@link #contains(double)} method that tests values without boxing
+ * or class dispatch. This is useful in code which tests every pixel of an
+ * image against a range, such as when checking for NoData values.
+ * <p>
+ * The results of {@code contains(double)} are identical to those of
+ * {@link Range#contains} for the equivalent {@code Double} value,
+ * including the treatment of NaN and infinite end-points and the use of the
+ * {@code NumberOperations} double tolerance for point ranges.
+ * <pre><code>
+ * DoubleRange r = new DoubleRange(0.0, true, 10.0, false);
+ * for (double x : values) {
+ *     if (r.contains(x)) {
+ *         ...
+ *     }
+ * }
+ * </code></pre>
+ *
+ * @see IntRange
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public final class DoubleRange extends Range<Double> {
+
+    private boolean point;
+    private boolean nanPoint;
+    private boolean hasMin;
+    private boolean hasMax;
+    private boolean minIncl;
+    private boolean maxIncl;
+    private double min;
+    private double max;
+
+    /**
+     * Creates a new range. Arguments are treated as for the equivalent
+     * {@link Range} constructor: infinite or NaN end-points define an open
+     * interval.
+     *
+     * @param minValue the lower bound
+     * @param minIncluded true if the lower bound is included
+     * @param maxValue the upper bound
+     * @param maxIncluded true if the upper bound is included
+     */
+    public DoubleRange(double minValue, boolean minIncluded, double maxValue, boolean maxIncluded) {
+        super(minValue, minIncluded, maxValue, maxIncluded);
+        init();
+    }
+
+    /**
+     * Creates a new point range. The value can be finite, infinite or NaN.
+     *
+     * @param value the point value
+     */
+    public DoubleRange(double value) {
+        super(Double.valueOf(value));
+        init();
+    }
+
+    /**
+     * Creates a copy of another {@code Range<Double>}.
+     *
+     * @param other the range to copy
+     */
+    public DoubleRange(Range<Double> other) {
+        super(other);
+        init();
+    }
+
+    /**
+     * Tests if this range contains the specified value.
+     *
+     * @param value the value
+     * @return {@code true} if the value is within this range; {@code false} otherwise
+     */
+    public boolean contains(double value) {
+        if (point) {
+            if (nanPoint) {
+                return Double.isNaN(value);
+            }
+            return hasMin && NumberOperations.compare(min, value) == 0;
+        }
+
+        // NaN values are always outside a proper interval
+        if (Double.isNaN(value)) {
+            return false;
+        }
+
+        int comp;
+        if (hasMin) {
+            comp = NumberOperations.compare(value, min);
+            if (comp < 0 || (!minIncl && comp == 0)) {
+                return false;
+            }
+        }
+
+        if (hasMax) {
+            comp = NumberOperations.compare(value, max);
+            if (comp > 0 || (!maxIncl && comp == 0)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /*
+     * Caches the end-points as primitive values.
+     */
+    private void init() {
+        point = isPoint();
+        nanPoint = point && getMin() == null && !isMinInf() && !isMinNegInf();
+
+        hasMin = getMin() != null;
+        min = hasMin ? getMin().doubleValue() : Double.NEGATIVE_INFINITY;
+        minIncl = isMinIncluded();
+
+        hasMax = getMax() != null;
+        max = hasMax ? getMax().doubleValue() : Double.POSITIVE_INFINITY;
+        maxIncl = isMaxIncluded();
+    }
+}
@@ -0,0 +1,134 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.Arrays;
+
+/**
+ * A histogram with bins defined by an arbitrary, increasing sequence of
+ * edges. A value's bin is found by binary search. The first and last edges
+ * may be infinite to give open-ended bins.
+ * <pre><code>
+ * // bins [0, 10), [10, 50), [50, 100), [100, Inf]
+ * EdgeHistogram hist = new EdgeHistogram(0, 10, 50, 100, Double.POSITIVE_INFINITY);
+ * </code></pre>
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class EdgeHistogram extends AbstractHistogram {
+
+    private final double[] edges;
+
+    /**
+     * Creates a new histogram.
+     *
+     * @param edges bin edges in strictly increasing order; there must be at
+     *        least two, giving {@code edges.length - 1} bins
+     * @throws IllegalArgumentException if there are fewer than two edges,
+     *         any edge is NaN, or the edges are not strictly increasing
+     */
+    public EdgeHistogram(double... edges) {
+        super(edges == null ? 0 : edges.length - 1);
+        for (int i = 0; i < edges.length; i++) {
+            if (Double.isNaN(edges[i])) {
+                throw new IllegalArgumentException("edges must not be NaN");
+            }
+            if (i > 0 && !(edges[i] > edges[i - 1])) {
+                throw new IllegalArgumentException("edges must be strictly increasing");
+            }
+        }
+        this.edges = edges.clone();
+    }
+
+    /**
+     * Creates a copy of another histogram, including its counts.
+     *
+     * @param other the histogram to copy
+     */
+    public EdgeHistogram(EdgeHistogram other) {
+        super(other);
+        this.edges = other.edges;
+    }
+
+    /**
+     * Gets a copy of the bin edges.
+     *
+     * @return the edges
+     */
+    public double[] getEdges() {
+        return edges.clone();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getBinMin(int bin) {
+        return edges[bin];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getBinMax(int bin) {
+        return edges[bin + 1];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int findBin(double value) {
+        // last bin whose lower edge is <= value
+        int base = 0;
+        int n = counts.length;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = edges[base + half] <= value ? base + half : base;
+            n -= half;
+        }
+        return base;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public EdgeHistogram copy() {
+        return new EdgeHistogram(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean hasSameBins(AbstractHistogram other) {
+        return Arrays.equals(edges, ((EdgeHistogram) other).edges);
+    }
+}
@@ -25,22 +25,27 @@
 
 package org.jaitools.numeric;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.jaitools.CollectionFactory;
-
 
 /**
  * Processor for the exact median {@code Statistic.MEDIAN}.
  * <p>
- * <b>Note:</b> this processor stores sll accepted sample values in memory in order
+ * <b>Note:</b> this processor stores all accepted sample values in memory in order
  * to calculate the exact median. For very large data streams {@linkplain Statistic#APPROX_MEDIAN}
  * might be preferred.
+ * <p>
+ * Values are held in a primitive array: as {@code float} while every accepted
+ * value can be represented exactly by a float (eg. integral or float image data),
+ * and as {@code double} otherwise. The median is found by linear-time selection
+ * rather than sorting or, if all values are integers spanning no more distinct
+ * values than there are samples, by counting. Other exact quantiles can be had
+ * from {@link #getQuantile(double)}.
  *
  * @see Statistic
  * @see StreamingSampleStats
@@ -53,7 +58,27 @@ public class ExactMedianProcessor extends AbstractProcessor {
 
     private static final Set<Statistic> SUPPORTED = Collections.singleton(Statistic.MEDIAN);
 
-    private List<Double> values = CollectionFactory.list();
+    /*
+     * Largest array size that can safely be allocated. Some VMs
+     * reserve header words in an array.
+     */
+    private static final int MAX_VALUES = Integer.MAX_VALUE - 8;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /* Largest span of integral values for which counting is used */
+    private static final int MAX_COUNTING_SPAN = 1 << 20;
+
+    /* Values are stored in floatValues until one needs double precision */
+    private float[] floatValues = new float[INITIAL_CAPACITY];
+    private double[] doubleValues = null;
+    private int numValues = 0;
+
+    private boolean integral = true;
+    private double minValue = Double.POSITIVE_INFINITY;
+    private double maxValue = Double.NEGATIVE_INFINITY;
+
+    private boolean tooManyValues = false;
     private boolean calculationRequired = true;
     private double median;
 
@@ -67,39 +92,85 @@ public class ExactMedianProcessor extends AbstractProcessor {
     /**
      * {@inheritDoc}
      * The maximum number of sample values than can be stored is
-     * {@code Integer.MAX_VALUE} (available memory permitting).
-     * Once this limit is reached, subsequent values will be
+     * a little less than {@code Integer.MAX_VALUE} (available memory
+     * permitting). Once this limit is reached, subsequent values will be
      * rejected and a warning message will be logged.
      */
     @Override
-    public final void offer(Double sample) {
-        numOffered++ ;
-
-        if (getNumAccepted() >= Integer.MAX_VALUE) {
-            // only log a warning for the first extraneous value
-            if (getNumOffered() == Integer.MAX_VALUE) {
-                Logger.getLogger("org.jaitools.numeric").log(
-                        Level.WARNING, "Too many values for exact median calculation");
+    protected boolean update(double sample) {
+        if (isAccepted(sample)) {
+            if (numValues == MAX_VALUES) {
+                warnTooManyValues();
+                return false;
             }
-        }
 
-        if (update(sample)) {
-            numAccepted++ ;
+            ensureCapacity(numValues + 1);
+            store(sample);
+            calculationRequired = true;
+            return true;
         }
+
+        return false;
     }
 
     /**
-     * {@inheritDoc}.
+     * {@inheritDoc}
      */
     @Override
-    protected boolean update(Double sample) {
-        if (isAccepted(sample)) {
-            values.add(sample);
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        int n = Math.min(length, MAX_VALUES - numValues);
+        if (n < length) {
+            warnTooManyValues();
+        }
+
+        if (n > 0) {
+            ensureCapacity(numValues + n);
+            for (int i = offset; i < offset + n; i++) {
+                store(samples[i]);
+            }
             calculationRequired = true;
-            return true;
         }
+        return n;
+    }
 
-        return false;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsMerge() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The values stored by the other processor are appended to
+     * those of this processor.
+     */
+    @Override
+    protected long mergeData(AbstractProcessor other) {
+        ExactMedianProcessor emp = (ExactMedianProcessor) other;
+        int n = Math.min(emp.numValues, MAX_VALUES - numValues);
+        if (n < emp.numValues) {
+            warnTooManyValues();
+        }
+
+        if (n == 0) {
+            return 0;
+        }
+
+        ensureCapacity(numValues + n);
+        if (emp.doubleValues != null) {
+            for (int i = 0; i < n; i++) {
+                store(emp.doubleValues[i]);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                store(emp.floatValues[i]);
+            }
+        }
+
+        calculationRequired = true;
+        return n;
     }
 
     /**
@@ -107,18 +178,14 @@ public class ExactMedianProcessor extends AbstractProcessor {
      */
     public Double get(Statistic stat) {
         if (SUPPORTED.contains(stat)) {
-            if (getNumAccepted() == 0) {
+            if (numValues == 0) {
                 return Double.NaN;
             }
 
             if (calculationRequired) {
-                Collections.sort(values);
-                int n0 = (int) getNumAccepted() / 2;
-                if (getNumAccepted() % 2 == 1) {
-                    median = values.get(n0);
-                } else {
-                    median = (values.get(n0) + values.get(n0 - 1)) / 2;
-                }
+                int hi = numValues / 2;
+                int lo = numValues % 2 == 1 ? hi : hi - 1;
+                median = select(lo, hi);
                 calculationRequired = false;
             }
             return median;
@@ -126,4 +193,152 @@ public class ExactMedianProcessor extends AbstractProcessor {
 
         throw new IllegalArgumentException(stat + " not supported by " + getClass().getName());
     }
+
+    /**
+     * Gets an exact quantile of the accepted sample values. This is the
+     * smallest value whose rank is at least {@code p * n} where {@code n}
+     * is the number of values (the definition used by
+     * {@link SampleStats#quantile(Double[], double, boolean)}).
+     *
+     * @param p the probability; must be in the interval [0, 1]
+     * @return the quantile or {@code Double.NaN} if no values have been accepted
+     * @throws IllegalArgumentException if {@code p} is out of range
+     */
+    public double getQuantile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("p must be between 0 and 1");
+        }
+        if (numValues == 0) {
+            return Double.NaN;
+        }
+
+        int index = (int) Math.ceil(p * numValues) - 1;
+        index = Math.max(0, Math.min(numValues - 1, index));
+        return select(index, index);
+    }
+
+    /**
+     * Stores a value, switching to double storage if it cannot be
+     * held exactly as a float. The caller must ensure capacity.
+     *
+     * @param value the value
+     */
+    private void store(double value) {
+        if (doubleValues == null) {
+            float f = (float) value;
+            if (f == value) {
+                floatValues[numValues++] = f;
+            } else {
+                doubleValues = new double[floatValues.length];
+                for (int i = 0; i < numValues; i++) {
+                    doubleValues[i] = floatValues[i];
+                }
+                floatValues = null;
+                doubleValues[numValues++] = value;
+            }
+        } else {
+            doubleValues[numValues++] = value;
+        }
+
+        if (value < minValue) {
+            minValue = value;
+        }
+        if (value > maxValue) {
+            maxValue = value;
+        }
+        if (integral && value != Math.rint(value)) {
+            integral = false;
+        }
+    }
+
+    /**
+     * Gets the mean of the values at two ranks in the sorted order of
+     * the stored values. The ranks must be equal or adjacent.
+     *
+     * @param lo lower rank (0-based)
+     * @param hi upper rank (0-based)
+     * @return the value at the rank, or the mean of the two values
+     */
+    private double select(int lo, int hi) {
+        double span = maxValue - minValue;
+        if (integral && span < MAX_COUNTING_SPAN && span < numValues) {
+            return countingSelect(lo, hi, (int) span + 1);
+        }
+
+        double vhi, vlo;
+        if (doubleValues != null) {
+            vhi = Selection.select(doubleValues, 0, numValues, hi);
+            vlo = lo == hi ? vhi : Selection.max(doubleValues, 0, hi);
+        } else {
+            vhi = Selection.select(floatValues, 0, numValues, hi);
+            vlo = lo == hi ? vhi : Selection.max(floatValues, 0, hi);
+        }
+
+        return lo == hi ? vhi : (vlo + vhi) / 2;
+    }
+
+    /**
+     * Counting version of {@link #select(int, int)} for integral values.
+     *
+     * @param lo lower rank (0-based)
+     * @param hi upper rank (0-based)
+     * @param span number of distinct values between the min and max value
+     * @return the value at the rank, or the mean of the two values
+     */
+    private double countingSelect(int lo, int hi, int span) {
+        int[] counts = new int[span];
+        if (doubleValues != null) {
+            for (int i = 0; i < numValues; i++) {
+                counts[(int) (doubleValues[i] - minValue)]++;
+            }
+        } else {
+            for (int i = 0; i < numValues; i++) {
+                counts[(int) (floatValues[i] - minValue)]++;
+            }
+        }
+
+        double vlo = Double.NaN;
+        long cum = 0;
+        for (int i = 0; i < span; i++) {
+            cum += counts[i];
+            if (Double.isNaN(vlo) && cum > lo) {
+                vlo = minValue + i;
+            }
+            if (cum > hi) {
+                return lo == hi ? vlo : (vlo + minValue + i) / 2;
+            }
+        }
+
+        return maxValue;  // not reached
+    }
+
+    /**
+     * Grows the value array, if necessary, to hold at least
+     * the given number of values.
+     *
+     * @param capacity required capacity
+     */
+    private void ensureCapacity(int capacity) {
+        int length = doubleValues != null ? doubleValues.length : floatValues.length;
+        if (capacity > length) {
+            int newCapacity = (int) Math.min(Math.max((long) length * 2, capacity), MAX_VALUES);
+            if (doubleValues != null) {
+                doubleValues = Arrays.copyOf(doubleValues, newCapacity);
+            } else {
+                floatValues = Arrays.copyOf(floatValues, newCapacity);
+            }
+        }
+    }
+
+    /**
+     * Logs a warning the first time a value is rejected
+     * because the value array is full.
+     */
+    private void warnTooManyValues() {
+        if (!tooManyValues) {
+            Logger.getLogger("org.jaitools.numeric").log(
+                    Level.WARNING, "Too many values for exact median calculation");
+            tooManyValues = true;
+        }
+    }
 }
@@ -63,7 +63,7 @@ public class ExtremaProcessor extends AbstractProcessor {
      * {@inheritDoc}
      */
     @Override
-    protected boolean update(Double sample) {
+    protected boolean update(double sample) {
         if (isAccepted(sample)) {
             if (getNumAccepted() == 0) {
                 min = max = sample;
@@ -82,6 +82,57 @@ public class ExtremaProcessor extends AbstractProcessor {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        int start = offset;
+        double lo, hi;
+        if (getNumAccepted() == 0) {
+            lo = hi = samples[start++];
+        } else {
+            lo = min;
+            hi = max;
+        }
+
+        for (int i = start, end = offset + length; i < end; i++) {
+            double value = samples[i];
+            lo = value < lo ? value : lo;
+            hi = value > hi ? value : hi;
+        }
+
+        min = lo;
+        max = hi;
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsMerge() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long mergeData(AbstractProcessor other) {
+        ExtremaProcessor ep = (ExtremaProcessor) other;
+        if (ep.getNumAccepted() > 0) {
+            if (getNumAccepted() == 0) {
+                min = ep.min;
+                max = ep.max;
+            } else {
+                min = Math.min(min, ep.min);
+                max = Math.max(max, ep.max);
+            }
+        }
+        return ep.getNumAccepted();
+    }
+
     /**
      * {@inheritDoc}
      */
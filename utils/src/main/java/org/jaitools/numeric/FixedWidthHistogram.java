@@ -0,0 +1,142 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+/**
+ * A histogram with bins of equal width. A value's bin is found by
+ * arithmetic, so binning takes constant time regardless of the number
+ * of bins.
+ * <pre><code>
+ * // 100 bins covering [0, 1000]
+ * FixedWidthHistogram hist = new FixedWidthHistogram(0, 1000, 100);
+ * hist.add(data, 0, data.length);
+ * double median = hist.getQuantile(0.5);
+ * </code></pre>
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class FixedWidthHistogram extends AbstractHistogram {
+
+    private final double min;
+    private final double max;
+    private final double binWidth;
+    private final double scale;
+
+    /**
+     * Creates a new histogram.
+     *
+     * @param min lower edge of the first bin
+     * @param max upper edge of the last bin
+     * @param numBins number of bins
+     * @throws IllegalArgumentException if {@code min} and {@code max} are not
+     *         finite with {@code min < max}, or {@code numBins} is less than 1
+     */
+    public FixedWidthHistogram(double min, double max, int numBins) {
+        super(numBins);
+        if (Double.isInfinite(min) || Double.isInfinite(max) || !(min < max)) {
+            throw new IllegalArgumentException("min and max must be finite with min < max");
+        }
+
+        this.min = min;
+        this.max = max;
+        this.binWidth = (max - min) / numBins;
+        this.scale = numBins / (max - min);
+    }
+
+    /**
+     * Creates a copy of another histogram, including its counts.
+     *
+     * @param other the histogram to copy
+     */
+    public FixedWidthHistogram(FixedWidthHistogram other) {
+        super(other);
+        this.min = other.min;
+        this.max = other.max;
+        this.binWidth = other.binWidth;
+        this.scale = other.scale;
+    }
+
+    /**
+     * Gets the width of each bin.
+     *
+     * @return bin width
+     */
+    public double getBinWidth() {
+        return binWidth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getBinMin(int bin) {
+        return bin == 0 ? min : min + bin * binWidth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getBinMax(int bin) {
+        return bin == counts.length - 1 ? max : min + (bin + 1) * binWidth;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The index is calculated and then, if rounding has placed the value
+     * on the wrong side of a bin edge, adjusted by one.
+     */
+    @Override
+    protected int findBin(double value) {
+        int last = counts.length - 1;
+        int bin = Math.min((int) ((value - min) * scale), last);
+        if (bin > 0 && value < getBinMin(bin)) {
+            bin--;
+        } else if (bin < last && value >= getBinMin(bin + 1)) {
+            bin++;
+        }
+        return bin;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FixedWidthHistogram copy() {
+        return new FixedWidthHistogram(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean hasSameBins(AbstractHistogram other) {
+        FixedWidthHistogram h = (FixedWidthHistogram) other;
+        return h.min == min && h.max == max && h.counts.length == counts.length;
+    }
+}
@@ -0,0 +1,142 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Processor for the frequency statistics {@code Statistic.MODE},
+ * {@code Statistic.MINORITY} and {@code Statistic.VARIETY}. Accepted samples
+ * are counted per distinct value in a {@linkplain FrequencyTable}, so memory
+ * use grows with the number of distinct values rather than the number of
+ * samples. This suits categorical data such as land cover classes. For data
+ * with very many distinct values, {@code Statistic.APPROX_VARIETY} gives
+ * an approximate count with bounded memory.
+ * <p>
+ * Unlike {@linkplain SampleStats#mode(Double[], boolean)}, values are compared
+ * exactly rather than within a tolerance. Ties are broken in the same way.
+ *
+ * @see Statistic
+ * @see StreamingSampleStats
+ * @see DistinctCountProcessor
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class FrequencyProcessor extends AbstractProcessor {
+
+    private static final Set<Statistic> SUPPORTED = Collections.unmodifiableSet(EnumSet.of(
+            Statistic.MODE,
+            Statistic.MINORITY,
+            Statistic.VARIETY));
+
+    private final FrequencyTable table;
+
+    /**
+     * Default constructor.
+     */
+    public FrequencyProcessor() {
+        table = new FrequencyTable();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<Statistic> getSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Gets a copy of the counts of accepted samples.
+     *
+     * @return a copy of the frequency table
+     */
+    public FrequencyTable getFrequencyTable() {
+        return new FrequencyTable(table);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean update(double sample) {
+        if (isAccepted(sample)) {
+            table.add(sample);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        table.add(samples, offset, length);
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsMerge() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long mergeData(AbstractProcessor other) {
+        table.merge(((FrequencyProcessor) other).table);
+        return other.getNumAccepted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Double get(Statistic stat) {
+        switch (stat) {
+            case MODE:
+                return table.getMostFrequent();
+
+            case MINORITY:
+                return table.getLeastFrequent();
+
+            case VARIETY:
+                return (double) table.size();
+
+            default:
+                throw new IllegalArgumentException(stat + " not supported by " + getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.Arrays;
+
+/**
+ * Counts of distinct values, eg. the number of pixels of each class in a
+ * categorical image. Values and counts are held in primitive arrays as an
+ * open-addressing hash table, so memory use grows with the number of
+ * distinct values rather than the number of values added.
+ * <p>
+ * Values are compared exactly, except that {@code -0.0} is counted as
+ * {@code 0.0} and all NaN values are counted together. Instances are not
+ * thread-safe.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class FrequencyTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* Bits of each value (by Double.doubleToLongBits); slots with a zero count are empty */
+    private long[] keys;
+    private long[] counts;
+    private int size;
+    private long total;
+
+    /**
+     * Creates a new, empty table.
+     */
+    public FrequencyTable() {
+        keys = new long[INITIAL_CAPACITY];
+        counts = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Creates a copy of another table.
+     *
+     * @param other the table to copy
+     */
+    public FrequencyTable(FrequencyTable other) {
+        keys = other.keys.clone();
+        counts = other.counts.clone();
+        size = other.size;
+        total = other.total;
+    }
+
+    /**
+     * Adds a value to the table.
+     *
+     * @param value the value
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * Adds a value to the table a given number of times.
+     *
+     * @param value the value
+     * @param count the number of times to add it
+     * @throws IllegalArgumentException if {@code count} is negative
+     */
+    public void add(double value, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative");
+        }
+        if (count == 0) {
+            return;
+        }
+
+        long key = toKey(value);
+        int slot = find(key);
+        if (counts[slot] == 0) {
+            keys[slot] = key;
+            counts[slot] = count;
+            if (++size > keys.length / 2) {
+                grow();
+            }
+        } else {
+            counts[slot] += count;
+        }
+        total += count;
+    }
+
+    /**
+     * Adds a portion of an array of values to the table.
+     *
+     * @param values the values
+     * @param offset index of the first value to add
+     * @param length number of values to add
+     * @throws IndexOutOfBoundsException if {@code offset} and {@code length}
+     *         do not specify a valid portion of the array
+     */
+    public void add(double[] values, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > values.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "offset and length must lie within the values array");
+        }
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            add(values[i], 1);
+        }
+    }
+
+    /**
+     * Adds the counts of another table to this one.
+     *
+     * @param other the other table
+     * @throws IllegalArgumentException if {@code other} is {@code null} or this table
+     */
+    public void merge(FrequencyTable other) {
+        if (other == null || other == this) {
+            throw new IllegalArgumentException("can't merge a table with null or itself");
+        }
+
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.counts[i] > 0) {
+                add(Double.longBitsToDouble(other.keys[i]), other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes all values from the table.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+        total = 0;
+    }
+
+    /**
+     * Gets the number of times a value has been added.
+     *
+     * @param value the value
+     * @return the count (0 if the value is not in the table)
+     */
+    public long getCount(double value) {
+        return counts[find(toKey(value))];
+    }
+
+    /**
+     * Gets the number of distinct values in the table.
+     *
+     * @return number of distinct values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Tests if the table is empty.
+     *
+     * @return {@code true} if no values have been added
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the total number of values added.
+     *
+     * @return sum of counts
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the distinct values in ascending order, with NaN (if present) last.
+     *
+     * @return the values
+     */
+    public double[] getValues() {
+        double[] values = new double[size];
+        int k = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] > 0) {
+                values[k++] = Double.longBitsToDouble(keys[i]);
+            }
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * Gets the counts of the distinct values, in the order
+     * of the values returned by {@link #getValues()}.
+     *
+     * @return the counts
+     */
+    public long[] getCounts() {
+        double[] values = getValues();
+        long[] result = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = getCount(values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the most frequent value (the mode). If more than one value occurs
+     * with the maximum count, the tie is broken in the same way as by
+     * {@link SampleStats#mode(Double[], boolean)}: the median of the tied
+     * values is returned for an odd number, and the value below the mid-point
+     * for an even number.
+     *
+     * @return the most frequent value or {@code Double.NaN} if the table is empty
+     */
+    public double getMostFrequent() {
+        return getTiedValue(true);
+    }
+
+    /**
+     * Gets the least frequent value (the minority). Ties are broken as
+     * for {@link #getMostFrequent()}.
+     *
+     * @return the least frequent value or {@code Double.NaN} if the table is empty
+     */
+    public double getLeastFrequent() {
+        return getTiedValue(false);
+    }
+
+    /**
+     * Finds the value with the largest or smallest count, breaking ties
+     * by taking the middle value (rounding down) of those tied.
+     */
+    private double getTiedValue(boolean most) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+
+        long target = most ? 0 : Long.MAX_VALUE;
+        int numTied = 0;
+        int slot = -1;
+        for (int i = 0; i < counts.length; i++) {
+            long c = counts[i];
+            if (c > 0) {
+                if (most ? c > target : c < target) {
+                    target = c;
+                    numTied = 1;
+                    slot = i;
+                } else if (c == target) {
+                    numTied++;
+                }
+            }
+        }
+
+        if (numTied == 1) {
+            return Double.longBitsToDouble(keys[slot]);
+        }
+
+        double[] tied = new double[numTied];
+        int k = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == target) {
+                tied[k++] = Double.longBitsToDouble(keys[i]);
+            }
+        }
+        Arrays.sort(tied);
+        return tied[(numTied - 1) / 2];
+    }
+
+    /**
+     * Finds the slot holding a key, or the empty slot where it would go.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (counts[slot] > 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table capacity.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[oldKeys.length * 2];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] > 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Gets the bits used to identify a value. Also used by {@linkplain DistinctCounter}.
+     */
+    static long toKey(double value) {
+        // treat -0.0 as 0.0; doubleToLongBits collapses NaNs
+        return Double.doubleToLongBits(value == 0 ? 0.0 : value);
+    }
+
+    /**
+     * Mixes the bits of a key (the finalization step of MurmurHash3).
+     * Also used by {@linkplain DistinctCounter}.
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int hash(long key) {
+        return (int) mix(key);
+    }
+}
@@ -35,6 +35,10 @@ import java.util.List;
  * to define bins. New bins can be defined even after data had already been
  * added to allow a histogram to adapt to the input data, however the new bins
  * must <strong>not</strong> overlap with existing bins.
+ * <p>
+ * For binning large numbers of values see {@link FixedWidthHistogram},
+ * {@link EdgeHistogram} and {@link LogHistogram}, which use primitive
+ * bins and counts.
  *
  * @param <T> the value type
  * @author Michael Bedward
@@ -0,0 +1,213 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Processor for the histogram statistic {@code Statistic.HISTOGRAM}.
+ * By default accepted samples are counted exactly, per distinct value, in a
+ * {@linkplain FrequencyTable}. This suits categorical data such as land cover
+ * classes. Alternatively, bins can be specified by passing a histogram to
+ * {@link #setBins(AbstractHistogram)} before any samples are offered, in
+ * which case counts are held in a dense array:
+ * <pre><code>
+ * StreamingSampleStats strmStats = new StreamingSampleStats();
+ * strmStats.setStatistic(Statistic.HISTOGRAM);
+ * HistogramProcessor p = (HistogramProcessor)
+ *         strmStats.getProcessor(Statistic.HISTOGRAM);
+ * p.setBins(new FixedWidthHistogram(0, 100, 20));
+ *
+ * // after offering samples
+ * long[] counts = p.getHistogram().getCounts();
+ * </code></pre>
+ *
+ * @see Statistic
+ * @see StreamingSampleStats
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class HistogramProcessor extends AbstractProcessor {
+
+    private static final Set<Statistic> SUPPORTED = Collections.singleton(Statistic.HISTOGRAM);
+
+    /* Exactly one of these is non-null */
+    private FrequencyTable table;
+    private AbstractHistogram histogram;
+
+    /**
+     * Creates a new processor which counts distinct values.
+     */
+    public HistogramProcessor() {
+        table = new FrequencyTable();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<Statistic> getSupported() {
+        return Collections.unmodifiableCollection(SUPPORTED);
+    }
+
+    /**
+     * Sets the bins to use instead of counting distinct values. The
+     * processor works with a copy of {@code bins} with counts cleared.
+     *
+     * @param bins a histogram defining the bins, or {@code null} to count
+     *        distinct values
+     *
+     * @throws IllegalStateException if samples have already been offered
+     */
+    public void setBins(AbstractHistogram bins) {
+        if (getNumOffered() > 0) {
+            throw new IllegalStateException("bins must be set before samples are offered");
+        }
+
+        if (bins == null) {
+            table = new FrequencyTable();
+            histogram = null;
+        } else {
+            histogram = bins.copy();
+            histogram.clear();
+            table = null;
+        }
+    }
+
+    /**
+     * Gets a copy of the binned counts of accepted samples.
+     *
+     * @return the histogram or {@code null} if bins were not set
+     */
+    public AbstractHistogram getHistogram() {
+        return histogram == null ? null : histogram.copy();
+    }
+
+    /**
+     * Gets a copy of the counts of distinct accepted sample values.
+     *
+     * @return the table or {@code null} if bins were set
+     */
+    public FrequencyTable getFrequencyTable() {
+        return table == null ? null : new FrequencyTable(table);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean update(double sample) {
+        if (isAccepted(sample)) {
+            if (histogram != null) {
+                histogram.add(sample);
+            } else {
+                table.add(sample);
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        if (histogram != null) {
+            histogram.add(samples, offset, length);
+        } else {
+            table.add(samples, offset, length);
+        }
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The processors must also both count distinct values or
+     * use the same bins.
+     */
+    @Override
+    void checkMergeable(Processor other) {
+        super.checkMergeable(other);
+        AbstractHistogram otherHist = ((HistogramProcessor) other).histogram;
+        boolean compatible = histogram == null ? otherHist == null :
+                otherHist != null && otherHist.getClass() == histogram.getClass() &&
+                histogram.hasSameBins(otherHist);
+
+        if (!compatible) {
+            throw new IllegalArgumentException("cannot merge processors with different bins");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsMerge() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long mergeData(AbstractProcessor other) {
+        HistogramProcessor hp = (HistogramProcessor) other;
+        if (histogram != null) {
+            histogram.merge(hp.histogram);
+        } else {
+            table.merge(hp.table);
+        }
+        return other.getNumAccepted();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The value returned is the number of distinct values or, if bins
+     * were set, the number of bins with non-zero counts.
+     */
+    public Double get(Statistic stat) {
+        if (SUPPORTED.contains(stat)) {
+            if (histogram == null) {
+                return (double) table.size();
+            }
+
+            int n = 0;
+            for (int i = 0; i < histogram.getNumBins(); i++) {
+                if (histogram.getCount(i) > 0) {
+                    n++;
+                }
+            }
+            return (double) n;
+        }
+
+        throw new IllegalArgumentException(stat + " not supported by " + getClass().getName());
+    }
+}
@@ -0,0 +1,128 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+
+/**
+ * A {@code Range<Integer>} which caches its end-points as primitive values and
+ * provides a {@link #contains(int)} method that tests values without boxing
+ * or class dispatch.
+ * <p>
+ * The results of {@code contains(int)} are identical to those of
+ * {@link Range#contains} for the equivalent {@code Integer} value. Ranges with
+ * open end-points can be created by copying a {@code Range<Integer>} with
+ * null bounds:
+ * <pre><code>
+ * IntRange r = new IntRange(Range.create(0, true, null, false));
+ * </code></pre>
+ *
+ * @see DoubleRange
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public final class IntRange extends Range<Integer> {
+
+    private boolean point;
+    private boolean hasMin;
+    private boolean hasMax;
+    private boolean minIncl;
+    private boolean maxIncl;
+    private int min;
+    private int max;
+
+    /**
+     * Creates a new range with finite end-points.
+     *
+     * @param minValue the lower bound
+     * @param minIncluded true if the lower bound is included
+     * @param maxValue the upper bound
+     * @param maxIncluded true if the upper bound is included
+     */
+    public IntRange(int minValue, boolean minIncluded, int maxValue, boolean maxIncluded) {
+        super(minValue, minIncluded, maxValue, maxIncluded);
+        init();
+    }
+
+    /**
+     * Creates a new point range.
+     *
+     * @param value the point value
+     */
+    public IntRange(int value) {
+        super(Integer.valueOf(value));
+        init();
+    }
+
+    /**
+     * Creates a copy of another {@code Range<Integer>}.
+     *
+     * @param other the range to copy
+     */
+    public IntRange(Range<Integer> other) {
+        super(other);
+        init();
+    }
+
+    /**
+     * Tests if this range contains the specified value.
+     *
+     * @param value the value
+     * @return {@code true} if the value is within this range; {@code false} otherwise
+     */
+    public boolean contains(int value) {
+        if (point) {
+            // a point at infinity contains nothing
+            return hasMin && value == min;
+        }
+
+        if (hasMin && (value < min || (!minIncl && value == min))) {
+            return false;
+        }
+
+        if (hasMax && (value > max || (!maxIncl && value == max))) {
+            return false;
+        }
+
+        return true;
+    }
+
+    /*
+     * Caches the end-points as primitive values.
+     */
+    private void init() {
+        point = isPoint();
+
+        hasMin = getMin() != null;
+        min = hasMin ? getMin().intValue() : Integer.MIN_VALUE;
+        minIncl = isMinIncluded();
+
+        hasMax = getMax() != null;
+        max = hasMax ? getMax().intValue() : Integer.MAX_VALUE;
+        maxIncl = isMaxIncluded();
+    }
+}
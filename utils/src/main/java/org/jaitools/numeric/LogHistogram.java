@@ -0,0 +1,141 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+/**
+ * A histogram with logarithmically scaled bins: the ratio of upper to lower
+ * edge is the same for every bin. This suits data with a long right tail,
+ * such as areas or flow accumulation values. The lower edge of the first bin
+ * must be positive, so zero and negative values are counted as being below
+ * the bins. A value's bin is found by arithmetic in constant time.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class LogHistogram extends AbstractHistogram {
+
+    private final double min;
+    private final double max;
+    private final double logMin;
+    private final double logWidth;
+    private final double scale;
+
+    /**
+     * Creates a new histogram.
+     *
+     * @param min lower edge of the first bin; must be positive
+     * @param max upper edge of the last bin
+     * @param numBins number of bins
+     * @throws IllegalArgumentException if {@code min} and {@code max} are not
+     *         finite with {@code 0 < min < max}, or {@code numBins} is less than 1
+     */
+    public LogHistogram(double min, double max, int numBins) {
+        super(numBins);
+        if (Double.isInfinite(max) || !(min > 0 && min < max)) {
+            throw new IllegalArgumentException("min and max must be finite with 0 < min < max");
+        }
+
+        this.min = min;
+        this.max = max;
+        this.logMin = Math.log(min);
+        this.logWidth = (Math.log(max) - logMin) / numBins;
+        this.scale = 1.0 / logWidth;
+    }
+
+    /**
+     * Creates a copy of another histogram, including its counts.
+     *
+     * @param other the histogram to copy
+     */
+    public LogHistogram(LogHistogram other) {
+        super(other);
+        this.min = other.min;
+        this.max = other.max;
+        this.logMin = other.logMin;
+        this.logWidth = other.logWidth;
+        this.scale = other.scale;
+    }
+
+    /**
+     * Gets the ratio of upper to lower edge for each bin.
+     *
+     * @return bin ratio
+     */
+    public double getBinRatio() {
+        return Math.exp(logWidth);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getBinMin(int bin) {
+        return bin == 0 ? min : Math.exp(logMin + bin * logWidth);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getBinMax(int bin) {
+        return bin == counts.length - 1 ? max : Math.exp(logMin + (bin + 1) * logWidth);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The index is calculated and then, if rounding has placed the value
+     * on the wrong side of a bin edge, adjusted by one.
+     */
+    @Override
+    protected int findBin(double value) {
+        int last = counts.length - 1;
+        int bin = Math.min((int) ((Math.log(value) - logMin) * scale), last);
+        if (bin > 0 && value < getBinMin(bin)) {
+            bin--;
+        } else if (bin < last && value >= getBinMin(bin + 1)) {
+            bin++;
+        }
+        return bin;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public LogHistogram copy() {
+        return new LogHistogram(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean hasSameBins(AbstractHistogram other) {
+        LogHistogram h = (LogHistogram) other;
+        return h.min == min && h.max == max && h.counts.length == counts.length;
+    }
+}
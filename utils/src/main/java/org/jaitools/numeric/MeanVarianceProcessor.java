@@ -40,6 +40,15 @@ import java.util.Set;
  * <blockquote>
  * http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#On-line_algorithm
  * </blockquote>
+ * When an array of samples is offered, the mean and sum of squared deviations of
+ * the samples are calculated separately and combined with the running values
+ * using the pairwise formula of Chan, Golub and LeVeque, which is also used
+ * when merging processors:
+ * <blockquote>
+ * Tony F. Chan, Gene H. Golub and Randall J. LeVeque (1979). Updating formulae
+ * and a pairwise algorithm for computing sample variances. Technical Report
+ * STAN-CS-79-773, Stanford University.
+ * </blockquote>
  * 
  * @see Statistic
  * @see StreamingSampleStats
@@ -73,7 +82,7 @@ public class MeanVarianceProcessor extends AbstractProcessor {
      * {@inheritDoc}
      */
     @Override
-    protected boolean update(Double sample) {
+    protected boolean update(double sample) {
     	if (isAccepted(sample)) {
             if (getNumAccepted() == 0) {  // first value
                 mOld = mNew = sample;
@@ -89,6 +98,72 @@ public class MeanVarianceProcessor extends AbstractProcessor {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        final int end = offset + length;
+
+        double total = 0;
+        for (int i = offset; i < end; i++) {
+            total += samples[i];
+        }
+        final double mean = total / length;
+
+        double ss = 0;
+        for (int i = offset; i < end; i++) {
+            double d = samples[i] - mean;
+            ss += d * d;
+        }
+
+        combine(length, mean, ss);
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsMerge() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long mergeData(AbstractProcessor other) {
+        MeanVarianceProcessor mvp = (MeanVarianceProcessor) other;
+        if (mvp.getNumAccepted() > 0) {
+            combine(mvp.getNumAccepted(), mvp.mNew, mvp.s);
+        }
+        return mvp.getNumAccepted();
+    }
+
+    /**
+     * Combines the running mean and sum of squared deviations with
+     * those of another set of samples.
+     *
+     * @param n number of samples in the other set
+     * @param mean mean of the other set
+     * @param ss sum of squared deviations from the mean of the other set
+     */
+    private void combine(long n, double mean, double ss) {
+        final long n0 = getNumAccepted();
+        if (n0 == 0) {
+            mOld = mNew = mean;
+            s = ss;
+
+        } else {
+            final double nTotal = n0 + n;
+            final double delta = mean - mNew;
+            mNew = mNew + delta * n / nTotal;
+            s = s + ss + delta * delta * (n0 * (double) n / nTotal);
+            mOld = mNew;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -25,12 +25,14 @@
 
 package org.jaitools.numeric;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Provides static methods to work directly with {@code Number} objects 
  * without having to cast them to narrower types.
+ * <p>
+ * Comparisons are also provided for primitive {@code double}, {@code float}
+ * and {@code long} values. The {@code Number} methods delegate to these after
+ * finding the highest ranking class of their arguments, so code that already
+ * has primitive values can call them directly and avoid boxing.
  *
  * @author Michael Bedward
  * @since 1.1
@@ -66,15 +68,6 @@ public class NumberOperations {
         /** Double: rank 5, non-integral type */
         DOUBLE(5, Double.class, false);
 
-        /** Map for reverse lookup by class */
-        private static final Map<Class<? extends Number>, ClassInfo> lookup;
-        static {
-            lookup = new HashMap<Class<? extends Number>, ClassInfo>();
-            for (ClassInfo cr : ClassInfo.values()) {
-                lookup.put(cr.clazz, cr);
-            }
-        }
-
         private int rank;
         private Class<? extends Number> clazz;
         private boolean isIntegral;
@@ -132,7 +125,22 @@ public class NumberOperations {
          *         recognized
          */
         public static ClassInfo get(Class<? extends Number> clazz) {
-            return lookup.get(clazz);
+            // identity tests are much cheaper than a map lookup for
+            // these final classes, and this is called for every operation
+            if (clazz == Double.class) {
+                return DOUBLE;
+            } else if (clazz == Integer.class) {
+                return INTEGER;
+            } else if (clazz == Float.class) {
+                return FLOAT;
+            } else if (clazz == Byte.class) {
+                return BYTE;
+            } else if (clazz == Short.class) {
+                return SHORT;
+            } else if (clazz == Long.class) {
+                return LONG;
+            }
+            return null;
         }
     }
 
@@ -141,8 +149,7 @@ public class NumberOperations {
         ADD,
         SUBTRACT,
         MULTIPLY,
-        DIVIDE,
-        COMPARE;
+        DIVIDE;
     }
 
     
@@ -217,7 +224,89 @@ public class NumberOperations {
      * @see #setFloatTolerance(float)
      */
     public static int compare(Number n1, Number n2) {
-        return (int)Math.round(calculate(OpType.COMPARE, n1, n2).doubleValue());
+        switch (ClassInfo.get(highestClass(n1, n2))) {
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+            case LONG:
+                return compare(longValue(n1), longValue(n2));
+
+            case FLOAT:
+                return compare(floatValue(n1), floatValue(n2));
+
+            case DOUBLE:
+                return compare(doubleValue(n1), doubleValue(n2));
+
+            default:
+                throw new UnsupportedOperationException("Unrecognized number class");
+        }
+    }
+
+    /**
+     * Compares two {@code double} values within the currently set double
+     * tolerance. This gives the same result as {@link #compare(Number, Number)}
+     * with {@code Double} arguments. NaN and infinite values are compared
+     * as by {@link Double#compare(double, double)}.
+     *
+     * @param x1 the first value
+     * @param x2 the second value
+     *
+     * @return -1 if the first value is less than the second; 1 if the first value
+     *         is greater than the second; 0 if the two values are equal.
+     *
+     * @see #getDoubleTolerance()
+     */
+    public static int compare(double x1, double x2) {
+        if (Double.isInfinite(x1) || Double.isNaN(x1) ||
+            Double.isInfinite(x2) || Double.isNaN(x2)) {
+            return Double.compare(x1, x2);
+        }
+
+        if (Math.abs(x1 - x2) < doubleTol) {
+            return 0;
+        }
+        return (x1 < x2 ? -1 : 1);
+    }
+
+    /**
+     * Compares two {@code float} values within the currently set float
+     * tolerance. This gives the same result as {@link #compare(Number, Number)}
+     * with {@code Float} arguments. NaN and infinite values are compared
+     * as by {@link Float#compare(float, float)}.
+     *
+     * @param x1 the first value
+     * @param x2 the second value
+     *
+     * @return -1 if the first value is less than the second; 1 if the first value
+     *         is greater than the second; 0 if the two values are equal.
+     *
+     * @see #getFloatTolerance()
+     */
+    public static int compare(float x1, float x2) {
+        if (Float.isInfinite(x1) || Float.isNaN(x1) ||
+            Float.isInfinite(x2) || Float.isNaN(x2)) {
+            return Float.compare(x1, x2);
+        }
+
+        if (Math.abs(x1 - x2) < floatTol) {
+            return 0;
+        }
+        return (x1 < x2 ? -1 : 1);
+    }
+
+    /**
+     * Compares two integral values exactly. Note that, unlike
+     * {@link #compare(Number, Number)} with {@code Byte} arguments,
+     * primitive {@code byte} values passed to this method are signed.
+     *
+     * @param x1 the first value
+     * @param x2 the second value
+     *
+     * @return -1 if the first value is less than the second; 1 if the first value
+     *         is greater than the second; 0 if the two values are equal.
+     */
+    public static int compare(long x1, long x2) {
+        return (x1 < x2 ? -1 : (x1 > x2 ? 1 : 0));
     }
 
     /**
@@ -267,15 +356,9 @@ public class NumberOperations {
      */
     private static Number calculate(OpType type, Number n1, Number n2) {
         Number result = null;
-        ClassInfo ciIn = ClassInfo.get(highestClass(n1, n2));
-        ClassInfo ciOut = null; 
-        if (type == OpType.COMPARE) {
-            ciOut = ClassInfo.INTEGER;
-        } else {
-            ciOut = ciIn;
-        }
+        ClassInfo ci = ClassInfo.get(highestClass(n1, n2));
 
-        switch (ciIn) {
+        switch (ci) {
             case BYTE:
             case SHORT:
             case INTEGER:
@@ -295,7 +378,9 @@ public class NumberOperations {
                 throw new UnsupportedOperationException("Unrecognized number class");
         }
 
-        return newInstance(result, ciOut);
+        // the result is a new object so it can be returned as-is if
+        // it is already of the required class
+        return newInstance(result, ci, true);
     }
 
     /**
@@ -649,10 +734,20 @@ public class NumberOperations {
      * @return result as a new instance of {@code Long}
      */
     private static Long integralCalculation(OpType type, Number n1, Number n2) {
-        long result = 0;
+        return Long.valueOf(integralCalculation(type, longValue(n1), longValue(n2)));
+    }
 
-        long val1 = longValue(n1);
-        long val2 = longValue(n2);
+    /**
+     * Perform a calculation on two {@code long} values.
+     *
+     * @param type the type of calculation
+     * @param val1 first value
+     * @param val2 second value
+     *
+     * @return the result
+     */
+    private static long integralCalculation(OpType type, long val1, long val2) {
+        long result = 0;
 
         switch (type) {
             case ADD:
@@ -671,15 +766,11 @@ public class NumberOperations {
                 result = val1 / val2;
                 break;
                 
-            case COMPARE:
-                result = (val1 < val2 ? -1 : (val1 > val2 ? 1 : 0));
-                break;
-                
             default:
                 throw new IllegalArgumentException("Invalid OpType: " + type);
         }
 
-        return Long.valueOf(result);
+        return result;
     }
 
     /**
@@ -692,12 +783,6 @@ public class NumberOperations {
      * @return result as a new instance of {@code Float}
      */
     private static Float floatCalculation(OpType opType, Number n1, Number n2) {
-        float result = 0;
-
-        if (opType == OpType.COMPARE) {
-            return (float) floatComparison(n1, n2);
-        }
-
         if (n1 instanceof Float) {
             Float fn1 = (Float) n1;
             if (fn1.isInfinite() || fn1.isNaN()) {
@@ -712,8 +797,20 @@ public class NumberOperations {
             }
         }
 
-        float val1 = floatValue(n1);
-        float val2 = floatValue(n2);
+        return Float.valueOf(floatCalculation(opType, floatValue(n1), floatValue(n2)));
+    }
+
+    /**
+     * Perform a calculation on two {@code float} values.
+     *
+     * @param type the type of calculation
+     * @param val1 first value
+     * @param val2 second value
+     *
+     * @return the result
+     */
+    private static float floatCalculation(OpType opType, float val1, float val2) {
+        float result = 0;
 
         switch (opType) {
             case ADD:
@@ -733,35 +830,6 @@ public class NumberOperations {
                 break;
         }
 
-        return Float.valueOf(result);
-    }
-
-    /**
-     * Compare two values as floats using the currently set tolerance
-     *
-     * @param n1 first value
-     * @param n2 second value
-     *
-     * @return -1 if the first value is less than the second; 1 if the
-     *         first value is greater than the second; 0 if the two values
-     *         are equal
-     */
-    private static int floatComparison(Number n1, Number n2) {
-        float val1 = floatValue(n1);
-        float val2 = floatValue(n2);
-
-        if (Float.isInfinite(val1) || Float.isNaN(val1) ||
-            Float.isInfinite(val2) || Float.isNaN(val2)) {
-            return Float.compare(val1, val2);
-        }
-
-        int result;
-        if (Math.abs(val1 - val2) < floatTol) {
-            result = 0;
-        } else {
-            result = (val1 < val2 ? -1 : 1);
-        }
-
         return result;
     }
 
@@ -775,12 +843,6 @@ public class NumberOperations {
      * @return result as a new instance of {@code Double}
      */
     private static Double doubleCalculation(OpType opType, Number n1, Number n2) {
-        double result = 0;
-
-        if (opType == OpType.COMPARE) {
-            return (double) doubleComparison(n1, n2);
-        }
-
         if (n1 instanceof Double) {
             Double dn1 = (Double) n1;
             if (dn1.isInfinite() || dn1.isNaN()) {
@@ -795,8 +857,20 @@ public class NumberOperations {
             }
         }
 
-        double val1 = doubleValue(n1);
-        double val2 = doubleValue(n2);
+        return Double.valueOf(doubleCalculation(opType, doubleValue(n1), doubleValue(n2)));
+    }
+
+    /**
+     * Perform a calculation on two {@code double} values.
+     *
+     * @param type the type of calculation
+     * @param val1 first value
+     * @param val2 second value
+     *
+     * @return the result
+     */
+    private static double doubleCalculation(OpType opType, double val1, double val2) {
+        double result = 0;
 
         switch (opType) {
             case ADD:
@@ -816,35 +890,6 @@ public class NumberOperations {
                 break;
         }
 
-        return Double.valueOf(result);
-    }
-
-    /**
-     * Compare two values as floats using the currently set tolerance
-     *
-     * @param n1 first value
-     * @param n2 second value
-     *
-     * @return -1 if the first value is less than the second; 1 if the
-     *         first value is greater than the second; 0 if the two values
-     *         are equal
-     */
-    private static int doubleComparison(Number n1, Number n2) {
-        double val1 = doubleValue(n1);
-        double val2 = doubleValue(n2);
-
-        if (Double.isInfinite(val1) || Double.isNaN(val1) ||
-            Double.isInfinite(val2) || Double.isNaN(val2)) {
-            return Double.compare(val1, val2);
-        }
-
-        int result;
-        if (Math.abs(val1 - val2) < doubleTol) {
-            result = 0;
-        } else {
-            result = (val1 < val2 ? -1 : 1);
-        }
-
         return result;
     }
 
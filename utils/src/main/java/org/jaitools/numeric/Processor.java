@@ -132,6 +132,20 @@ public interface Processor {
      */
     public boolean isAccepted(Double sample);
 
+    /**
+     * Tests whether a primitive sample value will be accepted for calculations
+     * by the processor. The default implementation boxes the value and calls
+     * {@link #isAccepted(Double)}.
+     *
+     * @param sample the sample value
+     *
+     * @return true if the sample is accepted in compliance with the ranges settings.
+     *         false otherwise
+     */
+    public default boolean isAccepted(double sample) {
+        return isAccepted(Double.valueOf(sample));
+    }
+
     /**
      * Offers a sample value to the processor.
      *
@@ -139,6 +153,76 @@ public interface Processor {
      */
     public void offer(Double sample);
 
+    /**
+     * Offers a primitive sample value to the processor. This avoids
+     * boxing the value and is preferred when processing image data.
+     * The default implementation boxes the value and calls
+     * {@link #offer(Double)}.
+     *
+     * @param sample the sample value
+     */
+    public default void offer(double sample) {
+        offer(Double.valueOf(sample));
+    }
+
+    /**
+     * Offers consecutive sample values from an array, for example a
+     * row of image data. This is equivalent to offering each value
+     * in turn.
+     *
+     * @param samples array of sample values
+     * @param offset index of the first value to offer
+     * @param length number of values to offer
+     *
+     * @throws IndexOutOfBoundsException if {@code offset} and {@code length}
+     *         do not describe a valid portion of {@code samples}
+     */
+    public default void offer(double[] samples, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > samples.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "offset and length must lie within the samples array");
+        }
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            offer(samples[i]);
+        }
+    }
+
+    /**
+     * Tests whether this processor supports {@linkplain #merge(Processor) merging}.
+     * The default implementation returns {@code false}.
+     *
+     * @return {@code true} if merging is supported
+     */
+    public default boolean supportsMerge() {
+        return false;
+    }
+
+    /**
+     * Merges the state of another processor into this one. Afterwards this
+     * processor gives the same results, apart from differences due to rounding
+     * or approximation, as if it had been offered all of the samples offered
+     * to both processors. This allows statistics to be calculated for parts
+     * of a data set in separate threads and then combined.
+     * <p>
+     * The other processor must be of the same class as this one and have the
+     * same NoData and include / exclude ranges. Its results are unchanged
+     * by the merge.
+     *
+     * @param other the processor to merge into this one
+     *
+     * @throws IllegalArgumentException if {@code other} is {@code null},
+     *         this processor, of a different class or has different ranges
+     * @throws UnsupportedOperationException if this processor does not
+     *         support merging (the default implementation always throws
+     *         this exception)
+     * @see #supportsMerge()
+     */
+    public default void merge(Processor other) {
+        throw new UnsupportedOperationException(
+                getClass().getSimpleName() + " does not support merging");
+    }
+
     /**
      * Gets the number of samples that have been offered to this processor.
      *
@@ -0,0 +1,590 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A streaming sketch of a sample distribution from which quantiles can be
+ * estimated with bounded memory. This is the KLL sketch described in:
+ * <blockquote>
+ * Zohar Karnin, Kevin Lang and Edo Liberty (2016). Optimal quantile
+ * approximation in streams. IEEE 57th Annual Symposium on Foundations
+ * of Computer Science (FOCS).
+ * </blockquote>
+ * Sample values are kept in a stack of buffers. Each value at level
+ * <i>h</i> stands for 2<sup>h</sup> samples. When the sketch is full, the
+ * values of the lowest over-full level are sorted and every other value is
+ * promoted to the next level. Buffer capacities shrink geometrically
+ * with distance from the top level, so memory use grows only with the
+ * logarithm of the number of samples.
+ * <p>
+ * Accuracy is controlled by the parameter {@code k}, which is the capacity of
+ * the top level. The error of an estimated quantile, measured as a fraction of
+ * rank, is roughly {@code 2.3 / k}: about 1.3% for the default {@code k} of 200.
+ * See {@link #getNormalizedRankError()}. Quantiles are exact until {@code k}
+ * samples have been added.
+ * <p>
+ * Sketches with the same {@code k} can be merged, so separate parts of a data set
+ * can be sketched in parallel and the results combined. A sketch can also be
+ * written to a compact byte array with {@link #toByteArray()}, stored or sent
+ * elsewhere, and recreated with {@link #fromByteArray(byte[])}.
+ * <p>
+ * The quantile for probability <i>p</i> is taken as the smallest sample value
+ * <i>x</i> such that at least <i>p</i> of the samples are less than or equal to
+ * <i>x</i>. NaN values are ignored. This class is not thread-safe.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class QuantileSketch {
+
+    /** Default value of the accuracy parameter {@code k}. */
+    public static final int DEFAULT_K = 200;
+
+    /** Minimum value of the accuracy parameter {@code k}. */
+    public static final int MIN_K = 8;
+
+    /** Maximum value of the accuracy parameter {@code k}. */
+    public static final int MAX_K = 65535;
+
+    /* Ratio of the capacities of adjacent levels */
+    private static final double LEVEL_RATIO = 2.0 / 3.0;
+
+    /* Identifies the serialized form */
+    private static final int SERIAL_MAGIC = 0x4A544B4C;
+
+    private final int k;
+
+    private double[][] levels;
+    private int[] levelSizes;
+    private int numLevels;
+    private int numRetained;
+    private int maxRetained;
+
+    private long n;
+    private double min;
+    private double max;
+
+    /* Alternates which half of a level's values is promoted */
+    private boolean promoteOdd;
+
+    /* Sorted values and cumulative weights for queries */
+    private double[] viewValues;
+    private long[] viewWeights;
+    private boolean viewValid;
+
+    /**
+     * Creates a new sketch with the default accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Creates a new sketch.
+     *
+     * @param k accuracy parameter: larger values give more accurate
+     *        quantiles at the cost of more memory
+     *
+     * @throws IllegalArgumentException if {@code k} is less than {@link #MIN_K}
+     *         or greater than {@link #MAX_K}
+     */
+    public QuantileSketch(int k) {
+        if (k < MIN_K || k > MAX_K) {
+            throw new IllegalArgumentException(
+                    "k must be between " + MIN_K + " and " + MAX_K);
+        }
+
+        this.k = k;
+        levels = new double[4][];
+        levelSizes = new int[4];
+        min = max = Double.NaN;
+        addLevel();
+    }
+
+    /**
+     * Creates a copy of an existing sketch.
+     *
+     * @param other the sketch to copy
+     */
+    public QuantileSketch(QuantileSketch other) {
+        k = other.k;
+        levels = new double[other.levels.length][];
+        for (int h = 0; h < other.numLevels; h++) {
+            levels[h] = other.levels[h].clone();
+        }
+        levelSizes = other.levelSizes.clone();
+        numLevels = other.numLevels;
+        numRetained = other.numRetained;
+        maxRetained = other.maxRetained;
+        n = other.n;
+        min = other.min;
+        max = other.max;
+        promoteOdd = other.promoteOdd;
+    }
+
+    /**
+     * Gets the accuracy parameter of this sketch.
+     *
+     * @return value of {@code k}
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Gets the number of samples added to this sketch.
+     *
+     * @return number of samples
+     */
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * Tests if any samples have been added to this sketch.
+     *
+     * @return {@code true} if the sketch is empty
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * Gets the number of sample values currently held by the sketch.
+     *
+     * @return number of retained values
+     */
+    public int getNumRetained() {
+        return numRetained;
+    }
+
+    /**
+     * Gets the minimum sample value, which is always exact.
+     *
+     * @return the minimum or {@code Double.NaN} if the sketch is empty
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Gets the maximum sample value, which is always exact.
+     *
+     * @return the maximum or {@code Double.NaN} if the sketch is empty
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the approximate error of quantile estimates as a fraction of rank.
+     * This is an empirical estimate, for this family of sketches, of the error
+     * that will not be exceeded with 99% confidence. For example, a value of
+     * 0.013 means that the returned 95th percentile will usually lie between
+     * the true 93.7th and 96.3rd percentiles.
+     *
+     * @return the normalized rank error
+     */
+    public double getNormalizedRankError() {
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    /**
+     * Adds a sample value. NaN values are ignored.
+     *
+     * @param value the value
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        if (n == 0) {
+            min = max = value;
+        } else if (value < min) {
+            min = value;
+        } else if (value > max) {
+            max = value;
+        }
+
+        append(0, value);
+        numRetained++;
+        n++;
+        viewValid = false;
+
+        if (numRetained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds consecutive sample values from an array. NaN values are ignored.
+     *
+     * @param values array of values
+     * @param offset index of the first value to add
+     * @param length number of values to add
+     */
+    public void update(double[] values, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            update(values[i]);
+        }
+    }
+
+    /**
+     * Merges another sketch into this one. Afterwards this sketch
+     * describes the samples added to either sketch. The other sketch
+     * is not changed.
+     *
+     * @param other the other sketch
+     *
+     * @throws IllegalArgumentException if {@code other} is {@code null}, this
+     *         sketch or has a different value of {@code k}
+     */
+    public void merge(QuantileSketch other) {
+        if (other == null || other == this) {
+            throw new IllegalArgumentException("other sketch must be a different, non-null sketch");
+        }
+        if (other.k != k) {
+            throw new IllegalArgumentException("cannot merge sketches with different k values");
+        }
+
+        if (other.n == 0) {
+            return;
+        }
+
+        if (n == 0) {
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        while (numLevels < other.numLevels) {
+            addLevel();
+        }
+
+        for (int h = 0; h < other.numLevels; h++) {
+            double[] src = other.levels[h];
+            for (int i = 0; i < other.levelSizes[h]; i++) {
+                append(h, src[i]);
+            }
+            numRetained += other.levelSizes[h];
+        }
+
+        n += other.n;
+        viewValid = false;
+        compress();
+    }
+
+    /**
+     * Gets the estimated quantile for a given probability.
+     *
+     * @param p probability between 0 and 1 inclusive
+     *
+     * @return the estimated quantile or {@code Double.NaN} if the sketch is empty
+     *
+     * @throws IllegalArgumentException if {@code p} is outside the range 0 to 1
+     */
+    public double getQuantile(double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("p must be between 0 and 1");
+        }
+
+        if (n == 0) {
+            return Double.NaN;
+        }
+        if (p == 0) {
+            return min;
+        }
+        if (p == 1) {
+            return max;
+        }
+
+        buildView();
+        final double target = p * n;
+
+        int lo = 0;
+        int hi = viewValues.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (viewWeights[mid] < target) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return viewValues[lo];
+    }
+
+    /**
+     * Gets the estimated fraction of samples less than or equal to a value.
+     *
+     * @param value the value
+     *
+     * @return the estimated fraction or {@code Double.NaN} if the sketch is empty
+     */
+    public double getRank(double value) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+
+        buildView();
+
+        // index of the first retained value greater than value
+        int lo = 0;
+        int hi = viewValues.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (viewValues[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo == 0 ? 0.0 : (double) viewWeights[lo - 1] / n;
+    }
+
+    /**
+     * Writes this sketch to a byte array.
+     *
+     * @return the serialized sketch
+     * @see #fromByteArray(byte[])
+     */
+    public byte[] toByteArray() {
+        int size = 4 + 4 + 8 + 8 + 8 + 1 + 4 + 4 * numLevels + 8 * numRetained;
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(SERIAL_MAGIC);
+        buf.putInt(k);
+        buf.putLong(n);
+        buf.putDouble(min);
+        buf.putDouble(max);
+        buf.put((byte) (promoteOdd ? 1 : 0));
+        buf.putInt(numLevels);
+        for (int h = 0; h < numLevels; h++) {
+            buf.putInt(levelSizes[h]);
+            for (int i = 0; i < levelSizes[h]; i++) {
+                buf.putDouble(levels[h][i]);
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * Recreates a sketch from a byte array written by {@link #toByteArray()}.
+     *
+     * @param bytes the serialized sketch
+     *
+     * @return a new sketch
+     *
+     * @throws IllegalArgumentException if {@code bytes} does not hold a valid sketch
+     */
+    public static QuantileSketch fromByteArray(byte[] bytes) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            if (buf.getInt() != SERIAL_MAGIC) {
+                throw new IllegalArgumentException("not a serialized QuantileSketch");
+            }
+
+            QuantileSketch sketch = new QuantileSketch(buf.getInt());
+            sketch.n = buf.getLong();
+            sketch.min = buf.getDouble();
+            sketch.max = buf.getDouble();
+            sketch.promoteOdd = buf.get() != 0;
+
+            int numLevels = buf.getInt();
+            if (numLevels < 1 || numLevels > 64) {
+                throw new IllegalArgumentException("invalid number of levels: " + numLevels);
+            }
+            while (sketch.numLevels < numLevels) {
+                sketch.addLevel();
+            }
+
+            long weight = 0;
+            for (int h = 0; h < numLevels; h++) {
+                int size = buf.getInt();
+                if (size < 0 || size > buf.remaining() / 8) {
+                    throw new IllegalArgumentException("invalid level size: " + size);
+                }
+                for (int i = 0; i < size; i++) {
+                    sketch.append(h, buf.getDouble());
+                }
+                sketch.numRetained += size;
+                weight += (long) size << h;
+            }
+
+            if (weight != sketch.n || buf.hasRemaining()) {
+                throw new IllegalArgumentException("inconsistent serialized QuantileSketch");
+            }
+            return sketch;
+
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("truncated serialized QuantileSketch");
+        }
+    }
+
+    /**
+     * Adds a value to a level, growing the level's buffer if required.
+     * The caller is responsible for updating {@code numRetained}.
+     */
+    private void append(int level, double value) {
+        double[] buf = levels[level];
+        int size = levelSizes[level];
+        if (size == buf.length) {
+            buf = levels[level] = Arrays.copyOf(buf, Math.max(4, 2 * size));
+        }
+        buf[size] = value;
+        levelSizes[level] = size + 1;
+    }
+
+    /**
+     * Adds a new top level and updates the sketch capacity.
+     */
+    private void addLevel() {
+        if (numLevels == levels.length) {
+            levels = Arrays.copyOf(levels, 2 * numLevels);
+            levelSizes = Arrays.copyOf(levelSizes, 2 * numLevels);
+        }
+
+        levels[numLevels++] = new double[k];
+
+        maxRetained = 0;
+        for (int h = 0; h < numLevels; h++) {
+            maxRetained += capacity(h);
+        }
+    }
+
+    /**
+     * Gets the capacity of a level given the current number of levels.
+     */
+    private int capacity(int level) {
+        int depth = numLevels - level - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(LEVEL_RATIO, depth)));
+    }
+
+    /**
+     * Promotes values from over-full levels until the number of
+     * retained values is below the sketch capacity.
+     */
+    private void compress() {
+        while (numRetained >= maxRetained) {
+            for (int h = 0; h < numLevels; h++) {
+                if (levelSizes[h] >= capacity(h)) {
+                    if (h + 1 == numLevels) {
+                        addLevel();
+                    }
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the values at a level and promotes every other one to the next
+     * level. If the number of values is odd, the smallest stays behind.
+     */
+    private void compact(int level) {
+        double[] buf = levels[level];
+        int size = levelSizes[level];
+        Arrays.sort(buf, 0, size);
+
+        int start = size % 2;
+        int first = start + (promoteOdd ? 1 : 0);
+        promoteOdd = !promoteOdd;
+
+        for (int i = first; i < size; i += 2) {
+            append(level + 1, buf[i]);
+        }
+
+        numRetained -= (size - start) / 2;
+        levelSizes[level] = start;
+    }
+
+    /**
+     * Builds the sorted view of retained values and their
+     * cumulative weights used for queries.
+     */
+    private void buildView() {
+        if (viewValid) {
+            return;
+        }
+
+        double[] values = new double[numRetained];
+        long[] weights = new long[numRetained];
+        double[] tmpValues = new double[numRetained];
+        long[] tmpWeights = new long[numRetained];
+        int len = 0;
+
+        // merge the sorted levels one at a time
+        for (int h = 0; h < numLevels; h++) {
+            int size = levelSizes[h];
+            if (size == 0) {
+                continue;
+            }
+
+            double[] buf = levels[h];
+            Arrays.sort(buf, 0, size);
+            long w = 1L << h;
+
+            int i = 0, j = 0, m = 0;
+            while (i < len && j < size) {
+                if (values[i] <= buf[j]) {
+                    tmpValues[m] = values[i];
+                    tmpWeights[m++] = weights[i++];
+                } else {
+                    tmpValues[m] = buf[j++];
+                    tmpWeights[m++] = w;
+                }
+            }
+            while (i < len) {
+                tmpValues[m] = values[i];
+                tmpWeights[m++] = weights[i++];
+            }
+            while (j < size) {
+                tmpValues[m] = buf[j++];
+                tmpWeights[m++] = w;
+            }
+
+            double[] dswap = values; values = tmpValues; tmpValues = dswap;
+            long[] lswap = weights; weights = tmpWeights; tmpWeights = lswap;
+            len = m;
+        }
+
+        for (int i = 1; i < len; i++) {
+            weights[i] += weights[i - 1];
+        }
+
+        viewValues = values;
+        viewWeights = weights;
+        viewValid = true;
+    }
+}
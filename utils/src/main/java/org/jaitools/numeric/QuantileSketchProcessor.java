@@ -0,0 +1,198 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Processor for the percentile statistics {@code Statistic.PERCENTILE_5},
+ * {@code PERCENTILE_10}, {@code PERCENTILE_25}, {@code PERCENTILE_75},
+ * {@code PERCENTILE_90} and {@code PERCENTILE_95}. Accepted samples are
+ * summarized in a {@linkplain QuantileSketch}, so memory use is bounded
+ * however many samples are offered, and the percentiles are estimates
+ * with known error. Quantiles for other probabilities can be had
+ * from {@link #getQuantile(double)}.
+ * <p>
+ * The accuracy of the sketch can be set, before any samples are offered,
+ * with {@link #setAccuracy(int)}. For a processor working within a
+ * {@code StreamingSampleStats} object:
+ * <pre><code>
+ * StreamingSampleStats strmStats = new StreamingSampleStats();
+ * strmStats.setStatistic(Statistic.PERCENTILE_95);
+ * QuantileSketchProcessor p = (QuantileSketchProcessor)
+ *         strmStats.getProcessor(Statistic.PERCENTILE_95);
+ * p.setAccuracy(1000);
+ * </code></pre>
+ *
+ * @see Statistic
+ * @see StreamingSampleStats
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class QuantileSketchProcessor extends AbstractProcessor {
+
+    private static final Set<Statistic> SUPPORTED = Collections.unmodifiableSet(EnumSet.of(
+            Statistic.PERCENTILE_5,
+            Statistic.PERCENTILE_10,
+            Statistic.PERCENTILE_25,
+            Statistic.PERCENTILE_75,
+            Statistic.PERCENTILE_90,
+            Statistic.PERCENTILE_95));
+
+    private QuantileSketch sketch;
+
+    /**
+     * Creates a new processor with the default sketch accuracy.
+     */
+    public QuantileSketchProcessor() {
+        this(QuantileSketch.DEFAULT_K);
+    }
+
+    /**
+     * Creates a new processor.
+     *
+     * @param k accuracy parameter for the sketch
+     * @see QuantileSketch#QuantileSketch(int)
+     */
+    public QuantileSketchProcessor(int k) {
+        sketch = new QuantileSketch(k);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<Statistic> getSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Sets the accuracy of the sketch.
+     *
+     * @param k accuracy parameter for the sketch
+     *
+     * @throws IllegalStateException if samples have already been offered
+     * @throws IllegalArgumentException if {@code k} is out of range
+     * @see QuantileSketch#QuantileSketch(int)
+     */
+    public void setAccuracy(int k) {
+        if (getNumOffered() > 0) {
+            throw new IllegalStateException("accuracy must be set before samples are offered");
+        }
+        sketch = new QuantileSketch(k);
+    }
+
+    /**
+     * Gets a copy of the sketch of the accepted samples. This
+     * can be serialized with {@link QuantileSketch#toByteArray()}.
+     *
+     * @return a copy of the sketch
+     */
+    public QuantileSketch getSketch() {
+        return new QuantileSketch(sketch);
+    }
+
+    /**
+     * Gets the estimated quantile of the accepted samples for any probability.
+     *
+     * @param p probability between 0 and 1 inclusive
+     *
+     * @return the estimated quantile or {@code Double.NaN} if no
+     *         samples have been accepted
+     *
+     * @throws IllegalArgumentException if {@code p} is outside the range 0 to 1
+     */
+    public double getQuantile(double p) {
+        return sketch.getQuantile(p);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean update(double sample) {
+        if (isAccepted(sample)) {
+            sketch.update(sample);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        sketch.update(samples, offset, length);
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The processors must also use the same sketch accuracy.
+     */
+    @Override
+    void checkMergeable(Processor other) {
+        super.checkMergeable(other);
+        if (((QuantileSketchProcessor) other).sketch.getK() != sketch.getK()) {
+            throw new IllegalArgumentException(
+                    "cannot merge processors with different sketch accuracy");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsMerge() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long mergeData(AbstractProcessor other) {
+        sketch.merge(((QuantileSketchProcessor) other).sketch);
+        return other.getNumAccepted();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Double get(Statistic stat) {
+        if (SUPPORTED.contains(stat)) {
+            return sketch.getQuantile(stat.getQuantile());
+        }
+
+        throw new IllegalArgumentException(stat + " not supported by " + getClass().getName());
+    }
+}
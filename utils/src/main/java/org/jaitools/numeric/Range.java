@@ -606,7 +606,8 @@ public class Range<T extends Number & Comparable> {
     /**
      * Tests for equality with another range. Two ranges are equal if
      * their respective end-points are identical in both value and type 
-     * (included / excluded).
+     * (included / excluded). Primitive-backed subclasses such as
+     * {@link DoubleRange} are equal to plain ranges with the same end-points.
      *
      * @param obj the other range
      *
@@ -614,10 +615,7 @@ public class Range<T extends Number & Comparable> {
      */
     @Override
     public boolean equals(Object obj) {
-        if (obj == null) {
-            return false;
-        }
-        if (getClass() != obj.getClass()) {
+        if (!(obj instanceof Range)) {
             return false;
         }
 
@@ -0,0 +1,442 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable set of ranges compiled into sorted arrays of primitive
+ * bounds, so that a value can be tested against them all without boxing.
+ * Lookups use a binary search, with a fast path when there are only one
+ * or two intervals.
+ * <p>
+ * Comparisons follow {@link NumberOperations#compare} for {@code Double}
+ * arguments, ie. finite values closer than a tolerance are treated as
+ * equal. The tolerance is fixed when the set is created.
+ * <p>
+ * Instances are obtained from the static factory methods:
+ * <ul>
+ * <li> {@link #create(Collection)} and {@link #create(Collection, double)}
+ *      simplify the ranges (see {@link RangeUtils#simplify(Collection)})
+ *      to give the set of values contained by any of them.
+ * <li> {@link #createIndexed(List, double)} keeps each of a list of
+ *      non-overlapping ranges so that {@link #indexOf(double)} can report
+ *      which one contains a value.
+ * <li> {@link #createPoints(Collection, double)} matches each of a set of
+ *      values, including NaN and infinite values.
+ * </ul>
+ * The first two follow the treatment of special values by {@link Range}:
+ * a point range at NaN contains NaN, a point range at infinity contains
+ * nothing, and an open bound places no limit on that side of the interval.
+ * <pre><code>
+ * List&lt;Range&lt;Double&gt;&gt; ranges = ...
+ * RangeSet set = RangeSet.create(ranges);
+ *
+ * for (double value : data) {
+ *     if (set.contains(value)) {
+ *         ...
+ *     }
+ * }
+ * </code></pre>
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public final class RangeSet {
+
+    private final double[] lo;
+    private final double[] hi;
+    private final boolean[] loIncluded;
+    private final boolean[] hiIncluded;
+
+    /* Index of each interval in the source list, or null if not indexed */
+    private final int[] index;
+
+    private final int size;
+    private final int nanIndex;
+    private final double tol;
+
+    private static class Interval {
+        double lo;
+        double hi;
+        boolean loIncluded;
+        boolean hiIncluded;
+        int index;
+    }
+
+    private static final Comparator<Interval> LOWER_BOUND_ORDER = new Comparator<Interval>() {
+        public int compare(Interval a, Interval b) {
+            return Double.compare(a.lo, b.lo);
+        }
+    };
+
+    private RangeSet(List<Interval> intervals, int nanIndex, double tol, boolean indexed) {
+        this.size = intervals.size();
+        this.nanIndex = nanIndex;
+        this.tol = Math.abs(tol);
+
+        lo = new double[size];
+        hi = new double[size];
+        loIncluded = new boolean[size];
+        hiIncluded = new boolean[size];
+        index = indexed ? new int[size] : null;
+
+        for (int i = 0; i < size; i++) {
+            Interval in = intervals.get(i);
+            lo[i] = in.lo;
+            hi[i] = in.hi;
+            loIncluded[i] = in.loIncluded;
+            hiIncluded[i] = in.hiIncluded;
+            if (indexed) {
+                index[i] = in.index;
+            }
+        }
+    }
+
+    /**
+     * Creates a set of the values contained by any of the given ranges,
+     * using the current double tolerance of {@code NumberOperations}.
+     *
+     * @param <T> the value type of the ranges
+     * @param ranges the ranges (may be {@code null} or empty)
+     * @return a new set
+     */
+    public static <T extends Number & Comparable> RangeSet create(Collection<Range<T>> ranges) {
+        return create(ranges, NumberOperations.getDoubleTolerance());
+    }
+
+    /**
+     * Creates a set of the values contained by any of the given ranges.
+     * Overlapping ranges are merged.
+     *
+     * @param <T> the value type of the ranges
+     * @param ranges the ranges (may be {@code null} or empty)
+     * @param tolerance tolerance for value comparisons
+     * @return a new set
+     */
+    public static <T extends Number & Comparable> RangeSet create(
+            Collection<Range<T>> ranges, double tolerance) {
+
+        List<Range<T>> proper = new ArrayList<Range<T>>();
+        boolean hasNaN = false;
+        if (ranges != null) {
+            for (Range<T> r : ranges) {
+                if (r.isPoint() && r.getMin() == null) {
+                    // point at NaN or infinity
+                    hasNaN |= isNaNPoint(r);
+                } else if (!isEmptyInterval(r)) {
+                    proper.add(r);
+                }
+            }
+        }
+
+        List<Interval> intervals = new ArrayList<Interval>();
+        if (!proper.isEmpty()) {
+            for (Range<T> r : RangeUtils.simplify(proper)) {
+                intervals.add(toInterval(r, 0));
+            }
+            Collections.sort(intervals, LOWER_BOUND_ORDER);
+        }
+
+        return new RangeSet(intervals, hasNaN ? intervals.size() : -1, tolerance, false);
+    }
+
+    /**
+     * Creates a set that keeps each of the given ranges so that
+     * {@link #indexOf(double)} returns the position in the list of
+     * the range containing a value.
+     *
+     * @param <T> the value type of the ranges
+     * @param ranges the ranges
+     * @param tolerance tolerance for value comparisons
+     * @return a new set
+     * @throws IllegalArgumentException if {@code ranges} is {@code null} or
+     *         any two of the ranges overlap
+     */
+    public static <T extends Number & Comparable> RangeSet createIndexed(
+            List<Range<T>> ranges, double tolerance) {
+
+        if (ranges == null) {
+            throw new IllegalArgumentException("ranges must not be null");
+        }
+
+        List<Interval> intervals = new ArrayList<Interval>();
+        int nanIndex = -1;
+        for (int i = 0; i < ranges.size(); i++) {
+            Range<T> r = ranges.get(i);
+            if (r.isPoint() && r.getMin() == null) {
+                if (isNaNPoint(r)) {
+                    if (nanIndex >= 0) {
+                        throw new IllegalArgumentException("ranges must not overlap");
+                    }
+                    nanIndex = i;
+                }
+            } else if (!isEmptyInterval(r)) {
+                intervals.add(toInterval(r, i));
+            }
+        }
+
+        Collections.sort(intervals, LOWER_BOUND_ORDER);
+        for (int i = 1; i < intervals.size(); i++) {
+            Interval prev = intervals.get(i - 1);
+            Interval in = intervals.get(i);
+            if (in.lo < prev.hi ||
+                    (in.lo == prev.hi && in.loIncluded && prev.hiIncluded)) {
+                throw new IllegalArgumentException("ranges must not overlap");
+            }
+        }
+
+        return new RangeSet(intervals, nanIndex, tolerance, true);
+    }
+
+    /**
+     * Creates a set that matches each of the given values. Unlike point
+     * ranges, a NaN value matches NaN and an infinite value matches
+     * itself.
+     *
+     * @param values the values (may be {@code null} or empty)
+     * @param tolerance tolerance for value comparisons
+     * @return a new set
+     */
+    public static RangeSet createPoints(Collection<? extends Number> values, double tolerance) {
+        List<Interval> intervals = new ArrayList<Interval>();
+        boolean hasNaN = false;
+        if (values != null) {
+            for (Number n : values) {
+                double v = n.doubleValue();
+                if (Double.isNaN(v)) {
+                    hasNaN = true;
+                } else {
+                    Interval in = new Interval();
+                    in.lo = in.hi = v;
+                    in.loIncluded = in.hiIncluded = true;
+                    intervals.add(in);
+                }
+            }
+            Collections.sort(intervals, LOWER_BOUND_ORDER);
+        }
+
+        return new RangeSet(intervals, hasNaN ? intervals.size() : -1, tolerance, false);
+    }
+
+    /**
+     * Gets the tolerance used for value comparisons.
+     *
+     * @return the tolerance
+     */
+    public double getTolerance() {
+        return tol;
+    }
+
+    /**
+     * Gets the number of intervals in this set, not counting
+     * any NaN point.
+     *
+     * @return number of intervals
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Tests if this set contains no values.
+     *
+     * @return {@code true} if empty
+     */
+    public boolean isEmpty() {
+        return size == 0 && nanIndex < 0;
+    }
+
+    /**
+     * Tests if a value is contained in this set.
+     *
+     * @param value the value
+     * @return {@code true} if the value is contained
+     */
+    public boolean contains(double value) {
+        if (value != value) {
+            return nanIndex >= 0;
+        }
+
+        switch (size) {
+            case 0:
+                return false;
+
+            case 1:
+                return inInterval(0, value);
+
+            case 2:
+                return inInterval(0, value) || inInterval(1, value);
+
+            default:
+                return search(value) >= 0;
+        }
+    }
+
+    /**
+     * Finds the interval containing a value. For a set created with
+     * {@link #createIndexed(List, double)} this is the position of
+     * the range in the list passed to that method. Otherwise it is the
+     * position of the interval in order of lower bound, with
+     * a NaN point, if present, having index {@link #size()}.
+     *
+     * @param value the value
+     * @return index of the interval containing the value or -1
+     *         if the value is not contained in this set
+     */
+    public int indexOf(double value) {
+        if (value != value) {
+            return nanIndex;
+        }
+
+        int i;
+        switch (size) {
+            case 0:
+                return -1;
+
+            case 1:
+                i = inInterval(0, value) ? 0 : -1;
+                break;
+
+            case 2:
+                i = inInterval(0, value) ? 0 : (inInterval(1, value) ? 1 : -1);
+                break;
+
+            default:
+                i = search(value);
+        }
+
+        return (i < 0 || index == null) ? i : index[i];
+    }
+
+    /**
+     * Binary search for the interval containing a value. Intervals are
+     * disjoint and sorted, so only the last one with a lower bound not
+     * greater than the value, and its neighbours (which might contain
+     * the value by tolerance), need be tested.
+     *
+     * @param value the value (not NaN)
+     * @return position of the interval or -1
+     */
+    private int search(double value) {
+        int base = 0;
+        int n = size;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = lo[base + half] <= value ? base + half : base;
+            n -= half;
+        }
+
+        if (inInterval(base, value)) {
+            return base;
+        }
+        if (base + 1 < size && inInterval(base + 1, value)) {
+            return base + 1;
+        }
+        if (base > 0 && inInterval(base - 1, value)) {
+            return base - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Tests if a non-NaN value lies in an interval.
+     */
+    private boolean inInterval(int i, double value) {
+        int comp = compare(value, lo[i]);
+        if (comp < 0 || (comp == 0 && !loIncluded[i])) {
+            return false;
+        }
+
+        comp = compare(value, hi[i]);
+        return comp < 0 || (comp == 0 && hiIncluded[i]);
+    }
+
+    /**
+     * Compares two values in the same way as {@link NumberOperations#compare}
+     * for {@code Double} arguments.
+     */
+    private int compare(double v1, double v2) {
+        if (Double.isInfinite(v1) || Double.isInfinite(v2)) {
+            return Double.compare(v1, v2);
+        }
+
+        if (Math.abs(v1 - v2) < tol) {
+            return 0;
+        }
+        return v1 < v2 ? -1 : 1;
+    }
+
+    /**
+     * Converts a range, other than a point at NaN or infinity, to
+     * an interval. An open bound becomes an included infinite bound
+     * since {@link Range#contains} does not test it.
+     */
+    private static <T extends Number & Comparable> Interval toInterval(Range<T> r, int index) {
+        Interval in = new Interval();
+        in.index = index;
+
+        if (r.getMin() == null) {
+            in.lo = Double.NEGATIVE_INFINITY;
+            in.loIncluded = true;
+        } else {
+            in.lo = r.getMin().doubleValue();
+            in.loIncluded = r.isMinIncluded();
+        }
+
+        if (r.getMax() == null) {
+            in.hi = Double.POSITIVE_INFINITY;
+            in.hiIncluded = true;
+        } else {
+            in.hi = r.getMax().doubleValue();
+            in.hiIncluded = r.isMaxIncluded();
+        }
+
+        return in;
+    }
+
+    /**
+     * Tests if a range is a proper interval with equal, but not
+     * both included, bounds (eg. {@code (2, 2]}) and so contains no values.
+     */
+    private static <T extends Number & Comparable> boolean isEmptyInterval(Range<T> r) {
+        return !r.isPoint() && r.getMin() != null && r.getMax() != null &&
+                !(r.isMinIncluded() && r.isMaxIncluded()) &&
+                NumberOperations.compare(r.getMin(), r.getMax()) == 0;
+    }
+
+    /**
+     * Tests if a point range with no finite value is a point at NaN.
+     */
+    private static boolean isNaNPoint(Range<?> r) {
+        return !(r.isMinInf() || r.isMinNegInf());
+    }
+}
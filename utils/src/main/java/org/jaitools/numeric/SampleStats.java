@@ -26,8 +26,6 @@
 package org.jaitools.numeric;
 
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 import java.util.SortedSet;
 
 import org.jaitools.CollectionFactory;
@@ -122,55 +120,86 @@ public class SampleStats {
      * @param ignoreNaN specifies whether to ignore NaN values
      * @return median value or Double.NaN if the sample is empty
      */
-    @SuppressWarnings("empty-statement")
     public static double median(Double[] values, boolean ignoreNaN) {
         if (values == null) {
             return Double.NaN;
         }
-        
-        List<Double> nonNaNValues = CollectionFactory.list();
-        nonNaNValues.addAll(Arrays.asList(values));
-        if (ignoreNaN) {
-            while (nonNaNValues.remove(Double.NaN)) /* deliberately empty */ ;
+
+        double[] data = new double[values.length];
+        int n = 0;
+        int numNaN = 0;
+        for (Double value : values) {
+            if (value == null || value.isNaN()) {
+                numNaN++;
+            } else {
+                data[n++] = value;
+            }
         }
-        
-        if (nonNaNValues.isEmpty()) {
+
+        // NaN values, when not ignored, sort after all others
+        int size = ignoreNaN ? n : n + numNaN;
+        if (size == 0) {
             return Double.NaN;
-        } else if (nonNaNValues.size() == 1) {
-            return nonNaNValues.get(0);
-        } else if (nonNaNValues.size() == 2) {
-            return (nonNaNValues.get(0) + nonNaNValues.get(1)) / 2;
         }
-        
-        Collections.sort(nonNaNValues);
-        
-        int midHi = nonNaNValues.size() / 2;
-        int midLo = midHi - 1;
-        boolean even = nonNaNValues.size() % 2 == 0;
-
-        Double result = 0.0d;
-        int k = 0;
-        for (Double val : nonNaNValues) {
-            if (k == midHi) {
-                if (!even) {
-                    return val;
-                } else {
-                    result += val;
-                    return result / 2;
+
+        int midHi = size / 2;
+        if (midHi >= n) {
+            return Double.NaN;
+        }
+
+        double hi = Selection.select(data, 0, n, midHi);
+        if (size % 2 == 1) {
+            return hi;
+        }
+        return (Selection.max(data, 0, midHi) + hi) / 2;
+    }
+    
+    /**
+     * Calculates a quantile of the given values: the smallest sample value
+     * <i>x</i> such that at least a proportion {@code p} of the values are
+     * less than or equal to <i>x</i>. This is the same definition used by
+     * {@linkplain QuantileSketch}, so the two agree exactly for small samples.
+     *
+     * @param values sample values
+     * @param p probability between 0 and 1 inclusive
+     * @param ignoreNaN specifies whether to ignore NaN values
+     * @return the quantile or Double.NaN if the sample is empty, or if it
+     *         contains NaN values and {@code ignoreNaN} is {@code false}
+     * @throws IllegalArgumentException if {@code p} is outside the range 0 to 1
+     */
+    public static double quantile(Double[] values, double p, boolean ignoreNaN) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("p must be between 0 and 1");
+        }
+        if (values == null) {
+            return Double.NaN;
+        }
+
+        double[] data = new double[values.length];
+        int n = 0;
+        for (Double value : values) {
+            if (value == null || value.isNaN()) {
+                if (!ignoreNaN) {
+                    return Double.NaN;
                 }
-            } else if (even && k == midLo) {
-                result += val;
+            } else {
+                data[n++] = value;
             }
-            k++ ;
         }
-        
-        return 0;  // to suppress compiler warning
+
+        if (n == 0) {
+            return Double.NaN;
+        }
+
+        int index = (int) Math.ceil(p * n) - 1;
+        return Selection.select(data, 0, n, Math.max(0, Math.min(n - 1, index)));
     }
-    
+
     /**
      * Calculates the empirical mode (highest frequency value) of the given values.
-     * Double.NaN values are ignored. If more than one data value occurs with
-     * maximum frequency the following tie-break rules are used:
+     * Values are compared within the default tolerance of {@linkplain CompareOp}.
+     * If more than one data value occurs with maximum frequency the following
+     * tie-break rules are used:
      * <ul>
      * <li> for an odd number of tied values, return their median
      * <li> for an even number of tied values, return the value below
@@ -178,70 +207,130 @@ public class SampleStats {
      * </ul>
      * This ensures that the calculated mode occurs in the sample data.
      * Whether or not the mode is meaningful for the sample is up to the user !
+     * If NaN values are not ignored, each is treated as a distinct value
+     * which sorts after all others.
      * 
      * @param values sample values
      * @param ignoreNaN specifies whether to ignore NaN values
      * @return calculated mode or Double.NaN if the sample is empty
      */
-    @SuppressWarnings("empty-statement")
     public static double mode(Double[] values, boolean ignoreNaN) {
+        return frequencyValue(values, ignoreNaN, true);
+    }
+
+    /**
+     * Calculates the minority (lowest frequency value) of the given values.
+     * Values are compared, and ties broken, as for {@link #mode(Double[], boolean)}.
+     * 
+     * @param values sample values
+     * @param ignoreNaN specifies whether to ignore NaN values
+     * @return calculated minority or Double.NaN if the sample is empty
+     */
+    public static double minority(Double[] values, boolean ignoreNaN) {
+        return frequencyValue(values, ignoreNaN, false);
+    }
+
+    /**
+     * Calculates the variety (number of distinct values) of the given values.
+     * Values are compared as for {@link #mode(Double[], boolean)}.
+     * 
+     * @param values sample values
+     * @param ignoreNaN specifies whether to ignore NaN values
+     * @return number of distinct values, or Double.NaN if the sample contains
+     *         NaN values and {@code ignoreNaN} is {@code false}
+     */
+    public static double variety(Double[] values, boolean ignoreNaN) {
         if (values == null) {
-            return Double.NaN;
+            return 0;
         }
-        
-        List<Double> list = CollectionFactory.list();
-        list.addAll(Arrays.asList(values));
-        if (ignoreNaN) {
-            while (list.remove(Double.NaN)) /* deliberately empty */ ;
+
+        double[] data = new double[values.length];
+        int n = 0;
+        for (Double value : values) {
+            if (value == null || value.isNaN()) {
+                if (!ignoreNaN) {
+                    return Double.NaN;
+                }
+            } else {
+                data[n++] = value;
+            }
         }
-        
-        if (list.isEmpty()) {
+
+        Arrays.sort(data, 0, n);
+        int variety = 0;
+        for (int i = 0; i < n; i = runEnd(data, i, n)) {
+            variety++;
+        }
+        return variety;
+    }
+
+    /**
+     * Finds the most or least frequent value, using the tie-break
+     * rules described for {@link #mode(Double[], boolean)}.
+     */
+    private static double frequencyValue(Double[] values, boolean ignoreNaN, boolean most) {
+        if (values == null) {
             return Double.NaN;
-        } else if (list.size() == 1) {
-            return list.get(0);
         }
-        
-        Collections.sort(list);
-        
-        List<Double> uniqueValues = CollectionFactory.list();
-        List<Integer> freq = CollectionFactory.list();
-        
-        Double curVal = list.get(0);
-        int curFreq = 1;
-        int maxFreq = 1;
-        
-        for (int i = 1; i < list.size(); i++) {
-            if (CompareOp.aequal(curVal, list.get(i))) {
-                curFreq++ ;
+
+        double[] data = new double[values.length];
+        int n = 0;
+        int numNaN = 0;
+        for (Double value : values) {
+            if (value == null || value.isNaN()) {
+                numNaN++;
             } else {
-                uniqueValues.add(curVal);
-                freq.add(curFreq);
-                curVal = list.get(i);
-                if (curFreq > maxFreq) maxFreq = curFreq;
-                curFreq = 1;
+                data[n++] = value;
             }
         }
-        uniqueValues.add(curVal);
-        freq.add(curFreq);
-        if (curFreq > maxFreq) maxFreq = curFreq;
-        
-        List<Integer> maxFreqIndices = CollectionFactory.list();
-        int k = 0;
-        for (Integer f : freq) {
-            if (f == maxFreq) {
-                maxFreqIndices.add(k);
+        if (ignoreNaN) {
+            numNaN = 0;
+        }
+        if (n + numNaN == 0) {
+            return Double.NaN;
+        }
+
+        Arrays.sort(data, 0, n);
+
+        // find the target frequency and the number of values having it;
+        // NaN values, if not ignored, each have frequency 1
+        int target = numNaN > 0 ? 1 : (most ? 0 : Integer.MAX_VALUE);
+        int numTied = numNaN;
+        for (int i = 0; i < n; ) {
+            int end = runEnd(data, i, n);
+            int freq = end - i;
+            if (most ? freq > target : freq < target) {
+                target = freq;
+                numTied = 1;
+            } else if (freq == target) {
+                numTied++;
             }
-            k++ ;
+            i = end;
         }
-        
-        if (maxFreqIndices.size() == 1) {
-            return uniqueValues.get(maxFreqIndices.get(0));
+
+        int k = (numTied - 1) / 2;
+        for (int i = 0; i < n; ) {
+            int end = runEnd(data, i, n);
+            if (end - i == target && k-- == 0) {
+                return data[i];
+            }
+            i = end;
         }
 
-        boolean even = maxFreqIndices.size() % 2 == 0;
-        int i = maxFreqIndices.size() / 2;
-        if (even) i-- ;
-        return uniqueValues.get(maxFreqIndices.get(i));
+        // the selected value is one of the NaN values
+        return Double.NaN;
+    }
+
+    /**
+     * Finds the end of the run of approximately equal values
+     * starting at index {@code start} in sorted data.
+     */
+    private static int runEnd(double[] data, int start, int n) {
+        int end = start + 1;
+        while (end < n && CompareOp.aequal(data[start], data[end])) {
+            end++;
+        }
+        return end;
     }
 
     /**
@@ -0,0 +1,236 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.Arrays;
+
+/**
+ * Selection of order statistics from primitive arrays. The methods use
+ * quickselect with median-of-three pivots, which runs in linear expected
+ * time, and fall back to sorting the remaining partition if the
+ * recursion depth suggests a pathological input (introselect).
+ * <p>
+ * Arrays must not contain NaN values.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+final class Selection {
+
+    /* Partitions at or below this size are finished by insertion sort */
+    private static final int INSERTION_THRESHOLD = 16;
+
+    private Selection() {
+    }
+
+    /**
+     * Rearranges the elements of {@code a[from, to)} so that the element
+     * at index {@code k} is the one that would be there if the range
+     * was sorted, with no greater element before it and no lesser
+     * element after it.
+     *
+     * @param a the data
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     * @param k the index to select; {@code from <= k < to}
+     * @return the selected value
+     */
+    static double select(double[] a, int from, int to, int k) {
+        int lo = from;
+        int hi = to - 1;
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+
+        while (hi - lo > INSERTION_THRESHOLD) {
+            if (--depth < 0) {
+                Arrays.sort(a, lo, hi + 1);
+                return a[k];
+            }
+
+            // median of three, leaving sentinels at lo and hi
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < a[lo]) {
+                swap(a, lo, mid);
+            }
+            if (a[hi] < a[lo]) {
+                swap(a, lo, hi);
+            }
+            if (a[hi] < a[mid]) {
+                swap(a, mid, hi);
+            }
+            double pivot = a[mid];
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (a[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(a, i++, j--);
+                }
+            }
+
+            // elements between j and i are equal to the pivot
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return a[k];
+            }
+        }
+
+        for (int i = lo + 1; i <= hi; i++) {
+            double v = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > v) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+        return a[k];
+    }
+
+    /**
+     * Float version of {@link #select(double[], int, int, int)}.
+     *
+     * @param a the data
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     * @param k the index to select; {@code from <= k < to}
+     * @return the selected value
+     */
+    static float select(float[] a, int from, int to, int k) {
+        int lo = from;
+        int hi = to - 1;
+        int depth = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+
+        while (hi - lo > INSERTION_THRESHOLD) {
+            if (--depth < 0) {
+                Arrays.sort(a, lo, hi + 1);
+                return a[k];
+            }
+
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < a[lo]) {
+                swap(a, lo, mid);
+            }
+            if (a[hi] < a[lo]) {
+                swap(a, lo, hi);
+            }
+            if (a[hi] < a[mid]) {
+                swap(a, mid, hi);
+            }
+            float pivot = a[mid];
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (a[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(a, i++, j--);
+                }
+            }
+
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return a[k];
+            }
+        }
+
+        for (int i = lo + 1; i <= hi; i++) {
+            float v = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > v) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+        return a[k];
+    }
+
+    /**
+     * Gets the largest value in {@code a[from, to)}.
+     *
+     * @param a the data
+     * @param from first index (inclusive)
+     * @param to last index (exclusive); must be greater than {@code from}
+     * @return the maximum value
+     */
+    static double max(double[] a, int from, int to) {
+        double max = a[from];
+        for (int i = from + 1; i < to; i++) {
+            if (a[i] > max) {
+                max = a[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Float version of {@link #max(double[], int, int)}.
+     *
+     * @param a the data
+     * @param from first index (inclusive)
+     * @param to last index (exclusive); must be greater than {@code from}
+     * @return the maximum value
+     */
+    static float max(float[] a, int from, int to) {
+        float max = a[from];
+        for (int i = from + 1; i < to; i++) {
+            if (a[i] > max) {
+                max = a[i];
+            }
+        }
+        return max;
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    private static void swap(float[] a, int i, int j) {
+        float t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
@@ -65,7 +65,49 @@ public enum Statistic {
     SUM("sum", "sum of valid values", true),
     
     /** Sample variance */
-    VARIANCE("variance", "sample variance", false);
+    VARIANCE("variance", "sample variance", false),
+
+    /** 5th percentile. Approximate when used with {@linkplain StreamingSampleStats}. */
+    PERCENTILE_5("p5", "5th percentile", 0.05),
+
+    /** 10th percentile. Approximate when used with {@linkplain StreamingSampleStats}. */
+    PERCENTILE_10("p10", "10th percentile", 0.10),
+
+    /** 25th percentile (lower quartile). Approximate when used with {@linkplain StreamingSampleStats}. */
+    PERCENTILE_25("p25", "25th percentile", 0.25),
+
+    /** 75th percentile (upper quartile). Approximate when used with {@linkplain StreamingSampleStats}. */
+    PERCENTILE_75("p75", "75th percentile", 0.75),
+
+    /** 90th percentile. Approximate when used with {@linkplain StreamingSampleStats}. */
+    PERCENTILE_90("p90", "90th percentile", 0.90),
+
+    /** 95th percentile. Approximate when used with {@linkplain StreamingSampleStats}. */
+    PERCENTILE_95("p95", "95th percentile", 0.95),
+
+    /**
+     * Frequency table of sample values. The value of this statistic is the
+     * number of distinct values, or of non-empty bins if bins were specified;
+     * the counts are available from {@linkplain HistogramProcessor}.
+     */
+    HISTOGRAM("histogram", "frequency table of sample values", true),
+
+    /** Most frequent value (majority) */
+    MODE("mode", "most frequent value", true),
+
+    /** Least frequent value (minority) */
+    MINORITY("minority", "least frequent value", true),
+
+    /** Number of distinct values */
+    VARIETY("variety", "number of distinct values", true),
+
+    /**
+     * Approximate number of distinct values, calculated with bounded memory by
+     * a {@linkplain DistinctCounter}. The count is exact for small numbers of
+     * distinct values. When not used with {@linkplain StreamingSampleStats}
+     * this is the same as {@link #VARIETY}.
+     */
+    APPROX_VARIETY("approx. variety", "approximate number of distinct values", true);
 
     private static final Map<String, Statistic> lookup;
     static {
@@ -78,6 +120,7 @@ public enum Statistic {
     private String name;
     private String desc;
     private boolean supportsIntResult;
+    private double quantile;
 
     /**
      * Private constructor
@@ -86,6 +129,18 @@ public enum Statistic {
         this.name = name;
         this.desc = desc;
         this.supportsIntResult = supportsIntResult;
+        this.quantile = Double.NaN;
+    }
+
+    /**
+     * Private constructor for quantile statistics. The result is
+     * always a sample value so integral results are supported.
+     */
+    private Statistic(String name, String desc, double quantile) {
+        this.name = name;
+        this.desc = desc;
+        this.supportsIntResult = true;
+        this.quantile = quantile;
     }
 
     /**
@@ -115,6 +170,28 @@ public enum Statistic {
         return supportsIntResult;
     }
 
+    /**
+     * Tests if this statistic is a quantile of the sample
+     * distribution, such as {@link #PERCENTILE_95}.
+     *
+     * @return {@code true} if this is a quantile statistic
+     */
+    public boolean isQuantile() {
+        return !Double.isNaN(quantile);
+    }
+
+    /**
+     * Gets the probability, between 0 and 1, for a quantile statistic.
+     * For example, {@code PERCENTILE_95.getQuantile()} returns 0.95.
+     *
+     * @return the probability or {@code Double.NaN} if this is not
+     *         a quantile statistic
+     * @see #isQuantile()
+     */
+    public double getQuantile() {
+        return quantile;
+    }
+
     /**
      * Gets a Statistic constant by name (case-insensitive).
      * 
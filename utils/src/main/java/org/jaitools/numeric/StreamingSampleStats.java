@@ -51,6 +51,9 @@ import org.jaitools.CollectionFactory;
  * </blockquote>
  * This is requested with Statistic.APPROX_MEDIAN.
  * <p>
+ * Percentiles, such as Statistic.PERCENTILE_95, are estimated from a
+ * bounded-memory {@linkplain QuantileSketch} of the data stream.
+ * <p>
  * Note: the 'remedian' estimator performs badly with non-stationary data, e.g. a
  * data stream that is monotonically increasing will result in an estimate for the
  * median that is too high. If possible, it is best to de-trend or randomly order
@@ -97,6 +100,16 @@ public class StreamingSampleStats {
     private List<Range<Double>> noDataRanges;
     private final Range.Type rangesType;
 
+    /*
+     * Work space for offering arrays of samples: values are filtered once
+     * into the accepted buffer which is then given to each processor
+     */
+    private double[] acceptedBuffer;
+    private final int[] filterCounts = new int[2];
+    private boolean filterChecked;
+    private boolean filterShared;
+    private long filterModCount;
+
     /**
      * Creates a new sampler and sets the default range type to 
      * {@link Range.Type#EXCLUDE}.
@@ -135,6 +148,7 @@ public class StreamingSampleStats {
                 LOGGER.log(Level.SEVERE, "Unsupported Statistic: {0}", stat);
             } else {
                 processors.add(p);
+                filterChecked = false;
 
                 // apply cached excluded ranges to the new processor
                 for (Range<Double> range : ranges) {
@@ -189,6 +203,7 @@ public class StreamingSampleStats {
         for (Processor p : processors) {
             p.addNoDataRange(noData);
         }
+        filterChecked = false;
     }
 
     /**
@@ -217,6 +232,7 @@ public class StreamingSampleStats {
         for (Processor p : processors) {
             p.addRange(range);
         }
+        filterChecked = false;
     }
 
     /**
@@ -232,6 +248,7 @@ public class StreamingSampleStats {
             p.addRange(range, rangesType);
         }
         ranges.add(new Range<Double>(range));
+        filterChecked = false;
     }
 
     /**
@@ -270,6 +287,20 @@ public class StreamingSampleStats {
         return p.get(stat);
     }
 
+    /**
+     * Gets the processor which calculates a statistic. This allows
+     * processor-specific settings, such as the accuracy of a
+     * {@linkplain QuantileSketchProcessor}, to be changed and gives
+     * access to any results beyond those defined by {@code Statistic}.
+     *
+     * @param stat the statistic
+     *
+     * @return the processor or {@code null} if the statistic is not set
+     */
+    public Processor getProcessor(Statistic stat) {
+        return findProcessor(stat);
+    }
+
     /**
      * Gets the number of sample values that have been accepted for the
      * specified {@code Statistic}.
@@ -373,6 +404,18 @@ public class StreamingSampleStats {
         }
     }
 
+    /**
+     * Offers a primitive sample value. This is equivalent to
+     * {@link #offer(Double)} but avoids boxing the value.
+     *
+     * @param sample the sample value
+     */
+    public void offer(double sample) {
+        for (int i = 0, n = processors.size(); i < n; i++) {
+            processors.get(i).offer(sample);
+        }
+    }
+
     /**
      * Offers an array of sample values.
      *
@@ -384,6 +427,153 @@ public class StreamingSampleStats {
         }
     }
 
+    /**
+     * Offers consecutive values from an array of primitive samples,
+     * for example a row of image data. This is the fastest way to offer
+     * large numbers of samples: NaN, NoData and range tests are applied once
+     * to the whole strip of values, rather than by each processor in turn, and
+     * the accepted values are then passed to each processor as an array.
+     *
+     * @param samples the sample values
+     * @param offset index of the first value to offer
+     * @param length number of values to offer
+     *
+     * @throws IndexOutOfBoundsException if {@code offset} and {@code length}
+     *         do not describe a valid portion of {@code samples}
+     */
+    public void offer(double[] samples, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > samples.length) {
+            throw new IndexOutOfBoundsException(
+                    "offset and length must lie within the samples array");
+        }
+
+        final int numProcessors = processors.size();
+        if (numProcessors == 0 || length == 0) {
+            return;
+        }
+
+        if (!canShareFilter()) {
+            for (int i = 0; i < numProcessors; i++) {
+                processors.get(i).offer(samples, offset, length);
+            }
+            return;
+        }
+
+        if (acceptedBuffer == null || acceptedBuffer.length < length) {
+            acceptedBuffer = new double[length];
+        }
+
+        int n = ((AbstractProcessor) processors.get(0)).selectAccepted(
+                samples, offset, length, acceptedBuffer, filterCounts);
+
+        for (int i = 0; i < numProcessors; i++) {
+            ((AbstractProcessor) processors.get(i)).offerAccepted(
+                    acceptedBuffer, n, length, filterCounts[0], filterCounts[1]);
+        }
+    }
+
+    /**
+     * Merges the statistics calculated by another sampler into this one.
+     * Afterwards this sampler gives the same results, apart from differences
+     * due to rounding or approximation, as if it had been offered all of the
+     * samples offered to both samplers. A typical use is to calculate
+     * statistics for separate parts of an image, such as tiles, in
+     * parallel and then combine them:
+     * <pre><code>
+     * StreamingSampleStats total = partResults.get(0);
+     * for (int i = 1; i &lt; partResults.size(); i++) {
+     *     total.merge(partResults.get(i));
+     * }
+     * </code></pre>
+     * The other sampler must have the same statistics set and the same
+     * NoData and include / exclude ranges. It is not changed by the merge.
+     * If it is not compatible, or any of the processors does not
+     * {@linkplain Processor#supportsMerge() support merging}, an exception
+     * is thrown and this sampler is left unchanged.
+     *
+     * @param other the sampler to merge into this one
+     *
+     * @throws IllegalArgumentException if {@code other} is {@code null}, this
+     *         sampler, or has different statistics or ranges
+     * @throws UnsupportedOperationException if a processor does not support merging
+     */
+    public void merge(StreamingSampleStats other) {
+        if (other == null) {
+            throw new IllegalArgumentException("other sampler must not be null");
+        }
+        if (other == this) {
+            throw new IllegalArgumentException("cannot merge a sampler with itself");
+        }
+        if (!getStatistics().equals(other.getStatistics())) {
+            throw new IllegalArgumentException("cannot merge samplers with different statistics");
+        }
+
+        // check all processors before changing any of them
+        List<Processor> others = CollectionFactory.list();
+        for (Processor p : processors) {
+            if (!p.supportsMerge()) {
+                throw new UnsupportedOperationException(
+                        p.getClass().getName() + " does not support merging");
+            }
+
+            Processor op = other.findProcessor(p.getSupported().iterator().next());
+            if (p instanceof AbstractProcessor) {
+                ((AbstractProcessor) p).checkMergeable(op);
+            }
+            others.add(op);
+        }
+
+        for (int i = 0; i < processors.size(); i++) {
+            processors.get(i).merge(others.get(i));
+        }
+    }
+
+    /**
+     * Tests whether samples can be filtered once on behalf of all processors.
+     * This is the case when each processor is derived from
+     * {@code AbstractProcessor} and all have the same ranges, which will be
+     * so unless ranges were added with differing types. The check is repeated
+     * if the ranges of any processor have since been modified, e.g. via
+     * {@link #getProcessor(Statistic)}.
+     *
+     * @return {@code true} if the filter can be shared
+     */
+    private boolean canShareFilter() {
+        long modCount = getRangesModCount();
+        if (!filterChecked || modCount != filterModCount) {
+            Processor first = processors.get(0);
+            filterShared = true;
+            for (Processor p : processors) {
+                if (!(p instanceof AbstractProcessor) ||
+                        p.getRangesType() != first.getRangesType() ||
+                        !p.getRanges().equals(first.getRanges()) ||
+                        !p.getNoDataRanges().equals(first.getNoDataRanges())) {
+                    filterShared = false;
+                    break;
+                }
+            }
+            filterChecked = true;
+            filterModCount = modCount;
+        }
+
+        return filterShared;
+    }
+
+    /**
+     * Sums the ranges modification counts of the processors.
+     *
+     * @return the combined count
+     */
+    private long getRangesModCount() {
+        long n = 0;
+        for (Processor p : processors) {
+            if (p instanceof AbstractProcessor) {
+                n += ((AbstractProcessor) p).getRangesModCount();
+            }
+        }
+        return n;
+    }
+
     /**
      * Searches the list of {@code Processors} for one that supports
      * the given {@code Statistic}.
@@ -43,7 +43,7 @@ public class SumProcessor extends AbstractProcessor {
 
     private static final Set<Statistic> SUPPORTED = Collections.singleton(Statistic.SUM);
 
-    Double sum = 0.0;
+    private double sum = 0.0;
 
     /**
      * {@inheritDoc}
@@ -55,7 +55,7 @@ public class SumProcessor extends AbstractProcessor {
     /**
      * {@inheritDoc}
      */
-    protected boolean update(Double sample) {
+    protected boolean update(double sample) {
     	if (isAccepted(sample)) {
             sum += sample;
             return true;
@@ -64,6 +64,36 @@ public class SumProcessor extends AbstractProcessor {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int updateAccepted(double[] samples, int offset, int length) {
+        double total = sum;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            total += samples[i];
+        }
+        sum = total;
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsMerge() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long mergeData(AbstractProcessor other) {
+        sum += ((SumProcessor) other).sum;
+        return other.getNumAccepted();
+    }
+
     /**
      * {@inheritDoc}
      */
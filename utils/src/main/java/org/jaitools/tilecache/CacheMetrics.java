@@ -0,0 +1,135 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead counters and latency recorders used by {@linkplain DiskMemTileCache}.
+ * All fields can be updated concurrently without locking. Resetting while
+ * other threads are recording is not atomic, so a snapshot taken straight
+ * after a reset may include a few events from before it.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+final class CacheMetrics {
+
+    /**
+     * Records latencies into power-of-2 buckets.
+     */
+    static final class LatencyRecorder {
+        private final LongAdder[] buckets;
+        private final LongAdder total = new LongAdder();
+
+        LatencyRecorder() {
+            buckets = new LongAdder[LatencyHistogram.NUM_BUCKETS];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            buckets[LatencyHistogram.bucketFor(nanos)].increment();
+            total.add(Math.max(0, nanos));
+        }
+
+        LatencyHistogram snapshot() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return new LatencyHistogram(counts, total.sum());
+        }
+
+        void reset() {
+            for (LongAdder b : buckets) {
+                b.reset();
+            }
+            total.reset();
+        }
+    }
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder notCached = new LongAdder();
+    final LongAdder diskReads = new LongAdder();
+    final LongAdder diskWrites = new LongAdder();
+    final LongAdder bytesSwappedIn = new LongAdder();
+    final LongAdder bytesSwappedOut = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+    final LongAdder lockWaits = new LongAdder();
+    final LongAdder lockWaitNanos = new LongAdder();
+
+    final LatencyRecorder getTileLatency = new LatencyRecorder();
+    final LatencyRecorder readLatency = new LatencyRecorder();
+
+    /**
+     * Records a tile write.
+     *
+     * @param numBytes size of the tile data
+     */
+    void recordWrite(long numBytes) {
+        diskWrites.increment();
+        bytesSwappedOut.add(numBytes);
+    }
+
+    /**
+     * Records a tile read.
+     *
+     * @param numBytes size of the tile data
+     * @param nanos time taken
+     */
+    void recordRead(long numBytes, long nanos) {
+        diskReads.increment();
+        bytesSwappedIn.add(numBytes);
+        readLatency.record(nanos);
+    }
+
+    /**
+     * Records time spent waiting for a lock that was not immediately available.
+     *
+     * @param nanos time spent waiting
+     */
+    void recordLockWait(long nanos) {
+        lockWaits.increment();
+        lockWaitNanos.add(nanos);
+    }
+
+    /**
+     * Resets all counters and latency recorders to zero.
+     */
+    void reset() {
+        for (LongAdder a : new LongAdder[] {hits, misses, notCached, diskReads, diskWrites,
+                bytesSwappedIn, bytesSwappedOut, evictions, lockWaits, lockWaitNanos}) {
+            a.reset();
+        }
+        getTileLatency.reset();
+        readLatency.reset();
+    }
+
+}
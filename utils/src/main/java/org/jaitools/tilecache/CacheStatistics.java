@@ -0,0 +1,288 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+/**
+ * A snapshot of the activity counters and state of a {@linkplain DiskMemTileCache}.
+ * Counters accumulate from when the cache was created, or last reset with
+ * {@linkplain DiskMemTileCache#resetStatistics()}. They are maintained 
+ * continuously at low cost, unlike the per-tile messages sent to observers
+ * in diagnostic mode.
+ * <p>
+ * Example:
+ * <pre><code>
+ *     CacheStatistics stats = cache.getStatistics();
+ *     System.out.println("hit ratio: " + stats.getHitRatio());
+ *     System.out.println("getTile 99th percentile (ns): " + 
+ *             stats.getTileLatency().getPercentileNanos(99));
+ * </code></pre>
+ *
+ * @see DiskMemTileCache#getStatistics()
+ * @see DiskMemTileCacheMXBean
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public final class CacheStatistics {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long notCachedCount;
+    private final long diskReadCount;
+    private final long diskWriteCount;
+    private final long bytesSwappedIn;
+    private final long bytesSwappedOut;
+    private final long evictionCount;
+    private final long lockWaitCount;
+    private final long lockWaitNanos;
+    private final LatencyHistogram getTileLatency;
+    private final LatencyHistogram readLatency;
+
+    private final int numTiles;
+    private final int numResidentTiles;
+    private final int numPendingWrites;
+    private final long currentMemory;
+    private final long memoryCapacity;
+
+    /**
+     * Creates a snapshot.
+     */
+    CacheStatistics(CacheMetrics metrics, int numTiles, int numResidentTiles,
+            int numPendingWrites, long currentMemory, long memoryCapacity) {
+
+        hitCount = metrics.hits.sum();
+        missCount = metrics.misses.sum();
+        notCachedCount = metrics.notCached.sum();
+        diskReadCount = metrics.diskReads.sum();
+        diskWriteCount = metrics.diskWrites.sum();
+        bytesSwappedIn = metrics.bytesSwappedIn.sum();
+        bytesSwappedOut = metrics.bytesSwappedOut.sum();
+        evictionCount = metrics.evictions.sum();
+        lockWaitCount = metrics.lockWaits.sum();
+        lockWaitNanos = metrics.lockWaitNanos.sum();
+        getTileLatency = metrics.getTileLatency.snapshot();
+        readLatency = metrics.readLatency.snapshot();
+
+        this.numTiles = numTiles;
+        this.numResidentTiles = numResidentTiles;
+        this.numPendingWrites = numPendingWrites;
+        this.currentMemory = currentMemory;
+        this.memoryCapacity = memoryCapacity;
+    }
+
+    /**
+     * Gets the number of {@code getTile} requests served from memory.
+     *
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of {@code getTile} requests for cached tiles which
+     * were not resident in memory.
+     *
+     * @return number of misses
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the number of {@code getTile} requests for tiles which were
+     * not in the cache.
+     *
+     * @return number of requests for uncached tiles
+     */
+    public long getNotCachedCount() {
+        return notCachedCount;
+    }
+
+    /**
+     * Gets the total number of {@code getTile} requests.
+     *
+     * @return number of requests
+     */
+    public long getRequestCount() {
+        return hitCount + missCount + notCachedCount;
+    }
+
+    /**
+     * Gets the proportion of {@code getTile} requests served from memory.
+     *
+     * @return hit ratio between 0 and 1 (0 if there have been no requests)
+     */
+    public double getHitRatio() {
+        long n = getRequestCount();
+        return n == 0 ? 0 : (double) hitCount / n;
+    }
+
+    /**
+     * Gets the number of times tile data were read from disk (or other
+     * tile store) into memory.
+     *
+     * @return number of reads
+     */
+    public long getDiskReadCount() {
+        return diskReadCount;
+    }
+
+    /**
+     * Gets the number of times tile data were written to disk (or other
+     * tile store).
+     *
+     * @return number of writes
+     */
+    public long getDiskWriteCount() {
+        return diskWriteCount;
+    }
+
+    /**
+     * Gets the volume of tile data read into memory, before any decoding.
+     *
+     * @return uncompressed bytes read
+     */
+    public long getBytesSwappedIn() {
+        return bytesSwappedIn;
+    }
+
+    /**
+     * Gets the volume of tile data written out of memory, before any encoding.
+     *
+     * @return uncompressed bytes written
+     */
+    public long getBytesSwappedOut() {
+        return bytesSwappedOut;
+    }
+
+    /**
+     * Gets the number of tiles removed from memory to make space for others.
+     *
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the number of times a thread had to wait for one of the cache's
+     * locks.
+     *
+     * @return number of contended lock acquisitions
+     */
+    public long getLockWaitCount() {
+        return lockWaitCount;
+    }
+
+    /**
+     * Gets the total time threads have spent waiting for the cache's locks.
+     *
+     * @return wait time in nanoseconds
+     */
+    public long getLockWaitNanos() {
+        return lockWaitNanos;
+    }
+
+    /**
+     * Gets the histogram of {@code getTile} latencies. This covers all
+     * requests for cached tiles, whether served from memory or disk.
+     *
+     * @return latency histogram
+     */
+    public LatencyHistogram getTileLatency() {
+        return getTileLatency;
+    }
+
+    /**
+     * Gets the histogram of latencies for reading tile data from disk.
+     *
+     * @return latency histogram
+     */
+    public LatencyHistogram getReadLatency() {
+        return readLatency;
+    }
+
+    /**
+     * Gets the number of tiles in the cache.
+     *
+     * @return number of tiles
+     */
+    public int getNumTiles() {
+        return numTiles;
+    }
+
+    /**
+     * Gets the number of tiles resident in memory.
+     *
+     * @return number of resident tiles
+     */
+    public int getNumResidentTiles() {
+        return numResidentTiles;
+    }
+
+    /**
+     * Gets the number of tiles waiting to be written to disk.
+     *
+     * @return number of pending writes
+     */
+    public int getNumPendingWrites() {
+        return numPendingWrites;
+    }
+
+    /**
+     * Gets the memory used by resident tiles.
+     *
+     * @return memory in bytes
+     */
+    public long getCurrentMemory() {
+        return currentMemory;
+    }
+
+    /**
+     * Gets the memory capacity of the cache.
+     *
+     * @return memory capacity in bytes
+     */
+    public long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "CacheStatistics[hits=%d misses=%d notCached=%d hitRatio=%.3f " +
+                "reads=%d writes=%d bytesIn=%d bytesOut=%d evictions=%d " +
+                "lockWaits=%d lockWaitNanos=%d getTile={%s} read={%s} " +
+                "tiles=%d resident=%d pendingWrites=%d memory=%d/%d]",
+                hitCount, missCount, notCachedCount, getHitRatio(),
+                diskReadCount, diskWriteCount, bytesSwappedIn, bytesSwappedOut, evictionCount,
+                lockWaitCount, lockWaitNanos, getTileLatency, readLatency,
+                numTiles, numResidentTiles, numPendingWrites, currentMemory, memoryCapacity);
+    }
+
+}
@@ -0,0 +1,135 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An {@linkplain EvictionPolicy} implementing the CLOCK (second chance)
+ * approximation of LRU. Resident tiles are arranged in a ring with a
+ * reference flag for each. Accessing a tile just sets its flag, without
+ * any locking, which makes this policy well suited to many threads reading
+ * resident tiles. When a victim is required the clock hand sweeps the ring,
+ * clearing flags, until it finds a tile whose flag is not set.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class ClockEvictionPolicy implements EvictionPolicy {
+
+    private static final class Node {
+        final DiskCachedTile tile;
+        Node prev;
+        Node next;
+        volatile boolean referenced;
+
+        Node(DiskCachedTile tile) {
+            this.tile = tile;
+        }
+    }
+
+    private final Map<DiskCachedTile, Node> nodes = new ConcurrentHashMap<DiskCachedTile, Node>();
+    private Node hand;
+
+    /**
+     * {@inheritDoc}
+     * The tile is inserted just behind the clock hand so that it
+     * will be the last to be examined.
+     */
+    public void tileAdded(DiskCachedTile tile) {
+        Node node = new Node(tile);
+        if (hand == null) {
+            node.prev = node;
+            node.next = node;
+            hand = node;
+        } else {
+            node.next = hand;
+            node.prev = hand.prev;
+            hand.prev.next = node;
+            hand.prev = node;
+        }
+        nodes.put(tile, node);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void tileAccessed(DiskCachedTile tile) {
+        Node node = nodes.get(tile);
+        if (node != null) {
+            node.referenced = true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void tileRemoved(DiskCachedTile tile) {
+        Node node = nodes.remove(tile);
+        if (node != null) {
+            if (node.next == node) {
+                hand = null;
+            } else {
+                node.prev.next = node.next;
+                node.next.prev = node.prev;
+                if (hand == node) {
+                    hand = node.next;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DiskCachedTile nextVictim() {
+        if (hand == null) {
+            return null;
+        }
+
+        /*
+         * Other threads can set flags while we sweep so we limit
+         * the search to two turns of the clock
+         */
+        int maxSteps = 2 * nodes.size();
+        for (int i = 0; i < maxSteps && hand.referenced; i++) {
+            hand.referenced = false;
+            hand = hand.next;
+        }
+        return hand.tile;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear() {
+        nodes.clear();
+        hand = null;
+    }
+
+}
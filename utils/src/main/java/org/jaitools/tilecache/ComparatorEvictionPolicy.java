@@ -0,0 +1,129 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.media.jai.CachedTile;
+
+/**
+ * An {@linkplain EvictionPolicy} which ranks resident tiles with a
+ * {@code Comparator}, as used with 
+ * {@linkplain DiskMemTileCache#setTileComparator(Comparator)}. Tiles are
+ * ordered from highest to lowest priority and the last tile is the victim.
+ * <p>
+ * Because a comparator can use any tile property, the tiles must be
+ * re-sorted before choosing a victim whenever tiles have been added or
+ * accessed. This is much slower than the other policies when there are many
+ * resident tiles and is provided for compatibility with custom comparators.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class ComparatorEvictionPolicy implements EvictionPolicy {
+
+    private final Comparator<? super CachedTile> comparator;
+    private final List<DiskCachedTile> tiles;
+    private volatile boolean sorted;
+
+    /**
+     * Creates a new policy.
+     *
+     * @param comparator the comparator used to rank tiles
+     */
+    public ComparatorEvictionPolicy(Comparator<? super CachedTile> comparator) {
+        if (comparator == null) {
+            throw new IllegalArgumentException("comparator must not be null");
+        }
+        this.comparator = comparator;
+        this.tiles = new ArrayList<DiskCachedTile>();
+        this.sorted = true;
+    }
+
+    /**
+     * Gets the comparator used by this policy.
+     *
+     * @return the comparator
+     */
+    public Comparator<? super CachedTile> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void tileAdded(DiskCachedTile tile) {
+        tiles.add(tile);
+        sorted = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void tileAccessed(DiskCachedTile tile) {
+        sorted = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void tileRemoved(DiskCachedTile tile) {
+        if (!tiles.isEmpty() && tiles.get(tiles.size() - 1) == tile) {
+            // the usual case: removing the last victim
+            tiles.remove(tiles.size() - 1);
+        } else {
+            tiles.remove(tile);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized DiskCachedTile nextVictim() {
+        if (tiles.isEmpty()) {
+            return null;
+        }
+
+        if (!sorted) {
+            sorted = true;
+            Collections.sort(tiles, comparator);
+        }
+        return tiles.get(tiles.size() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        sorted = true;
+    }
+
+}
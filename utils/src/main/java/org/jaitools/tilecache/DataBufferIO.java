@@ -0,0 +1,339 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Helper methods to copy tile data between the bank arrays of a
+ * {@code DataBuffer} and a {@code ByteBuffer}. Banks are
+ * written one after another, each with {@code DataBuffer.getSize()} elements,
+ * in the byte order of the {@code ByteBuffer}.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public final class DataBufferIO {
+
+    private DataBufferIO() {
+    }
+
+    /**
+     * Gets the number of bytes required to hold the data.
+     *
+     * @param dataType data type
+     * @param numBanks number of banks
+     * @param size number of elements per bank
+     *
+     * @return number of bytes
+     */
+    public static long byteSize(int dataType, int numBanks, int size) {
+        return (long) DataBuffer.getDataTypeSize(dataType) / 8 * size * numBanks;
+    }
+
+    /**
+     * Copies data from bank arrays into a buffer starting at its
+     * current position. On return the buffer is positioned after 
+     * the last byte written.
+     *
+     * @param buf destination buffer
+     * @param data source data
+     */
+    public static void put(ByteBuffer buf, DataBuffer data) {
+        final int numBanks = data.getNumBanks();
+        final int size = data.getSize();
+
+        switch (data.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                for (int i = 0; i < numBanks; i++) {
+                    buf.put(((DataBufferByte) data).getData(i), 0, size);
+                }
+                break;
+
+            case DataBuffer.TYPE_DOUBLE:
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asDoubleBuffer().put(((DataBufferDouble) data).getData(i), 0, size);
+                    buf.position(buf.position() + size * 8);
+                }
+                break;
+
+            case DataBuffer.TYPE_FLOAT:
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asFloatBuffer().put(((DataBufferFloat) data).getData(i), 0, size);
+                    buf.position(buf.position() + size * 4);
+                }
+                break;
+
+            case DataBuffer.TYPE_INT:
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asIntBuffer().put(((DataBufferInt) data).getData(i), 0, size);
+                    buf.position(buf.position() + size * 4);
+                }
+                break;
+
+            case DataBuffer.TYPE_SHORT:
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asShortBuffer().put(((DataBufferShort) data).getData(i), 0, size);
+                    buf.position(buf.position() + size * 2);
+                }
+                break;
+
+            case DataBuffer.TYPE_USHORT:
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asShortBuffer().put(((DataBufferUShort) data).getData(i), 0, size);
+                    buf.position(buf.position() + size * 2);
+                }
+                break;
+
+            default:
+                throw new UnsupportedOperationException("Unsupported image data type");
+        }
+    }
+
+    /**
+     * Creates a new {@code DataBuffer} and fills its banks from the buffer
+     * starting at its current position. On return the buffer is positioned
+     * after the last byte read.
+     *
+     * @param buf source buffer
+     * @param dataType data type
+     * @param numBanks number of banks
+     * @param size number of elements per bank
+     *
+     * @return a new {@code DataBuffer}
+     */
+    public static DataBuffer get(ByteBuffer buf, int dataType, int numBanks, int size) {
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE: {
+                byte[][] bankData = new byte[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    buf.get(bankData[i]);
+                }
+                return new DataBufferByte(bankData, size);
+            }
+
+            case DataBuffer.TYPE_DOUBLE: {
+                double[][] bankData = new double[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asDoubleBuffer().get(bankData[i]);
+                    buf.position(buf.position() + size * 8);
+                }
+                return new DataBufferDouble(bankData, size);
+            }
+
+            case DataBuffer.TYPE_FLOAT: {
+                float[][] bankData = new float[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asFloatBuffer().get(bankData[i]);
+                    buf.position(buf.position() + size * 4);
+                }
+                return new DataBufferFloat(bankData, size);
+            }
+
+            case DataBuffer.TYPE_INT: {
+                int[][] bankData = new int[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asIntBuffer().get(bankData[i]);
+                    buf.position(buf.position() + size * 4);
+                }
+                return new DataBufferInt(bankData, size);
+            }
+
+            case DataBuffer.TYPE_SHORT: {
+                short[][] bankData = new short[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asShortBuffer().get(bankData[i]);
+                    buf.position(buf.position() + size * 2);
+                }
+                return new DataBufferShort(bankData, size);
+            }
+
+            case DataBuffer.TYPE_USHORT: {
+                short[][] bankData = new short[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    buf.asShortBuffer().get(bankData[i]);
+                    buf.position(buf.position() + size * 2);
+                }
+                return new DataBufferUShort(bankData, size);
+            }
+
+            default:
+                throw new UnsupportedOperationException("Unsupported image data type");
+        }
+    }
+
+    /**
+     * Creates a new {@code DataBuffer} with every element of each bank
+     * set to the corresponding value.
+     *
+     * @param dataType data type
+     * @param size number of elements per bank
+     * @param values one value per bank, as returned by {@link #getConstantBits}
+     *
+     * @return a new {@code DataBuffer}
+     */
+    static DataBuffer createConstant(int dataType, int size, long[] values) {
+        final int numBanks = values.length;
+
+        switch (dataType) {
+            case DataBuffer.TYPE_BYTE: {
+                byte[][] bankData = new byte[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    Arrays.fill(bankData[i], (byte) values[i]);
+                }
+                return new DataBufferByte(bankData, size);
+            }
+
+            case DataBuffer.TYPE_DOUBLE: {
+                double[][] bankData = new double[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    Arrays.fill(bankData[i], Double.longBitsToDouble(values[i]));
+                }
+                return new DataBufferDouble(bankData, size);
+            }
+
+            case DataBuffer.TYPE_FLOAT: {
+                float[][] bankData = new float[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    Arrays.fill(bankData[i], Float.intBitsToFloat((int) values[i]));
+                }
+                return new DataBufferFloat(bankData, size);
+            }
+
+            case DataBuffer.TYPE_INT: {
+                int[][] bankData = new int[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    Arrays.fill(bankData[i], (int) values[i]);
+                }
+                return new DataBufferInt(bankData, size);
+            }
+
+            case DataBuffer.TYPE_SHORT:
+            case DataBuffer.TYPE_USHORT: {
+                short[][] bankData = new short[numBanks][size];
+                for (int i = 0; i < numBanks; i++) {
+                    Arrays.fill(bankData[i], (short) values[i]);
+                }
+                return dataType == DataBuffer.TYPE_SHORT ?
+                        new DataBufferShort(bankData, size) :
+                        new DataBufferUShort(bankData, size);
+            }
+
+            default:
+                throw new UnsupportedOperationException("Unsupported image data type");
+        }
+    }
+
+    /**
+     * Checks if each bank of the data holds a single repeated value and,
+     * if so, returns the raw bits of those values.
+     *
+     * @param data the data
+     *
+     * @return raw bits of the value for each bank, or {@code null} if
+     *         any bank has more than one distinct value
+     */
+    static long[] getConstantBits(DataBuffer data) {
+        final int numBanks = data.getNumBanks();
+        final int size = data.getSize();
+        long[] values = new long[numBanks];
+        if (size == 0) {
+            return values;
+        }
+
+        for (int b = 0; b < numBanks; b++) {
+            switch (data.getDataType()) {
+                case DataBuffer.TYPE_BYTE: {
+                    byte[] a = ((DataBufferByte) data).getData(b);
+                    byte v = a[0];
+                    for (int i = 1; i < size; i++) {
+                        if (a[i] != v) return null;
+                    }
+                    values[b] = v;
+                }
+                break;
+
+                case DataBuffer.TYPE_DOUBLE: {
+                    double[] a = ((DataBufferDouble) data).getData(b);
+                    long v = Double.doubleToRawLongBits(a[0]);
+                    for (int i = 1; i < size; i++) {
+                        if (Double.doubleToRawLongBits(a[i]) != v) return null;
+                    }
+                    values[b] = v;
+                }
+                break;
+
+                case DataBuffer.TYPE_FLOAT: {
+                    float[] a = ((DataBufferFloat) data).getData(b);
+                    int v = Float.floatToRawIntBits(a[0]);
+                    for (int i = 1; i < size; i++) {
+                        if (Float.floatToRawIntBits(a[i]) != v) return null;
+                    }
+                    values[b] = v;
+                }
+                break;
+
+                case DataBuffer.TYPE_INT: {
+                    int[] a = ((DataBufferInt) data).getData(b);
+                    int v = a[0];
+                    for (int i = 1; i < size; i++) {
+                        if (a[i] != v) return null;
+                    }
+                    values[b] = v;
+                }
+                break;
+
+                case DataBuffer.TYPE_SHORT:
+                case DataBuffer.TYPE_USHORT: {
+                    short[] a = data.getDataType() == DataBuffer.TYPE_SHORT ?
+                            ((DataBufferShort) data).getData(b) :
+                            ((DataBufferUShort) data).getData(b);
+                    short v = a[0];
+                    for (int i = 1; i < size; i++) {
+                        if (a[i] != v) return null;
+                    }
+                    values[b] = v;
+                }
+                break;
+
+                default:
+                    throw new UnsupportedOperationException("Unsupported image data type");
+            }
+        }
+
+        return values;
+    }
+
+}
@@ -0,0 +1,217 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@linkplain TileCodec} which compresses tile data with the JDK's
+ * {@code Deflater}. Tiles in which each band holds a single value, such as
+ * blank tiles of a newly created image, are detected and stored as just those
+ * values. If compression would not reduce the size of a tile, its data are
+ * stored uncompressed.
+ * <p>
+ * The compression level is a trade-off between speed and size. For disk
+ * caching, where tiles are often written more than once, the default level
+ * ({@code Deflater.BEST_SPEED}) is usually the best choice.
+ * <pre><code>
+ * Map&lt;String, Object&gt; params = new HashMap&lt;String, Object&gt;();
+ * params.put(DiskMemTileCache.KEY_TILE_CODEC, new DeflateTileCodec());
+ * DiskMemTileCache cache = new DiskMemTileCache(params);
+ * </code></pre>
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class DeflateTileCodec implements TileCodec {
+
+    /* 
+     * Format tags written as the first byte of encoded data
+     */
+    private static final byte FORMAT_CONSTANT = 0;
+    private static final byte FORMAT_DEFLATE = 1;
+    private static final byte FORMAT_RAW = 2;
+
+    private final int level;
+
+    /**
+     * Creates a new codec using {@code Deflater.BEST_SPEED}.
+     */
+    public DeflateTileCodec() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Creates a new codec.
+     *
+     * @param level compression level from {@code Deflater.BEST_SPEED} (1) to
+     *        {@code Deflater.BEST_COMPRESSION} (9)
+     */
+    public DeflateTileCodec(int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level must be between 1 and 9");
+        }
+        this.level = level;
+    }
+
+    /**
+     * Gets the compression level used by this codec.
+     *
+     * @return compression level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The encoded data are returned as a single-bank {@code DataBufferByte}.
+     */
+    public DataBuffer encode(DataBuffer data) throws IOException {
+        long[] constValues = DataBufferIO.getConstantBits(data);
+        if (constValues != null) {
+            ByteBuffer buf = ByteBuffer.allocate(1 + 8 * constValues.length);
+            buf.put(FORMAT_CONSTANT);
+            for (long v : constValues) {
+                buf.putLong(v);
+            }
+            return new DataBufferByte(buf.array(), buf.capacity());
+        }
+
+        long n = DataBufferIO.byteSize(data.getDataType(), data.getNumBanks(), data.getSize());
+        if (n >= Integer.MAX_VALUE) {
+            throw new IOException("Tile is too large to encode");
+        }
+        final int rawLen = (int) n;
+
+        ByteBuffer raw = ByteBuffer.allocate(rawLen).order(ByteOrder.nativeOrder());
+        DataBufferIO.put(raw, data);
+
+        /*
+         * Compressed output is limited to the uncompressed size. If the 
+         * deflater does not finish within that we store the raw bytes
+         */
+        byte[] out = new byte[rawLen + 1];
+        int outLen = 0;
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw.array());
+            deflater.finish();
+            while (!deflater.finished() && outLen < rawLen) {
+                outLen += deflater.deflate(out, 1 + outLen, rawLen - outLen);
+            }
+
+            if (deflater.finished() && outLen < rawLen) {
+                out[0] = FORMAT_DEFLATE;
+                return new DataBufferByte(out, outLen + 1);
+            }
+
+        } finally {
+            deflater.end();
+        }
+
+        out[0] = FORMAT_RAW;
+        System.arraycopy(raw.array(), 0, out, 1, rawLen);
+        return new DataBufferByte(out, rawLen + 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DataBuffer decode(DataBuffer encoded, int dataType, int numBanks, int size) 
+            throws IOException {
+
+        if (!(encoded instanceof DataBufferByte) || encoded.getSize() < 1) {
+            throw new IOException("Data were not encoded by DeflateTileCodec");
+        }
+
+        final byte[] in = ((DataBufferByte) encoded).getData();
+        final int inLen = encoded.getSize();
+        final int rawLen = (int) DataBufferIO.byteSize(dataType, numBanks, size);
+
+        switch (in[0]) {
+            case FORMAT_CONSTANT: {
+                if (inLen != 1 + 8 * numBanks) {
+                    throw new IOException("Corrupt tile data");
+                }
+                ByteBuffer buf = ByteBuffer.wrap(in, 1, inLen - 1);
+                long[] values = new long[numBanks];
+                for (int i = 0; i < numBanks; i++) {
+                    values[i] = buf.getLong();
+                }
+                return DataBufferIO.createConstant(dataType, size, values);
+            }
+
+            case FORMAT_DEFLATE: {
+                byte[] raw = new byte[rawLen];
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(in, 1, inLen - 1);
+                    int len = 0;
+                    while (len < rawLen && !inflater.finished()) {
+                        int n = inflater.inflate(raw, len, rawLen - len);
+                        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            break;
+                        }
+                        len += n;
+                    }
+                    if (len != rawLen) {
+                        throw new IOException("Corrupt tile data");
+                    }
+
+                } catch (DataFormatException ex) {
+                    throw new IOException("Corrupt tile data", ex);
+
+                } finally {
+                    inflater.end();
+                }
+
+                ByteBuffer buf = ByteBuffer.wrap(raw).order(ByteOrder.nativeOrder());
+                return DataBufferIO.get(buf, dataType, numBanks, size);
+            }
+
+            case FORMAT_RAW: {
+                if (inLen != rawLen + 1) {
+                    throw new IOException("Corrupt tile data");
+                }
+                ByteBuffer buf = ByteBuffer.wrap(in, 1, rawLen).order(ByteOrder.nativeOrder());
+                return DataBufferIO.get(buf, dataType, numBanks, size);
+            }
+
+            default:
+                throw new IOException("Data were not encoded by DeflateTileCodec");
+        }
+    }
+
+}
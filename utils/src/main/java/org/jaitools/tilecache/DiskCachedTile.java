@@ -27,17 +27,10 @@ package org.jaitools.tilecache;
 
 import java.awt.Point;
 import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferByte;
-import java.awt.image.DataBufferDouble;
-import java.awt.image.DataBufferFloat;
-import java.awt.image.DataBufferInt;
-import java.awt.image.DataBufferShort;
-import java.awt.image.DataBufferUShort;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.EnumSet;
@@ -46,9 +39,6 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.imageio.ImageIO;
-import javax.imageio.stream.ImageInputStream;
-import javax.imageio.stream.ImageOutputStream;
 import javax.media.jai.CachedTile;
 
 /**
@@ -192,20 +182,30 @@ public final class DiskCachedTile implements CachedTile {
     private static File cacheFolder = null;
     private static final Object folderLock = new Object();
 
+    /*
+     * Store used for tiles created without reference to a cache
+     */
+    private static final TileStore defaultStore = new TempFileTileStore();
+
     private final Object id;
     private final WeakReference<RenderedImage> ownerRef;
     private final int tileX;
     private final int tileY;
     private final Object tileCacheMetric;
-    private long timeStamp;
+    private volatile long timeStamp;
+    private volatile int pinCount;
+    private final int  dataType;
     private final int  numBanks;
     private final int  dataLen;
     private final long memorySize;
-    private File file;
+    private final TileStore store;
+    private final TileCodec codec;
+    private volatile Object storeHandle;
+    private volatile long storedSize;
     private final Point location;
     private final boolean isWritable;
 
-    private TileAction action =TileAction.getDefault();
+    private volatile TileAction action =TileAction.getDefault();
 
     /**
      * Get the current cache folder. This is the folder in which
@@ -217,12 +217,14 @@ public final class DiskCachedTile implements CachedTile {
      *         System property
      */
     public static File getCacheFolder() {
-        File file = null;
-        if (cacheFolder != null) {
-            file = new File(cacheFolder.toURI());
-        }
+        synchronized(folderLock) {
+            File file = null;
+            if (cacheFolder != null) {
+                file = new File(cacheFolder.toURI());
+            }
 
-        return file;
+            return file;
+        }
     }
 
     /**
@@ -268,6 +270,67 @@ public final class DiskCachedTile implements CachedTile {
                   boolean writeToFile,
                   Object tileCacheMetric) throws IOException {
 
+        this(id, owner, tileX, tileY, raster, writeToFile, tileCacheMetric, null, null);
+    }
+
+    /**
+     * Package-private constructor
+     *
+     * @param id the tile's unique identifier, allocated by the cache
+     * @param owner the image to which this tile belongs
+     * @param tileX the column index for this tile in the image's tile grid
+     * @param tileY the row index for this tile in the image's tile grid
+     * @param raster the image data for this tile
+     * @param writeToFile if true, the tile's data will be cached to disk
+     *        immediately; if false, disk caching is deferred
+     * @param tileCacheMetric optional tile cache metric for use in scheduling
+     *        (may be {@code null})
+     * @param store the store to write the tile's data to, or {@code null}
+     *        to write the data to a temporary file
+     *
+     * @throws IOException if an attempt to write the tile to disk fails
+     */
+    DiskCachedTile(Object id,
+                  RenderedImage owner,
+                  int tileX,
+                  int tileY,
+                  Raster raster,
+                  boolean writeToFile,
+                  Object tileCacheMetric,
+                  TileStore store) throws IOException {
+
+        this(id, owner, tileX, tileY, raster, writeToFile, tileCacheMetric, store, null);
+    }
+
+    /**
+     * Package-private constructor
+     *
+     * @param id the tile's unique identifier, allocated by the cache
+     * @param owner the image to which this tile belongs
+     * @param tileX the column index for this tile in the image's tile grid
+     * @param tileY the row index for this tile in the image's tile grid
+     * @param raster the image data for this tile
+     * @param writeToFile if true, the tile's data will be cached to disk
+     *        immediately; if false, disk caching is deferred
+     * @param tileCacheMetric optional tile cache metric for use in scheduling
+     *        (may be {@code null})
+     * @param store the store to write the tile's data to, or {@code null}
+     *        to write the data to a temporary file
+     * @param codec the codec used to encode the tile's data for the store, or
+     *        {@code null} to write the data as is
+     *
+     * @throws IOException if an attempt to write the tile to disk fails
+     */
+    DiskCachedTile(Object id,
+                  RenderedImage owner,
+                  int tileX,
+                  int tileY,
+                  Raster raster,
+                  boolean writeToFile,
+                  Object tileCacheMetric,
+                  TileStore store,
+                  TileCodec codec) throws IOException {
+
         if (owner == null || raster == null) {
             throw new IllegalArgumentException(
                     "All of owner, tile and file args must be non-null");
@@ -280,8 +343,11 @@ public final class DiskCachedTile implements CachedTile {
         this.tileCacheMetric = tileCacheMetric;
         this.location = raster.getBounds().getLocation();
         this.isWritable = (raster instanceof WritableRaster);
+        this.store = store != null ? store : defaultStore;
+        this.codec = codec;
 
         DataBuffer db = raster.getDataBuffer();
+        dataType = db.getDataType();
         numBanks = db.getNumBanks();
         dataLen = db.getSize();
         memorySize = DataBuffer.getDataTypeSize(db.getDataType()) / 8L * dataLen * numBanks;
@@ -312,7 +378,7 @@ public final class DiskCachedTile implements CachedTile {
                " id = " + ((id instanceof Long)? Long.toHexString(((Long)id).longValue()) : id.toString()) +
                " memorySize = " + Long.toString(memorySize) +
                " timeStamp = " + Long.toString(timeStamp) +
-               " file = " + file.getPath();
+               " file = " + (cachedToDisk() ? getFile().getPath() : "null");
     }
 
     /**
@@ -343,6 +409,16 @@ public final class DiskCachedTile implements CachedTile {
         return timeStamp;
     }
 
+    /**
+     * Tests whether this tile is currently pinned in memory.
+     *
+     * @return {@code true} if the tile is pinned
+     * @see DiskMemTileCache#pinTile(RenderedImage, int, int)
+     */
+    public boolean isPinned() {
+        return pinCount > 0;
+    }
+
     /**
      * Gets the tile cache metric for this tile.
      * 
@@ -385,31 +461,60 @@ public final class DiskCachedTile implements CachedTile {
      * @return {@code true} if the tile is cached on disk; {@code false} otherwise
      */
     public boolean cachedToDisk() {
-        return file != null;
+        return storeHandle != null;
+    }
+
+    /**
+     * Gets the number of bytes taken by this tile's data in the disk cache.
+     * This will be less than {@linkplain #getTileSize()} if the cache is
+     * compressing tile data. Returns 0 if the tile has not been cached
+     * to disk.
+     *
+     * @return size of the disk copy in bytes
+     * @see DiskMemTileCache#KEY_TILE_CODEC
+     */
+    public long getStoredSize() {
+        return storeHandle == null ? 0 : storedSize;
     }
 
     /**
      * Gets this tile's disk cache file. Returns {@code null} if the tile has not
-     * been cached to disk.
+     * been cached to disk. Depending on the {@linkplain TileStore} in use, the 
+     * file might be shared with other tiles.
      * 
      * @return the disk cache file for this tile or {@code null}
      */
     public File getFile() {
-        return file;
+        Object handle = storeHandle;
+        return handle == null ? null : store.getFile(handle);
+    }
+
+    /**
+     * Gets the byte offset of this tile's data within its disk cache file,
+     * if known. This is used to order reads of several tiles.
+     *
+     * @return the offset, or 0 if the tile is not cached to disk or the
+     *         store does not share files between tiles
+     */
+    long getFileOffset() {
+        Object handle = storeHandle;
+        if (handle != null && store instanceof MappedTileStore) {
+            return ((MappedTileStore) store).getOffset(handle);
+        }
+        return 0;
     }
 
     /**
-     * Deletes this tile's disk cache file. If the file could not be deleted
+     * Deletes this tile's disk copy. If a file could not be deleted
      * a warning is logged.
      */
     public void deleteDiskCopy() {
-        if (file != null) {
-            if (!file.delete()) {
-                LOGGER.log(Level.WARNING, 
-                        "Unable to delete cached image tile file: {0}", file.getPath());
+        Object handle = storeHandle;
+        if (handle != null) {
+            storeHandle = null;
+            store.delete(handle);
         }
     }
-    }
 
     /**
      * Gets the unique ID for this tile. The ID is a combination of
@@ -475,6 +580,22 @@ public final class DiskCachedTile implements CachedTile {
         this.timeStamp = time;
     }
 
+    /**
+     * Package-private method called by the controlling {@linkplain DiskMemTileCache}
+     * object, while holding its tile lock, to get the number of pins held
+     */
+    int getPinCount() {
+        return pinCount;
+    }
+
+    /**
+     * Package-private method called by the controlling {@linkplain DiskMemTileCache}
+     * object, while holding its tile lock, when the tile is pinned or unpinned
+     */
+    void setPinCount(int count) {
+        this.pinCount = count;
+    }
+
     /**
      * Package-private method that reads data for the raster associated with this tile
      * from disk
@@ -482,97 +603,23 @@ public final class DiskCachedTile implements CachedTile {
      * @return a new instance of Raster or WritableRaster
      */
     Raster readData() {
-        ImageInputStream strm = null;
-        DataBuffer dataBuf = null;
         RenderedImage img = ownerRef.get();
+        Object handle = storeHandle;
         Raster raster = null;
 
-        if (file != null && img != null) {
+        if (handle != null && img != null) {
+            DataBuffer dataBuf;
             try {
-                strm = ImageIO.createImageInputStream(file);
-
-                switch (img.getSampleModel().getDataType()) {
-                    case DataBuffer.TYPE_BYTE: {
-                        byte[][] bankData = new byte[numBanks][dataLen];
-                        for (int i = 0; i < numBanks; i++) {
-                            int numRead = strm.read(bankData[i], 0, dataLen);
-                            if (numRead < numBanks) {
-                                throw new RuntimeException(
-                                        "Cached tile file appears to be truncated");
-                            }
-                        }
-                        dataBuf = new DataBufferByte(bankData, dataLen);
-                    }
-                    break;
-
-                    case DataBuffer.TYPE_DOUBLE: {
-                        double[][] bankData = new double[numBanks][dataLen];
-                        for (int i = 0; i < numBanks; i++) {
-                            strm.readFully(bankData[i], 0, dataLen);
-                        }
-                        dataBuf = new DataBufferDouble(bankData, dataLen);
-                    }
-                    break;
-
-                    case DataBuffer.TYPE_FLOAT: {
-                        float[][] bankData = new float[numBanks][dataLen];
-                        for (int i = 0; i < numBanks; i++) {
-                            strm.readFully(bankData[i], 0, dataLen);
-                        }
-                        dataBuf = new DataBufferFloat(bankData, dataLen);
-                    }
-                    break;
-
-                    case DataBuffer.TYPE_INT: {
-                        int[][] bankData = new int[numBanks][dataLen];
-                        for (int i = 0; i < numBanks; i++) {
-                            strm.readFully(bankData[i], 0, dataLen);
-                        }
-                        dataBuf = new DataBufferInt(bankData, dataLen);
-                    }
-                    break;
-
-                    case DataBuffer.TYPE_SHORT: {
-                        short[][] bankData = new short[numBanks][dataLen];
-                        for (int i = 0; i < numBanks; i++) {
-                            strm.readFully(bankData[i], 0, dataLen);
-                        }
-                        dataBuf = new DataBufferShort(bankData, dataLen);
-                    }
-                    break;
-
-                    case DataBuffer.TYPE_USHORT: {
-                        short[][] bankData = new short[numBanks][dataLen];
-                        for (int i = 0; i < numBanks; i++) {
-                            strm.readFully(bankData[i], 0, dataLen);
-                        }
-                        dataBuf = new DataBufferUShort(bankData, dataLen);
-                    }
-                    break;
-
-                    default:
-                        throw new UnsupportedOperationException("Unsupported image data type");
+                dataBuf = store.read(handle);
+                if (codec != null) {
+                    dataBuf = codec.decode(dataBuf, dataType, numBanks, dataLen);
                 }
 
-            } catch (FileNotFoundException ex) {
-                LOGGER.log(Level.SEVERE, "Failed to read image tile data", ex);
-                return null;
-
             } catch (IOException ex) {
                 LOGGER.log(Level.SEVERE, "Failed to read image tile data", ex);
                 return null;
             }
-            finally{
-            	if(strm!=null)
-            		try{
-            			strm.close();
-            		}catch (Throwable e) {
-						// chew me
-					}
-            }
-        }
 
-        if (dataBuf != null) {
             if (isWritable) {
                 raster = Raster.createWritableRaster(img.getSampleModel(), dataBuf, location);
             } else {
@@ -590,109 +637,12 @@ public final class DiskCachedTile implements CachedTile {
      * as well as be the tile itself.
      */
     void writeData(Raster raster) throws IOException {
-        ImageOutputStream strm = null;
-        DataBuffer dataBuf = raster.getDataBuffer();
-
-        if (file == null) {
-            // first time this tile has been written to disk
-            file = createFile();
-        }
-
-        try {
-            strm = ImageIO.createImageOutputStream(file);
-
-            switch (dataBuf.getDataType()) {
-                case DataBuffer.TYPE_BYTE:
-                     {
-                        byte[] bankData;
-                        for (int i = 0; i < numBanks; i++) {
-                            bankData = ((DataBufferByte) dataBuf).getData(i);
-                            strm.write(bankData);
-                        }
-                    }
-                    break;
-
-                case DataBuffer.TYPE_DOUBLE:
-                     {
-                        double[] bankData;
-                        for (int i = 0; i < numBanks; i++) {
-                            bankData = ((DataBufferDouble) dataBuf).getData(i);
-                            strm.writeDoubles(bankData, 0, dataLen);
-                        }
-                    }
-                    break;
-
-                case DataBuffer.TYPE_FLOAT:
-                     {
-                        float[] bankData;
-                        for (int i = 0; i < numBanks; i++) {
-                            bankData = ((DataBufferFloat) dataBuf).getData(i);
-                            strm.writeFloats(bankData, 0, dataLen);
-                        }
-                    }
-                    break;
-
-                case DataBuffer.TYPE_INT:
-                     {
-                        int[] bankData;
-                        for (int i = 0; i < numBanks; i++) {
-                            bankData = ((DataBufferInt) dataBuf).getData(i);
-                            strm.writeInts(bankData, 0, dataLen);
-                        }
-                    }
-                    break;
-
-                case DataBuffer.TYPE_SHORT:
-                     {
-                        short[] bankData;
-                        for (int i = 0; i < numBanks; i++) {
-                            bankData = ((DataBufferShort) dataBuf).getData(i);
-                            strm.writeShorts(bankData, 0, dataLen);
-                        }
-                    }
-                    break;
-
-                case DataBuffer.TYPE_USHORT:
-                    {
-                        short[] bankData;
-                        for (int i = 0; i < numBanks; i++) {
-                            bankData = ((DataBufferUShort) dataBuf).getData(i);
-                            strm.writeShorts(bankData, 0, dataLen);
-                        }
-                    }
-                    break;
-
-                default:
-                    throw new UnsupportedOperationException("Unsupported image data type");
-            }
-
-
-        } catch (FileNotFoundException ex) {
-            LOGGER.log(Level.SEVERE, "Failed to write image tile data", ex);
-
-        } catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, "Failed to write image tile data", ex);
-        }
-        finally{
-        	if(strm!=null)
-        		try{
-        			strm.close();
-        		}catch (Throwable e) {
-					// chew me
-				}
-        }
-    }
-
-    /**
-     * Create a file to cache the given tile on disk. Presently
-     * this method does nothing more than delegate to File.createTempFile
-     *
-     * @throws java.io.IOException
-     */
-    private File createFile() throws IOException {
-        synchronized(folderLock) {
-            return File.createTempFile(FILE_PREFIX, FILE_SUFFIX, cacheFolder);
+        DataBuffer data = raster.getDataBuffer();
+        if (codec != null) {
+            data = codec.encode(data);
         }
+        storeHandle = store.write(storeHandle, data);
+        storedSize = DataBufferIO.byteSize(data.getDataType(), data.getNumBanks(), data.getSize());
     }
 
 }
@@ -28,24 +28,41 @@ package org.jaitools.tilecache;
 import java.awt.Point;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import javax.media.jai.CachedTile;
 import javax.media.jai.PlanarImage;
@@ -84,7 +101,48 @@ import org.jaitools.DaemonThreadFactory;
  * <p>
  * Tile polling and auto-flushing of memory resident tiles (if enabled) both run
  * on low-priority background threads. These are marked as daemon threads to 
- * avoid these services blocking application shutdown.
+ * avoid these services blocking application shutdown. A cache which is no
+ * longer needed, such as one created for a single job, should be released
+ * with {@link #dispose()} to stop its threads.
+ * </p>
+ * <p>
+ * Requests for memory-resident tiles are served without taking the cache's
+ * global lock. Reading a tile from disk, and writing a tile to disk when it
+ * is swapped out of memory, are done while holding only a per-tile load lock
+ * taken from a fixed set of lock stripes (see {@link #KEY_CONCURRENCY_LEVEL}).
+ * The global lock is held just long enough to update memory accounting, so a
+ * slow disk access for one tile does not stall threads working with other tiles.
+ * If two threads request the same non-resident tile, only one of them reads
+ * it from disk.
+ * </p>
+ * <p>
+ * Heap memory for resident tiles can be kept small by also enabling off-heap
+ * memory (see {@link #KEY_OFF_HEAP_CAPACITY}). Tiles swapped out of heap memory
+ * are then held in direct buffers, and only go to disk when those are full.
+ * </p>
+ * <p>
+ * Optionally, tiles swapped out of memory can be written to disk by a pool of
+ * background threads (see {@link #KEY_IO_THREADS}), and tiles likely to be
+ * requested next can be read ahead with {@link #prefetchTiles(RenderedImage, Point[])}.
+ * </p>
+ * <p>
+ * The cache keeps low-overhead counters of hits, misses, disk reads and writes,
+ * evictions and lock waits, together with latency histograms for tile requests
+ * and disk reads. These are always enabled and can be retrieved with
+ * {@link #getStatistics()} or published through JMX with {@link #registerMBean(String)}.
+ * The per-tile messages sent to observers when diagnostics are enabled are
+ * intended for debugging rather than continuous monitoring.
+ * </p>
+ * <p>
+ * When several images share a cache, memory can be divided between them by
+ * giving images a {@linkplain TileQuota} with soft and hard memory limits and
+ * a priority (see {@link #setOwnerQuota(RenderedImage, TileQuota)}).
+ * </p>
+ * <p>
+ * A tile can be pinned in memory while it is being worked on (see
+ * {@link #pinTile(RenderedImage, int, int)}). Pinned tiles are never swapped
+ * out to make room for other tiles or removed by auto-flushing, so long scans
+ * over a tile do not have to fetch it again and again.
  * </p>
  *
  * @author Michael Bedward
@@ -129,6 +187,31 @@ public class DiskMemTileCache extends Observable implements TileCache {
      */
     public static final long DEFAULT_TILE_POLLING_INTERVAL = 2000L;
 
+    /**
+     * The default number of lock stripes (64) used to guard tile loading
+     * and disk writes.
+     *
+     * @see #KEY_CONCURRENCY_LEVEL
+     */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 64;
+
+    /**
+     * The default maximum number of background I/O tasks (256) that can be
+     * waiting to run.
+     *
+     * @see #KEY_IO_QUEUE_SIZE
+     */
+    public static final int DEFAULT_IO_QUEUE_SIZE = 256;
+
+    /*
+     * Number of times pinTile will try to load a tile normally before
+     * forcing it into memory
+     */
+    private static final int MAX_PIN_ATTEMPTS = 3;
+
+    // Maximum time (ms) that dispose will wait for running I/O tasks
+    private static final long IO_SHUTDOWN_WAIT = 5000L;
+
 
     // @todo use JAI ParameterList or some other ready-made class for this ?
     private static class ParamDesc {
@@ -169,6 +252,17 @@ public class DiskMemTileCache extends Observable implements TileCache {
      */
     public static final String KEY_ALWAYS_DISK_CACHE = "diskcache";
 
+    /**
+     * Key for the parameter specifying the {@linkplain TileCodec} used to
+     * encode tile data when they are cached to disk. The value must be an
+     * instance of {@code TileCodec}, eg. a {@linkplain DeflateTileCodec} to
+     * compress tile data. If not provided, tile data are written as is.
+     * Compression reduces disk space and I/O at the cost of CPU time, which
+     * is most worthwhile for images with large uniform areas.
+     * @see #getCompressionRatio()
+     */
+    public static final String KEY_TILE_CODEC = "tilecodec";
+
     /**
      * Key for the parameter controlling whether the cache will auto-flush
      * memory-resident tiles. The value must be Boolean. If the value is
@@ -187,6 +281,65 @@ public class DiskMemTileCache extends Observable implements TileCache {
      */
     public static final String KEY_AUTO_FLUSH_MEMORY_INTERVAL = "autoflushinterval";
 
+    /**
+     * Key for the parameter controlling the number of lock stripes used
+     * to guard reading and writing of tile data. Tiles are assigned to
+     * stripes by their id (owning image and tile index). Higher values
+     * reduce contention between threads loading different tiles. The value
+     * must be numeric and will be rounded up to a power of 2. Values less
+     * than 1 are ignored.
+     * @see #DEFAULT_CONCURRENCY_LEVEL
+     */
+    public static final String KEY_CONCURRENCY_LEVEL = "concurrency";
+
+    /**
+     * Key for the parameter specifying the {@linkplain TileStore} to be used
+     * for disk caching of tiles. The value must be an instance of 
+     * {@code TileStore}. If not provided, each tile is written to its own
+     * temporary file as per {@linkplain TempFileTileStore}. The store is not
+     * disposed of by the cache.
+     * @see MappedTileStore
+     */
+    public static final String KEY_TILE_STORE = "tilestore";
+
+    /**
+     * Key for the parameter controlling the amount of off-heap memory used
+     * to hold tiles swapped out of heap memory. The value must be numeric
+     * and is treated as a number of bytes. If greater than zero, tiles are
+     * written to an {@linkplain OffHeapTileStore} of this capacity, which
+     * passes tiles that do not fit to the store given by 
+     * {@linkplain #KEY_TILE_STORE} (or temporary files if that is not set).
+     * The cache's memory capacity then only needs to be large enough for 
+     * the tiles in active use, keeping the heap small. The default is 0
+     * (no off-heap memory).
+     * @see #getOffHeapCapacity()
+     * @see #getCurrentOffHeapMemory()
+     */
+    public static final String KEY_OFF_HEAP_CAPACITY = "offheapcapacity";
+
+    /**
+     * Key for the parameter controlling the number of background threads
+     * used for disk I/O. The value must be numeric. If greater than zero,
+     * tiles removed from memory are written to disk by these threads
+     * (write-behind) so that the thread which caused the tiles to be
+     * swapped out can carry on at once, and tiles requested via
+     * {@linkplain #prefetchTiles(RenderedImage, Point[])} are read by them.
+     * The default is 0, in which case all I/O is done in the calling thread.
+     * @see #KEY_IO_QUEUE_SIZE
+     */
+    public static final String KEY_IO_THREADS = "iothreads";
+
+    /**
+     * Key for the parameter controlling the maximum number of background
+     * I/O tasks that can be waiting to run. When the queue is full, a thread
+     * swapping tiles out of memory writes them itself, which limits the
+     * amount of memory held by tiles waiting to be written. Prefetch requests
+     * are simply dropped. The value must be numeric. It is ignored unless
+     * background I/O has been enabled with {@linkplain #KEY_IO_THREADS}.
+     * @see #DEFAULT_IO_QUEUE_SIZE
+     */
+    public static final String KEY_IO_QUEUE_SIZE = "ioqueuesize";
+
     private static final Map<String, ParamDesc> paramDescriptors;
     static {
         ParamDesc desc;
@@ -198,11 +351,29 @@ public class DiskMemTileCache extends Observable implements TileCache {
         desc = new ParamDesc(KEY_ALWAYS_DISK_CACHE, Boolean.class, Boolean.FALSE);
         paramDescriptors.put( desc.key, desc );
 
+        desc = new ParamDesc(KEY_TILE_CODEC, TileCodec.class, null);
+        paramDescriptors.put( desc.key, desc );
+
         desc = new ParamDesc(KEY_AUTO_FLUSH_MEMORY_ENABLED, Boolean.class, Boolean.FALSE);
         paramDescriptors.put( desc.key, desc );
 
         desc = new ParamDesc(KEY_AUTO_FLUSH_MEMORY_INTERVAL, Number.class, DEFAULT_AUTO_FLUSH_MEMORY_INTERVAL);
         paramDescriptors.put( desc.key, desc );
+
+        desc = new ParamDesc(KEY_CONCURRENCY_LEVEL, Number.class, DEFAULT_CONCURRENCY_LEVEL);
+        paramDescriptors.put( desc.key, desc );
+
+        desc = new ParamDesc(KEY_TILE_STORE, TileStore.class, null);
+        paramDescriptors.put( desc.key, desc );
+
+        desc = new ParamDesc(KEY_OFF_HEAP_CAPACITY, Number.class, 0L);
+        paramDescriptors.put( desc.key, desc );
+
+        desc = new ParamDesc(KEY_IO_THREADS, Number.class, 0);
+        paramDescriptors.put( desc.key, desc );
+
+        desc = new ParamDesc(KEY_IO_QUEUE_SIZE, Number.class, DEFAULT_IO_QUEUE_SIZE);
+        paramDescriptors.put( desc.key, desc );
     }
 
     // maximum memory available for resident tiles
@@ -219,6 +390,12 @@ public class DiskMemTileCache extends Observable implements TileCache {
 
     private boolean writeNewTilesToDisk;
 
+    // backing store for disk-cached tiles (null for the default)
+    private final TileStore tileStore;
+
+    // codec for tile data written to disk (null for none)
+    private final TileCodec tileCodec;
+
     /**
      * Map of all cached tiles.
      */
@@ -231,29 +408,67 @@ public class DiskMemTileCache extends Observable implements TileCache {
 
     /**
      * A tile comparator used to determine the priority of tiles for
-     * storage in memory.
+     * storage in memory (null if the eviction policy is not based
+     * on a comparator).
      */
     private Comparator<CachedTile> comparator;
 
-    /* List of tile references that is sorted into tile priority order when
-     * required for memory swapping.
-     * <p>
-     * Implementation note: we use this in preference to a SortedSet or similar
-     * because of the complications of using the remove(obj) method with a sorted
-     * collection, where the comparator is used rather than the equals method.
+    /*
+     * Policy used to choose resident tiles to be swapped out. It is only
+     * replaced while holding the tile lock, but can be read without it
+     * when tiles are accessed.
      */
-    
-    /**
-     * Tiles sorted according to the current tile priority comparator.
+    private volatile EvictionPolicy evictionPolicy;
+
+    /*
+     * Data for tiles which have been removed from memory but not yet
+     * written to disk. A tile being loaded is taken from here in
+     * preference to reading its (possibly stale) disk copy.
      */
-    protected List<DiskCachedTile> sortedResidentTiles;
+    private final Map<Object, Raster> pendingWrites;
 
     // whether to send cache diagnostics to observers
-    private boolean diagnosticsEnabled;
+    private volatile boolean diagnosticsEnabled;
     
-    // Lock for tile access
+    // Lock for cache structure and memory accounting. Disk I/O must not
+    // be done while holding this lock.
     private final ReentrantLock tileLock = new ReentrantLock();
 
+    // Striped locks guarding reading and writing of individual tiles. When
+    // both kinds of lock are required, the load lock must be taken first.
+    private final ReentrantLock[] loadLocks;
+
+    // Pool for background disk I/O (null if all I/O is done by callers)
+    private final ThreadPoolExecutor ioService;
+    private final AtomicLong numBackgroundWrites = new AtomicLong();
+    private final AtomicLong numPrefetchedTiles = new AtomicLong();
+
+    // Activity counters and latency recorders
+    private final CacheMetrics metrics = new CacheMetrics();
+
+    // Name under which this cache is registered with the platform MBean server
+    private ObjectName mbeanName;
+
+    /*
+     * Resident memory and tiles of each owning image. This is only maintained
+     * while at least one image has a quota, and is null otherwise. Guarded
+     * by the tile lock, as are priorityMemory and numQuotas.
+     */
+    private Map<Object, OwnerState> ownerStates;
+
+    // Resident memory of owners in each priority class (indexed by ordinal)
+    private final long[] priorityMemory = new long[TileQuota.Priority.values().length];
+
+    // Number of owners with quotas
+    private int numQuotas;
+
+    // States of the owners with quotas, which are the only ones
+    // that can be over their soft limit
+    private final Set<OwnerState> quotaStates = new LinkedHashSet<OwnerState>();
+
+    // number of tiles with one or more pins - guarded by tileLock
+    private int numPinnedTiles;
+
     // Variables used for auto-flushing of resident tiles
     private ScheduledExecutorService flushService;
     private ScheduledFuture flushFuture;
@@ -285,8 +500,9 @@ public class DiskMemTileCache extends Observable implements TileCache {
         }
 
         diagnosticsEnabled = false;
-        tiles = new HashMap<Object, DiskCachedTile>();
-        residentTiles = CollectionFactory.map();
+        tiles = new ConcurrentHashMap<Object, DiskCachedTile>();
+        residentTiles = new ConcurrentHashMap<Object, Raster>();
+        pendingWrites = new ConcurrentHashMap<Object, Raster>();
         curMemory = 0L;
         memThreshold = DEFAULT_MEMORY_THRESHOLD;
 
@@ -323,6 +539,85 @@ public class DiskMemTileCache extends Observable implements TileCache {
             }
         }
 
+        desc = paramDescriptors.get(KEY_TILE_STORE);
+        TileStore store = null;
+        o = params.get(desc.key);
+        if (o != null && desc.typeOK(o)) {
+            store = (TileStore) o;
+        }
+
+        desc = paramDescriptors.get(KEY_OFF_HEAP_CAPACITY);
+        o = params.get(desc.key);
+        if (o != null && desc.typeOK(o)) {
+            long offHeapCapacity = ((Number)o).longValue();
+            if (offHeapCapacity > 0) {
+                store = new OffHeapTileStore(
+                        offHeapCapacity, OffHeapTileStore.DEFAULT_SEGMENT_SIZE, store);
+            }
+        }
+        tileStore = store;
+
+        desc = paramDescriptors.get(KEY_TILE_CODEC);
+        o = params.get(desc.key);
+        if (o != null && desc.typeOK(o)) {
+            tileCodec = (TileCodec) o;
+        } else {
+            tileCodec = null;
+        }
+
+        desc = paramDescriptors.get(KEY_CONCURRENCY_LEVEL);
+        int numStripes = ((Number)desc.defaultValue).intValue();
+        o = params.get(desc.key);
+        if (o != null) {
+            if (desc.typeOK(o)) {
+                int ival = ((Number)o).intValue();
+                if (ival > 0) {
+                    numStripes = ival;
+                }
+            }
+        }
+        numStripes = Math.min(1 << 16, Integer.highestOneBit(numStripes - 1) << 1);
+        if (numStripes < 1) {
+            numStripes = 1;
+        }
+        loadLocks = new ReentrantLock[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            loadLocks[i] = new ReentrantLock();
+        }
+
+        desc = paramDescriptors.get(KEY_IO_THREADS);
+        int numIOThreads = ((Number)desc.defaultValue).intValue();
+        o = params.get(desc.key);
+        if (o != null && desc.typeOK(o)) {
+            numIOThreads = ((Number)o).intValue();
+        }
+
+        desc = paramDescriptors.get(KEY_IO_QUEUE_SIZE);
+        int ioQueueSize = ((Number)desc.defaultValue).intValue();
+        o = params.get(desc.key);
+        if (o != null && desc.typeOK(o)) {
+            int ival = ((Number)o).intValue();
+            if (ival > 0) {
+                ioQueueSize = ival;
+            }
+        }
+
+        if (numIOThreads > 0) {
+            ioService = new ThreadPoolExecutor(numIOThreads, numIOThreads,
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(ioQueueSize),
+                    new DaemonThreadFactory(Thread.NORM_PRIORITY, "cache-io"),
+                    new RejectedExecutionHandler() {
+                        // the caller does the work itself, even if the
+                        // pool has been shut down, so no tile data are lost
+                        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                            r.run();
+                        }
+                    });
+        } else {
+            ioService = null;
+        }
+
         desc = paramDescriptors.get(KEY_AUTO_FLUSH_MEMORY_ENABLED);
         o = params.get(desc.key);
         if (o != null) {
@@ -332,7 +627,7 @@ public class DiskMemTileCache extends Observable implements TileCache {
         }
 
         comparator = new TileAccessTimeComparator();
-        sortedResidentTiles = new ArrayList<DiskCachedTile>();
+        evictionPolicy = new LRUEvictionPolicy();
 
         tilePollingService = Executors.newSingleThreadScheduledExecutor(
                 new DaemonThreadFactory(Thread.MIN_PRIORITY, "cache-polling"));
@@ -351,7 +646,7 @@ public class DiskMemTileCache extends Observable implements TileCache {
     public void add(RenderedImage owner, int tileX, int tileY, Raster data) {
         add(owner, tileX, tileY, data, null);
     }
-		 
+
     /**
      * Adds a tile to the cache if not already present.
      *
@@ -367,83 +662,111 @@ public class DiskMemTileCache extends Observable implements TileCache {
                 Raster data,
                 Object tileCacheMetric) {
 
-        tileLock.lock();
+        okToFlush.set(false);
+        Object key = getTileId(owner, tileX, tileY);
+        if (tiles.containsKey(key)) {
+            // tile is already cached
+            return;
+        }
 
+        List<DiskCachedTile> evicted = new ArrayList<DiskCachedTile>();
+        ReentrantLock loadLock = getLoadLock(key);
+        lock(loadLock);
         try {
-            okToFlush.set(false);
-            Object key = getTileId(owner, tileX, tileY);
-            if (tiles.containsKey(key)) {
-                // tile is already cached
-                return;
+            /*
+             * Creating the tile will write its data to disk if
+             * writeNewTilesToDisk is set, so we do this before
+             * taking the global lock.
+             */
+            DiskCachedTile tile = new DiskCachedTile(
+                    key, owner, tileX, tileY, data, writeNewTilesToDisk, tileCacheMetric, tileStore, tileCodec);
+            if (writeNewTilesToDisk) {
+                metrics.recordWrite(tile.getTileSize());
             }
 
-            DiskCachedTile tile = new DiskCachedTile(
-                    key, owner, tileX, tileY, data, writeNewTilesToDisk, tileCacheMetric);
-            tiles.put(key, tile);
+            lock(tileLock);
+            try {
+                if (tiles.containsKey(key)) {
+                    // another thread got here first
+                    tile.deleteDiskCopy();
+                    return;
+                }
+                tiles.put(key, tile);
 
-            if ( makeResident(tile, data) ) {
-                tile.setAction(DiskCachedTile.TileAction.ACTION_ADDED_RESIDENT);
-            } else {
-                tile.setAction(DiskCachedTile.TileAction.ACTION_ADDED);
-            }
+                if ( makeResident(tile, data, evicted) ) {
+                    tile.setAction(DiskCachedTile.TileAction.ACTION_ADDED_RESIDENT);
+                } else {
+                    tile.setAction(DiskCachedTile.TileAction.ACTION_ADDED);
 
-            if (diagnosticsEnabled) {
-                setChanged();
-                notifyObservers(tile);
+                    /*
+                     * The tile is too large for memory or for its owner's
+                     * hard quota, so its data must go to disk straight away
+                     */
+                    if (tile.isWritable() && !tile.cachedToDisk()) {
+                        pendingWrites.put(key, data);
+                        evicted.add(tile);
+                    }
+                }
+
+            } finally {
+                tileLock.unlock();
             }
 
+            notifyTileAction(tile);
+
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Unable to cache this tile on disk", ex);
-            
+
         } finally {
-            tileLock.unlock();
+            loadLock.unlock();
         }
+
+        writeEvictedTiles(evicted);
     }
 
     /**
      * Removes a tile from the cache.
-     * 
+     *
      * @param owner the image that this tile belongs to
      * @param tileX the tile column
      * @param tileY the tile row
      */
     public void remove(RenderedImage owner, int tileX, int tileY) {
-        tileLock.lock();
+        okToFlush.set(false);
+        Object key = getTileId(owner, tileX, tileY);
 
+        ReentrantLock loadLock = getLoadLock(key);
+        lock(loadLock);
         try {
-            okToFlush.set(false);
-            Object key = getTileId(owner, tileX, tileY);
-            DiskCachedTile tile = tiles.get(key);
-
-            if (tile == null) {
-                return;
-            }
+            DiskCachedTile tile;
 
-            if (residentTiles.containsKey(key)) {
-                try {
-                    removeResidentTile(key, false);
+            lock(tileLock);
+            try {
+                tile = tiles.remove(key);
+                if (tile == null) {
+                    return;
+                }
+                if (tile.isPinned()) {
+                    tile.setPinCount(0);
+                    numPinnedTiles-- ;
+                }
 
-                } catch (DiskCacheFailedException ex) {
-                    /*
-                     * It would be nicer to just throw this exception
-                     * upwards but we can't in the overidden method
-                     */
-                    LOGGER.log(Level.SEVERE, null, ex);
+                if (residentTiles.containsKey(key)) {
+                    removeResidentTile(tile, false, null);
                 }
+                pendingWrites.remove(key);
+
+            } finally {
+                tileLock.unlock();
             }
 
             tile.deleteDiskCopy();
 
             tile.setAction(DiskCachedTile.TileAction.ACTION_REMOVED);
-            if (diagnosticsEnabled) {
-                setChanged();
-                notifyObservers(tile);
-            }
+            notifyTileAction(tile);
 
-            tiles.remove(key);
-            
         } finally {
-            tileLock.unlock();
+            loadLock.unlock();
         }
     }
 
@@ -458,124 +781,78 @@ public class DiskMemTileCache extends Observable implements TileCache {
      * @return the requested tile or {@code null} if the tile was not cached
      */
     public Raster getTile(RenderedImage owner, int tileX, int tileY) {
-        tileLock.lock();
-
-        try {
-            okToFlush.set(false);
-            Raster r = null;
-            Object key = getTileId(owner, tileX, tileY);
-
-            DiskCachedTile tile = tiles.get(key);
-            if (tile != null) {
-
-                // is the tile resident ?
-                r = residentTiles.get(key);
-                if (r == null) {
-                    /*
-                     * The tile is not resident. Attempt
-                     * to read it from the disk.
-                     */
-                    r = tile.readData();
-                    if (r == null) {
-                        /* The tile was not cached on disk. It may have
-                         * been resident only, and then flushed.
-                         */
-                        return null;
-                    }
-
-                    if (makeResident(tile, r)) {
-                        tile.setAction(DiskCachedTile.TileAction.ACTION_RESIDENT);
-                        if (diagnosticsEnabled) {
-                            setChanged();
-                            notifyObservers(tile);
-                        }
-                    }
-                }
+        final long start = System.nanoTime();
+        okToFlush.set(false);
+        Object key = getTileId(owner, tileX, tileY);
 
-                tile.setAction(DiskCachedTile.TileAction.ACTION_ACCESSED);
-                tile.setTileTimeStamp(System.currentTimeMillis());
+        DiskCachedTile tile = tiles.get(key);
+        if (tile == null) {
+            metrics.notCached.increment();
+            return null;
+        }
 
-                if (diagnosticsEnabled) {
-                    setChanged();
-                    notifyObservers(tile);
-                }
+        // is the tile resident ?
+        Raster r = residentTiles.get(key);
+        if (r == null) {
+            metrics.misses.increment();
+            r = loadTile(tile);
+            if (r == null) {
+                /* The tile was not cached on disk. It may have
+                 * been resident only, and then flushed.
+                 */
+                metrics.getTileLatency.record(System.nanoTime() - start);
+                return null;
             }
-
-            return r;
-        } finally {
-            tileLock.unlock();
+        } else {
+            metrics.hits.increment();
         }
+
+        tile.setAction(DiskCachedTile.TileAction.ACTION_ACCESSED);
+        tile.setTileTimeStamp(System.currentTimeMillis());
+        evictionPolicy.tileAccessed(tile);
+        notifyTileAction(tile);
+
+        metrics.getTileLatency.record(System.nanoTime() - start);
+        return r;
     }
 
     /**
      * Gets all cached tiles associated with the given image.
      * The tiles will be loaded into memory as space allows.
-     * 
+     *
      * @param owner the image for which tiles are requested
      * @return an array of tile Rasters
      */
     public Raster[] getTiles(RenderedImage owner) {
-        tileLock.lock();
-
-        try {
-            okToFlush.set(false);
-            int minX = owner.getMinTileX();
-            int minY = owner.getMinTileY();
-            int numX = owner.getNumXTiles();
-            int numY = owner.getNumYTiles();
-
-            List<Object> keys = new ArrayList<Object>();
-            for (int y = minY, ny = 0; ny < numY; y++, ny++) {
-                for (int x = minX, nx = 0; nx < numX; x++, nx++) {
-                    Object key = getTileId(owner, x, y);
-                    if (tiles.containsKey(key)) {
-                        keys.add(key);
-                    }
-                }
-            }
-
-            Raster[] rasters = new Raster[keys.size()];
-            int k = 0;
-            for (Object key : keys) {
-                DiskCachedTile tile = tiles.get(key);
-                Raster r = residentTiles.get(tile.getTileId());
-                if (r == null) {
-                    r = tile.readData();
-                    makeResident(tile, r);
-                }
-
-                rasters[k++] = r;
-
-                tile.setTileTimeStamp(System.currentTimeMillis());
-                tile.setAction(DiskCachedTile.TileAction.ACTION_ACCESSED);
-                if (diagnosticsEnabled) {
-                    setChanged();
-                    notifyObservers(tile);
+        okToFlush.set(false);
+        int minX = owner.getMinTileX();
+        int minY = owner.getMinTileY();
+        int numX = owner.getNumXTiles();
+        int numY = owner.getNumYTiles();
+
+        List<Raster> rasters = new ArrayList<Raster>();
+        for (int y = minY, ny = 0; ny < numY; y++, ny++) {
+            for (int x = minX, nx = 0; nx < numX; x++, nx++) {
+                Raster r = getTile(owner, x, y);
+                if (r != null) {
+                    rasters.add(r);
                 }
             }
-
-            return rasters;
-            
-        } finally {
-            tileLock.unlock();
         }
+
+        return rasters.toArray(new Raster[rasters.size()]);
     }
 
     /**
      * Removes all tiles that belong to the given image from the cache.
-     * 
+     *
      * @param owner the image owning the tiles to be removed
      */
     public void removeTiles(RenderedImage owner) {
-        tileLock.lock();
-        try {
-            for (int y = owner.getMinTileY(), ny = 0; ny < owner.getNumYTiles(); y++, ny++) {
-                for (int x = owner.getMinTileX(), nx = 0; nx < owner.getNumXTiles(); x++, nx++) {
-                    remove(owner, x, y);
-                }
+        for (int y = owner.getMinTileY(), ny = 0; ny < owner.getNumYTiles(); y++, ny++) {
+            for (int x = owner.getMinTileX(), nx = 0; nx < owner.getNumXTiles(); x++, nx++) {
+                remove(owner, x, y);
             }
-        } finally {
-            tileLock.unlock();
         }
     }
 
@@ -616,13 +893,13 @@ public class DiskMemTileCache extends Observable implements TileCache {
                         public void run() {
                             removeNullTiles();
                         }
-                    }, 
-                    tilePollingInterval, 
-                    tilePollingInterval, 
+                    },
+                    tilePollingInterval,
+                    tilePollingInterval,
                     TimeUnit.MILLISECONDS);
         }
     }
-    
+
     /**
      * Stops the tile polling task.
      */
@@ -632,7 +909,7 @@ public class DiskMemTileCache extends Observable implements TileCache {
             tilePollingFuture = null;
         }
     }
-    
+
     private boolean isPollingTiles() {
         return tilePollingFuture != null && !tilePollingFuture.isDone();
     }
@@ -646,34 +923,58 @@ public class DiskMemTileCache extends Observable implements TileCache {
             return;
         }
 
+        List<DiskCachedTile> nullTiles = CollectionFactory.list();
         try {
-            Set<Object> nullTileKeys = CollectionFactory.set();
-            for (Object key : tiles.keySet()) {
-                DiskCachedTile tile = tiles.get(key);
+            for (DiskCachedTile tile : tiles.values()) {
                 if (tile.getOwner() == null) {
-                    nullTileKeys.add(key);
+                    nullTiles.add(tile);
                 }
             }
 
-            for (Object key : nullTileKeys) {
-                DiskCachedTile tile = tiles.get(key);
-                tile.deleteDiskCopy();
+            for (DiskCachedTile tile : nullTiles) {
+                Object key = tile.getTileId();
                 if (residentTiles.containsKey(key)) {
-                    residentTiles.remove(key);
-                    sortedResidentTiles.remove(tile);
-                    curMemory -= tile.getTileSize();
+                    removeResidentTile(tile, false, null);
                 }
+                pendingWrites.remove(key);
                 tiles.remove(key);
+                if (tile.isPinned()) {
+                    tile.setPinCount(0);
+                    numPinnedTiles-- ;
+                }
+
+                if (ownerStates != null) {
+                    OwnerState state = ownerStates.remove(getOwnerKey(key));
+                    if (state != null && state.quota != null) {
+                        quotaStates.remove(state);
+                        removeQuota();
+                    }
+                }
             }
 
         } finally {
             tileLock.unlock();
         }
+
+        /*
+         * Delete disk copies after releasing the global lock. Taking the
+         * load lock for each tile ensures that we don't race with a
+         * write that is already under way.
+         */
+        for (DiskCachedTile tile : nullTiles) {
+            ReentrantLock loadLock = getLoadLock(tile.getTileId());
+            lock(loadLock);
+            try {
+                tile.deleteDiskCopy();
+            } finally {
+                loadLock.unlock();
+            }
+        }
     }
 
     /**
      * Adds all tiles for the given image to the cache.
-     * 
+     *
      * @param owner the image that the tiles belong to
      * @param tileIndices an array of Points specifying the column-row coordinates
      * of each tile
@@ -690,19 +991,21 @@ public class DiskMemTileCache extends Observable implements TileCache {
                     "tileIndices and tiles args must be the same length");
         }
 
-        tileLock.lock();
-        try {
-            for (int i = 0; i < tiles.length; i++) {
-                add(owner, tileIndices[i].x, tileIndices[i].y, tiles[i], tileCacheMetric);
-            }
-            
-        } finally {
-            tileLock.unlock();
+        for (int i = 0; i < tiles.length; i++) {
+            add(owner, tileIndices[i].x, tileIndices[i].y, tiles[i], tileCacheMetric);
         }
     }
 
     /**
-     * Gets the specified tiles for the given image.
+     * Gets the specified tiles for the given image. Elements of the returned
+     * array are {@code null} for tiles which are not cached.
+     * <p>
+     * Tiles that are not resident in memory are loaded as a batch: they are
+     * read in the order in which they are stored on disk (eg. by file offset
+     * when using a {@linkplain MappedTileStore}) and then made resident
+     * together, with memory being freed for all of them at once. If the tiles 
+     * will not all fit into memory, those requested first are made resident
+     * and the others are returned without being kept in memory.
      *
      * @param owner the image that the tiles belong to
      * @param tileIndices an array of Points specifying the column-row coordinates
@@ -710,94 +1013,424 @@ public class DiskMemTileCache extends Observable implements TileCache {
      * @return data for the requested tiles as Raster objects
      */
     public Raster[] getTiles(RenderedImage owner, Point[] tileIndices) {
-        tileLock.lock();
-        try {
-            Raster[] r = null;
-            
-            if (tileIndices.length > 0) {
-                r = new Raster[tileIndices.length];
-                for (int i = 0; i < tileIndices.length; i++) {
-                    r[i] = getTile(owner, tileIndices[i].x, tileIndices[i].y);
+        Raster[] r = null;
+
+        if (tileIndices.length > 0) {
+            okToFlush.set(false);
+            r = new Raster[tileIndices.length];
+            DiskCachedTile[] requested = new DiskCachedTile[tileIndices.length];
+            Map<Object, Integer> toLoad = new LinkedHashMap<Object, Integer>();
+
+            for (int i = 0; i < tileIndices.length; i++) {
+                Object key = getTileId(owner, tileIndices[i].x, tileIndices[i].y);
+                DiskCachedTile tile = tiles.get(key);
+                if (tile == null) {
+                    metrics.notCached.increment();
+                    continue;
+                }
+
+                requested[i] = tile;
+                r[i] = residentTiles.get(key);
+                if (r[i] != null) {
+                    metrics.hits.increment();
+                } else {
+                    metrics.misses.increment();
+                    if (!toLoad.containsKey(key)) {
+                        toLoad.put(key, i);
+                    }
                 }
             }
 
-            return r;
+            if (!toLoad.isEmpty()) {
+                List<DiskCachedTile> batch = new ArrayList<DiskCachedTile>();
+                for (int i : toLoad.values()) {
+                    batch.add(requested[i]);
+                }
+                Map<Object, Raster> loaded = loadTiles(batch);
+
+                for (int i = 0; i < tileIndices.length; i++) {
+                    if (requested[i] != null && r[i] == null) {
+                        r[i] = loaded.get(requested[i].getTileId());
+                    }
+                }
+            }
 
-        } finally {
-            tileLock.unlock();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < tileIndices.length; i++) {
+                DiskCachedTile tile = requested[i];
+                if (tile != null && r[i] != null) {
+                    tile.setAction(DiskCachedTile.TileAction.ACTION_ACCESSED);
+                    tile.setTileTimeStamp(now);
+                    evictionPolicy.tileAccessed(tile);
+                    notifyTileAction(tile);
+                }
+            }
         }
+
+        return r;
     }
 
     /**
-     * Removes ALL tiles from the cache: all resident tiles will be
-     * removed from memory and all files for disk-cached tiles will
-     * be discarded.
+     * Requests that tiles neighbouring the given tiles be loaded into memory
+     * in anticipation of their being accessed. This is intended to be called
+     * with the same tile indices as a preceding call to 
+     * {@linkplain #getTiles(RenderedImage, Point[])}, eg. when an application
+     * is working through an image region by region.
      * <p>
-     * The update action of each tile will be set to {@linkplain DiskCachedTile.TileAction#ACTION_REMOVED}.
-     */
-    public void flush() {
-        tileLock.lock();
+     * The neighbours of the given tiles (within the image's tile grid, and
+     * excluding the given tiles themselves) which are cached but not resident
+     * are loaded in scanline order. If background I/O has been enabled with
+     * {@linkplain #KEY_IO_THREADS} the tiles are loaded asynchronously and this
+     * method returns immediately; requests that do not fit into the I/O queue
+     * are dropped. Otherwise the tiles are loaded in the calling thread.
+     * <p>
+     * Prefetched tiles have their access time updated, as if they had been
+     * requested, so that they are not immediately swapped out again to make
+     * room for each other.
+     *
+     * @param owner the image that the tiles belong to
+     * @param tileIndices column-row coordinates of the tiles just requested
+     */
+    public void prefetchTiles(RenderedImage owner, Point[] tileIndices) {
+        final int minX = owner.getMinTileX();
+        final int minY = owner.getMinTileY();
+        final int maxX = minX + owner.getNumXTiles() - 1;
+        final int maxY = minY + owner.getNumYTiles() - 1;
+
+        Set<Point> requested = new LinkedHashSet<Point>();
+        for (Point p : tileIndices) {
+            requested.add(p);
+        }
 
-        try {
-            flushMemory();
+        List<Point> neighbours = new ArrayList<Point>();
+        Set<Point> seen = new LinkedHashSet<Point>(requested);
+        for (Point p : requested) {
+            for (int y = Math.max(minY, p.y - 1); y <= Math.min(maxY, p.y + 1); y++) {
+                for (int x = Math.max(minX, p.x - 1); x <= Math.min(maxX, p.x + 1); x++) {
+                    Point n = new Point(x, y);
+                    if (seen.add(n)) {
+                        neighbours.add(n);
+                    }
+                }
+            }
+        }
 
-            for (DiskCachedTile tile : tiles.values()) {
-                tile.deleteDiskCopy();
-                tile.setAction(DiskCachedTile.TileAction.ACTION_REMOVED);
-                if (diagnosticsEnabled) {
-                    setChanged();
-                    notifyObservers(tile);
+        Collections.sort(neighbours, new Comparator<Point>() {
+            public int compare(Point p1, Point p2) {
+                if (p1.y != p2.y) {
+                    return p1.y < p2.y ? -1 : 1;
                 }
+                return p1.x < p2.x ? -1 : (p1.x == p2.x ? 0 : 1);
+            }
+        });
+
+        for (Point p : neighbours) {
+            Object key = getTileId(owner, p.x, p.y);
+            final DiskCachedTile tile = tiles.get(key);
+            if (tile == null || residentTiles.containsKey(key)) {
+                continue;
+            }
+
+            if (ioService == null) {
+                prefetchTile(tile);
+
+            } else if (ioService.getQueue().remainingCapacity() > 0) {
+                ioService.execute(new Runnable() {
+                    public void run() {
+                        prefetchTile(tile);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Writes the data of all tiles that have been swapped out of memory but
+     * are still waiting to be written by background I/O threads. On return,
+     * all such data have been written (by this or other threads).
+     * 
+     * @see #KEY_IO_THREADS
+     */
+    public void writePendingTiles() {
+        for (Object key : pendingWrites.keySet()) {
+            DiskCachedTile tile = tiles.get(key);
+            if (tile != null) {
+                writePendingTile(tile);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of tiles which have been swapped out of memory
+     * and are waiting for their data to be written to disk.
+     *
+     * @return number of tiles waiting to be written
+     */
+    public int getNumPendingWrites() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * Gets the number of background I/O tasks (writes and prefetches)
+     * waiting to run.
+     *
+     * @return number of queued tasks (always 0 if background I/O is
+     *         not enabled)
+     * @see #KEY_IO_THREADS
+     */
+    public int getNumQueuedIOTasks() {
+        return ioService == null ? 0 : ioService.getQueue().size();
+    }
+
+    /**
+     * Gets the number of tiles written to disk by write-behind tasks since
+     * the cache was created. This includes tasks run by a calling thread
+     * because the I/O queue was full.
+     *
+     * @return number of background writes
+     * @see #KEY_IO_THREADS
+     */
+    public long getNumBackgroundWrites() {
+        return numBackgroundWrites.get();
+    }
+
+    /**
+     * Gets the number of tiles loaded into memory by
+     * {@linkplain #prefetchTiles(RenderedImage, Point[])} since the
+     * cache was created.
+     *
+     * @return number of prefetched tiles
+     */
+    public long getNumPrefetchedTiles() {
+        return numPrefetchedTiles.get();
+    }
+
+    /**
+     * Gets a snapshot of the cache's activity counters, latency histograms
+     * and current state. Counters are updated without locking, so values
+     * taken while other threads are using the cache may be slightly out of 
+     * step with each other.
+     *
+     * @return cache statistics
+     * @see #resetStatistics()
+     */
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(metrics, tiles.size(), residentTiles.size(),
+                pendingWrites.size(), curMemory, memCapacity);
+    }
+
+    /**
+     * Resets the cache's activity counters and latency histograms to zero.
+     */
+    public void resetStatistics() {
+        metrics.reset();
+    }
+
+    /**
+     * Registers a {@linkplain DiskMemTileCacheMXBean} for this cache with the
+     * platform MBean server so that its statistics can be monitored with JMX
+     * tools. The object name is {@code org.jaitools.tilecache:type=DiskMemTileCache,name=<name>}.
+     * If the cache was already registered, the previous registration is
+     * removed first. The MBean server holds a reference to the cache until
+     * {@linkplain #unregisterMBean()} is called.
+     *
+     * @param name name to distinguish this cache from others
+     * @return the object name
+     * @throws JMException if registration fails, eg. because another cache
+     *         is registered under the same name
+     */
+    public synchronized ObjectName registerMBean(String name) throws JMException {
+        unregisterMBean();
+
+        ObjectName objName = new ObjectName(
+                "org.jaitools.tilecache:type=DiskMemTileCache,name=" + ObjectName.quote(name));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new MXBeanAdapter(this), objName);
+
+        mbeanName = objName;
+        return objName;
+    }
+
+    /**
+     * Removes this cache's MBean, if any, from the platform MBean server.
+     *
+     * @throws JMException if the MBean cannot be unregistered
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (mbeanName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(mbeanName)) {
+                server.unregisterMBean(mbeanName);
             }
-            tiles.clear();
+            mbeanName = null;
+        }
+    }
+
+    /**
+     * Removes ALL tiles from the cache: all resident tiles will be
+     * removed from memory and all files for disk-cached tiles will
+     * be discarded.
+     * <p>
+     * The update action of each tile will be set to {@linkplain DiskCachedTile.TileAction#ACTION_REMOVED}.
+     */
+    public void flush() {
+        lockAllLoadLocks();
+        try {
+            lock(tileLock);
+            try {
+                clearMemory(false);
+                pendingWrites.clear();
+
+                for (DiskCachedTile tile : tiles.values()) {
+                    tile.deleteDiskCopy();
+                    tile.setPinCount(0);
+                    tile.setAction(DiskCachedTile.TileAction.ACTION_REMOVED);
+                    notifyTileAction(tile);
+                }
+                tiles.clear();
+                numPinnedTiles = 0;
 
+            } finally {
+                tileLock.unlock();
+            }
         } finally {
-            tileLock.unlock();
+            unlockAllLoadLocks();
+        }
+    }
+
+    /**
+     * Releases the resources held by this cache. All tiles are removed as
+     * for {@link #flush()}, the background I/O, auto-flush and tile polling
+     * threads are stopped, and the cache's MBean (if any) is unregistered.
+     * A {@linkplain TileStore} supplied when creating the cache is not
+     * disposed of. The cache should not be used after this method has
+     * been called.
+     */
+    public void dispose() {
+        flush();
+
+        stopTilePolling();
+        tilePollingService.shutdownNow();
+
+        if (flushService != null) {
+            setAutoFlushMemoryEnabled(false);
+            flushService.shutdownNow();
+        }
+
+        if (ioService != null) {
+            // queued tasks have nothing left to do after the flush
+            ioService.shutdown();
+            try {
+                ioService.awaitTermination(IO_SHUTDOWN_WAIT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            unregisterMBean();
+        } catch (JMException ex) {
+            // nothing more we can do
         }
     }
 
     /**
-     * Removes all resident tiles from memory. No rewriting of tile data
-     * to disk is done.
+     * Removes all resident tiles from memory, other than pinned tiles.
+     * No rewriting of tile data to disk is done.
      */
     public void flushMemory() {
-        tileLock.lock();
+        lock(tileLock);
         try {
-            residentTiles.clear();
-            sortedResidentTiles.clear();
-            curMemory = 0;
-            
+            clearMemory(true);
         } finally {
             tileLock.unlock();
         }
     }
 
+    /**
+     * Removes resident tiles from memory without writing their data.
+     * Must be called while holding the tile lock.
+     *
+     * @param keepPinned {@code true} to leave pinned tiles resident
+     */
+    private void clearMemory(boolean keepPinned) {
+        if (keepPinned && numPinnedTiles > 0) {
+            Iterator<Map.Entry<Object, Raster>> it = residentTiles.entrySet().iterator();
+            while (it.hasNext()) {
+                DiskCachedTile tile = tiles.get(it.next().getKey());
+                if (tile == null || !tile.isPinned()) {
+                    it.remove();
+                    if (tile != null) {
+                        curMemory -= tile.getTileSize();
+                        if (ownerStates != null) {
+                            untrackResidentTile(tile);
+                        }
+                    }
+                }
+            }
+            evictionPolicy.clear();
+            return;
+        }
+
+        residentTiles.clear();
+        evictionPolicy.clear();
+        curMemory = 0;
+
+        if (ownerStates != null) {
+            Iterator<OwnerState> it = ownerStates.values().iterator();
+            while (it.hasNext()) {
+                OwnerState state = it.next();
+                state.tiles.clear();
+                state.memory = 0;
+                if (state.quota == null) {
+                    it.remove();
+                }
+            }
+        }
+        Arrays.fill(priorityMemory, 0);
+    }
+
     /**
      * Frees memory for resident tiles so that the fraction of memory occupied is
-     * no more than the current value of the mamory threshold. 
+     * no more than the current value of the mamory threshold.
      *
      * @see DiskMemTileCache#setMemoryThreshold(float)
      */
     public void memoryControl() {
-        tileLock.lock();
+        List<DiskCachedTile> evicted = new ArrayList<DiskCachedTile>();
+        lock(tileLock);
         try {
-            long maxUsed = (long) (memThreshold * memCapacity);
-            long toFree = curMemory - maxUsed;
-            if (toFree > 0) {
-                defaultMemoryControl(toFree);
-            }
+            memoryControl(evicted);
         } finally {
             tileLock.unlock();
         }
+
+        writeEvictedTiles(evicted);
+    }
+
+    /**
+     * Frees memory down to the memory threshold. Must be called
+     * while holding the tile lock.
+     *
+     * @param evicted receives tiles whose data must be written to disk
+     */
+    private void memoryControl(List<DiskCachedTile> evicted) {
+        long maxUsed = (long) (memThreshold * memCapacity);
+        long toFree = curMemory - maxUsed;
+        if (toFree > 0) {
+            defaultMemoryControl(toFree, evicted);
+        }
     }
 
     /**
      * Makes the requested amount of memory cache available, removing
-     * resident tiles as necessary.
+     * resident tiles as necessary. Must be called while holding the
+     * tile lock.
      *
      * @param memRequired memory requested (bytes)
+     * @param evicted receives tiles whose data must be written to disk
      */
-    private void defaultMemoryControl( long memRequired ) {
+    private void defaultMemoryControl( long memRequired, List<DiskCachedTile> evicted ) {
         if (memRequired > memCapacity) {
             // @todo something better than this...
             throw new RuntimeException("space required is greater than cache memory capacity");
@@ -807,27 +1440,20 @@ public class DiskMemTileCache extends Observable implements TileCache {
          * Remove one or more lowest priority tiles to free
          * space
          */
-        Collections.sort(sortedResidentTiles, comparator);
-        while (memCapacity - curMemory < memRequired && !sortedResidentTiles.isEmpty()) {
-            Object key = sortedResidentTiles.get(sortedResidentTiles.size()-1).getTileId();
-
-            try {
-                removeResidentTile(key, true);
-            } catch (DiskCacheFailedException ex) {
-                /*
-                 * It would be nicer to just throw this exception
-                 * upwards be we can't in the overidden method
-                 */
-                LOGGER.log(Level.SEVERE, null, ex);
+        while (memCapacity - curMemory < memRequired) {
+            DiskCachedTile tile = nextVictim();
+            if (tile == null) {
+                break;
             }
+            removeResidentTile(tile, true, evicted);
         }
     }
 
 
     /**
      * Does nothing.
-     * 
-     * @deprecated Please do not use this method  
+     *
+     * @deprecated Please do not use this method
      */
     @Deprecated
     public void setTileCapacity(int arg0) {
@@ -835,8 +1461,8 @@ public class DiskMemTileCache extends Observable implements TileCache {
 
     /**
      * Always returns 0.
-     * 
-     * @deprecated Please do not use this method  
+     *
+     * @deprecated Please do not use this method
      */
     public int getTileCapacity() {
         return 0;
@@ -851,7 +1477,8 @@ public class DiskMemTileCache extends Observable implements TileCache {
      * @param newCapacity requested memory capacity for resident tiles
      */
     public void setMemoryCapacity(long newCapacity) {
-        tileLock.lock();
+        List<DiskCachedTile> evicted = new ArrayList<DiskCachedTile>();
+        lock(tileLock);
 
         try {
             okToFlush.set(false);
@@ -871,23 +1498,19 @@ public class DiskMemTileCache extends Observable implements TileCache {
                  * memoryControl or defaultMemoryControl methods because
                  * they will fail when memCapacity has been reduced
                  */
-                Collections.sort(sortedResidentTiles, comparator);
                 while (curMemory > newCapacity) {
-                    Object key = sortedResidentTiles.get(sortedResidentTiles.size() - 1).getTileId();
-                    try {
-                        removeResidentTile(key, true);
-                    } catch (DiskCacheFailedException ex) {
-                        /*
-                         * It would be nicer to just throw this exception
-                         * upwards be we can't in the overidden method
-                         */
-                        LOGGER.log(Level.SEVERE, null, ex);
+                    DiskCachedTile tile = nextVictim();
+                    if (tile == null) {
+                        break;
                     }
+                    removeResidentTile(tile, true, evicted);
                 }
             }
         } finally {
             tileLock.unlock();
         }
+
+        writeEvictedTiles(evicted);
     }
 
     /**
@@ -948,38 +1571,291 @@ public class DiskMemTileCache extends Observable implements TileCache {
      * Sets the comparator to use to assign memory-residence priority to
      * tiles. If {@code comp} is {@code null} the default comparator
      * ({@link TileAccessTimeComparator}) will be used.
+     * <p>
+     * The default comparator is served by an {@linkplain LRUEvictionPolicy},
+     * which gives the same ordering without sorting. Other comparators are
+     * used via a {@linkplain ComparatorEvictionPolicy}, which must re-sort
+     * resident tiles when memory is required; for large numbers of resident
+     * tiles {@linkplain #setEvictionPolicy(EvictionPolicy)} is preferable.
      * 
      * @param comp the comparator or {@code null} for the default
      */
     public void setTileComparator(Comparator comp) {
-        tileLock.lock();
+        if (comp == null || comp.getClass() == TileAccessTimeComparator.class) {
+            setEvictionPolicy(null);
+        } else {
+            setEvictionPolicy(new ComparatorEvictionPolicy(comp));
+        }
+    }
+
+    /**
+     * Gets the comparator currently used to assign memory-residence
+     * priority to tiles.
+     * 
+     * @return the current comparator, or {@code null} if an eviction policy
+     *         not based on a comparator has been set
+     */
+    public Comparator getTileComparator() {
+        return comparator;
+    }
+
+    /**
+     * Sets the policy used to choose which tiles to remove from memory when
+     * space is required. If {@code policy} is {@code null} the default
+     * ({@linkplain LRUEvictionPolicy}) is used. Tiles currently resident are
+     * passed to the new policy in no particular order.
+     *
+     * @param policy the policy or {@code null} for the default
+     * @see ClockEvictionPolicy
+     * @see TinyLFUEvictionPolicy
+     */
+    public void setEvictionPolicy(EvictionPolicy policy) {
+        lock(tileLock);
         try {
-            if (comp == null) {
-                // switch to default comparator based on tile access time
+            if (policy == null) {
+                policy = new LRUEvictionPolicy();
+            }
+
+            if (policy instanceof LRUEvictionPolicy) {
                 comparator = new TileAccessTimeComparator();
+            } else if (policy instanceof ComparatorEvictionPolicy) {
+                comparator = (Comparator<CachedTile>) ((ComparatorEvictionPolicy) policy).getComparator();
             } else {
-                comparator = comp;
+                comparator = null;
             }
 
-            sortedResidentTiles = new ArrayList<DiskCachedTile>();
+            policy.clear();
             for (Object key : residentTiles.keySet()) {
-                sortedResidentTiles.addAll(tiles.values());
+                DiskCachedTile tile = tiles.get(key);
+                if (tile != null) {
+                    policy.tileAdded(tile);
+                }
             }
-            Collections.sort(sortedResidentTiles, comparator);
-            
+            evictionPolicy = policy;
+
         } finally {
             tileLock.unlock();
         }
     }
 
     /**
-     * Gets the comparator currently used to assign memory-residence
-     * priority to tiles.
-     * 
-     * @return the current comparator
+     * Gets the policy used to choose which tiles to remove from memory.
+     *
+     * @return the current policy
      */
-    public Comparator getTileComparator() {
-        return comparator;
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    /**
+     * Sets the memory quota and priority for an image's tiles. If the image
+     * already has more tiles in memory than the quota's hard limit allows,
+     * some are swapped out immediately. Quotas are kept until replaced or
+     * removed, or until the image has been garbage collected and its tiles
+     * removed from the cache.
+     * <p>
+     * While any image has a quota, the cache keeps track of the resident
+     * tiles of each image. Choosing a tile to swap out from a particular
+     * image requires a scan of that image's resident tiles.
+     *
+     * @param owner the image
+     * @param quota the quota, or {@code null} to remove the image's quota
+     * @see TileQuota
+     */
+    public void setOwnerQuota(RenderedImage owner, TileQuota quota) {
+        Object ownerKey = getOwnerKey(getTileId(owner, 0, 0));
+        List<DiskCachedTile> evicted = new ArrayList<DiskCachedTile>();
+
+        lock(tileLock);
+        try {
+            if (quota == null) {
+                if (ownerStates != null) {
+                    OwnerState state = ownerStates.get(ownerKey);
+                    if (state != null && state.quota != null) {
+                        setPriorityClass(state, null);
+                        if (state.tiles.isEmpty()) {
+                            ownerStates.remove(ownerKey);
+                        }
+                        removeQuota();
+                    }
+                }
+                return;
+            }
+
+            if (ownerStates == null) {
+                // start tracking resident tiles by owner
+                ownerStates = new HashMap<Object, OwnerState>();
+                List<DiskCachedTile> resident = new ArrayList<DiskCachedTile>();
+                for (Object key : residentTiles.keySet()) {
+                    DiskCachedTile tile = tiles.get(key);
+                    if (tile != null) {
+                        resident.add(tile);
+                    }
+                }
+
+                // link tiles from least to most recently accessed
+                Collections.sort(resident, Collections.reverseOrder(new TileAccessTimeComparator()));
+                for (DiskCachedTile tile : resident) {
+                    trackResidentTile(tile);
+                }
+            }
+
+            OwnerState state = ownerStates.get(ownerKey);
+            if (state == null) {
+                state = new OwnerState();
+                ownerStates.put(ownerKey, state);
+            }
+            if (state.quota == null) {
+                numQuotas++ ;
+            }
+            setPriorityClass(state, quota);
+
+            while (state.memory > quota.getHardLimit()) {
+                DiskCachedTile tile = state.oldestTile();
+                if (tile == null) {
+                    break;
+                }
+                removeResidentTile(tile, true, evicted);
+            }
+
+        } finally {
+            tileLock.unlock();
+        }
+
+        writeEvictedTiles(evicted);
+    }
+
+    /**
+     * Gets the memory quota for an image's tiles.
+     *
+     * @param owner the image
+     * @return the quota or {@code null} if the image does not have one
+     */
+    public TileQuota getOwnerQuota(RenderedImage owner) {
+        Object ownerKey = getOwnerKey(getTileId(owner, 0, 0));
+
+        lock(tileLock);
+        try {
+            if (ownerStates != null) {
+                OwnerState state = ownerStates.get(ownerKey);
+                if (state != null) {
+                    return state.quota;
+                }
+            }
+            return null;
+
+        } finally {
+            tileLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the amount of memory used by an image's resident tiles.
+     *
+     * @param owner the image
+     * @return memory in bytes
+     */
+    public long getOwnerMemory(RenderedImage owner) {
+        Object ownerKey = getOwnerKey(getTileId(owner, 0, 0));
+
+        lock(tileLock);
+        try {
+            if (ownerStates != null) {
+                OwnerState state = ownerStates.get(ownerKey);
+                return state == null ? 0 : state.memory;
+            }
+
+            long mem = 0;
+            for (Object key : residentTiles.keySet()) {
+                if (ownerKey.equals(getOwnerKey(key))) {
+                    DiskCachedTile tile = tiles.get(key);
+                    if (tile != null) {
+                        mem += tile.getTileSize();
+                    }
+                }
+            }
+            return mem;
+
+        } finally {
+            tileLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the store used for disk caching of tiles. If off-heap memory
+     * has been enabled this will be an {@linkplain OffHeapTileStore}
+     * wrapping any store that was set with {@linkplain #KEY_TILE_STORE}.
+     *
+     * @return the store, or {@code null} if tiles are being written
+     *         to individual temporary files
+     * @see #KEY_TILE_STORE
+     * @see #KEY_OFF_HEAP_CAPACITY
+     */
+    public TileStore getTileStore() {
+        return tileStore;
+    }
+
+    /**
+     * Gets the maximum amount of off-heap memory that the cache will use
+     * for tiles swapped out of heap memory.
+     *
+     * @return capacity in bytes (0 if off-heap memory is not being used)
+     * @see #KEY_OFF_HEAP_CAPACITY
+     */
+    public long getOffHeapCapacity() {
+        if (tileStore instanceof OffHeapTileStore) {
+            return ((OffHeapTileStore) tileStore).getMaxCapacity();
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the amount of off-heap memory currently holding tile data.
+     * Together with {@linkplain #getCurrentMemory()} this gives the total
+     * memory used for cached tiles.
+     *
+     * @return off-heap memory in use in bytes
+     * @see #KEY_OFF_HEAP_CAPACITY
+     */
+    public long getCurrentOffHeapMemory() {
+        if (tileStore instanceof OffHeapTileStore) {
+            return ((OffHeapTileStore) tileStore).getUsedBytes();
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the codec used to encode tile data written to disk.
+     *
+     * @return the codec, or {@code null} if tile data are written as is
+     * @see #KEY_TILE_CODEC
+     */
+    public TileCodec getTileCodec() {
+        return tileCodec;
+    }
+
+    /**
+     * Gets the ratio of the uncompressed size of all tiles currently 
+     * cached to disk to the space that they take on disk. The value will be
+     * 1.0 if no {@linkplain TileCodec} is in use, and higher values
+     * indicate greater compression. If no tiles have been cached to disk
+     * 1.0 is returned.
+     *
+     * @return the compression ratio
+     * @see #KEY_TILE_CODEC
+     */
+    public double getCompressionRatio() {
+        long rawBytes = 0;
+        long storedBytes = 0;
+        for (DiskCachedTile tile : tiles.values()) {
+            long n = tile.getStoredSize();
+            if (n > 0) {
+                rawBytes += tile.getTileSize();
+                storedBytes += n;
+            }
+        }
+
+        return storedBytes > 0 ? (double) rawBytes / storedBytes : 1.0;
     }
 
     /**
@@ -1027,6 +1903,156 @@ public class DiskMemTileCache extends Observable implements TileCache {
         return residentTiles.containsKey(key);
     }
 
+    /**
+     * Pins a tile in memory, loading it first if it is not resident. A pinned
+     * tile is not swapped out of memory to make room for other tiles, nor
+     * removed by auto-flushing or {@linkplain #flushMemory()}, until it has
+     * been unpinned. Memory control only considers unpinned tiles, so the
+     * memory used by pinned tiles can exceed the cache's capacity or an
+     * owner's hard quota. Tiles should only be pinned for as long as they
+     * are being worked on.
+     * <p>
+     * Pins are reference counted. Each call to this method must be matched
+     * by closing the returned handle or by calling
+     * {@linkplain #unpinTile(RenderedImage, int, int)}. Removing the tile from
+     * the cache, or calling {@linkplain #flush()}, releases all of its pins.
+     *
+     * @param owner the owning image
+     * @param tileX tile column
+     * @param tileY tile row
+     * @return a handle for the pinned tile, or {@code null} if the tile
+     *         is not in the cache
+     */
+    public PinnedTile pinTile(RenderedImage owner, int tileX, int tileY) {
+        Object key = getTileId(owner, tileX, tileY);
+
+        for (int attempt = 0; ; attempt++) {
+            Raster r = getTile(owner, tileX, tileY);
+            if (r == null) {
+                return null;
+            }
+
+            ReentrantLock loadLock = getLoadLock(key);
+            lock(loadLock);
+            try {
+                lock(tileLock);
+                try {
+                    DiskCachedTile tile = tiles.get(key);
+                    if (tile == null) {
+                        return null;
+                    }
+
+                    Raster resident = residentTiles.get(key);
+                    if (resident == null) {
+                        /*
+                         * The tile was swapped out again before we could pin
+                         * it, or is not allowed in memory because of its size
+                         * or its owner's quota. After a few tries we take it
+                         * in regardless.
+                         */
+                        if (attempt < MAX_PIN_ATTEMPTS) {
+                            continue;
+                        }
+
+                        resident = pendingWrites.remove(key);
+                        if (resident == null) {
+                            resident = r;
+                        }
+                        residentTiles.put(key, resident);
+                        curMemory += tile.getTileSize();
+                        if (ownerStates != null) {
+                            trackResidentTile(tile);
+                        }
+                        tile.setAction(DiskCachedTile.TileAction.ACTION_RESIDENT);
+                        notifyTileAction(tile);
+                    }
+
+                    int count = tile.getPinCount();
+                    if (count == 0) {
+                        evictionPolicy.tileRemoved(tile);
+                        numPinnedTiles++ ;
+                    }
+                    tile.setPinCount(count + 1);
+
+                    return new PinnedTile(this, owner, tileX, tileY, resident);
+
+                } finally {
+                    tileLock.unlock();
+                }
+            } finally {
+                loadLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Releases one pin on a tile. When the last pin is released the tile
+     * becomes subject to normal memory control again and, if the cache is
+     * over its memory capacity, tiles are swapped out. Calling this method
+     * for a tile that is not pinned has no effect.
+     *
+     * @param owner the owning image
+     * @param tileX tile column
+     * @param tileY tile row
+     * @see #pinTile(RenderedImage, int, int)
+     */
+    public void unpinTile(RenderedImage owner, int tileX, int tileY) {
+        Object key = getTileId(owner, tileX, tileY);
+        List<DiskCachedTile> evicted = new ArrayList<DiskCachedTile>();
+
+        lock(tileLock);
+        try {
+            DiskCachedTile tile = tiles.get(key);
+            if (tile == null || !tile.isPinned()) {
+                return;
+            }
+
+            int count = tile.getPinCount() - 1;
+            tile.setPinCount(count);
+            if (count == 0) {
+                numPinnedTiles-- ;
+                if (residentTiles.containsKey(key)) {
+                    evictionPolicy.tileAdded(tile);
+                }
+                if (curMemory > memCapacity) {
+                    defaultMemoryControl(0, evicted);
+                }
+            }
+
+        } finally {
+            tileLock.unlock();
+        }
+
+        writeEvictedTiles(evicted);
+    }
+
+    /**
+     * Checks whether a given tile is pinned in memory.
+     *
+     * @param owner the owning image
+     * @param tileX tile column
+     * @param tileY tile row
+     * @return {@code true} if the tile is pinned; {@code false} otherwise
+     */
+    public boolean isTilePinned(RenderedImage owner, int tileX, int tileY) {
+        DiskCachedTile tile = tiles.get(getTileId(owner, tileX, tileY));
+        return tile != null && tile.isPinned();
+    }
+
+    /**
+     * Gets the number of tiles currently pinned in memory.
+     *
+     * @return number of pinned tiles
+     */
+    public int getNumPinnedTiles() {
+        lock(tileLock);
+        try {
+            return numPinnedTiles;
+        } finally {
+            tileLock.unlock();
+        }
+    }
+
     /**
      * Informs the cache that a tile's data have changed. The tile should
      * be resident in memory as the result of a previous {@code getTile}
@@ -1048,10 +2074,12 @@ public class DiskMemTileCache extends Observable implements TileCache {
     public void setTileChanged(RenderedImage owner, int tileX, int tileY)
             throws TileNotResidentException, DiskCacheFailedException {
 
-        tileLock.lock();
+        okToFlush.set(false);
+        Object tileId = getTileId(owner, tileX, tileY);
+
+        ReentrantLock loadLock = getLoadLock(tileId);
+        lock(loadLock);
         try {
-            okToFlush.set(false);
-            Object tileId = getTileId(owner, tileX, tileY);
             Raster r = residentTiles.get(tileId);
             if (r == null) {
                 throw new TileNotResidentException(owner, tileX, tileY);
@@ -1060,14 +2088,14 @@ public class DiskMemTileCache extends Observable implements TileCache {
             DiskCachedTile tile = tiles.get(tileId);
             if (tile.cachedToDisk()) {
                 try {
-                    tile.writeData(r);
+                    writeTileData(tile, r);
                 } catch (IOException ioEx) {
                     throw new DiskCacheFailedException(owner, tileX, tileY);
                 }
             }
-            
+
         } finally {
-            tileLock.unlock();
+            loadLock.unlock();
         }
     }
 
@@ -1157,7 +2185,7 @@ public class DiskMemTileCache extends Observable implements TileCache {
      * @param visitor the visitor
      */
     public void accept(DiskMemTileCacheVisitor visitor) {
-        tileLock.lock();
+        lock(tileLock);
         try {
             okToFlush.set(false);
             for (Object key : tiles.keySet()) {
@@ -1169,34 +2197,226 @@ public class DiskMemTileCache extends Observable implements TileCache {
     }
 
     /**
-     * Adds a raster to those resident in memory.
+     * Gets the next tile to swap out of memory, taking owner quotas into
+     * account if any have been set. Must be called while holding the
+     * tile lock.
+     *
+     * @return the tile or {@code null} if no tiles are resident
      */
-    private boolean makeResident(DiskCachedTile tile, Raster data) {
-        if (tile.getTileSize() > memCapacity) {
+    private DiskCachedTile nextVictim() {
+        if (ownerStates == null) {
+            return evictionPolicy.nextVictim();
+        }
+
+        /*
+         * Owners over their soft limit give up tiles first, lowest
+         * priority first and then the owner furthest over its limit
+         */
+        OwnerState over = null;
+        for (OwnerState state : quotaStates) {
+            long excess = state.memory - state.getSoftLimit();
+            if (excess > 0 && (over == null ||
+                    state.getPriority() < over.getPriority() ||
+                    (state.getPriority() == over.getPriority() &&
+                     excess > over.memory - over.getSoftLimit()))) {
+                over = state;
+            }
+        }
+        if (over != null) {
+            DiskCachedTile tile = over.oldestTile();
+            if (tile != null) {
+                return tile;
+            }
+        }
+
+        DiskCachedTile victim = evictionPolicy.nextVictim();
+        if (victim == null) {
+            return null;
+        }
+
+        /*
+         * The policy's choice is overridden if tiles of a lower
+         * priority owner are resident
+         */
+        OwnerState victimState = ownerStates.get(getOwnerKey(victim.getTileId()));
+        int victimPriority = victimState == null ? 
+                TileQuota.Priority.NORMAL.ordinal() : victimState.getPriority();
+
+        for (int p = 0; p < victimPriority; p++) {
+            if (priorityMemory[p] > 0) {
+                OwnerState largest = null;
+                for (OwnerState state : ownerStates.values()) {
+                    if (state.getPriority() == p && 
+                            (largest == null || state.memory > largest.memory)) {
+                        largest = state;
+                    }
+                }
+                DiskCachedTile tile = largest == null ? null : largest.oldestTile();
+                if (tile != null) {
+                    return tile;
+                }
+            }
+        }
+
+        return victim;
+    }
+
+    /**
+     * Swaps out tiles of the given tile's owner, if necessary, so that the
+     * tile can be made resident without exceeding the owner's hard limit.
+     * Must be called while holding the tile lock and only when owner
+     * states are being tracked.
+     *
+     * @param tile the tile to be made resident
+     * @param evicted receives tiles whose data must be written to disk
+     * @return {@code true} if the tile can be made resident; {@code false}
+     *         if it is larger than the hard limit
+     */
+    private boolean enforceHardLimit(DiskCachedTile tile, List<DiskCachedTile> evicted) {
+        OwnerState state = ownerStates.get(getOwnerKey(tile.getTileId()));
+        if (state == null || state.quota == null) {
+            return true;
+        }
+
+        long limit = state.quota.getHardLimit();
+        if (tile.getTileSize() > limit) {
             return false;
         }
-        
-        if (tile.getTileSize() > memCapacity - curMemory) {
-            memoryControl();
+
+        while (state.memory + tile.getTileSize() > limit) {
+            DiskCachedTile victim = state.oldestTile();
+            if (victim == null) {
+                break;
+            }
+            removeResidentTile(victim, true, evicted);
+        }
+        return true;
+    }
+
+    /**
+     * Records a newly resident tile against its owner. Must be called while
+     * holding the tile lock and only when owner states are being tracked.
+     *
+     * @param tile the tile
+     */
+    private void trackResidentTile(DiskCachedTile tile) {
+        Object ownerKey = getOwnerKey(tile.getTileId());
+        OwnerState state = ownerStates.get(ownerKey);
+        if (state == null) {
+            state = new OwnerState();
+            ownerStates.put(ownerKey, state);
+        }
+
+        if (state.tiles.put(tile, tile.getTileTimeStamp()) == null) {
+            state.memory += tile.getTileSize();
+            priorityMemory[state.getPriority()] += tile.getTileSize();
+        }
+    }
+
+    /**
+     * Removes a tile that is leaving memory from its owner's record. Must be
+     * called while holding the tile lock and only when owner states are
+     * being tracked.
+     *
+     * @param tile the tile
+     */
+    private void untrackResidentTile(DiskCachedTile tile) {
+        Object ownerKey = getOwnerKey(tile.getTileId());
+        OwnerState state = ownerStates.get(ownerKey);
+        if (state != null && state.tiles.remove(tile) != null) {
+            state.memory -= tile.getTileSize();
+            priorityMemory[state.getPriority()] -= tile.getTileSize();
+            if (state.tiles.isEmpty() && state.quota == null) {
+                ownerStates.remove(ownerKey);
+            }
+        }
+    }
+
+    /**
+     * Sets an owner's quota, moving its resident memory to the
+     * new priority class. Must be called while holding the tile lock.
+     *
+     * @param state the owner's state
+     * @param quota the new quota (may be {@code null})
+     */
+    private void setPriorityClass(OwnerState state, TileQuota quota) {
+        priorityMemory[state.getPriority()] -= state.memory;
+        state.quota = quota;
+        priorityMemory[state.getPriority()] += state.memory;
+
+        if (quota != null) {
+            quotaStates.add(state);
+        } else {
+            quotaStates.remove(state);
+        }
+    }
+
+    /**
+     * Called when an owner's quota has been removed. Stops tracking of
+     * owner states when no quotas remain. Must be called while holding
+     * the tile lock.
+     */
+    private void removeQuota() {
+        numQuotas-- ;
+        if (numQuotas == 0) {
+            ownerStates = null;
+            quotaStates.clear();
+            Arrays.fill(priorityMemory, 0);
+        }
+    }
+
+    /**
+     * Ensures that the given amount of memory is available for resident
+     * tiles, swapping tiles out if required. Must be called while holding
+     * the tile lock.
+     *
+     * @param memRequired memory required (bytes), which must not be
+     *        greater than the memory capacity
+     * @param evicted receives tiles whose data must be written to disk
+     */
+    private void freeMemory(long memRequired, List<DiskCachedTile> evicted) {
+        if (memRequired > memCapacity - curMemory) {
+            memoryControl(evicted);
 
             /*
              * It is possible that the threshold rule fails to
-             * free enough memory for the tile
+             * free enough memory
              */
-            if (tile.getTileSize() > memCapacity - curMemory) {
-                defaultMemoryControl(tile.getTileSize());
+            if (memRequired > memCapacity - curMemory) {
+                defaultMemoryControl(memRequired, evicted);
             }
         }
-        
+    }
+
+    /**
+     * Adds a raster to those resident in memory. Must be called while
+     * holding the tile lock.
+     *
+     * @param tile the tile
+     * @param data the tile's data
+     * @param evicted receives tiles removed from memory to make room
+     *        whose data must be written to disk
+     */
+    private boolean makeResident(DiskCachedTile tile, Raster data, List<DiskCachedTile> evicted) {
+        if (tile.getTileSize() > memCapacity) {
+            return false;
+        }
+
+        if (ownerStates != null && !enforceHardLimit(tile, evicted)) {
+            return false;
+        }
+
+        freeMemory(tile.getTileSize(), evicted);
+
         residentTiles.put(tile.getTileId(), data);
         curMemory += tile.getTileSize();
 
-        /*
-         * We don't bother about sort order here. Instead, the list
-         * will be sorted by tile priority when resident tiles are
-         * being removed
-         */
-        sortedResidentTiles.add(tile);
+        if (!tile.isPinned()) {
+            evictionPolicy.tileAdded(tile);
+        }
+        if (ownerStates != null) {
+            trackResidentTile(tile);
+        }
 
         return true;
     }
@@ -1205,40 +2425,417 @@ public class DiskMemTileCache extends Observable implements TileCache {
     /**
      * Removes a tile from the cache's memory storage. This may be to free
      * space for other tiles, in which case {@code writeData} will be
-     * set to {@code true} and, if the tile is writable, a request is made to write
-     * its data to disk again. If the tile is being removed from the cache
+     * set to {@code true} and, if the tile is writable, its data are queued
+     * to be written to disk again. If the tile is being removed from the cache
      * entirely, this method will be called with {@code writeData} set
      * to {@code false}.
+     * <p>
+     * No disk I/O is done here. Tiles that need writing are added to
+     * {@code evicted} and the caller must pass that list to
+     * {@link #writeEvictedTiles(List)} after releasing the tile lock.
+     * Must be called while holding the tile lock.
      *
-     * @param tileId the tile's unique id
+     * @param tile the tile
      * @param writeData if {@code true}, and the tile is writable, its data will be
-     * written to disk again; otherwise no writing is done.
+     *        queued to be written to disk again; otherwise no writing is done.
+     * @param evicted receives the tile if its data must be written (may be
+     *        {@code null} if {@code writeData} is {@code false})
      */
-    private void removeResidentTile(Object tileId, boolean writeData) throws DiskCacheFailedException {
-        DiskCachedTile tile = tiles.get(tileId);
+    private void removeResidentTile(DiskCachedTile tile, boolean writeData,
+            List<DiskCachedTile> evicted) {
+
+        Object tileId = tile.getTileId();
         Raster raster = residentTiles.remove(tileId);
-        sortedResidentTiles.remove(tile);
+        evictionPolicy.tileRemoved(tile);
         curMemory -= tile.getTileSize();
+        if (ownerStates != null) {
+            untrackResidentTile(tile);
+        }
+        if (writeData) {
+            metrics.evictions.increment();
+        }
 
         /**
          * If the tile is writable, ie. its data are represented
          * by a WritableRaster, we cache it to disk
          */
-        if (writeData && tile.isWritable()) {
+        if (writeData && tile.isWritable() && raster != null) {
+            pendingWrites.put(tileId, raster);
+            evicted.add(tile);
+        }
+
+        tile.setAction(DiskCachedTile.TileAction.ACTION_NON_RESIDENT);
+        notifyTileAction(tile);
+    }
+
+    /**
+     * Loads a non-resident tile from disk and makes it resident if space
+     * allows. Only the tile's load lock is held while reading, so other
+     * threads can work with the cache in the meantime. If another thread is
+     * already loading the same tile we wait for it and use its result.
+     *
+     * @param tile the tile
+     * @return the tile data or {@code null} if the tile could not be read
+     */
+    private Raster loadTile(DiskCachedTile tile) {
+        Object key = tile.getTileId();
+        List<DiskCachedTile> evicted = new ArrayList<DiskCachedTile>();
+        Raster r;
+
+        ReentrantLock loadLock = getLoadLock(key);
+        lock(loadLock);
+        try {
+            r = residentTiles.get(key);
+            if (r != null) {
+                // loaded by another thread while we were waiting
+                return r;
+            }
+
+            /*
+             * If the tile was swapped out of memory but its data have
+             * not yet been written we can take them from the queue
+             */
+            boolean rescued = false;
+            r = pendingWrites.remove(key);
+            if (r != null) {
+                rescued = true;
+            } else {
+                long readStart = System.nanoTime();
+                r = tile.readData();
+                if (r == null) {
+                    return null;
+                }
+                metrics.recordRead(tile.getTileSize(), System.nanoTime() - readStart);
+            }
+
+            boolean resident = false;
+            lock(tileLock);
             try {
-                tile.writeData(raster);
+                if (tiles.get(key) == tile) {
+                    resident = makeResident(tile, r, evicted);
+                }
+            } finally {
+                tileLock.unlock();
+            }
+
+            if (resident) {
+                tile.setAction(DiskCachedTile.TileAction.ACTION_RESIDENT);
+                notifyTileAction(tile);
+
+            } else if (rescued && tiles.get(key) == tile) {
+                // the data have nowhere else to go
+                try {
+                    writeTileData(tile, r);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.SEVERE, "Failed to write image tile data", ex);
+                }
+            }
+
+        } finally {
+            loadLock.unlock();
+        }
+
+        writeEvictedTiles(evicted);
+        return r;
+    }
+
+    /**
+     * Loads a batch of non-resident tiles from disk and makes them resident
+     * under a single memory control decision. The load locks for all of the
+     * tiles are held, and taken in stripe order, while reading. Tiles
+     * are read in disk order, then made resident in the order given until
+     * memory is full.
+     *
+     * @param batch the tiles, in order of preference for residence
+     * @return map of tile id to data for those tiles that could be read
+     */
+    private Map<Object, Raster> loadTiles(List<DiskCachedTile> batch) {
+        Map<Object, Raster> loaded = new HashMap<Object, Raster>();
+        Set<Object> rescued = new HashSet<Object>();
+        List<DiskCachedTile> madeResident = new ArrayList<DiskCachedTile>();
+        List<DiskCachedTile> evicted = new ArrayList<DiskCachedTile>();
+
+        List<DiskCachedTile> readOrder = new ArrayList<DiskCachedTile>(batch);
+        Collections.sort(readOrder, new Comparator<DiskCachedTile>() {
+            public int compare(DiskCachedTile t1, DiskCachedTile t2) {
+                File f1 = t1.getFile();
+                File f2 = t2.getFile();
+                if (f1 != f2) {
+                    if (f1 == null) {
+                        return -1;
+                    } else if (f2 == null) {
+                        return 1;
+                    }
+                    int c = f1.compareTo(f2);
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+                long o1 = t1.getFileOffset();
+                long o2 = t2.getFileOffset();
+                return o1 < o2 ? -1 : (o1 == o2 ? 0 : 1);
+            }
+        });
+
+        SortedSet<Integer> stripes = new TreeSet<Integer>();
+        for (DiskCachedTile tile : batch) {
+            stripes.add(getLoadLockIndex(tile.getTileId()));
+        }
+
+        for (int stripe : stripes) {
+            lock(loadLocks[stripe]);
+        }
+        try {
+            for (DiskCachedTile tile : readOrder) {
+                Object key = tile.getTileId();
+                Raster r = residentTiles.get(key);
+                if (r == null) {
+                    r = pendingWrites.remove(key);
+                    if (r != null) {
+                        rescued.add(key);
+                    } else {
+                        long readStart = System.nanoTime();
+                        r = tile.readData();
+                        if (r != null) {
+                            metrics.recordRead(tile.getTileSize(), System.nanoTime() - readStart);
+                        }
+                    }
+                }
+                if (r != null) {
+                    loaded.put(key, r);
+                }
+            }
+
+            lock(tileLock);
+            try {
+                List<DiskCachedTile> admit = new ArrayList<DiskCachedTile>();
+                long required = 0;
+                for (DiskCachedTile tile : batch) {
+                    Object key = tile.getTileId();
+                    if (loaded.containsKey(key) && tiles.get(key) == tile &&
+                            !residentTiles.containsKey(key) &&
+                            required + tile.getTileSize() <= memCapacity) {
+                        admit.add(tile);
+                        required += tile.getTileSize();
+                    }
+                }
+
+                freeMemory(required, evicted);
+                for (DiskCachedTile tile : admit) {
+                    if (makeResident(tile, loaded.get(tile.getTileId()), evicted)) {
+                        madeResident.add(tile);
+                        rescued.remove(tile.getTileId());
+                    }
+                }
+
+            } finally {
+                tileLock.unlock();
+            }
+
+            for (DiskCachedTile tile : madeResident) {
+                tile.setAction(DiskCachedTile.TileAction.ACTION_RESIDENT);
+                notifyTileAction(tile);
+            }
+
+            // data taken from the write queue have nowhere else to go
+            for (Object key : rescued) {
+                DiskCachedTile tile = tiles.get(key);
+                if (tile != null) {
+                    try {
+                        writeTileData(tile, loaded.get(key));
+                    } catch (IOException ex) {
+                        LOGGER.log(Level.SEVERE, "Failed to write image tile data", ex);
+                    }
+                }
+            }
+
+        } finally {
+            Integer[] locked = stripes.toArray(new Integer[stripes.size()]);
+            for (int i = locked.length - 1; i >= 0; i--) {
+                loadLocks[locked[i]].unlock();
+            }
+        }
+
+        writeEvictedTiles(evicted);
+        return loaded;
+    }
+
+    /**
+     * Writes the data of tiles that have been removed from memory. If
+     * background I/O is enabled the writes are queued for the I/O threads;
+     * otherwise they are done here. This method must be called without 
+     * holding the tile lock or any load lock since the writes take the 
+     * load lock of each tile in turn.
+     *
+     * @param evicted tiles to write
+     */
+    private void writeEvictedTiles(List<DiskCachedTile> evicted) {
+        for (final DiskCachedTile tile : evicted) {
+            if (ioService == null) {
+                writePendingTile(tile);
+
+            } else {
+                ioService.execute(new Runnable() {
+                    public void run() {
+                        if (writePendingTile(tile)) {
+                            numBackgroundWrites.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Writes the data of a tile that has been removed from memory, if they
+     * are still waiting to be written. Takes the tile's load lock.
+     *
+     * @param tile the tile
+     * @return {@code true} if data were written; {@code false} if there was
+     *         nothing to write
+     */
+    private boolean writePendingTile(DiskCachedTile tile) {
+        Object key = tile.getTileId();
+
+        ReentrantLock loadLock = getLoadLock(key);
+        lock(loadLock);
+        try {
+            /*
+             * The data might have been reclaimed by a reader, or the
+             * tile removed from the cache, since it was queued
+             */
+            Raster raster = pendingWrites.get(key);
+            if (raster == null) {
+                return false;
+            }
+
+            try {
+                writeTileData(tile, raster);
             } catch (IOException ioEx) {
-                throw new DiskCacheFailedException(tile.getOwner(), tile.getTileX(), tile.getTileY());
+                LOGGER.log(Level.SEVERE, null,
+                        new DiskCacheFailedException(tile.getOwner(), tile.getTileX(), tile.getTileY()));
+            }
+            pendingWrites.remove(key);
+            return true;
+
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Loads a tile into memory on behalf of 
+     * {@linkplain #prefetchTiles(RenderedImage, Point[])}.
+     *
+     * @param tile the tile
+     */
+    private void prefetchTile(DiskCachedTile tile) {
+        if (tiles.get(tile.getTileId()) == tile &&
+                !residentTiles.containsKey(tile.getTileId())) {
+            tile.setTileTimeStamp(System.currentTimeMillis());
+            loadTile(tile);
+            if (residentTiles.containsKey(tile.getTileId())) {
+                numPrefetchedTiles.incrementAndGet();
             }
         }
+    }
 
-        tile.setAction(DiskCachedTile.TileAction.ACTION_NON_RESIDENT);
+    /**
+     * Writes a tile's data to its disk copy and records the write.
+     * The caller must hold the tile's load lock.
+     *
+     * @param tile the tile
+     * @param data the tile's data
+     * @throws IOException on error writing the data
+     */
+    private void writeTileData(DiskCachedTile tile, Raster data) throws IOException {
+        tile.writeData(data);
+        metrics.recordWrite(tile.getTileSize());
+    }
+
+    /**
+     * Acquires a lock, recording the time spent waiting if it is not
+     * immediately available.
+     *
+     * @param lock the lock
+     */
+    private void lock(ReentrantLock lock) {
+        if (!lock.tryLock()) {
+            long start = System.nanoTime();
+            lock.lock();
+            metrics.recordLockWait(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Gets the load lock stripe for the given tile id.
+     *
+     * @param tileId the tile id
+     * @return the lock
+     */
+    private ReentrantLock getLoadLock(Object tileId) {
+        return loadLocks[getLoadLockIndex(tileId)];
+    }
+
+    /**
+     * Gets the index of the load lock stripe for the given tile id.
+     * When several load locks are held at once they must be taken in
+     * order of increasing index.
+     *
+     * @param tileId the tile id
+     * @return the stripe index
+     */
+    private int getLoadLockIndex(Object tileId) {
+        int h = tileId.hashCode();
+        h ^= (h >>> 16);
+        return h & (loadLocks.length - 1);
+    }
+
+    /**
+     * Acquires all load locks in index order.
+     */
+    private void lockAllLoadLocks() {
+        for (ReentrantLock lock : loadLocks) {
+            lock(lock);
+        }
+    }
+
+    /**
+     * Releases all load locks.
+     */
+    private void unlockAllLoadLocks() {
+        for (int i = loadLocks.length - 1; i >= 0; i--) {
+            loadLocks[i].unlock();
+        }
+    }
+
+    /**
+     * Sends the tile's current action to observers if diagnostics are enabled.
+     *
+     * @param tile the tile
+     */
+    private void notifyTileAction(DiskCachedTile tile) {
         if (diagnosticsEnabled) {
-            setChanged();
-            notifyObservers(tile);
+            synchronized (this) {
+                setChanged();
+                notifyObservers(tile);
+            }
         }
     }
-    
+
+
+    /**
+     * Gets the part of a tile id which identifies the owning image.
+     *
+     * @param tileId the tile id
+     * @return the owner key
+     */
+    private static Object getOwnerKey(Object tileId) {
+        if (tileId instanceof BigInteger) {
+            return ((BigInteger) tileId).shiftRight(64);
+        }
+        return ((Long) tileId) >>> 32;
+    }
 
     /**
      * Generates a unique ID for this tile. This uses the same technique as the
@@ -1277,4 +2874,150 @@ public class DiskMemTileCache extends Observable implements TileCache {
         }
     }
 
+    /**
+     * Quota and resident tiles of an owning image.
+     */
+    private static class OwnerState {
+        TileQuota quota;
+        long memory;
+
+        /*
+         * Resident tiles, each with its access time stamp when last linked,
+         * ordered from least to most recently linked
+         */
+        final LinkedHashMap<DiskCachedTile, Long> tiles =
+                new LinkedHashMap<DiskCachedTile, Long>(16, 0.75f, true);
+
+        int getPriority() {
+            return quota == null ? 
+                    TileQuota.Priority.NORMAL.ordinal() : quota.getPriority().ordinal();
+        }
+
+        long getSoftLimit() {
+            return quota == null ? TileQuota.UNLIMITED : quota.getSoftLimit();
+        }
+
+        /**
+         * Gets the unpinned resident tile that was least recently accessed.
+         * Tiles are accessed without the tile lock, so rather than being
+         * re-linked at that point, a tile which has been accessed since it
+         * was linked is re-linked at the end when it reaches the front.
+         * Pinned tiles are also moved to the end. Each tile is thus
+         * examined in amortized constant time.
+         */
+        DiskCachedTile oldestTile() {
+            DiskCachedTile relinked = null;
+
+            // after one pass all unpinned tiles have been re-linked
+            for (int n = 2 * tiles.size(); n > 0; n--) {
+                Map.Entry<DiskCachedTile, Long> first = tiles.entrySet().iterator().next();
+                DiskCachedTile tile = first.getKey();
+                long stamp = tile.getTileTimeStamp();
+                if (!tile.isPinned()) {
+                    if (stamp <= first.getValue()) {
+                        return tile;
+                    }
+                    if (relinked == null) {
+                        relinked = tile;
+                    }
+                }
+                tiles.put(tile, stamp);
+            }
+
+            // tiles were accessed while re-linking
+            return relinked;
+        }
+    }
+
+    /**
+     * Publishes cache statistics through JMX.
+     */
+    private static class MXBeanAdapter implements DiskMemTileCacheMXBean {
+        private final DiskMemTileCache cache;
+
+        MXBeanAdapter(DiskMemTileCache cache) {
+            this.cache = cache;
+        }
+
+        public long getHitCount() {
+            return cache.getStatistics().getHitCount();
+        }
+
+        public long getMissCount() {
+            return cache.getStatistics().getMissCount();
+        }
+
+        public long getNotCachedCount() {
+            return cache.getStatistics().getNotCachedCount();
+        }
+
+        public double getHitRatio() {
+            return cache.getStatistics().getHitRatio();
+        }
+
+        public long getDiskReadCount() {
+            return cache.getStatistics().getDiskReadCount();
+        }
+
+        public long getDiskWriteCount() {
+            return cache.getStatistics().getDiskWriteCount();
+        }
+
+        public long getBytesSwappedIn() {
+            return cache.getStatistics().getBytesSwappedIn();
+        }
+
+        public long getBytesSwappedOut() {
+            return cache.getStatistics().getBytesSwappedOut();
+        }
+
+        public long getEvictionCount() {
+            return cache.getStatistics().getEvictionCount();
+        }
+
+        public long getLockWaitCount() {
+            return cache.getStatistics().getLockWaitCount();
+        }
+
+        public long getLockWaitNanos() {
+            return cache.getStatistics().getLockWaitNanos();
+        }
+
+        public double getTileLatencyMeanNanos() {
+            return cache.getStatistics().getTileLatency().getMeanNanos();
+        }
+
+        public long getTileLatency99thNanos() {
+            return cache.getStatistics().getTileLatency().getPercentileNanos(99);
+        }
+
+        public double getReadLatencyMeanNanos() {
+            return cache.getStatistics().getReadLatency().getMeanNanos();
+        }
+
+        public long getReadLatency99thNanos() {
+            return cache.getStatistics().getReadLatency().getPercentileNanos(99);
+        }
+
+        public int getNumTiles() {
+            return cache.getNumTiles();
+        }
+
+        public int getNumResidentTiles() {
+            return cache.getNumResidentTiles();
+        }
+
+        public long getCurrentMemory() {
+            return cache.getCurrentMemory();
+        }
+
+        public long getMemoryCapacity() {
+            return cache.getMemoryCapacity();
+        }
+
+        public void resetStatistics() {
+            cache.resetStatistics();
+        }
+    }
+
 }
@@ -0,0 +1,103 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+/**
+ * Management interface through which the statistics of a {@linkplain DiskMemTileCache}
+ * can be monitored with JMX tools such as JConsole. Attributes are read from a
+ * fresh {@linkplain CacheStatistics} snapshot each time.
+ *
+ * @see DiskMemTileCache#registerMBean(String)
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public interface DiskMemTileCacheMXBean {
+
+    /** @return number of {@code getTile} requests served from memory */
+    long getHitCount();
+
+    /** @return number of {@code getTile} requests for non-resident tiles */
+    long getMissCount();
+
+    /** @return number of {@code getTile} requests for uncached tiles */
+    long getNotCachedCount();
+
+    /** @return proportion of {@code getTile} requests served from memory */
+    double getHitRatio();
+
+    /** @return number of tile reads from disk */
+    long getDiskReadCount();
+
+    /** @return number of tile writes to disk */
+    long getDiskWriteCount();
+
+    /** @return bytes of tile data read into memory */
+    long getBytesSwappedIn();
+
+    /** @return bytes of tile data written out of memory */
+    long getBytesSwappedOut();
+
+    /** @return number of tiles removed from memory to make space */
+    long getEvictionCount();
+
+    /** @return number of contended lock acquisitions */
+    long getLockWaitCount();
+
+    /** @return total time spent waiting for locks in nanoseconds */
+    long getLockWaitNanos();
+
+    /** @return mean {@code getTile} latency in nanoseconds */
+    double getTileLatencyMeanNanos();
+
+    /** @return approximate 99th percentile {@code getTile} latency in nanoseconds */
+    long getTileLatency99thNanos();
+
+    /** @return mean disk read latency in nanoseconds */
+    double getReadLatencyMeanNanos();
+
+    /** @return approximate 99th percentile disk read latency in nanoseconds */
+    long getReadLatency99thNanos();
+
+    /** @return number of cached tiles */
+    int getNumTiles();
+
+    /** @return number of tiles resident in memory */
+    int getNumResidentTiles();
+
+    /** @return memory used by resident tiles in bytes */
+    long getCurrentMemory();
+
+    /** @return memory capacity in bytes */
+    long getMemoryCapacity();
+
+    /**
+     * Resets the cache's counters and latency histograms.
+     */
+    void resetStatistics();
+
+}
@@ -0,0 +1,90 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+/**
+ * Decides which memory-resident tile {@code DiskMemTileCache} should swap out
+ * when it needs to free memory. The cache informs the policy when tiles
+ * become resident, are accessed, and are removed from memory, and asks it for
+ * a victim when space is required.
+ * <p>
+ * All methods except {@link #tileAccessed(DiskCachedTile)} are called while
+ * holding the cache's tile lock, so they are never called concurrently with
+ * each other. {@code tileAccessed} is called without the lock, possibly from
+ * several threads at once and for a tile which is in the process of being
+ * removed, so implementations must guard against this.
+ * <p>
+ * A policy can be set for a cache with 
+ * {@linkplain DiskMemTileCache#setEvictionPolicy(EvictionPolicy)}. A policy
+ * instance holds state for a single cache and should not be shared.
+ *
+ * @see LRUEvictionPolicy
+ * @see ClockEvictionPolicy
+ * @see TinyLFUEvictionPolicy
+ * @see ComparatorEvictionPolicy
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public interface EvictionPolicy {
+
+    /**
+     * Called when a tile becomes resident in memory.
+     *
+     * @param tile the tile
+     */
+    void tileAdded(DiskCachedTile tile);
+
+    /**
+     * Called when a resident tile is accessed. Tiles not known to the
+     * policy should be ignored.
+     *
+     * @param tile the tile
+     */
+    void tileAccessed(DiskCachedTile tile);
+
+    /**
+     * Called when a tile is removed from memory.
+     *
+     * @param tile the tile
+     */
+    void tileRemoved(DiskCachedTile tile);
+
+    /**
+     * Gets the next tile to remove from memory. The tile remains known to
+     * the policy until {@link #tileRemoved(DiskCachedTile)} is called for it.
+     *
+     * @return the tile to remove, or {@code null} if there are no resident tiles
+     */
+    DiskCachedTile nextVictim();
+
+    /**
+     * Called when all tiles are removed from memory.
+     */
+    void clear();
+
+}
@@ -0,0 +1,121 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * An {@linkplain EvictionPolicy} which removes the least recently
+ * accessed tile from memory. This is the default policy used by
+ * {@code DiskMemTileCache}. It gives the same ordering as sorting tiles
+ * with {@linkplain TileAccessTimeComparator}, but accessing a tile and
+ * choosing a victim take constant time.
+ * <p>
+ * Tile accesses, which the cache reports for every request without holding
+ * its tile lock, are not applied to the LRU ordering straight away. Instead
+ * they are recorded without locking in per-thread-stripe ring buffers which
+ * are drained, in order, by the other methods (called while the cache holds
+ * its tile lock). Some accesses can be lost, or applied in a slightly
+ * different order, when many are made between drains.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class LRUEvictionPolicy implements EvictionPolicy {
+
+    // access-ordered: the first entry is the least recently used tile
+    private final LinkedHashMap<DiskCachedTile, Boolean> tiles =
+            new LinkedHashMap<DiskCachedTile, Boolean>(16, 0.75f, true);
+
+    private final TileAccessBuffer accesses = new TileAccessBuffer();
+
+    private final TileAccessBuffer.Handler accessHandler = new TileAccessBuffer.Handler() {
+        public void tileAccessed(DiskCachedTile tile) {
+            // no effect for tiles that are not resident
+            tiles.get(tile);
+        }
+    };
+
+    /**
+     * Creates a new policy.
+     */
+    public LRUEvictionPolicy() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void tileAdded(DiskCachedTile tile) {
+        drainAccesses();
+        tiles.put(tile, Boolean.TRUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     * This method does not lock: the access is recorded in a buffer
+     * and applied when the policy is next asked to add, remove or
+     * choose a tile.
+     */
+    public void tileAccessed(DiskCachedTile tile) {
+        accesses.record(tile);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void tileRemoved(DiskCachedTile tile) {
+        drainAccesses();
+        tiles.remove(tile);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized DiskCachedTile nextVictim() {
+        drainAccesses();
+        Iterator<DiskCachedTile> iter = tiles.keySet().iterator();
+        return iter.hasNext() ? iter.next() : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void clear() {
+        drainAccesses();
+        tiles.clear();
+    }
+
+    /**
+     * Applies buffered accesses to the LRU ordering. Must be called
+     * while holding this policy's monitor.
+     */
+    private void drainAccesses() {
+        accesses.drain(accessHandler);
+    }
+
+}
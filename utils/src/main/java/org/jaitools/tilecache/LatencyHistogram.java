@@ -0,0 +1,182 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.util.Arrays;
+
+/**
+ * An immutable histogram of latencies recorded by a {@linkplain DiskMemTileCache}.
+ * Latencies are counted in buckets whose widths are successive powers of 2
+ * nanoseconds: bucket 0 holds zero latencies and bucket {@code i > 0} holds
+ * latencies from 2<sup>i-1</sup> to 2<sup>i</sup> - 1 nanoseconds. Percentiles
+ * are reported as the upper bound of the bucket in which they fall, so they are
+ * accurate to within a factor of 2.
+ *
+ * @see CacheStatistics
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public final class LatencyHistogram {
+
+    /** The number of buckets (64) */
+    public static final int NUM_BUCKETS = 64;
+
+    private final long[] counts;
+    private final long count;
+    private final long totalNanos;
+
+    /**
+     * Creates a new histogram.
+     *
+     * @param counts bucket counts (copied)
+     * @param totalNanos sum of all recorded latencies
+     */
+    LatencyHistogram(long[] counts, long totalNanos) {
+        if (counts.length != NUM_BUCKETS) {
+            throw new IllegalArgumentException("counts must have length " + NUM_BUCKETS);
+        }
+        this.counts = counts.clone();
+        this.totalNanos = totalNanos;
+
+        long n = 0;
+        for (long c : counts) {
+            n += c;
+        }
+        this.count = n;
+    }
+
+    /**
+     * Gets the index of the bucket for the given latency.
+     *
+     * @param nanos latency in nanoseconds
+     * @return bucket index
+     */
+    static int bucketFor(long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     *
+     * @return number of latencies
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the sum of all recorded latencies.
+     *
+     * @return total in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Gets the mean latency.
+     *
+     * @return mean in nanoseconds or 0 if no latencies were recorded
+     */
+    public double getMeanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    /**
+     * Gets the number of latencies in a bucket.
+     *
+     * @param bucket bucket index between 0 and {@code NUM_BUCKETS - 1}
+     * @return bucket count
+     */
+    public long getBucketCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * Gets the largest latency counted in a bucket.
+     *
+     * @param bucket bucket index between 0 and {@code NUM_BUCKETS - 1}
+     * @return upper bound in nanoseconds
+     */
+    public static long getBucketUpperBound(int bucket) {
+        if (bucket < 0 || bucket >= NUM_BUCKETS) {
+            throw new IllegalArgumentException("Invalid bucket index: " + bucket);
+        }
+        return bucket == NUM_BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * Gets an estimate of the given percentile of recorded latencies.
+     *
+     * @param percentile value between 0 and 100
+     * @return upper bound of the bucket holding the percentile, in nanoseconds,
+     *         or 0 if no latencies were recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long n = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            n += counts[i];
+            if (n >= rank) {
+                return getBucketUpperBound(i);
+            }
+        }
+        return getBucketUpperBound(NUM_BUCKETS - 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.0fns p50=%dns p99=%dns",
+                count, getMeanNanos(), getPercentileNanos(50), getPercentileNanos(99));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof LatencyHistogram)) {
+            return false;
+        }
+        LatencyHistogram other = (LatencyHistogram) obj;
+        return totalNanos == other.totalNanos && Arrays.equals(counts, other.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(counts) + (int) (totalNanos ^ (totalNanos >>> 32));
+    }
+
+}
@@ -0,0 +1,276 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link TileStore} which keeps all tile data in a small number of
+ * preallocated, memory-mapped files (segments) rather than one file per tile.
+ * Tile data are copied directly between the tile's bank arrays and the
+ * mapped buffer, avoiding per-tile file creation and stream setup.
+ * <p>
+ * Space within segments is allocated in blocks of {@value #BLOCK_SIZE} bytes.
+ * When a tile is removed from the cache its slot is returned to a free list
+ * and reused for later tiles of the same or similar size. A new segment is
+ * created when the existing ones are full. Segment files are created in the
+ * folder returned by {@link DiskCachedTile#getCacheFolder()} unless another
+ * folder is specified, and are deleted when the store is disposed.
+ * <p>
+ * Example of use:
+ * <pre><code>
+ * Map&lt;String, Object&gt; params = CollectionFactory.map();
+ * params.put(DiskMemTileCache.KEY_TILE_STORE, new MappedTileStore());
+ * DiskMemTileCache cache = new DiskMemTileCache(params);
+ * </code></pre>
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class MappedTileStore implements TileStore {
+
+    private static final Logger LOGGER = Logger.getLogger("org.jaitools.tilecache");
+
+    /**
+     * The default segment size in bytes (64 * 2^20 = 64Mb).
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The unit of allocation within segments, in bytes.
+     */
+    public static final int BLOCK_SIZE = SlabAllocator.BLOCK_SIZE;
+
+    /**
+     * Prefix used for segment file names.
+     */
+    public static final String FILE_PREFIX = "tilestore";
+
+    private static final class MappedSegment extends SlabAllocator.Segment {
+        final File file;
+        final RandomAccessFile raf;
+        final FileChannel channel;
+
+        MappedSegment(File file, RandomAccessFile raf, FileChannel channel, int capacity) 
+                throws IOException {
+            super(channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+            this.file = file;
+            this.raf = raf;
+            this.channel = channel;
+        }
+    }
+
+    /*
+     * Handle for a tile's data. The slot is only replaced once a new one
+     * has been allocated, so that a failed write leaves the handle valid.
+     */
+    private static final class Entry {
+        SlabAllocator.Slot slot;
+    }
+
+    private final File folder;
+    private final SlabAllocator allocator;
+
+
+    /**
+     * Creates a new store with the default segment size, which will 
+     * create segment files in the current cache folder.
+     * 
+     * @see DiskCachedTile#getCacheFolder()
+     */
+    public MappedTileStore() {
+        this(null, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a new store.
+     *
+     * @param folder folder for segment files, or {@code null} to use the
+     *        current cache folder
+     * @param segmentSize size of each segment file in bytes (will be rounded
+     *        up to a multiple of {@link #BLOCK_SIZE})
+     *
+     * @throws IllegalArgumentException if {@code segmentSize} is not positive
+     */
+    public MappedTileStore(File folder, int segmentSize) {
+        this.folder = folder;
+        this.allocator = new SlabAllocator(segmentSize) {
+            @Override
+            Segment createSegment(int minCapacity, int capacity) throws IOException {
+                File file = createFile();
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                raf.setLength(capacity);
+                return new MappedSegment(file, raf, raf.getChannel(), capacity);
+            }
+
+            @Override
+            void disposeSegment(Segment segment) {
+                MappedSegment seg = (MappedSegment) segment;
+                try {
+                    seg.channel.close();
+                    seg.raf.close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Error closing tile store file", ex);
+                }
+
+                if (!seg.file.delete()) {
+                    LOGGER.log(Level.WARNING,
+                            "Unable to delete tile store file: {0}", seg.file.getPath());
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object write(Object handle, DataBuffer data) throws IOException {
+        final int numBytes = SlabAllocator.checkSize(DataBufferIO.byteSize(
+                data.getDataType(), data.getNumBanks(), data.getSize()));
+
+        Entry e = handle == null ? new Entry() : (Entry) handle;
+        if (e.slot == null || e.slot.capacity < numBytes) {
+            SlabAllocator.Slot newSlot = allocator.allocate(numBytes);
+            if (newSlot == null) {
+                throw new IOException("Unable to allocate space for tile");
+            }
+            if (e.slot != null) {
+                allocator.release(e.slot);
+            }
+            e.slot = newSlot;
+        }
+
+        final SlabAllocator.Slot slot = e.slot;
+        final int numBanks = data.getNumBanks();
+        final int size = data.getSize();
+        ByteBuffer buf = allocator.view(slot, numBytes);
+
+        DataBufferIO.put(buf, data);
+
+        slot.dataType = data.getDataType();
+        slot.numBanks = numBanks;
+        slot.size = size;
+        return e;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DataBuffer read(Object handle) throws IOException {
+        final SlabAllocator.Slot slot = ((Entry) handle).slot;
+        if (slot == null) {
+            throw new IOException("No data for tile");
+        }
+
+        final int numBanks = slot.numBanks;
+        final int size = slot.size;
+        ByteBuffer buf = allocator.view(slot, (int) DataBufferIO.byteSize(slot.dataType, numBanks, size));
+        return DataBufferIO.get(buf, slot.dataType, numBanks, size);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The tile's slot is returned to the free list.
+     */
+    public void delete(Object handle) {
+        Entry e = (Entry) handle;
+        if (e.slot != null) {
+            allocator.release(e.slot);
+            e.slot = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * This is the segment file holding the tile's slot, which is
+     * shared with other tiles.
+     */
+    public File getFile(Object handle) {
+        SlabAllocator.Slot slot = ((Entry) handle).slot;
+        return slot == null ? null : ((MappedSegment) slot.segment).file;
+    }
+
+    /**
+     * Gets the byte offset of a tile's data within its segment file.
+     *
+     * @param handle a handle returned by {@link #write}
+     * @return the offset, or 0 if the tile has no data in the store
+     */
+    long getOffset(Object handle) {
+        SlabAllocator.Slot slot = ((Entry) handle).slot;
+        return slot == null ? 0 : slot.offset;
+    }
+
+    /**
+     * Closes and deletes all segment files.
+     */
+    public void dispose() {
+        allocator.dispose();
+    }
+
+    /**
+     * Gets the number of segment files currently in use.
+     *
+     * @return number of segments
+     */
+    public int getNumSegments() {
+        return allocator.getNumSegments();
+    }
+
+    /**
+     * Gets the total size of all segment files in bytes.
+     *
+     * @return total capacity in bytes
+     */
+    public long getCapacity() {
+        return allocator.getCapacity();
+    }
+
+    /**
+     * Gets the number of bytes currently allocated to tiles.
+     *
+     * @return allocated bytes
+     */
+    public long getUsedBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    private File createFile() throws IOException {
+        File dir = folder != null ? folder : DiskCachedTile.getCacheFolder();
+        File file = File.createTempFile(FILE_PREFIX, DiskCachedTile.FILE_SUFFIX, dir);
+        file.deleteOnExit();
+        return file;
+    }
+
+}
@@ -0,0 +1,428 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link TileStore} which holds tile data in direct (off-heap) memory, up
+ * to a fixed capacity, and passes any further tiles to an overflow store 
+ * (typically on disk). 
+ * <p>
+ * Used with {@code DiskMemTileCache} this provides a second tier of memory
+ * residence. Tiles swapped out of the cache's heap memory are copied into
+ * direct buffers, which do not add to garbage collection work, and are
+ * copied back into a new {@code Raster} when requested again. This allows
+ * a large cache to be run with a small, predictable heap: the cache's memory
+ * capacity then limits only the tiles currently materialized on the heap,
+ * while the capacity of this store limits off-heap memory. The easiest way to
+ * set this up is with the cache's {@link DiskMemTileCache#KEY_OFF_HEAP_CAPACITY}
+ * parameter.
+ * <p>
+ * When there is no room for a tile, the least recently used tiles in off-heap
+ * memory are moved to the overflow store to make space. Direct buffers are
+ * allocated in segments as required up to the store's capacity, and are
+ * reused via a free list as described for {@linkplain MappedTileStore}.
+ * A tile which is larger than any segment, when no new segment can be
+ * created, is passed directly to the overflow store.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class OffHeapTileStore implements TileStore {
+
+    /**
+     * The default segment size in bytes (16 * 2^20 = 16Mb).
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /*
+     * Handle for a tile's data which are held either in a slot
+     * or in the overflow store.
+     */
+    private static final class Entry {
+        final ReentrantLock lock = new ReentrantLock();
+        SlabAllocator.Slot slot;
+        Object overflowHandle;
+        boolean deleted;
+    }
+
+    private final long maxCapacity;
+    private final TileStore overflow;
+    private final SlabAllocator allocator;
+
+    // access-ordered entries which have data in off-heap memory
+    private final LinkedHashMap<Entry, Boolean> offHeapEntries;
+
+    private final AtomicLong numSpilled = new AtomicLong();
+
+
+    /**
+     * Creates a new store with the default segment size which sends tiles
+     * that do not fit to a {@linkplain TempFileTileStore}.
+     *
+     * @param capacity maximum off-heap memory to use, in bytes
+     */
+    public OffHeapTileStore(long capacity) {
+        this(capacity, DEFAULT_SEGMENT_SIZE, null);
+    }
+
+    /**
+     * Creates a new store.
+     *
+     * @param capacity maximum off-heap memory to use, in bytes
+     * @param segmentSize size of each direct buffer in bytes (will be rounded
+     *        up to a multiple of {@link MappedTileStore#BLOCK_SIZE})
+     * @param overflow the store for tiles that do not fit in off-heap memory,
+     *        or {@code null} to use a {@linkplain TempFileTileStore}
+     *
+     * @throws IllegalArgumentException if {@code capacity} is negative or 
+     *         {@code segmentSize} is not positive
+     */
+    public OffHeapTileStore(long capacity, int segmentSize, TileStore overflow) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+
+        this.maxCapacity = capacity;
+        this.overflow = overflow != null ? overflow : new TempFileTileStore();
+        this.offHeapEntries = new LinkedHashMap<Entry, Boolean>(16, 0.75f, true);
+
+        this.allocator = new SlabAllocator((int) Math.min(segmentSize, 
+                Math.max(SlabAllocator.BLOCK_SIZE, capacity))) {
+
+            @Override
+            Segment createSegment(int minCapacity, int capacity) throws IOException {
+                long available = maxCapacity - getCapacity();
+                if (available < capacity) {
+                    capacity = (int) (available - available % SlabAllocator.BLOCK_SIZE);
+                    if (capacity < minCapacity) {
+                        return null;
+                    }
+                }
+                return new Segment(ByteBuffer.allocateDirect(capacity));
+            }
+
+            @Override
+            void disposeSegment(Segment segment) {
+                // direct buffers are freed when garbage collected
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Object write(Object handle, DataBuffer data) throws IOException {
+        final int numBytes = SlabAllocator.checkSize(DataBufferIO.byteSize(
+                data.getDataType(), data.getNumBanks(), data.getSize()));
+
+        Entry e = handle == null ? new Entry() : (Entry) handle;
+        e.lock.lock();
+        try {
+            if (e.deleted) {
+                throw new IOException("Tile has been deleted from the store");
+            }
+
+            if (e.slot != null && e.slot.capacity < numBytes) {
+                releaseSlot(e);
+            }
+
+            if (e.slot == null) {
+                e.slot = allocate(numBytes, e);
+            }
+
+            if (e.slot != null) {
+                DataBufferIO.put(allocator.view(e.slot, numBytes), data);
+                e.slot.dataType = data.getDataType();
+                e.slot.numBanks = data.getNumBanks();
+                e.slot.size = data.getSize();
+                touch(e);
+
+                if (e.overflowHandle != null) {
+                    overflow.delete(e.overflowHandle);
+                    e.overflowHandle = null;
+                }
+
+            } else {
+                e.overflowHandle = overflow.write(e.overflowHandle, data);
+            }
+
+            return e;
+
+        } finally {
+            e.lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DataBuffer read(Object handle) throws IOException {
+        Entry e = (Entry) handle;
+        e.lock.lock();
+        try {
+            if (e.slot != null) {
+                touch(e);
+                SlabAllocator.Slot slot = e.slot;
+                ByteBuffer buf = allocator.view(slot, 
+                        (int) DataBufferIO.byteSize(slot.dataType, slot.numBanks, slot.size));
+                return DataBufferIO.get(buf, slot.dataType, slot.numBanks, slot.size);
+
+            } else if (e.overflowHandle != null) {
+                return overflow.read(e.overflowHandle);
+
+            } else {
+                throw new IOException("No data for tile");
+            }
+
+        } finally {
+            e.lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void delete(Object handle) {
+        Entry e = (Entry) handle;
+        e.lock.lock();
+        try {
+            e.deleted = true;
+            if (e.slot != null) {
+                releaseSlot(e);
+            }
+            if (e.overflowHandle != null) {
+                overflow.delete(e.overflowHandle);
+                e.overflowHandle = null;
+            }
+
+        } finally {
+            e.lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Returns {@code null} if the tile's data are held in off-heap memory.
+     */
+    public File getFile(Object handle) {
+        Entry e = (Entry) handle;
+        e.lock.lock();
+        try {
+            return e.overflowHandle == null ? null : overflow.getFile(e.overflowHandle);
+        } finally {
+            e.lock.unlock();
+        }
+    }
+
+    /**
+     * Releases all off-heap memory and disposes of the overflow store.
+     */
+    public void dispose() {
+        synchronized (offHeapEntries) {
+            offHeapEntries.clear();
+        }
+        allocator.dispose();
+        overflow.dispose();
+    }
+
+    /**
+     * Gets the store used for tiles that do not fit in off-heap memory.
+     *
+     * @return the overflow store
+     */
+    public TileStore getOverflowStore() {
+        return overflow;
+    }
+
+    /**
+     * Gets the maximum amount of off-heap memory this store will use.
+     *
+     * @return capacity in bytes
+     */
+    public long getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * Gets the amount of off-heap memory currently allocated (some of 
+     * which may be free for reuse).
+     *
+     * @return allocated memory in bytes
+     */
+    public long getCapacity() {
+        return allocator.getCapacity();
+    }
+
+    /**
+     * Gets the amount of off-heap memory currently holding tile data.
+     *
+     * @return used memory in bytes
+     */
+    public long getUsedBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    /**
+     * Gets the number of tiles currently held in off-heap memory.
+     *
+     * @return number of tiles
+     */
+    public int getNumTiles() {
+        synchronized (offHeapEntries) {
+            return offHeapEntries.size();
+        }
+    }
+
+    /**
+     * Gets the number of times tiles have been moved from off-heap memory
+     * to the overflow store to make room for others.
+     *
+     * @return number of tiles moved
+     */
+    public long getNumSpilledTiles() {
+        return numSpilled.get();
+    }
+
+    /**
+     * Allocates a slot, moving least recently used tiles to the overflow
+     * store if necessary. Called while holding the lock of the entry
+     * that the slot is for.
+     *
+     * @return the slot or {@code null} if no room could be made
+     */
+    private SlabAllocator.Slot allocate(int numBytes, Entry requester) throws IOException {
+        final int capacity = SlabAllocator.roundUp(numBytes);
+        if (capacity > maxCapacity) {
+            return null;
+        }
+
+        SlabAllocator.Slot slot = allocator.allocate(numBytes);
+        if (slot == null && capacity > allocator.getMaxSegmentCapacity()) {
+            /*
+             * No new segment could be created and no existing segment is 
+             * large enough, so spilling other tiles would not make room
+             */
+            return null;
+        }
+
+        while (slot == null) {
+            /*
+             * Entries currently locked by other threads are skipped to
+             * avoid deadlock, as are entries in segments too small to
+             * hold the new slot
+             */
+            boolean spilled = false;
+            for (Entry victim : getEntriesByAge()) {
+                if (victim != requester && victim.lock.tryLock()) {
+                    try {
+                        spilled = spill(victim, capacity);
+                    } finally {
+                        victim.lock.unlock();
+                    }
+                    if (spilled) {
+                        break;
+                    }
+                }
+            }
+
+            if (!spilled) {
+                return null;
+            }
+            slot = allocator.allocate(numBytes);
+        }
+
+        return slot;
+    }
+
+    /**
+     * Moves an entry's data to the overflow store to make room for a
+     * slot of the given capacity. Called while holding the entry's lock.
+     *
+     * @return {@code true} if data were moved
+     */
+    private boolean spill(Entry e, int capacity) throws IOException {
+        if (e.slot == null || e.deleted || e.slot.segment.capacity < capacity) {
+            return false;
+        }
+
+        SlabAllocator.Slot slot = e.slot;
+        ByteBuffer buf = allocator.view(slot,
+                (int) DataBufferIO.byteSize(slot.dataType, slot.numBanks, slot.size));
+        DataBuffer data = DataBufferIO.get(buf, slot.dataType, slot.numBanks, slot.size);
+
+        e.overflowHandle = overflow.write(e.overflowHandle, data);
+        releaseSlot(e);
+        numSpilled.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns an entry's slot to the allocator. Called while holding
+     * the entry's lock.
+     */
+    private void releaseSlot(Entry e) {
+        synchronized (offHeapEntries) {
+            offHeapEntries.remove(e);
+        }
+        allocator.release(e.slot);
+        e.slot = null;
+    }
+
+    private void touch(Entry e) {
+        synchronized (offHeapEntries) {
+            offHeapEntries.put(e, Boolean.TRUE);
+        }
+    }
+
+    /*
+     * Gets a snapshot of the entries with data in off-heap memory,
+     * from least to most recently used. Only a limited number are 
+     * returned since the first few will usually suffice.
+     */
+    private List<Entry> getEntriesByAge() {
+        List<Entry> entries = new ArrayList<Entry>();
+        synchronized (offHeapEntries) {
+            Iterator<Entry> iter = offHeapEntries.keySet().iterator();
+            while (iter.hasNext() && entries.size() < 16) {
+                entries.add(iter.next());
+            }
+        }
+        return entries;
+    }
+
+}
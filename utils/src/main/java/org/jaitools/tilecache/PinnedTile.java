@@ -0,0 +1,129 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A handle to a tile that is pinned in the memory of a {@code DiskMemTileCache}.
+ * While pinned, the tile will not be swapped out of memory to make room for
+ * other tiles, nor removed by auto-flushing, so the raster returned by
+ * {@linkplain #getRaster()} remains the cache's live copy of the tile's data.
+ * <p>
+ * Pins are reference counted: a tile stays pinned until every handle for it
+ * has been closed. Handles are intended to be used with try-with-resources:
+ * <pre><code>
+ *     try (PinnedTile pin = cache.pinTile(image, tileX, tileY)) {
+ *         WritableRaster r = (WritableRaster) pin.getRaster();
+ *         // ... work with the tile ...
+ *     }
+ * </code></pre>
+ * Closing a handle more than once has no further effect.
+ *
+ * @see DiskMemTileCache#pinTile(RenderedImage, int, int)
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public final class PinnedTile implements AutoCloseable {
+
+    private final DiskMemTileCache cache;
+    private final RenderedImage owner;
+    private final int tileX;
+    private final int tileY;
+    private final Raster raster;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * Creates a new handle. Called by {@code DiskMemTileCache} after
+     * pinning the tile.
+     */
+    PinnedTile(DiskMemTileCache cache, RenderedImage owner, int tileX, int tileY, Raster raster) {
+        this.cache = cache;
+        this.owner = owner;
+        this.tileX = tileX;
+        this.tileY = tileY;
+        this.raster = raster;
+    }
+
+    /**
+     * Gets the tile data.
+     *
+     * @return the tile data
+     */
+    public Raster getRaster() {
+        return raster;
+    }
+
+    /**
+     * Gets the image that owns the tile.
+     *
+     * @return the owning image
+     */
+    public RenderedImage getOwner() {
+        return owner;
+    }
+
+    /**
+     * Gets the tile column.
+     *
+     * @return tile column
+     */
+    public int getTileX() {
+        return tileX;
+    }
+
+    /**
+     * Gets the tile row.
+     *
+     * @return tile row
+     */
+    public int getTileY() {
+        return tileY;
+    }
+
+    /**
+     * Tests whether this handle has been closed.
+     *
+     * @return {@code true} if closed
+     */
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Releases this handle's pin on the tile.
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            cache.unpinTile(owner, tileX, tileY);
+        }
+    }
+
+}
@@ -0,0 +1,350 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jaitools.CollectionFactory;
+
+/**
+ * Package-private allocator which divides large buffers (segments) into
+ * slots for tile data. Used by {@linkplain MappedTileStore} with memory-mapped
+ * files and by {@linkplain OffHeapTileStore} with direct buffers.
+ * <p>
+ * Space is allocated in blocks of {@value #BLOCK_SIZE} bytes. Released slots
+ * are merged with any free neighbours in the same segment and go to a free
+ * list, keyed by size. A request is served from the smallest free slot that
+ * is big enough, with any remainder being returned to the free list. New
+ * slots are otherwise taken from the end of the last segment, and a new
+ * segment is created when that is full.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+abstract class SlabAllocator {
+
+    /**
+     * The unit of allocation within segments, in bytes.
+     */
+    static final int BLOCK_SIZE = 4096;
+
+    /**
+     * A buffer from which slots are allocated.
+     */
+    static class Segment {
+        final ByteBuffer buffer;
+        final int capacity;
+        int top;
+
+        // free slots keyed by offset
+        final TreeMap<Integer, Slot> free;
+
+        Segment(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+            this.top = 0;
+            this.free = new TreeMap<Integer, Slot>();
+        }
+    }
+
+    /**
+     * A region of a segment holding the data of one tile.
+     */
+    static final class Slot {
+        final Segment segment;
+        final int offset;
+        final int capacity;
+        int dataType;
+        int numBanks;
+        int size;
+
+        Slot(Segment segment, int offset, int capacity) {
+            this.segment = segment;
+            this.offset = offset;
+            this.capacity = capacity;
+        }
+    }
+
+    private final int segmentSize;
+    private final List<Segment> segments;
+    private final TreeMap<Integer, Deque<Slot>> freeSlots;
+    private long usedBytes;
+
+    /**
+     * Creates a new allocator.
+     *
+     * @param segmentSize default segment size in bytes (will be rounded
+     *        up to a multiple of {@link #BLOCK_SIZE})
+     */
+    SlabAllocator(int segmentSize) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize must be positive");
+        }
+
+        this.segmentSize = roundUp(segmentSize);
+        this.segments = CollectionFactory.list();
+        this.freeSlots = new TreeMap<Integer, Deque<Slot>>();
+        this.usedBytes = 0;
+    }
+
+    /**
+     * Creates a new segment.
+     *
+     * @param minCapacity minimum capacity in bytes
+     * @param capacity preferred capacity in bytes
+     * @return the new segment or {@code null} if a segment of at least
+     *         the minimum capacity cannot be created
+     * @throws IOException on error creating the segment
+     */
+    abstract Segment createSegment(int minCapacity, int capacity) throws IOException;
+
+    /**
+     * Releases the resources held by a segment.
+     *
+     * @param segment the segment
+     */
+    abstract void disposeSegment(Segment segment);
+
+    /**
+     * Allocates a slot, preferring free space in existing segments to
+     * creating a new one.
+     *
+     * @param numBytes bytes required
+     * @return the new slot or {@code null} if there is no room for it
+     * @throws IOException on error creating a new segment
+     */
+    synchronized Slot allocate(int numBytes) throws IOException {
+        final int capacity = roundUp(numBytes);
+
+        // Look for the smallest free slot that is big enough
+        Map.Entry<Integer, Deque<Slot>> e = freeSlots.ceilingEntry(capacity);
+        if (e != null) {
+            Slot free = e.getValue().peek();
+            removeFree(free);
+            if (free.capacity > capacity) {
+                addFree(new Slot(free.segment, free.offset + capacity, free.capacity - capacity));
+            }
+            usedBytes += capacity;
+            return new Slot(free.segment, free.offset, capacity);
+        }
+
+        Segment seg = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (seg == null || seg.capacity - seg.top < capacity) {
+            Segment newSeg = createSegment(capacity, Math.max(segmentSize, capacity));
+            if (newSeg == null) {
+                return null;
+            }
+
+            // space left at the end of the previous segment becomes free
+            if (seg != null && seg.top < seg.capacity) {
+                release(new Slot(seg, seg.top, seg.capacity - seg.top), false);
+                seg.top = seg.capacity;
+            }
+
+            seg = newSeg;
+            segments.add(seg);
+        }
+
+        Slot slot = new Slot(seg, seg.top, capacity);
+        seg.top += capacity;
+        usedBytes += capacity;
+        return slot;
+    }
+
+    /**
+     * Returns a slot to the free list, merging it with any free
+     * neighbours.
+     *
+     * @param slot the slot
+     */
+    synchronized void release(Slot slot) {
+        if (!segments.contains(slot.segment)) {
+            // allocator has been disposed
+            return;
+        }
+
+        release(slot, true);
+    }
+
+    private void release(Slot slot, boolean used) {
+        final Segment seg = slot.segment;
+        int offset = slot.offset;
+        int capacity = slot.capacity;
+
+        Map.Entry<Integer, Slot> below = seg.free.lowerEntry(offset);
+        if (below != null && below.getKey() + below.getValue().capacity == offset) {
+            removeFree(below.getValue());
+            offset = below.getKey();
+            capacity += below.getValue().capacity;
+        }
+
+        Slot above = seg.free.get(offset + capacity);
+        if (above != null) {
+            removeFree(above);
+            capacity += above.capacity;
+        }
+
+        if (offset + capacity == seg.top && seg == segments.get(segments.size() - 1)) {
+            // free space at the end of the last segment is allocated from there
+            seg.top = offset;
+        } else {
+            addFree(new Slot(seg, offset, capacity));
+        }
+
+        if (used) {
+            usedBytes -= slot.capacity;
+        }
+    }
+
+    private void addFree(Slot slot) {
+        Deque<Slot> slots = freeSlots.get(slot.capacity);
+        if (slots == null) {
+            slots = new ArrayDeque<Slot>();
+            freeSlots.put(slot.capacity, slots);
+        }
+        slots.push(slot);
+        slot.segment.free.put(slot.offset, slot);
+    }
+
+    private void removeFree(Slot slot) {
+        Deque<Slot> slots = freeSlots.get(slot.capacity);
+        slots.remove(slot);
+        if (slots.isEmpty()) {
+            freeSlots.remove(slot.capacity);
+        }
+        slot.segment.free.remove(slot.offset);
+    }
+
+    /**
+     * Creates a buffer, in native byte order, covering the first
+     * {@code numBytes} bytes of a slot.
+     *
+     * @param slot the slot
+     * @param numBytes number of bytes
+     * @return a new buffer
+     */
+    ByteBuffer view(Slot slot, int numBytes) {
+        ByteBuffer buf = slot.segment.buffer.duplicate();
+        buf.limit(slot.offset + numBytes);
+        buf.position(slot.offset);
+        return buf.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Disposes of all segments.
+     */
+    synchronized void dispose() {
+        for (Segment seg : segments) {
+            disposeSegment(seg);
+        }
+
+        segments.clear();
+        freeSlots.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Gets the number of segments.
+     *
+     * @return number of segments
+     */
+    synchronized int getNumSegments() {
+        return segments.size();
+    }
+
+    /**
+     * Gets the capacity of the largest segment, which is the largest slot
+     * that could be allocated without creating a new segment once enough
+     * other slots have been released.
+     *
+     * @return largest segment capacity in bytes, or 0 if there are no segments
+     */
+    synchronized int getMaxSegmentCapacity() {
+        int n = 0;
+        for (Segment seg : segments) {
+            n = Math.max(n, seg.capacity);
+        }
+        return n;
+    }
+
+    /**
+     * Gets the total size of all segments in bytes.
+     *
+     * @return total capacity in bytes
+     */
+    synchronized long getCapacity() {
+        long n = 0;
+        for (Segment seg : segments) {
+            n += seg.capacity;
+        }
+        return n;
+    }
+
+    /**
+     * Gets the number of bytes currently allocated to slots.
+     *
+     * @return allocated bytes
+     */
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Gets the number of bytes needed to hold data, checking that this
+     * is within the limit for a single slot.
+     *
+     * @param numBytes number of bytes
+     * @return the value as an int
+     * @throws IOException if the value is too large
+     */
+    static int checkSize(long numBytes) throws IOException {
+        if (numBytes > Integer.MAX_VALUE - BLOCK_SIZE) {
+            throw new IOException("Tile is too large to store");
+        }
+        return (int) numBytes;
+    }
+
+    /**
+     * Rounds a number of bytes up to a whole number of blocks
+     * (minimum one block).
+     *
+     * @param numBytes number of bytes
+     * @return rounded value
+     */
+    static int roundUp(int numBytes) {
+        int nblocks = Math.max(1, (numBytes + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        return nblocks * BLOCK_SIZE;
+    }
+
+}
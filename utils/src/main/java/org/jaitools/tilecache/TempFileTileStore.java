@@ -0,0 +1,286 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferDouble;
+import java.awt.image.DataBufferFloat;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * The default {@link TileStore} which writes each tile's data to its own
+ * temporary file in the folder returned by {@link DiskCachedTile#getCacheFolder()}.
+ *
+ * @author Michael Bedward
+ * @author Simone Giannecchini, GeoSolutions SAS
+ * @since 1.7
+ * @version $Id$
+ */
+public class TempFileTileStore implements TileStore {
+
+    private static final Logger LOGGER = Logger.getLogger("org.jaitools.tilecache");
+
+    private static class FileHandle {
+        final File file;
+        int dataType;
+        int numBanks;
+        int size;
+
+        FileHandle(File file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The data are written to a new temporary file the first time that 
+     * the tile is written and to the same file thereafter.
+     */
+    public Object write(Object handle, DataBuffer dataBuf) throws IOException {
+        FileHandle fh = (FileHandle) handle;
+        if (fh == null) {
+            // first time this tile has been written to disk
+            fh = new FileHandle(createFile());
+        }
+
+        final int numBanks = dataBuf.getNumBanks();
+        final int dataLen = dataBuf.getSize();
+
+        ImageOutputStream strm = null;
+        try {
+            strm = ImageIO.createImageOutputStream(fh.file);
+
+            switch (dataBuf.getDataType()) {
+                case DataBuffer.TYPE_BYTE:
+                     {
+                        byte[] bankData;
+                        for (int i = 0; i < numBanks; i++) {
+                            bankData = ((DataBufferByte) dataBuf).getData(i);
+                            strm.write(bankData, 0, dataLen);
+                        }
+                    }
+                    break;
+
+                case DataBuffer.TYPE_DOUBLE:
+                     {
+                        double[] bankData;
+                        for (int i = 0; i < numBanks; i++) {
+                            bankData = ((DataBufferDouble) dataBuf).getData(i);
+                            strm.writeDoubles(bankData, 0, dataLen);
+                        }
+                    }
+                    break;
+
+                case DataBuffer.TYPE_FLOAT:
+                     {
+                        float[] bankData;
+                        for (int i = 0; i < numBanks; i++) {
+                            bankData = ((DataBufferFloat) dataBuf).getData(i);
+                            strm.writeFloats(bankData, 0, dataLen);
+                        }
+                    }
+                    break;
+
+                case DataBuffer.TYPE_INT:
+                     {
+                        int[] bankData;
+                        for (int i = 0; i < numBanks; i++) {
+                            bankData = ((DataBufferInt) dataBuf).getData(i);
+                            strm.writeInts(bankData, 0, dataLen);
+                        }
+                    }
+                    break;
+
+                case DataBuffer.TYPE_SHORT:
+                     {
+                        short[] bankData;
+                        for (int i = 0; i < numBanks; i++) {
+                            bankData = ((DataBufferShort) dataBuf).getData(i);
+                            strm.writeShorts(bankData, 0, dataLen);
+                        }
+                    }
+                    break;
+
+                case DataBuffer.TYPE_USHORT:
+                    {
+                        short[] bankData;
+                        for (int i = 0; i < numBanks; i++) {
+                            bankData = ((DataBufferUShort) dataBuf).getData(i);
+                            strm.writeShorts(bankData, 0, dataLen);
+                        }
+                    }
+                    break;
+
+                default:
+                    throw new UnsupportedOperationException("Unsupported image data type");
+            }
+
+            fh.dataType = dataBuf.getDataType();
+            fh.numBanks = numBanks;
+            fh.size = dataLen;
+
+        } finally {
+            if (strm != null) {
+                try {
+                    strm.close();
+                } catch (Throwable e) {
+                    // chew me
+                }
+            }
+        }
+
+        return fh;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DataBuffer read(Object handle) throws IOException {
+        FileHandle fh = (FileHandle) handle;
+        final int numBanks = fh.numBanks;
+        final int dataLen = fh.size;
+
+        ImageInputStream strm = null;
+        try {
+            strm = ImageIO.createImageInputStream(fh.file);
+            if (strm == null) {
+                throw new IOException("Unable to open cached tile file " + fh.file.getPath());
+            }
+
+            switch (fh.dataType) {
+                case DataBuffer.TYPE_BYTE: {
+                    byte[][] bankData = new byte[numBanks][dataLen];
+                    for (int i = 0; i < numBanks; i++) {
+                        strm.readFully(bankData[i], 0, dataLen);
+                    }
+                    return new DataBufferByte(bankData, dataLen);
+                }
+
+                case DataBuffer.TYPE_DOUBLE: {
+                    double[][] bankData = new double[numBanks][dataLen];
+                    for (int i = 0; i < numBanks; i++) {
+                        strm.readFully(bankData[i], 0, dataLen);
+                    }
+                    return new DataBufferDouble(bankData, dataLen);
+                }
+
+                case DataBuffer.TYPE_FLOAT: {
+                    float[][] bankData = new float[numBanks][dataLen];
+                    for (int i = 0; i < numBanks; i++) {
+                        strm.readFully(bankData[i], 0, dataLen);
+                    }
+                    return new DataBufferFloat(bankData, dataLen);
+                }
+
+                case DataBuffer.TYPE_INT: {
+                    int[][] bankData = new int[numBanks][dataLen];
+                    for (int i = 0; i < numBanks; i++) {
+                        strm.readFully(bankData[i], 0, dataLen);
+                    }
+                    return new DataBufferInt(bankData, dataLen);
+                }
+
+                case DataBuffer.TYPE_SHORT: {
+                    short[][] bankData = new short[numBanks][dataLen];
+                    for (int i = 0; i < numBanks; i++) {
+                        strm.readFully(bankData[i], 0, dataLen);
+                    }
+                    return new DataBufferShort(bankData, dataLen);
+                }
+
+                case DataBuffer.TYPE_USHORT: {
+                    short[][] bankData = new short[numBanks][dataLen];
+                    for (int i = 0; i < numBanks; i++) {
+                        strm.readFully(bankData[i], 0, dataLen);
+                    }
+                    return new DataBufferUShort(bankData, dataLen);
+                }
+
+                default:
+                    throw new UnsupportedOperationException("Unsupported image data type");
+            }
+
+        } finally {
+            if (strm != null) {
+                try {
+                    strm.close();
+                } catch (Throwable e) {
+                    // chew me
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The tile's file is deleted. If this fails a warning is logged.
+     */
+    public void delete(Object handle) {
+        File file = ((FileHandle) handle).file;
+        if (!file.delete()) {
+            LOGGER.log(Level.WARNING,
+                    "Unable to delete cached image tile file: {0}", file.getPath());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public File getFile(Object handle) {
+        return ((FileHandle) handle).file;
+    }
+
+    /**
+     * Does nothing. Files are deleted individually as tiles 
+     * are removed from the cache.
+     */
+    public void dispose() {
+    }
+
+    /**
+     * Creates a file to cache a tile on disk. Presently
+     * this method does nothing more than delegate to File.createTempFile
+     *
+     * @throws java.io.IOException
+     */
+    private File createFile() throws IOException {
+        return File.createTempFile(
+                DiskCachedTile.FILE_PREFIX, DiskCachedTile.FILE_SUFFIX,
+                DiskCachedTile.getCacheFolder());
+    }
+
+}
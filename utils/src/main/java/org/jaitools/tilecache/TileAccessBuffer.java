@@ -0,0 +1,120 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+
+package org.jaitools.tilecache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records tile accesses without locking so that an {@linkplain EvictionPolicy}
+ * can apply them later while holding its own lock. Accesses are written to
+ * per-thread-stripe ring buffers. If a thread makes more than 128 accesses
+ * between drains its oldest accesses are lost, and the ordering of accesses
+ * made by different threads between drains is approximate, neither of which
+ * matters much for choosing a victim.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+final class TileAccessBuffer {
+
+    /** Number of accesses held by each buffer stripe. */
+    static final int BUFFER_SIZE = 128;
+
+    /**
+     * Receives buffered accesses when they are drained.
+     */
+    interface Handler {
+        /**
+         * Applies an access.
+         *
+         * @param tile the tile that was accessed
+         */
+        void tileAccessed(DiskCachedTile tile);
+    }
+
+    private static final class Stripe {
+        final AtomicReferenceArray<DiskCachedTile> slots =
+                new AtomicReferenceArray<DiskCachedTile>(BUFFER_SIZE);
+        final AtomicLong writeCount = new AtomicLong();
+        // guarded by the draining thread
+        long readCount;
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    /**
+     * Creates a new buffer with a stripe count based on the
+     * number of available processors.
+     */
+    TileAccessBuffer() {
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe();
+        }
+        stripeMask = n - 1;
+    }
+
+    /**
+     * Records an access. This method does not lock.
+     *
+     * @param tile the tile that was accessed
+     */
+    void record(DiskCachedTile tile) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        long n = stripe.writeCount.getAndIncrement();
+        stripe.slots.lazySet((int) n & (BUFFER_SIZE - 1), tile);
+    }
+
+    /**
+     * Passes recorded accesses, in order for each stripe, to a handler.
+     * Callers must ensure that only one thread drains at a time.
+     *
+     * @param handler receives the accesses
+     */
+    void drain(Handler handler) {
+        for (Stripe stripe : stripes) {
+            long end = stripe.writeCount.get();
+            long start = Math.max(stripe.readCount, end - BUFFER_SIZE);
+            for (long i = start; i < end; i++) {
+                /*
+                 * A slot can still be empty if its writer has not yet
+                 * stored the tile; that access is then skipped
+                 */
+                DiskCachedTile tile = stripe.slots.getAndSet((int) i & (BUFFER_SIZE - 1), null);
+                if (tile != null) {
+                    handler.tileAccessed(tile);
+                }
+            }
+            stripe.readCount = end;
+        }
+    }
+
+}
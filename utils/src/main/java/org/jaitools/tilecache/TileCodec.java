@@ -0,0 +1,75 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+
+/**
+ * Encodes tile data before they are passed to a {@linkplain TileStore} and
+ * decodes them after reading. This allows tiles cached to disk by 
+ * {@code DiskMemTileCache} to be held in a compressed form.
+ * <p>
+ * A codec can be set for a cache with the 
+ * {@link DiskMemTileCache#KEY_TILE_CODEC} parameter. If none is set, tile
+ * data are written as is. Implementations must be thread-safe.
+ *
+ * @see DeflateTileCodec
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public interface TileCodec {
+
+    /**
+     * Encodes tile data.
+     *
+     * @param data the tile data
+     *
+     * @return the encoded data (may be {@code data} itself if no encoding
+     *         was done)
+     *
+     * @throws IOException on error encoding the data
+     */
+    DataBuffer encode(DataBuffer data) throws IOException;
+
+    /**
+     * Decodes tile data previously encoded with {@link #encode(DataBuffer)}.
+     *
+     * @param encoded the encoded data as read from the tile store
+     * @param dataType data type of the tile data
+     * @param numBanks number of banks in the tile data
+     * @param size number of elements in each bank of the tile data
+     *
+     * @return a {@code DataBuffer} holding the tile data
+     *
+     * @throws IOException on error decoding the data
+     */
+    DataBuffer decode(DataBuffer encoded, int dataType, int numBanks, int size) 
+            throws IOException;
+
+}
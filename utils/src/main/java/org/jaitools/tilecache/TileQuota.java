@@ -0,0 +1,166 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+/**
+ * Limits on the memory that a {@linkplain DiskMemTileCache} will use for the
+ * resident tiles of a single image, together with the image's priority. Quotas
+ * are useful when images with different needs share a cache, eg. small images
+ * being viewed interactively and large scratch images used by batch processing.
+ * <p>
+ * When the cache needs to free memory, tiles are first taken from images using
+ * more than their soft limit, lowest priority images first. After that, tiles
+ * are chosen by the cache's eviction policy, except that a tile belonging to an
+ * image is only removed while no lower priority image has tiles in memory.
+ * An image never has more than its hard limit of tiles in memory: if space is
+ * needed for a tile beyond that, the image's own least recently accessed tiles
+ * are swapped out.
+ * <p>
+ * Images without a quota have {@linkplain Priority#NORMAL} priority and no limits.
+ * Example:
+ * <pre><code>
+ *     // interactive display: keep in memory in preference to other images
+ *     cache.setOwnerQuota(displayImage, new TileQuota(Priority.HIGH));
+ *
+ *     // scratch image: at most 16Mb in memory, only 4Mb if others need space
+ *     cache.setOwnerQuota(scratchImage, 
+ *             new TileQuota(4 * 1024 * 1024, 16 * 1024 * 1024, Priority.LOW));
+ * </code></pre>
+ *
+ * @see DiskMemTileCache#setOwnerQuota(java.awt.image.RenderedImage, TileQuota)
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public final class TileQuota {
+
+    /**
+     * Priority classes for images sharing a cache.
+     */
+    public enum Priority {
+        /** Tiles are swapped out before those of other images */
+        LOW,
+        /** The priority of images without a quota */
+        NORMAL,
+        /** Tiles are swapped out after those of other images */
+        HIGH;
+    }
+
+    /** Value used for limits that do not apply */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long softLimit;
+    private final long hardLimit;
+    private final Priority priority;
+
+    /**
+     * Creates a quota with the given priority and no memory limits.
+     *
+     * @param priority the priority
+     */
+    public TileQuota(Priority priority) {
+        this(UNLIMITED, UNLIMITED, priority);
+    }
+
+    /**
+     * Creates a new quota.
+     *
+     * @param softLimit memory (bytes) above which the image's tiles are the
+     *        first to be swapped out
+     * @param hardLimit maximum memory (bytes) for the image's tiles
+     * @param priority the priority
+     * @throws IllegalArgumentException if either limit is negative, 
+     *         {@code softLimit > hardLimit}, or {@code priority} is {@code null}
+     */
+    public TileQuota(long softLimit, long hardLimit, Priority priority) {
+        if (softLimit < 0 || hardLimit < 0) {
+            throw new IllegalArgumentException("limits must be >= 0");
+        }
+        if (softLimit > hardLimit) {
+            throw new IllegalArgumentException("softLimit must not be greater than hardLimit");
+        }
+        if (priority == null) {
+            throw new IllegalArgumentException("priority must not be null");
+        }
+
+        this.softLimit = softLimit;
+        this.hardLimit = hardLimit;
+        this.priority = priority;
+    }
+
+    /**
+     * Gets the soft limit.
+     *
+     * @return limit in bytes
+     */
+    public long getSoftLimit() {
+        return softLimit;
+    }
+
+    /**
+     * Gets the hard limit.
+     *
+     * @return limit in bytes
+     */
+    public long getHardLimit() {
+        return hardLimit;
+    }
+
+    /**
+     * Gets the priority.
+     *
+     * @return the priority
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String toString() {
+        return "TileQuota[soft=" + (softLimit == UNLIMITED ? "unlimited" : softLimit) +
+                " hard=" + (hardLimit == UNLIMITED ? "unlimited" : hardLimit) +
+                " priority=" + priority + "]";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof TileQuota)) {
+            return false;
+        }
+        TileQuota other = (TileQuota) obj;
+        return softLimit == other.softLimit && hardLimit == other.hardLimit &&
+                priority == other.priority;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = (int) (softLimit ^ (softLimit >>> 32));
+        h = 31 * h + (int) (hardLimit ^ (hardLimit >>> 32));
+        return 31 * h + priority.hashCode();
+    }
+
+}
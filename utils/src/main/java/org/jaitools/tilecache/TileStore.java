@@ -0,0 +1,107 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Defines the backing storage used by {@code DiskMemTileCache} for tiles
+ * that have been cached to disk. Each tile's data are identified by an
+ * opaque handle which is returned by the store when the data are first written
+ * and held by the tile thereafter.
+ * <p>
+ * The cache guarantees that there will not be concurrent calls for the
+ * same handle, but calls for different handles can arrive from multiple
+ * threads at the same time, so implementations must be thread-safe in that
+ * respect.
+ * <p>
+ * A store can be set for a cache with the
+ * {@link DiskMemTileCache#KEY_TILE_STORE} parameter. If none is set, each
+ * tile is written to its own temporary file ({@link TempFileTileStore}).
+ *
+ * @see MappedTileStore
+ * @see TempFileTileStore
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public interface TileStore {
+
+    /**
+     * Writes tile data to the store.
+     *
+     * @param handle the handle returned by a previous call to this method
+     *        for the same tile, or {@code null} if the tile is being
+     *        written for the first time
+     * @param data the tile data
+     *
+     * @return the handle to use for subsequent access to the tile's data
+     *         (which may or may not be the same as {@code handle})
+     *
+     * @throws IOException on error writing the data
+     */
+    Object write(Object handle, DataBuffer data) throws IOException;
+
+    /**
+     * Reads tile data from the store. The returned {@code DataBuffer}
+     * has the same data type, number of banks and size as that
+     * last written for the handle.
+     *
+     * @param handle the tile's handle
+     *
+     * @return a new {@code DataBuffer} holding the tile data
+     *
+     * @throws IOException on error reading the data
+     */
+    DataBuffer read(Object handle) throws IOException;
+
+    /**
+     * Releases the storage used by a tile. The handle is not valid
+     * after this method has been called.
+     *
+     * @param handle the tile's handle
+     */
+    void delete(Object handle);
+
+    /**
+     * Gets the file in which a tile's data are stored.
+     *
+     * @param handle the tile's handle
+     *
+     * @return the file
+     */
+    File getFile(Object handle);
+
+    /**
+     * Releases all resources held by this store. The store
+     * should not be used after this method has been called.
+     */
+    void dispose();
+
+}
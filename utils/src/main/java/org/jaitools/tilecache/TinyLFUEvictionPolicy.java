@@ -0,0 +1,286 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * An {@linkplain EvictionPolicy} implementing W-TinyLFU, which combines
+ * recency and frequency of access. It resists the cache being flushed by a
+ * single pass over a large number of tiles (eg. a scan through a large image)
+ * while keeping frequently used tiles resident.
+ * <p>
+ * Resident tiles are divided into a small admission window (about 1% of
+ * tiles) and a main region, which is split into probationary and protected
+ * segments. New tiles enter the window. When a victim is required, the least
+ * recently used tile in the window competes with the least recently used
+ * tile in the probationary segment and the one with the lower estimated
+ * access frequency is evicted. A probationary tile which is accessed again
+ * is promoted to the protected segment (about 80% of the main region).
+ * <p>
+ * Access frequencies are estimated with a count-min sketch of 4 bit counters
+ * which are periodically halved so that the estimates favour recent history.
+ * The sketch remembers tiles that are no longer resident, which is what
+ * allows a tile that is used often to win back its place in memory.
+ * <p>
+ * As with {@linkplain LRUEvictionPolicy}, tile accesses are recorded without
+ * locking and are applied to the regions and the sketch when the policy is
+ * next asked to add, remove or choose a tile.
+ * <p>
+ * Reference: G. Einziger, R. Friedman and B. Manes (2017) TinyLFU: A highly
+ * efficient cache admission policy. ACM Transactions on Storage 13(4).
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class TinyLFUEvictionPolicy implements EvictionPolicy {
+
+    /**
+     * Default number of distinct tiles (4096) used to size the
+     * frequency sketch.
+     */
+    public static final int DEFAULT_SKETCH_SIZE = 4096;
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    // each region is LRU ordered (first = least recent)
+    private final LinkedHashSet<DiskCachedTile> window = new LinkedHashSet<DiskCachedTile>();
+    private final LinkedHashSet<DiskCachedTile> probation = new LinkedHashSet<DiskCachedTile>();
+    private final LinkedHashSet<DiskCachedTile> protect = new LinkedHashSet<DiskCachedTile>();
+
+    private final byte[][] sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private int numSamples;
+
+    private final TileAccessBuffer accesses = new TileAccessBuffer();
+
+    private final TileAccessBuffer.Handler accessHandler = new TileAccessBuffer.Handler() {
+        public void tileAccessed(DiskCachedTile tile) {
+            applyAccess(tile);
+        }
+    };
+
+    /**
+     * Creates a new policy with a frequency sketch of the default size.
+     */
+    public TinyLFUEvictionPolicy() {
+        this(DEFAULT_SKETCH_SIZE);
+    }
+
+    /**
+     * Creates a new policy. The sketch size should be of the order of the
+     * number of distinct tiles that will pass through the cache, but accuracy
+     * degrades gracefully if it is smaller.
+     *
+     * @param sketchSize approximate number of distinct tiles to track
+     */
+    public TinyLFUEvictionPolicy(int sketchSize) {
+        int width = Integer.highestOneBit(Math.max(64, sketchSize) - 1) << 1;
+        sketch = new byte[SKETCH_DEPTH][width];
+        sketchMask = width - 1;
+        sampleSize = 10 * width;
+        numSamples = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void tileAdded(DiskCachedTile tile) {
+        drainAccesses();
+        increment(tile);
+        window.add(tile);
+
+        /*
+         * When there is no need to evict, tiles overflowing
+         * the window pass directly to the main region
+         */
+        while (window.size() > maxWindowSize()) {
+            DiskCachedTile t = first(window);
+            window.remove(t);
+            probation.add(t);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * This method does not lock: the access is recorded in a buffer
+     * and applied when the policy is next asked to add, remove or
+     * choose a tile.
+     */
+    public void tileAccessed(DiskCachedTile tile) {
+        accesses.record(tile);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void tileRemoved(DiskCachedTile tile) {
+        drainAccesses();
+        if (!window.remove(tile)) {
+            if (!probation.remove(tile)) {
+                protect.remove(tile);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized DiskCachedTile nextVictim() {
+        drainAccesses();
+        DiskCachedTile mainVictim = first(probation);
+        if (mainVictim == null) {
+            mainVictim = first(protect);
+        }
+
+        if (mainVictim == null) {
+            return first(window);
+        }
+
+        /*
+         * A new tile will be added to the window after eviction so, if the
+         * window is full, its oldest tile must compete for a place in the
+         * main region
+         */
+        DiskCachedTile candidate = first(window);
+        if (candidate != null && window.size() >= maxWindowSize()) {
+            if (frequency(candidate) > frequency(mainVictim)) {
+                window.remove(candidate);
+                probation.add(candidate);
+                return mainVictim;
+            }
+            return candidate;
+        }
+
+        return mainVictim;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The frequency sketch is retained.
+     */
+    public synchronized void clear() {
+        drainAccesses();
+        window.clear();
+        probation.clear();
+        protect.clear();
+    }
+
+    /**
+     * Gets the estimated access frequency of a tile. This is intended
+     * for testing and diagnostics.
+     *
+     * @param tile the tile
+     * @return estimated frequency (0 - 15)
+     */
+    public synchronized int frequency(DiskCachedTile tile) {
+        drainAccesses();
+        int h = tile.getTileId().hashCode();
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            min = Math.min(min, sketch[i][index(h, i)]);
+        }
+        return min;
+    }
+
+    /**
+     * Applies buffered accesses. Must be called while holding
+     * this policy's monitor.
+     */
+    private void drainAccesses() {
+        accesses.drain(accessHandler);
+    }
+
+    /**
+     * Moves an accessed tile within or between regions and updates
+     * its frequency estimate. Tiles that are no longer resident are
+     * ignored.
+     */
+    private void applyAccess(DiskCachedTile tile) {
+        if (window.remove(tile)) {
+            increment(tile);
+            window.add(tile);
+
+        } else if (probation.remove(tile)) {
+            increment(tile);
+            protect.add(tile);
+
+            int maxProtected = (int) (0.8 * (probation.size() + protect.size()));
+            while (protect.size() > Math.max(1, maxProtected)) {
+                DiskCachedTile t = first(protect);
+                protect.remove(t);
+                probation.add(t);
+            }
+
+        } else if (protect.remove(tile)) {
+            increment(tile);
+            protect.add(tile);
+        }
+    }
+
+    private int maxWindowSize() {
+        int total = window.size() + probation.size() + protect.size();
+        return Math.max(1, total / 100);
+    }
+
+    private void increment(DiskCachedTile tile) {
+        int h = tile.getTileId().hashCode();
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            int k = index(h, i);
+            if (sketch[i][k] < 15) {
+                sketch[i][k]++ ;
+            }
+        }
+
+        if (++numSamples >= sampleSize) {
+            // age the counts
+            for (byte[] row : sketch) {
+                for (int k = 0; k < row.length; k++) {
+                    row[k] >>= 1;
+                }
+            }
+            numSamples /= 2;
+        }
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= (h >>> 32);
+        return (int) h & sketchMask;
+    }
+
+    private static DiskCachedTile first(LinkedHashSet<DiskCachedTile> set) {
+        Iterator<DiskCachedTile> iter = set.iterator();
+        return iter.hasNext() ? iter.next() : null;
+    }
+
+}
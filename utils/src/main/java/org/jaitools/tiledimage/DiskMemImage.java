@@ -35,9 +35,21 @@ import java.awt.image.SampleModel;
 import java.awt.image.TileObserver;
 import java.awt.image.WritableRaster;
 import java.awt.image.WritableRenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +57,7 @@ import javax.media.jai.ImageLayout;
 import javax.media.jai.PlanarImage;
 
 import org.jaitools.tilecache.DiskMemTileCache;
+import org.jaitools.tilecache.PinnedTile;
 import org.jaitools.CollectionFactory;
 
 
@@ -78,6 +91,26 @@ import org.jaitools.CollectionFactory;
  *     long memCapacity = 128 * 1024 * 1024; // 128 Mb
  *     DiskMemImage.getCommonCache().setMemoryCapacity(memCapacity);
  * </code></pre>
+ * The cache's disk storage is temporary and is discarded with the image. To
+ * keep an image for later use, it can be checkpointed to a named tiled file
+ * which records the sample model, tile layout and data of each tile that has
+ * been created. The file can be reopened later, in the same or another
+ * application run, and tiles will be read from it lazily as they are accessed:
+ * <pre><code>
+ *     DiskMemImage image = new DiskMemImage(...);
+ *     // ... expensive processing ...
+ *     image.checkpoint(new File("result.tim"));
+ *
+ *     // later
+ *     DiskMemImage reopened = DiskMemImage.open(new File("result.tim"));
+ * </code></pre>
+ * Changes made to a reopened image are not written to its file until
+ * {@link #checkpoint()} is called.
+ * <p>
+ * A cheap, copy-on-write snapshot of an image can be taken with
+ * {@link #createSnapshot()}. The snapshot shares tiles with the image until
+ * either of them writes to a tile, so it can be read while another thread
+ * carries on drawing into the original image.
  *
  * @see DiskMemTileCache
  * 
@@ -173,6 +206,12 @@ public class DiskMemImage
      */
     protected int numTilesInUse;
 
+    /*
+     * Guards numWriters and numTilesInUse, which may be updated by
+     * several drawing threads at once
+     */
+    private final Object writerLock = new Object();
+
     /**
      * The amount of memory (in bytes) required to hold
      * the data for an image tile
@@ -185,6 +224,49 @@ public class DiskMemImage
      */
     protected Set<TileObserver> tileObservers;
 
+    /**
+     * The file from which tiles not held by the tile cache are read
+     * (may be {@code null})
+     */
+    private TiledImageFile backingFile;
+
+    /*
+     * Copy-on-write snapshots. A snapshot reads tiles from the image it
+     * was taken from (its source) until it holds its own copy of a tile,
+     * as recorded in ownTiles. Changes to ownTiles, and the hand-over of
+     * tiles from an image to its snapshots, are guarded by the source
+     * image's snapshotLock.
+     */
+    private DiskMemImage snapshotSource;
+    private boolean[][] ownTiles;
+    private final List<WeakReference<DiskMemImage>> snapshots =
+            new ArrayList<WeakReference<DiskMemImage>>();
+    private volatile boolean hasSnapshots;
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    /**
+     * Opens an image previously saved with {@link #checkpoint(File)}.
+     * The file's header is read immediately but tile data are only read
+     * when a tile is first accessed. The returned image uses its own
+     * tile cache and keeps the file open until {@link #dispose()} is called.
+     *
+     * @param file the file
+     * @return the image
+     * @throws IOException if the file cannot be read or is not a valid
+     *         tiled image file
+     */
+    public static DiskMemImage open(File file) throws IOException {
+        TiledImageFile tif = new TiledImageFile(file);
+        DiskMemImage image = new DiskMemImage(
+                tif.getMinX(), tif.getMinY(),
+                tif.getWidth(), tif.getHeight(),
+                tif.getTileGridXOffset(), tif.getTileGridYOffset(),
+                tif.getSampleModel(), tif.getColorModel());
+
+        image.backingFile = tif;
+        return image;
+    }
+
     /**
      * Creates a new image with default values for origin (0, 0), 
      * x and y tile offsets (0) and {@code ColorModel}
@@ -339,11 +421,23 @@ public class DiskMemImage
      */
     @Override
     public Raster getTile(int tileX, int tileY) {
+        DiskMemImage source = snapshotSource;
+        if (source != null && tileGrid.contains(tileX, tileY)) {
+            source.snapshotLock.readLock().lock();
+            try {
+                if (!ownTiles[tileX - tileGrid.x][tileY - tileGrid.y]) {
+                    return source.getTile(tileX, tileY);
+                }
+            } finally {
+                source.snapshotLock.readLock().unlock();
+            }
+        }
+
         Raster r = null;
         if (tileGrid.contains(tileX, tileY)) {
             r = getTileCache().getTile(this, tileX, tileY);
             if (r == null) {
-                r = createTile(tileX, tileY);
+                r = loadTile(tileX, tileY);
                 getTileCache().add(this, tileX, tileY, r);
             }
         }
@@ -371,6 +465,9 @@ public class DiskMemImage
      * {@linkplain #releaseWritableTile(int, int)}. If this method is
      * called for the same time prior to the tile being released
      * it returns {@code null} and a warning message is logged.
+     * <p>
+     * The tile is pinned in the tile cache's memory while it is
+     * checked out.
      *
      * @param tileX tile X ordinate
      * @param tileY tile Y ordinate
@@ -380,15 +477,32 @@ public class DiskMemImage
     public WritableRaster getWritableTile(int tileX, int tileY) {
         WritableRaster r = null;
         if (tileGrid.contains(tileX, tileY)) {
-            numWriters[tileX - tileGrid.x][tileY - tileGrid.y]++ ;
-            if (numWriters[tileX - tileGrid.x][tileY - tileGrid.y] == 1) {
-                numTilesInUse++ ;
+            synchronized (writerLock) {
+                numWriters[tileX - tileGrid.x][tileY - tileGrid.y]++ ;
+                if (numWriters[tileX - tileGrid.x][tileY - tileGrid.y] == 1) {
+                    numTilesInUse++ ;
+                }
             }
 
-            r = (WritableRaster) getTileCache().getTile(this, tileX, tileY);
-            if (r == null) {
-                r = createTile(tileX, tileY);
+            if (snapshotSource != null) {
+                copyFromSource(tileX, tileY);
+            }
+            if (hasSnapshots) {
+                handOverToSnapshots(tileX, tileY);
+            }
+
+            /*
+             * The tile stays pinned in the cache's memory until it
+             * is released so that writes to it are not lost
+             */
+            PinnedTile pin = getTileCache().pinTile(this, tileX, tileY);
+            if (pin == null) {
+                r = loadTile(tileX, tileY);
                 getTileCache().add(this, tileX, tileY, r);
+                pin = getTileCache().pinTile(this, tileX, tileY);
+            }
+            if (pin != null) {
+                r = (WritableRaster) pin.getRaster();
             }
 
             for (TileObserver obs : tileObservers) {
@@ -416,15 +530,17 @@ public class DiskMemImage
      */
     public void releaseWritableTile(int tileX, int tileY) {
         if (tileGrid.contains(tileX, tileY)) {
-            numWriters[tileX - tileGrid.x][tileY - tileGrid.y]-- ;
-            if (numWriters[tileX - tileGrid.x][tileY - tileGrid.y] < 0) {
-                Logger.getLogger(
-                        DiskMemImage.class.getName()).log(Level.SEVERE,
-                            String.format("Tile %d,%d released more times than it has been checked out",
-                                tileX, tileY));
-
-            } else if (numWriters[tileX - tileGrid.x][tileY - tileGrid.y] == 0) {
-                numTilesInUse--;
+            synchronized (writerLock) {
+                numWriters[tileX - tileGrid.x][tileY - tileGrid.y]-- ;
+                if (numWriters[tileX - tileGrid.x][tileY - tileGrid.y] < 0) {
+                    Logger.getLogger(
+                            DiskMemImage.class.getName()).log(Level.SEVERE,
+                                String.format("Tile %d,%d released more times than it has been checked out",
+                                    tileX, tileY));
+
+                } else if (numWriters[tileX - tileGrid.x][tileY - tileGrid.y] == 0) {
+                    numTilesInUse--;
+                }
             }
 
             /*
@@ -440,12 +556,53 @@ public class DiskMemImage
                         log(Level.SEVERE, null, ex);
             }
 
+            getTileCache().unpinTile(this, tileX, tileY);
+
             for (TileObserver obs : tileObservers) {
                 obs.tileUpdate(this, tileX, tileY, false);
             }
         }
     }
 
+    /**
+     * Pins a tile in the tile cache's memory, creating the tile if it does
+     * not exist yet. Until the returned handle is closed the tile will not be
+     * swapped out, so code that makes many passes over a tile, such as a
+     * row-wise scan, does not cause it to be fetched repeatedly. Tiles checked
+     * out with {@linkplain #getWritableTile(int, int)} are pinned automatically
+     * until released.
+     *
+     * @param tileX tile X ordinate
+     * @param tileY tile Y ordinate
+     * @return a handle for the pinned tile, or {@code null} if the tile
+     *         indices are outside the image's tile grid
+     * @see DiskMemTileCache#pinTile(java.awt.image.RenderedImage, int, int)
+     */
+    public PinnedTile pinTile(int tileX, int tileY) {
+        if (!tileGrid.contains(tileX, tileY)) {
+            return null;
+        }
+
+        DiskMemImage source = snapshotSource;
+        if (source != null) {
+            source.snapshotLock.readLock().lock();
+            try {
+                if (!ownTiles[tileX - tileGrid.x][tileY - tileGrid.y]) {
+                    return source.pinTile(tileX, tileY);
+                }
+            } finally {
+                source.snapshotLock.readLock().unlock();
+            }
+        }
+
+        PinnedTile pin = getTileCache().pinTile(this, tileX, tileY);
+        if (pin == null) {
+            getTile(tileX, tileY);
+            pin = getTileCache().pinTile(this, tileX, tileY);
+        }
+        return pin;
+    }
+
     /**
      * Tests if a tile is currently checked-out for writing (via
      * a call to {@linkplain #getWritableTile(int, int)}.
@@ -456,7 +613,9 @@ public class DiskMemImage
      *          writing; {@code false} otherwise.
      */
     public boolean isTileWritable(int tileX, int tileY) {
-        return numWriters[tileX - tileGrid.x][tileY - tileGrid.y] > 0;
+        synchronized (writerLock) {
+            return numWriters[tileX - tileGrid.x][tileY - tileGrid.y] > 0;
+        }
     }
 
     /**
@@ -468,13 +627,15 @@ public class DiskMemImage
     public Point[] getWritableTileIndices() {
         Point[] indices = null;
 
-        if (numTilesInUse > 0) {
-            indices = new Point[numTilesInUse];
-            int k = 0;
-            for (int y = tileGrid.y, ny = 0; ny < tileGrid.height; y++, ny++) {
-                for (int x = tileGrid.x, nx = 0; nx < tileGrid.width; x++, nx++) {
-                    if (numWriters[nx][ny] > 0) {
-                        indices[k++] = new Point(x, y);
+        synchronized (writerLock) {
+            if (numTilesInUse > 0) {
+                indices = new Point[numTilesInUse];
+                int k = 0;
+                for (int y = tileGrid.y, ny = 0; ny < tileGrid.height; y++, ny++) {
+                    for (int x = tileGrid.x, nx = 0; nx < tileGrid.width; x++, nx++) {
+                        if (numWriters[nx][ny] > 0) {
+                            indices[k++] = new Point(x, y);
+                        }
                     }
                 }
             }
@@ -489,7 +650,9 @@ public class DiskMemImage
      *         {@code false} otherwise
      */
     public boolean hasTileWriters() {
-        return numTilesInUse > 0;
+        synchronized (writerLock) {
+            return numTilesInUse > 0;
+        }
     }
 
 
@@ -628,6 +791,266 @@ public class DiskMemImage
         }
     }
 
+    /**
+     * Gets the image values for a rectangular region and band as integers.
+     * Values are returned in row-major order. Each tile overlapping the
+     * region is retrieved once, so this is much faster than repeated calls
+     * to {@linkplain #getSample(int, int, int)} for a disk-cached image.
+     *
+     * @param x X ordinate of the upper-left pixel of the region
+     * @param y Y ordinate of the upper-left pixel of the region
+     * @param w width of the region
+     * @param h height of the region
+     * @param b band index
+     * @param iArray array to receive the values, or {@code null} for a new array
+     *
+     * @return the array of values
+     * @throws PixelOutsideImageException if the region is not within the image
+     * @throws IllegalArgumentException if {@code iArray} is too small
+     */
+    public int[] getSamples(int x, int y, int w, int h, int b, int[] iArray)
+            throws PixelOutsideImageException {
+        if (iArray == null) {
+            iArray = new int[checkRegion(x, y, w, h, b)];
+        }
+        transferSamples(x, y, w, h, b, iArray, false);
+        return iArray;
+    }
+
+    /**
+     * Gets the image values for a rectangular region and band as floats.
+     * Values are returned in row-major order.
+     *
+     * @param x X ordinate of the upper-left pixel of the region
+     * @param y Y ordinate of the upper-left pixel of the region
+     * @param w width of the region
+     * @param h height of the region
+     * @param b band index
+     * @param fArray array to receive the values, or {@code null} for a new array
+     *
+     * @return the array of values
+     * @throws PixelOutsideImageException if the region is not within the image
+     * @throws IllegalArgumentException if {@code fArray} is too small
+     * @see #getSamples(int, int, int, int, int, int[])
+     */
+    public float[] getSamples(int x, int y, int w, int h, int b, float[] fArray)
+            throws PixelOutsideImageException {
+        if (fArray == null) {
+            fArray = new float[checkRegion(x, y, w, h, b)];
+        }
+        transferSamples(x, y, w, h, b, fArray, false);
+        return fArray;
+    }
+
+    /**
+     * Gets the image values for a rectangular region and band as doubles.
+     * Values are returned in row-major order.
+     *
+     * @param x X ordinate of the upper-left pixel of the region
+     * @param y Y ordinate of the upper-left pixel of the region
+     * @param w width of the region
+     * @param h height of the region
+     * @param b band index
+     * @param dArray array to receive the values, or {@code null} for a new array
+     *
+     * @return the array of values
+     * @throws PixelOutsideImageException if the region is not within the image
+     * @throws IllegalArgumentException if {@code dArray} is too small
+     * @see #getSamples(int, int, int, int, int, int[])
+     */
+    public double[] getSamples(int x, int y, int w, int h, int b, double[] dArray)
+            throws PixelOutsideImageException {
+        if (dArray == null) {
+            dArray = new double[checkRegion(x, y, w, h, b)];
+        }
+        transferSamples(x, y, w, h, b, dArray, false);
+        return dArray;
+    }
+
+    /**
+     * Sets the image values for a rectangular region and band from integers
+     * given in row-major order. Each tile overlapping the region is checked
+     * out for writing once, so this is much faster than repeated calls to
+     * {@linkplain #setSample(int, int, int, int)} for a disk-cached image.
+     *
+     * @param x X ordinate of the upper-left pixel of the region
+     * @param y Y ordinate of the upper-left pixel of the region
+     * @param w width of the region
+     * @param h height of the region
+     * @param b band index
+     * @param iArray the new values
+     *
+     * @throws PixelOutsideImageException if the region is not within the image
+     * @throws IllegalArgumentException if {@code iArray} is {@code null} or too small
+     */
+    public void setSamples(int x, int y, int w, int h, int b, int[] iArray)
+            throws PixelOutsideImageException {
+        transferSamples(x, y, w, h, b, iArray, true);
+    }
+
+    /**
+     * Sets the image values for a rectangular region and band from floats
+     * given in row-major order.
+     *
+     * @param x X ordinate of the upper-left pixel of the region
+     * @param y Y ordinate of the upper-left pixel of the region
+     * @param w width of the region
+     * @param h height of the region
+     * @param b band index
+     * @param fArray the new values
+     *
+     * @throws PixelOutsideImageException if the region is not within the image
+     * @throws IllegalArgumentException if {@code fArray} is {@code null} or too small
+     * @see #setSamples(int, int, int, int, int, int[])
+     */
+    public void setSamples(int x, int y, int w, int h, int b, float[] fArray)
+            throws PixelOutsideImageException {
+        transferSamples(x, y, w, h, b, fArray, true);
+    }
+
+    /**
+     * Sets the image values for a rectangular region and band from doubles
+     * given in row-major order.
+     *
+     * @param x X ordinate of the upper-left pixel of the region
+     * @param y Y ordinate of the upper-left pixel of the region
+     * @param w width of the region
+     * @param h height of the region
+     * @param b band index
+     * @param dArray the new values
+     *
+     * @throws PixelOutsideImageException if the region is not within the image
+     * @throws IllegalArgumentException if {@code dArray} is {@code null} or too small
+     * @see #setSamples(int, int, int, int, int, int[])
+     */
+    public void setSamples(int x, int y, int w, int h, int b, double[] dArray)
+            throws PixelOutsideImageException {
+        transferSamples(x, y, w, h, b, dArray, true);
+    }
+
+    /**
+     * Checks that a region and band lie within the image.
+     *
+     * @param x X ordinate of the upper-left pixel of the region
+     * @param y Y ordinate of the upper-left pixel of the region
+     * @param w width of the region
+     * @param h height of the region
+     * @param b band index
+     * @return the number of pixels in the region
+     * @throws PixelOutsideImageException if the region is not within the image
+     */
+    private int checkRegion(int x, int y, int w, int h, int b) {
+        if (w < 0 || h < 0) {
+            throw new IllegalArgumentException("Region width and height must not be negative");
+        }
+        if (b < 0 || b >= getSampleModel().getNumBands()) {
+            throw new PixelOutsideImageException(x, y, b);
+        }
+        if (w > 0 && h > 0) {
+            if (!getBounds().contains(x, y)) {
+                throw new PixelOutsideImageException(x, y, b);
+            }
+            if (!getBounds().contains(x + w - 1, y + h - 1)) {
+                throw new PixelOutsideImageException(x + w - 1, y + h - 1, b);
+            }
+        }
+        return w * h;
+    }
+
+    /**
+     * Copies sample values between the image and a primitive array, one
+     * tile at a time. The tile portion is moved with a single call to the
+     * tile's sample model and the rows are then copied to or from the
+     * caller's array.
+     *
+     * @param x X ordinate of the upper-left pixel of the region
+     * @param y Y ordinate of the upper-left pixel of the region
+     * @param w width of the region
+     * @param h height of the region
+     * @param b band index
+     * @param array an {@code int[]}, {@code float[]} or {@code double[]} array
+     * @param write {@code true} to copy values into the image;
+     *        {@code false} to copy them out
+     */
+    private void transferSamples(int x, int y, int w, int h, int b, Object array, boolean write) {
+        if (array == null) {
+            throw new IllegalArgumentException("The array argument must not be null");
+        }
+
+        int n = checkRegion(x, y, w, h, b);
+        if (Array.getLength(array) < n) {
+            throw new IllegalArgumentException(
+                    String.format("Array length must be at least %d", n));
+        }
+        if (n == 0) {
+            return;
+        }
+
+        int minTileX = XToTileX(x);
+        int maxTileX = XToTileX(x + w - 1);
+        int minTileY = YToTileY(y);
+        int maxTileY = YToTileY(y + h - 1);
+
+        // working buffer large enough for one tile
+        Object buf;
+        if (array instanceof int[]) {
+            buf = new int[Math.min(n, getTileWidth() * getTileHeight())];
+        } else if (array instanceof float[]) {
+            buf = new float[Math.min(n, getTileWidth() * getTileHeight())];
+        } else {
+            buf = new double[Math.min(n, getTileWidth() * getTileHeight())];
+        }
+
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+            int y0 = Math.max(y, tileYToY(tileY));
+            int y1 = Math.min(y + h, tileYToY(tileY) + getTileHeight());
+
+            for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                int x0 = Math.max(x, tileXToX(tileX));
+                int x1 = Math.min(x + w, tileXToX(tileX) + getTileWidth());
+                int ow = x1 - x0;
+                int oh = y1 - y0;
+
+                if (write) {
+                    WritableRaster tile = getWritableTile(tileX, tileY);
+                    try {
+                        for (int row = 0; row < oh; row++) {
+                            System.arraycopy(array, (y0 - y + row) * w + (x0 - x), buf, row * ow, ow);
+                        }
+
+                        if (buf instanceof int[]) {
+                            tile.setSamples(x0, y0, ow, oh, b, (int[]) buf);
+                        } else if (buf instanceof float[]) {
+                            tile.setSamples(x0, y0, ow, oh, b, (float[]) buf);
+                        } else {
+                            tile.setSamples(x0, y0, ow, oh, b, (double[]) buf);
+                        }
+
+                    } finally {
+                        releaseWritableTile(tileX, tileY);
+                    }
+
+                } else {
+                    // pin the tile so it cannot be swapped out while being read
+                    try (PinnedTile pin = pinTile(tileX, tileY)) {
+                        Raster tile = pin.getRaster();
+                        if (buf instanceof int[]) {
+                            tile.getSamples(x0, y0, ow, oh, b, (int[]) buf);
+                        } else if (buf instanceof float[]) {
+                            tile.getSamples(x0, y0, ow, oh, b, (float[]) buf);
+                        } else {
+                            tile.getSamples(x0, y0, ow, oh, b, (double[]) buf);
+                        }
+                    }
+
+                    for (int row = 0; row < oh; row++) {
+                        System.arraycopy(buf, row * ow, array, (y0 - y + row) * w + (x0 - x), ow);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Copies data from the given {@code Raster} object into this
      * image. The bounds of {@code data} will be used to
@@ -656,21 +1079,26 @@ public class DiskMemImage
         for (int y = minTileY; y <= maxTileY; y++) {
             for (int x = minTileX; x <= maxTileX; x++) {
                 WritableRaster tile = getWritableTile(x, y);
-                Rectangle tileOverlap = tile.getBounds().intersection(common);
+                try {
+                    Rectangle tileOverlap = tile.getBounds().intersection(common);
 
-                Raster dataChild = data.createChild(
-                        tileOverlap.x, tileOverlap.y,
-                        tileOverlap.width, tileOverlap.height,
-                        tileOverlap.x, tileOverlap.y,
-                        null);
+                    Raster dataChild = data.createChild(
+                            tileOverlap.x, tileOverlap.y,
+                            tileOverlap.width, tileOverlap.height,
+                            tileOverlap.x, tileOverlap.y,
+                            null);
 
-                WritableRaster tChild = tile.createWritableChild(
-                        tileOverlap.x, tileOverlap.y,
-                        tileOverlap.width, tileOverlap.height,
-                        tileOverlap.x, tileOverlap.y,
-                        null);
+                    WritableRaster tChild = tile.createWritableChild(
+                            tileOverlap.x, tileOverlap.y,
+                            tileOverlap.width, tileOverlap.height,
+                            tileOverlap.x, tileOverlap.y,
+                            null);
 
-                tChild.setRect(dataChild);
+                    tChild.setRect(dataChild);
+
+                } finally {
+                    releaseWritableTile(x, y);
+                }
             }
         }
     }
@@ -802,6 +1230,391 @@ public class DiskMemImage
         return tileCache != null && tileCache == commonCache;
     }
 
+    /**
+     * Gets the file that this image was opened from or last checkpointed to.
+     *
+     * @return the file or {@code null} if the image has no backing file
+     */
+    public synchronized File getBackingFile() {
+        return backingFile == null ? null : backingFile.getFile();
+    }
+
+    /**
+     * Writes this image to its backing file, replacing the previous contents.
+     *
+     * @throws IOException on error writing the file
+     * @throws IllegalStateException if the image has no backing file
+     * @see #checkpoint(File)
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (backingFile == null) {
+            throw new IllegalStateException("Image has no backing file");
+        }
+        checkpoint(backingFile.getFile());
+    }
+
+    /**
+     * Writes this image to a tiled file which can be reopened later with
+     * {@link #open(File)}. Only tiles which have been created are written.
+     * The data are first written to a temporary file in the same directory
+     * which then replaces {@code file}, so an existing file is left intact if
+     * writing fails. On return, {@code file} becomes this image's backing file.
+     * <p>
+     * Tiles should not be checked out for writing while this method runs.
+     *
+     * @param file the destination file
+     * @throws IOException on error writing the file, or if the image's sample
+     *         model is not supported
+     */
+    public synchronized void checkpoint(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            TiledImageFile.write(tmp, this, backingFile);
+
+            if (backingFile != null) {
+                backingFile.close();
+                backingFile = null;
+            }
+
+            try {
+                Files.move(tmp.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+        } finally {
+            tmp.delete();
+        }
+
+        backingFile = new TiledImageFile(file);
+    }
+
+    /**
+     * Creates a snapshot of this image. The snapshot is a {@code DiskMemImage}
+     * with the same layout, which uses the same tile cache and initially
+     * shares all of its tiles with this image, so creating it is cheap. When
+     * either image checks out a shared tile for writing the tile is copied,
+     * so that the snapshot continues to show the data as they were when it
+     * was created and this image's changes are not seen by the snapshot, nor
+     * the snapshot's changes by this image. Tiles are handed over at tile
+     * granularity and the copies are held in the tile cache like any other
+     * tiles, so they count against its memory capacity and can be swapped
+     * to disk.
+     * <p>
+     * Tiles that are checked out for writing when the snapshot is created are
+     * copied straight away, as they stand. For a consistent snapshot of an
+     * image being drawn into, create it between drawing operations.
+     * <p>
+     * A snapshot can be taken of another snapshot. Disposing of this image
+     * gives each of its snapshots its own copy of all remaining shared tiles.
+     *
+     * @return the new snapshot
+     */
+    public DiskMemImage createSnapshot() {
+        DiskMemImage snap = new DiskMemImage(
+                getMinX(), getMinY(),
+                getWidth(), getHeight(),
+                getTileGridXOffset(), getTileGridYOffset(),
+                getSampleModel(), getColorModel());
+
+        snap.tileCache = getTileCache();
+        snap.snapshotSource = this;
+        snap.ownTiles = new boolean[tileGrid.width][tileGrid.height];
+
+        snapshotLock.writeLock().lock();
+        try {
+            snapshots.add(new WeakReference<DiskMemImage>(snap));
+            hasSnapshots = true;
+
+            Point[] inUse = getWritableTileIndices();
+            if (inUse != null) {
+                for (Point p : inUse) {
+                    snap.adoptTile(p.x, p.y, copyTile(getTile(p.x, p.y)));
+                }
+            }
+
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+
+        return snap;
+    }
+
+    /**
+     * Gets the image that this image is a snapshot of.
+     *
+     * @return the source image, or {@code null} if this image is
+     *         not a snapshot
+     * @see #createSnapshot()
+     */
+    public DiskMemImage getSnapshotSource() {
+        return snapshotSource;
+    }
+
+    /**
+     * Tests whether this image holds its own copy of a tile rather than
+     * sharing it with the image it is a snapshot of. For an image which
+     * is not a snapshot this always returns {@code true}.
+     *
+     * @param tileX tile X ordinate
+     * @param tileY tile Y ordinate
+     * @return {@code true} if the tile is not shared
+     */
+    public boolean isTileCopied(int tileX, int tileY) {
+        DiskMemImage source = snapshotSource;
+        if (source == null) {
+            return true;
+        }
+
+        source.snapshotLock.readLock().lock();
+        try {
+            return ownTiles[tileX - tileGrid.x][tileY - tileGrid.y];
+        } finally {
+            source.snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the backing file, if any, before disposing of the image.
+     * If this image has snapshots, they are given their own copies of
+     * any tiles shared with it.
+     */
+    @Override
+    public synchronized void dispose() {
+        // before closing the backing file, which snapshots may still need
+        detachSnapshots();
+        if (snapshotSource != null) {
+            snapshotSource.removeSnapshot(this);
+        }
+
+        if (backingFile != null) {
+            try {
+                backingFile.close();
+            } catch (IOException ex) {
+                Logger.getLogger(DiskMemImage.class.getName()).log(Level.WARNING,
+                        "Failed to close " + backingFile.getFile(), ex);
+            }
+            backingFile = null;
+        }
+
+        super.dispose();
+    }
+
+    /**
+     * Gets the data of a tile that has been created, without creating it
+     * otherwise. For a snapshot, shared tiles are taken from the source image.
+     *
+     * @param tileX tile X ordinate
+     * @param tileY tile Y ordinate
+     * @return the tile data or {@code null} if the tile has not been created
+     */
+    Raster getCreatedTile(int tileX, int tileY) {
+        DiskMemImage source = snapshotSource;
+        if (source != null) {
+            source.snapshotLock.readLock().lock();
+            try {
+                if (!ownTiles[tileX - tileGrid.x][tileY - tileGrid.y]) {
+                    Raster r = source.getCreatedTile(tileX, tileY);
+                    if (r == null && source.hasBackingTile(tileX, tileY)) {
+                        r = source.getTile(tileX, tileY);
+                    }
+                    return r;
+                }
+            } finally {
+                source.snapshotLock.readLock().unlock();
+            }
+        }
+
+        return getTileCache().getTile(this, tileX, tileY);
+    }
+
+    /**
+     * Tests if the backing file holds data for a tile.
+     *
+     * @param tileX tile X ordinate
+     * @param tileY tile Y ordinate
+     * @return {@code true} if the tile is in the backing file
+     */
+    private synchronized boolean hasBackingTile(int tileX, int tileY) {
+        return backingFile != null && backingFile.hasTile(tileX, tileY);
+    }
+
+    /**
+     * Gives this snapshot its own copy of a shared tile, taken from the
+     * source image, if it does not already have one.
+     *
+     * @param tileX tile X ordinate
+     * @param tileY tile Y ordinate
+     */
+    private void copyFromSource(int tileX, int tileY) {
+        DiskMemImage source = snapshotSource;
+        source.snapshotLock.writeLock().lock();
+        try {
+            if (!ownTiles[tileX - tileGrid.x][tileY - tileGrid.y]) {
+                adoptTile(tileX, tileY, copyTile(source.getTile(tileX, tileY)));
+            }
+        } finally {
+            source.snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Called before a tile of this image is written. Any snapshots still
+     * sharing the tile take over the tile's current raster, and this image
+     * continues with a copy, so that readers of the snapshots never see
+     * the data change.
+     *
+     * @param tileX tile X ordinate
+     * @param tileY tile Y ordinate
+     */
+    private void handOverToSnapshots(int tileX, int tileY) {
+        snapshotLock.writeLock().lock();
+        try {
+            List<DiskMemImage> sharing = new ArrayList<DiskMemImage>();
+            Iterator<WeakReference<DiskMemImage>> iter = snapshots.iterator();
+            while (iter.hasNext()) {
+                DiskMemImage snap = iter.next().get();
+                if (snap == null) {
+                    iter.remove();
+                } else if (!snap.ownTiles[tileX - tileGrid.x][tileY - tileGrid.y]) {
+                    sharing.add(snap);
+                }
+            }
+            hasSnapshots = !snapshots.isEmpty();
+
+            if (sharing.isEmpty()) {
+                return;
+            }
+
+            WritableRaster current = (WritableRaster) getTileCache().getTile(this, tileX, tileY);
+            if (current == null) {
+                // not created yet
+                current = loadTile(tileX, tileY);
+            } else {
+                getTileCache().remove(this, tileX, tileY);
+                getTileCache().add(this, tileX, tileY, copyTile(current));
+            }
+
+            sharing.get(0).adoptTile(tileX, tileY, current);
+            for (int i = 1; i < sharing.size(); i++) {
+                sharing.get(i).adoptTile(tileX, tileY, copyTile(current));
+            }
+
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gives each snapshot of this image its own copy of every tile it
+     * still shares with this image.
+     */
+    private void detachSnapshots() {
+        snapshotLock.writeLock().lock();
+        try {
+            for (WeakReference<DiskMemImage> ref : snapshots) {
+                DiskMemImage snap = ref.get();
+                if (snap != null) {
+                    for (int y = tileGrid.y, ny = 0; ny < tileGrid.height; y++, ny++) {
+                        for (int x = tileGrid.x, nx = 0; nx < tileGrid.width; x++, nx++) {
+                            if (!snap.ownTiles[nx][ny]) {
+                                Raster r = getCreatedTile(x, y);
+                                if (r == null && hasBackingTile(x, y)) {
+                                    r = getTile(x, y);
+                                }
+                                if (r != null) {
+                                    snap.adoptTile(x, y, copyTile(r));
+                                } else {
+                                    // never created here so the snapshot can create its own
+                                    snap.ownTiles[nx][ny] = true;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            snapshots.clear();
+            hasSnapshots = false;
+
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a snapshot from those of this image.
+     *
+     * @param snap the snapshot
+     */
+    private void removeSnapshot(DiskMemImage snap) {
+        snapshotLock.writeLock().lock();
+        try {
+            Iterator<WeakReference<DiskMemImage>> iter = snapshots.iterator();
+            while (iter.hasNext()) {
+                DiskMemImage other = iter.next().get();
+                if (other == null || other == snap) {
+                    iter.remove();
+                }
+            }
+            hasSnapshots = !snapshots.isEmpty();
+
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes a raster this snapshot's own copy of a tile. Must be called
+     * while holding the write lock of the source image's snapshot lock.
+     *
+     * @param tileX tile X ordinate
+     * @param tileY tile Y ordinate
+     * @param tile the tile data
+     */
+    private void adoptTile(int tileX, int tileY, WritableRaster tile) {
+        getTileCache().add(this, tileX, tileY, tile);
+        ownTiles[tileX - tileGrid.x][tileY - tileGrid.y] = true;
+    }
+
+    /**
+     * Creates a copy of a tile.
+     *
+     * @param tile the tile
+     * @return the copy
+     */
+    private WritableRaster copyTile(Raster tile) {
+        WritableRaster copy = createWritableRaster(
+                getSampleModel(), new Point(tile.getMinX(), tile.getMinY()));
+        copy.setRect(tile);
+        return copy;
+    }
+
+    /**
+     * Reads a tile from the backing file or, if it is not held
+     * there, creates a new tile.
+     *
+     * @param tileX tile X ordinate
+     * @param tileY tile Y ordinate
+     * @return the tile
+     * @throws UncheckedIOException if the tile could not be read
+     */
+    private WritableRaster loadTile(int tileX, int tileY) {
+        synchronized (this) {
+            if (backingFile != null && backingFile.hasTile(tileX, tileY)) {
+                Point location = new Point(tileXToX(tileX), tileYToY(tileY));
+                try {
+                    return backingFile.readTile(tileX, tileY, location);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+
+        return createTile(tileX, tileY);
+    }
+
     /**
      * Creates a new image tile
      * @param tileX tile X ordinate
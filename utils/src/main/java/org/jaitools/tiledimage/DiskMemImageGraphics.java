@@ -35,6 +35,7 @@ import java.awt.GraphicsConfiguration;
 import java.awt.Image;
 import java.awt.Paint;
 import java.awt.Point;
+import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.RenderingHints.Key;
@@ -44,9 +45,12 @@ import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
+import java.awt.geom.Line2D;
 import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.geom.RectangularShape;
 import java.awt.image.BufferedImage;
 import java.awt.image.BufferedImageOp;
 import java.awt.image.ColorModel;
@@ -56,13 +60,26 @@ import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.awt.image.renderable.RenderableImage;
-import java.lang.reflect.Method;
 import java.text.AttributedCharacterIterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.media.jai.PlanarImage;
 
+import org.jaitools.DaemonThreadFactory;
+
 /**
  * A Graphics class for drawing into a <code>DiskMemImage</code>.
  * As with JAI's <code>TiledImageGraphics</code> class, java.awt
@@ -116,96 +133,378 @@ public class DiskMemImageGraphics extends Graphics2D {
     private Stroke stroke;
     private AffineTransform transform;
 
+    /*
+     * Tile drawing
+     */
+    private static final int MIN_PARALLEL_TILES = 4;
+
+    /*
+     * Operations which only read their arguments and can safely be
+     * applied to several tiles at once. Image operations are excluded
+     * because source images and observers are not required to be
+     * thread-safe; COPY_AREA is excluded because tiles may overlap
+     * in source and destination. Drawing an AttributedCharacterIterator
+     * moves its position, and GlyphVector implementations are not
+     * required to be thread-safe, so those text operations are also
+     * excluded.
+     */
+    private static final Set<OpType> PARALLEL_OPS = Collections.unmodifiableSet(EnumSet.of(
+            OpType.CLEAR_RECT, OpType.DRAW_ARC,
+            OpType.DRAW_LINE, OpType.DRAW_OVAL, OpType.DRAW_POLYGON,
+            OpType.DRAW_POLYLINE, OpType.DRAW_ROUND_RECT, OpType.DRAW_SHAPE,
+            OpType.DRAW_STRING_XY,
+            OpType.FILL, OpType.FILL_ARC, OpType.FILL_OVAL,
+            OpType.FILL_POLYGON, OpType.FILL_RECT, OpType.FILL_ROUND_RECT));
+
+    private static ExecutorService drawingService;
+
+    private boolean parallelDrawing = true;
+
+    /*
+     * Deferred drawing
+     */
+    private static final int MAX_DEFERRED_COMMANDS = 10000;
+
+    private boolean deferredDrawing = false;
+    private List<DrawCommand> deferredCommands = new ArrayList<DrawCommand>();
+
+    /**
+     * A snapshot of the graphics parameters in effect when an
+     * operation is requested.
+     */
+    private class GraphicsState {
+        final Point origin;
+        final Color color;
+        final Shape clip;
+        final PaintMode paintMode;
+        final Color xorColor;
+        final Font font;
+        final Color background;
+        final Composite composite;
+        final Paint paint;
+        final RenderingHints hints;
+        final Stroke stroke;
+        final AffineTransform transform;
+
+        GraphicsState() {
+            origin = new Point(DiskMemImageGraphics.this.origin);
+            color = getColor();
+            clip = compClip;
+            paintMode = DiskMemImageGraphics.this.paintMode;
+            xorColor = XORColor;
+            font = DiskMemImageGraphics.this.font;
+            background = DiskMemImageGraphics.this.background;
+            composite = DiskMemImageGraphics.this.composite;
+            paint = DiskMemImageGraphics.this.paint;
+            hints = renderingHints == null ? null : (RenderingHints) renderingHints.clone();
+            stroke = DiskMemImageGraphics.this.stroke;
+            transform = new AffineTransform(DiskMemImageGraphics.this.transform);
+        }
+
+        /**
+         * Copies the parameters into the given <code>Graphics2D</code>
+         * object. If {@code workingOrigin} is non-null it is used to translate the
+         * clip area before copying it across.
+         *
+         * @param gr a Graphics2D object
+         * @param workingOrigin origin for the clip area, or {@code null}
+         */
+        void applyTo(Graphics2D gr, Point workingOrigin) {
+            gr.translate(origin.x, origin.y);
+            gr.setColor(color);
+
+            if (workingOrigin == null) {
+                gr.setClip(clip);
+            } else {
+                AffineTransform tr = AffineTransform.getTranslateInstance(
+                        -workingOrigin.x, -workingOrigin.y);
+                Shape trclip = tr.createTransformedShape(clip);
+                gr.setClip(trclip);
+            }
+
+            if(paintMode == PaintMode.PAINT) {
+                gr.setPaintMode();
+            } else if (xorColor != null) {
+                gr.setXORMode(xorColor);
+            }
+
+            gr.setFont(font);
+
+            // java.awt.Graphics2D state
+            gr.setBackground(background);
+            gr.setComposite(composite);
+            if(paint != null) {
+                gr.setPaint(paint);
+            }
+            if (hints != null) {
+                gr.setRenderingHints(hints);
+            }
+            gr.setStroke(stroke);
+            gr.setTransform(new AffineTransform(transform));
+        }
+    }
+
+    /**
+     * A graphics operation with its arguments, the graphics parameters
+     * to draw it with and the range of tiles it touches.
+     */
+    private static class DrawCommand {
+        final OpType opType;
+        final GraphicsState state;
+        final Rectangle tileRange;
+        final Object[] args;
+
+        DrawCommand(OpType opType, GraphicsState state, Rectangle tileRange, Object[] args) {
+            this.opType = opType;
+            this.state = state;
+            this.tileRange = tileRange;
+            this.args = args;
+        }
+    }
+
+    /**
+     * A tile and the operations to be drawn into it.
+     */
+    private static class TileJob {
+        final int tileX;
+        final int tileY;
+        final List<DrawCommand> commands;
+
+        TileJob(int tileX, int tileY, List<DrawCommand> commands) {
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.commands = commands;
+        }
+    }
+
     /**
      * Constants and associated data for graphics operations
      */
     public static enum OpType {
 
         /** Describes the clearRect method. */
-        CLEAR_RECT("clearRect", int.class, int.class, int.class, int.class),
+        CLEAR_RECT("clearRect", int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.clearRect((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3]);
+                return true;
+            }
+        },
 
         /** Describes the copyArea method. */
-        COPY_AREA("copyArea", int.class, int.class, int.class, int.class, int.class, int.class),
+        COPY_AREA("copyArea", int.class, int.class, int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.copyArea((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3], (Integer) a[4], (Integer) a[5]);
+                return true;
+            }
+        },
         
         /** Describes the drawArc method. */
-        DRAW_ARC("drawArc", int.class, int.class, int.class, int.class, int.class, int.class),
+        DRAW_ARC("drawArc", int.class, int.class, int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawArc((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3], (Integer) a[4], (Integer) a[5]);
+                return true;
+            }
+        },
 
         /** Describes the drawImage method. */
-        DRAW_BUFFERED_IMAGE("drawImage", BufferedImage.class, BufferedImageOp.class, int.class, int.class),
+        DRAW_BUFFERED_IMAGE("drawImage", BufferedImage.class, BufferedImageOp.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawImage((BufferedImage) a[0], (BufferedImageOp) a[1], (Integer) a[2], (Integer) a[3]);
+                return true;
+            }
+        },
 
         /** Describes the drawGlyphVector method. */
-        DRAW_GLYPH_VECTOR("drawGlyphVector", GlyphVector.class, float.class, float.class),
+        DRAW_GLYPH_VECTOR("drawGlyphVector", GlyphVector.class, float.class, float.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawGlyphVector((GlyphVector) a[0], (Float) a[1], (Float) a[2]);
+                return true;
+            }
+        },
 
         /** Describes the drawImage method. */
         DRAW_IMAGE_DEST_SRC("drawImage", Image.class, int.class, int.class, int.class, int.class,
-                            int.class, int.class, int.class, int.class, ImageObserver.class),
+                            int.class, int.class, int.class, int.class, ImageObserver.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                return gr.drawImage((Image) a[0],
+                        (Integer) a[1], (Integer) a[2], (Integer) a[3], (Integer) a[4],
+                        (Integer) a[5], (Integer) a[6], (Integer) a[7], (Integer) a[8], (ImageObserver) a[9]);
+            }
+        },
 
         /** Describes the drawImage method. */
         DRAW_IMAGE_DEST_SRC_COL("drawImage", Image.class, int.class, int.class, int.class, int.class,
-                                int.class, int.class, int.class, int.class, Color.class, ImageObserver.class),
+                                int.class, int.class, int.class, int.class, Color.class, ImageObserver.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                return gr.drawImage((Image) a[0],
+                        (Integer) a[1], (Integer) a[2], (Integer) a[3], (Integer) a[4],
+                        (Integer) a[5], (Integer) a[6], (Integer) a[7], (Integer) a[8], (Color) a[9], (ImageObserver) a[10]);
+            }
+        },
 
         /** Describes the drawImage method. */
-        DRAW_IMAGE_TRANSFORM("drawImage", Image.class, AffineTransform.class, ImageObserver.class),
+        DRAW_IMAGE_TRANSFORM("drawImage", Image.class, AffineTransform.class, ImageObserver.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                return gr.drawImage((Image) a[0], (AffineTransform) a[1], (ImageObserver) a[2]);
+            }
+        },
 
         /** Describes the drawImage method. */
-        DRAW_IMAGE_XY("drawImage", Image.class, int.class, int.class, ImageObserver.class),
+        DRAW_IMAGE_XY("drawImage", Image.class, int.class, int.class, ImageObserver.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                return gr.drawImage((Image) a[0], (Integer) a[1], (Integer) a[2], (ImageObserver) a[3]);
+            }
+        },
 
         /** Describes the drawImage method. */
-        DRAW_IMAGE_XY_COL("drawImage", Image.class, int.class, int.class, Color.class, ImageObserver.class),
+        DRAW_IMAGE_XY_COL("drawImage", Image.class, int.class, int.class, Color.class, ImageObserver.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                return gr.drawImage((Image) a[0], (Integer) a[1], (Integer) a[2], (Color) a[3], (ImageObserver) a[4]);
+            }
+        },
 
         /** Describes the drawImage method. */
-        DRAW_IMAGE_XYWH("drawImage", Image.class, int.class, int.class, int.class, int.class, ImageObserver.class),
+        DRAW_IMAGE_XYWH("drawImage", Image.class, int.class, int.class, int.class, int.class, ImageObserver.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                return gr.drawImage((Image) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3], (Integer) a[4], (ImageObserver) a[5]);
+            }
+        },
 
         /** Describes the drawImage method. */
-        DRAW_IMAGE_XYWH_COL("drawImage", Image.class, int.class, int.class, int.class, int.class, Color.class, ImageObserver.class),
+        DRAW_IMAGE_XYWH_COL("drawImage", Image.class, int.class, int.class, int.class, int.class, Color.class, ImageObserver.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                return gr.drawImage((Image) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3], (Integer) a[4],
+                        (Color) a[5], (ImageObserver) a[6]);
+            }
+        },
 
         /** Describes the drawLine method. */
-        DRAW_LINE("drawLine", int.class, int.class, int.class, int.class),
+        DRAW_LINE("drawLine", int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawLine((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3]);
+                return true;
+            }
+        },
 
         /** Describes the drawOval method. */
-        DRAW_OVAL("drawOval", int.class, int.class, int.class, int.class),
+        DRAW_OVAL("drawOval", int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawOval((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3]);
+                return true;
+            }
+        },
 
         /** Describes the drawPolygon method. */
-        DRAW_POLYGON("drawPolygon", int[].class, int[].class, int.class),
+        DRAW_POLYGON("drawPolygon", int[].class, int[].class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawPolygon((int[]) a[0], (int[]) a[1], (Integer) a[2]);
+                return true;
+            }
+        },
 
         /** Describes the drawPolyline method. */
-        DRAW_POLYLINE("drawPolyline", int[].class, int[].class, int.class),
+        DRAW_POLYLINE("drawPolyline", int[].class, int[].class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawPolyline((int[]) a[0], (int[]) a[1], (Integer) a[2]);
+                return true;
+            }
+        },
 
         /** Describes the drawRenderableImage method. */
-        DRAW_RENDERABLE_IMAGE("drawRenderableImage", RenderableImage.class, AffineTransform.class),
+        DRAW_RENDERABLE_IMAGE("drawRenderableImage", RenderableImage.class, AffineTransform.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawRenderableImage((RenderableImage) a[0], (AffineTransform) a[1]);
+                return true;
+            }
+        },
 
         /** Describes the drawRenderedImage method. */
-        DRAW_RENDERED_IMAGE("drawRenderedImage", RenderedImage.class, AffineTransform.class),
+        DRAW_RENDERED_IMAGE("drawRenderedImage", RenderedImage.class, AffineTransform.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawRenderedImage((RenderedImage) a[0], (AffineTransform) a[1]);
+                return true;
+            }
+        },
 
         /** Describes the drawRoundRect method. */
-        DRAW_ROUND_RECT("drawRoundRect", int.class, int.class, int.class, int.class, int.class, int.class),
+        DRAW_ROUND_RECT("drawRoundRect", int.class, int.class, int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawRoundRect((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3], (Integer) a[4], (Integer) a[5]);
+                return true;
+            }
+        },
 
         /** Describes the draw method. */
-        DRAW_SHAPE("draw", Shape.class),
+        DRAW_SHAPE("draw", Shape.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.draw((Shape) a[0]);
+                return true;
+            }
+        },
 
         /** Describes the drawString method. */
-        DRAW_STRING_XY("drawString", String.class, float.class, float.class),
+        DRAW_STRING_XY("drawString", String.class, float.class, float.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawString((String) a[0], (Float) a[1], (Float) a[2]);
+                return true;
+            }
+        },
 
         /** Describes the drawString method. */
-        DRAW_STRING_ITER_XY("drawString", AttributedCharacterIterator.class, float.class, float.class),
+        DRAW_STRING_ITER_XY("drawString", AttributedCharacterIterator.class, float.class, float.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.drawString((AttributedCharacterIterator) a[0], (Float) a[1], (Float) a[2]);
+                return true;
+            }
+        },
 
         /** Describes the fill method. */
-        FILL("fill", Shape.class),
+        FILL("fill", Shape.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.fill((Shape) a[0]);
+                return true;
+            }
+        },
 
         /** Describes the fillArc method. */
-        FILL_ARC("fillArc", int.class, int.class, int.class, int.class, int.class, int.class),
+        FILL_ARC("fillArc", int.class, int.class, int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.fillArc((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3], (Integer) a[4], (Integer) a[5]);
+                return true;
+            }
+        },
 
         /** Describes the fillOval method. */
-        FILL_OVAL("fillOval", int.class, int.class, int.class, int.class),
+        FILL_OVAL("fillOval", int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.fillOval((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3]);
+                return true;
+            }
+        },
 
         /** Describes the fillPolygon method. */
-        FILL_POLYGON("fillPolygon", int[].class, int[].class, int.class),
+        FILL_POLYGON("fillPolygon", int[].class, int[].class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.fillPolygon((int[]) a[0], (int[]) a[1], (Integer) a[2]);
+                return true;
+            }
+        },
 
         /** Describes the fillRect method. */
-        FILL_RECT("fillRect", int.class, int.class, int.class, int.class),
+        FILL_RECT("fillRect", int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.fillRect((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3]);
+                return true;
+            }
+        },
 
         /** Describes the fillRoundRect method. */
-        FILL_ROUND_RECT("fillRoundRect", int.class, int.class, int.class, int.class, int.class, int.class);
+        FILL_ROUND_RECT("fillRoundRect", int.class, int.class, int.class, int.class, int.class, int.class) {
+            boolean invoke(Graphics2D gr, Object[] a) {
+                gr.fillRoundRect((Integer) a[0], (Integer) a[1], (Integer) a[2], (Integer) a[3], (Integer) a[4], (Integer) a[5]);
+                return true;
+            }
+        };
 
 
         private String methodName;
@@ -261,6 +560,17 @@ public class DiskMemImageGraphics extends Graphics2D {
             System.arraycopy(paramTypes, 0, copy, 0, paramTypes.length);
             return copy;
         }
+
+        /**
+         * Performs the operation on a graphics object.
+         *
+         * @param gr the graphics object
+         * @param a arguments for the operation, as described by
+         *        {@linkplain #getArgTypes()}
+         * @return the result of the operation if it returns a boolean value;
+         *         otherwise {@code true}
+         */
+        abstract boolean invoke(Graphics2D gr, Object[] a);
     }
 
     /**
@@ -530,6 +840,7 @@ public class DiskMemImageGraphics extends Graphics2D {
     public Graphics create() {
         DiskMemImageGraphics gr = new DiskMemImageGraphics(targetImage);
         copyGraphicsParams(gr);
+        gr.parallelDrawing = parallelDrawing;
         return gr;
     }
 
@@ -757,9 +1068,69 @@ public class DiskMemImageGraphics extends Graphics2D {
 
     @Override
     public void dispose() {
-        /*
-         * No need to do anything here
-         */
+        flush();
+    }
+
+    /**
+     * Sets whether operations which span a number of tiles may draw into
+     * those tiles concurrently. This is enabled by default. Drawing with
+     * images, glyph vectors or attributed character iterators, and copying
+     * areas, is always done one tile at a time.
+     * Parallel drawing should be disabled if the current {@code Paint},
+     * {@code Composite} or {@code Stroke} is not thread-safe.
+     *
+     * @param parallel {@code true} to enable parallel drawing
+     */
+    public void setParallelDrawing(boolean parallel) {
+        parallelDrawing = parallel;
+    }
+
+    /**
+     * Queries whether parallel drawing is enabled.
+     *
+     * @return {@code true} if parallel drawing is enabled
+     * @see #setParallelDrawing(boolean)
+     */
+    public boolean isParallelDrawing() {
+        return parallelDrawing;
+    }
+
+    /**
+     * Sets whether drawing is deferred. In deferred mode, each drawing
+     * operation is queued together with the current graphics parameters
+     * and nothing is drawn until {@linkplain #flush()} or
+     * {@linkplain #dispose()} is called. The queued operations are then drawn
+     * tile by tile, so that each tile is retrieved from the image's cache
+     * only once however many operations touch it. This is much faster than
+     * immediate drawing when making many small drawing calls into a large,
+     * disk-cached image.
+     * <p>
+     * While operations are queued the image does not reflect them.
+     * Shape, array and transform arguments are copied when queued, but image
+     * arguments are only read when the operation is drawn. Methods which
+     * return a value, such as {@code drawImage}, return {@code true}
+     * for queued operations.
+     * <p>
+     * Turning deferred mode off draws any queued operations.
+     *
+     * @param deferred {@code true} to defer drawing; {@code false} to
+     *        draw immediately
+     */
+    public void setDeferredDrawing(boolean deferred) {
+        if (!deferred) {
+            flush();
+        }
+        deferredDrawing = deferred;
+    }
+
+    /**
+     * Queries whether drawing is deferred.
+     *
+     * @return {@code true} if drawing is deferred
+     * @see #setDeferredDrawing(boolean)
+     */
+    public boolean isDeferredDrawing() {
+        return deferredDrawing;
     }
 
     /**
@@ -822,27 +1193,20 @@ public class DiskMemImageGraphics extends Graphics2D {
 
     /**
      * Performs the graphics operation by partitioning the work across the image's
-     * tiles and using Graphics2D routines to draw into each tile.
+     * tiles and using Graphics2D routines to draw into each tile. If parallel
+     * drawing is enabled and the operation spans enough tiles, the tiles are
+     * drawn concurrently. In deferred mode the operation is queued instead.
      *
      * @param opType the type of operation
      * @param bounds bounds of the element to be drawn
      * @param args a variable length list of arguments for the operation
+     * @return {@code true} if the operation returned {@code true} (or
+     *         has no return value) for every tile drawn, or was queued
      */
     private boolean doDraw(OpType opType, Rectangle2D bounds, Object ...args) {
-        Method method = null;
-        boolean rtnVal = false;
-
         // Transform requested area to obtain actual bounds.
         bounds = getTransform().createTransformedShape(bounds).getBounds();
 
-        try {
-            method = Graphics2D.class.getMethod(opType.getMethodName(), opType.getArgTypes());
-
-        } catch (NoSuchMethodException nsmEx) {
-            // programmer error :-(
-            throw new RuntimeException("No such method: " + opType.getFullMethodName());
-        }
-
         int minTileX = Math.max(targetImage.XToTileX((int)bounds.getMinX()),
                                 targetImage.getMinTileX());
 
@@ -855,30 +1219,184 @@ public class DiskMemImageGraphics extends Graphics2D {
         int maxTileY = Math.min(targetImage.YToTileY((int)(bounds.getMaxY() + 0.5)),
                                 targetImage.getMaxTileY());
 
-        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
-            int minY = targetImage.tileYToY(tileY);
+        if (maxTileX < minTileX || maxTileY < minTileY) {
+            return false;
+        }
+
+        Rectangle tileRange = new Rectangle(minTileX, minTileY,
+                maxTileX - minTileX + 1, maxTileY - minTileY + 1);
 
+        if (deferredDrawing) {
+            deferredCommands.add(new DrawCommand(
+                    opType, new GraphicsState(), tileRange, copyArgs(args)));
+
+            if (deferredCommands.size() >= MAX_DEFERRED_COMMANDS) {
+                flush();
+            }
+            return true;
+        }
+
+        DrawCommand cmd = new DrawCommand(opType, new GraphicsState(), tileRange, args);
+        List<DrawCommand> cmdList = Collections.singletonList(cmd);
+
+        List<TileJob> jobs = new ArrayList<TileJob>(tileRange.width * tileRange.height);
+        for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
             for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
-                int minX = targetImage.tileXToX(tileX);
+                jobs.add(new TileJob(tileX, tileY, cmdList));
+            }
+        }
+
+        return drawTiles(jobs, PARALLEL_OPS.contains(opType));
+    }
+
+    /**
+     * Draws any operations queued in deferred mode. The operations are
+     * grouped by tile so that each tile is retrieved from the image once
+     * and receives all of the operations which touch it, in the order in
+     * which they were made. Tiles which no operation touches are not
+     * retrieved.
+     * <p>
+     * This method does nothing if no operations are queued. It is called
+     * automatically by {@linkplain #dispose()}, when deferred mode is turned
+     * off, and when the queue becomes large.
+     *
+     * @see #setDeferredDrawing(boolean)
+     */
+    public void flush() {
+        if (deferredCommands.isEmpty()) {
+            return;
+        }
+
+        List<DrawCommand> commands = deferredCommands;
+        deferredCommands = new ArrayList<DrawCommand>();
+
+        Map<Point, List<DrawCommand>> byTile = new HashMap<Point, List<DrawCommand>>();
+        boolean parallelOK = true;
+
+        for (DrawCommand cmd : commands) {
+            parallelOK &= PARALLEL_OPS.contains(cmd.opType);
+
+            Rectangle r = cmd.tileRange;
+            for (int tileY = r.y; tileY < r.y + r.height; tileY++) {
+                for (int tileX = r.x; tileX < r.x + r.width; tileX++) {
+                    Point key = new Point(tileX, tileY);
+                    List<DrawCommand> list = byTile.get(key);
+                    if (list == null) {
+                        list = new ArrayList<DrawCommand>();
+                        byTile.put(key, list);
+                    }
+                    list.add(cmd);
+                }
+            }
+        }
+
+        List<TileJob> jobs = new ArrayList<TileJob>(byTile.size());
+        for (Map.Entry<Point, List<DrawCommand>> e : byTile.entrySet()) {
+            jobs.add(new TileJob(e.getKey().x, e.getKey().y, e.getValue()));
+        }
+
+        // visit tiles in row order
+        Collections.sort(jobs, new Comparator<TileJob>() {
+            public int compare(TileJob j1, TileJob j2) {
+                if (j1.tileY != j2.tileY) {
+                    return j1.tileY < j2.tileY ? -1 : 1;
+                }
+                return j1.tileX < j2.tileX ? -1 : (j1.tileX == j2.tileX ? 0 : 1);
+            }
+        });
+
+        drawTiles(jobs, parallelOK);
+    }
+
+    /**
+     * Runs drawing jobs, concurrently if permitted and there are enough
+     * of them.
+     *
+     * @param jobs the jobs
+     * @param parallelOK whether the jobs may be run concurrently
+     * @return {@code true} if every operation returned {@code true}
+     *         (or has no return value)
+     */
+    private boolean drawTiles(List<TileJob> jobs, boolean parallelOK) {
+        boolean rtnVal = true;
+
+        if (parallelDrawing && parallelOK && jobs.size() >= MIN_PARALLEL_TILES) {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(jobs.size());
+            ExecutorService service = getDrawingService();
+
+            for (final TileJob job : jobs) {
+                futures.add(service.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        return drawTile(job);
+                    }
+                }));
+            }
+
+            /*
+             * Wait for every task, even after a failure, so that no
+             * tile is left checked out when we return
+             */
+            RuntimeException failure = null;
+            boolean interrupted = false;
+            for (Future<Boolean> f : futures) {
+                while (true) {
+                    try {
+                        rtnVal &= f.get();
+                        break;
+
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+
+                    } catch (ExecutionException ex) {
+                        if (failure == null) {
+                            Throwable cause = ex.getCause();
+                            failure = (cause instanceof RuntimeException) ?
+                                    (RuntimeException) cause : new RuntimeException(cause);
+                        }
+                        break;
+                    }
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
 
-                WritableRaster tile = targetImage.getWritableTile(tileX, tileY);
+        } else {
+            for (TileJob job : jobs) {
+                rtnVal &= drawTile(job);
+            }
+        }
 
-                // create a live-copy of the tile with the upper-left corner
-                // translated to 0,0
-                WritableRaster copy = tile.createWritableTranslatedChild(0, 0);
+        return rtnVal;
+    }
 
-                BufferedImage bufImg = new BufferedImage(
-                        colorModel,
-                        copy,
-                        colorModel.isAlphaPremultiplied(),
-                        properties);
+    /**
+     * Draws one or more operations into a single tile of the target image.
+     *
+     * @param job the tile and its operations
+     * @return {@code true} if every operation returned {@code true}
+     *         (or has no return value)
+     */
+    private boolean drawTile(TileJob job) {
+        int minX = targetImage.tileXToX(job.tileX);
+        int minY = targetImage.tileYToY(job.tileY);
+        Point workingOrigin = new Point(minX, minY);
+        boolean rtnVal = true;
+
+        WritableRaster tile = targetImage.getWritableTile(job.tileX, job.tileY);
+        Graphics2D gr = null;
+        try {
+            gr = createTileGraphics(tile);
 
-                Graphics2D gr = bufImg.createGraphics();
-                
-                // Note: we use the version of copyGraphicsParams taking a 
-                // Point arg used to adjust the clip area before copying it
-                // into the graphics object
-                copyGraphicsParams(gr, new Point(minX, minY));
+            for (DrawCommand cmd : job.commands) {
+                // Note: the clip area is adjusted by workingOrigin
+                // before being copied into the graphics object
+                gr.setTransform(new AffineTransform());
+                cmd.state.applyTo(gr, workingOrigin);
 
                 try {
                     Point2D p2d = gr.getTransform().transform(new Point2D.Double(0, 0), null);
@@ -891,25 +1409,94 @@ public class DiskMemImageGraphics extends Graphics2D {
                     throw new RuntimeException(nte);
                 }
 
-                try {
-                    Object oRtnVal = method.invoke(gr, args);
-                    if(oRtnVal != null && oRtnVal.getClass() == boolean.class) {
-                        rtnVal = ((Boolean)oRtnVal).booleanValue();
-                    }
-
-                } catch(Exception ex) {
-                    // TODO replace this with decent error handling
-                    throw new RuntimeException(ex);
-                }
+                rtnVal &= cmd.opType.invoke(gr, cmd.args);
+            }
 
+        } finally {
+            if (gr != null) {
                 gr.dispose();
-                targetImage.releaseWritableTile(tileX, tileY);
             }
+            targetImage.releaseWritableTile(job.tileX, job.tileY);
         }
 
         return rtnVal;
     }
 
+    /**
+     * Copies mutable arguments of an operation so that the caller
+     * may reuse them before a deferred operation is drawn. Images
+     * are not copied.
+     *
+     * @param args the arguments
+     * @return the copied arguments
+     */
+    private Object[] copyArgs(Object[] args) {
+        Object[] copy = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+
+            if (arg instanceof int[]) {
+                copy[i] = ((int[]) arg).clone();
+            } else if (arg instanceof RectangularShape) {
+                copy[i] = ((RectangularShape) arg).clone();
+            } else if (arg instanceof Line2D) {
+                copy[i] = ((Line2D) arg).clone();
+            } else if (arg instanceof Polygon) {
+                Polygon poly = (Polygon) arg;
+                copy[i] = new Polygon(poly.xpoints, poly.ypoints, poly.npoints);
+            } else if (arg instanceof Area) {
+                copy[i] = ((Area) arg).clone();
+            } else if (arg instanceof Shape) {
+                copy[i] = new Path2D.Double((Shape) arg);
+            } else if (arg instanceof AffineTransform) {
+                copy[i] = new AffineTransform((AffineTransform) arg);
+            } else if (arg instanceof AttributedCharacterIterator) {
+                copy[i] = ((AttributedCharacterIterator) arg).clone();
+            } else {
+                copy[i] = arg;
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Creates a Graphics2D object which draws into the given tile. The
+     * object is only used while the tile is checked out from the target
+     * image, so that no reference to the tile's raster is kept after
+     * drawing.
+     *
+     * @param tile the tile's raster
+     * @return a Graphics2D object whose state must be set by the caller
+     */
+    private Graphics2D createTileGraphics(WritableRaster tile) {
+        // create a live-copy of the tile with the upper-left corner
+        // translated to 0,0
+        WritableRaster copy = tile.createWritableTranslatedChild(0, 0);
+
+        BufferedImage bufImg = new BufferedImage(
+                colorModel,
+                copy,
+                colorModel.isAlphaPremultiplied(),
+                properties);
+
+        return bufImg.createGraphics();
+    }
+
+    /**
+     * Gets the shared executor used for parallel drawing, creating
+     * it if necessary.
+     *
+     * @return the executor
+     */
+    private static synchronized ExecutorService getDrawingService() {
+        if (drawingService == null) {
+            drawingService = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    new DaemonThreadFactory(Thread.NORM_PRIORITY, "graphics"));
+        }
+        return drawingService;
+    }
+
     /**
      * Takes a bounding rectangle calculated by
      * one of the drawing methods and expands it, if necessary, to
@@ -1065,37 +1652,7 @@ public class DiskMemImageGraphics extends Graphics2D {
      * @param gr a Graphics2D object
      */
     private void copyGraphicsParams(Graphics2D gr, Point workingOrigin) {
-        gr.translate(origin.x, origin.y);
-        gr.setColor(getColor());
-        
-        if (workingOrigin == null) {
-            gr.setClip(compClip);
-        } else {
-            AffineTransform tr = AffineTransform.getTranslateInstance(
-                    -workingOrigin.x, -workingOrigin.y);
-            Shape trclip = tr.createTransformedShape(compClip);
-            gr.setClip(trclip);
-        }
-
-        if(paintMode == PaintMode.PAINT) {
-            gr.setPaintMode();
-        } else if (XORColor != null) {
-            gr.setXORMode(XORColor);
-        }
-
-        gr.setFont(font);
-
-        // java.awt.Graphics2D state
-        gr.setBackground(background);
-        gr.setComposite(composite);
-        if(paint != null) {
-            gr.setPaint(paint);
-        }
-        if (renderingHints != null) {
-            gr.setRenderingHints(renderingHints);
-        }
-        gr.setStroke(stroke);
-        gr.setTransform(new AffineTransform(transform));
+        new GraphicsState().applyTo(gr, workingOrigin);
     }
 
     /**
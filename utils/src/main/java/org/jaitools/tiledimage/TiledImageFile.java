@@ -0,0 +1,505 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tiledimage;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import javax.media.jai.PlanarImage;
+
+import org.jaitools.tilecache.DataBufferIO;
+
+/**
+ * A named container file holding the tiles of a {@code DiskMemImage}.
+ * The file begins with a header describing the image bounds, tile grid,
+ * sample model and (where possible) colour model, followed by a table with
+ * the file offset of each tile's data. Tiles which had not been created
+ * when the file was written have an offset of 0. Tile data follow the
+ * table, each tile occupying the same number of bytes. All values are
+ * written in big-endian order.
+ * <p>
+ * Supported sample models are {@code ComponentSampleModel} (including
+ * banded and pixel interleaved models), {@code SinglePixelPackedSampleModel}
+ * and {@code MultiPixelPackedSampleModel}. A {@code DirectColorModel} is
+ * stored exactly; other colour models are recreated from the sample model
+ * when the file is opened.
+ *
+ * @see DiskMemImage#open(File)
+ * @see DiskMemImage#checkpoint(File)
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+final class TiledImageFile {
+
+    /** Identifies a tiled image file ("JTIM") */
+    static final int MAGIC = 0x4A54494D;
+
+    /** Current file format version */
+    static final int VERSION = 1;
+
+    private static final int SM_COMPONENT = 1;
+    private static final int SM_BANDED = 2;
+    private static final int SM_PIXEL_INTERLEAVED = 3;
+    private static final int SM_SINGLE_PIXEL_PACKED = 4;
+    private static final int SM_MULTI_PIXEL_PACKED = 5;
+
+    private static final int CM_NONE = 0;
+    private static final int CM_DERIVED = 1;
+    private static final int CM_DIRECT = 2;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    private final int minX;
+    private final int minY;
+    private final int width;
+    private final int height;
+    private final int tileGridXOffset;
+    private final int tileGridYOffset;
+    private final SampleModel sampleModel;
+    private final ColorModel colorModel;
+    private final Rectangle tileGrid;
+
+    private final int numBanks;
+    private final int bankSize;
+    private final int tileBytes;
+    private final long[] offsets;
+
+    /**
+     * Opens an existing file for reading.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be read or is not a valid
+     *         tiled image file
+     */
+    TiledImageFile(File file) throws IOException {
+        this.file = file;
+        raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.readInt() != MAGIC) {
+                throw new IOException(file + " is not a tiled image file");
+            }
+            int version = raf.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported tiled image file version: " + version);
+            }
+
+            minX = raf.readInt();
+            minY = raf.readInt();
+            width = raf.readInt();
+            height = raf.readInt();
+            tileGridXOffset = raf.readInt();
+            tileGridYOffset = raf.readInt();
+
+            sampleModel = readSampleModel(raf);
+            colorModel = readColorModel(raf, sampleModel);
+
+            tileGrid = new Rectangle(raf.readInt(), raf.readInt(), raf.readInt(), raf.readInt());
+
+            DataBuffer db = sampleModel.createDataBuffer();
+            numBanks = db.getNumBanks();
+            bankSize = db.getSize();
+            tileBytes = checkTileBytes(db);
+
+            offsets = new long[tileGrid.width * tileGrid.height];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = raf.readLong();
+            }
+
+        } catch (IOException ex) {
+            raf.close();
+            throw ex;
+        } catch (RuntimeException ex) {
+            raf.close();
+            throw new IOException("Invalid header in tiled image file " + file, ex);
+        }
+
+        channel = raf.getChannel();
+    }
+
+    /**
+     * Writes the tiles of an image to a new file. Tiles are taken from
+     * the image's tile cache if present there or, failing that, copied
+     * from the image's current backing file (if any). Tiles found in
+     * neither place are recorded as absent.
+     *
+     * @param file destination file (will be overwritten)
+     * @param image the image
+     * @param source the image's current backing file, or {@code null}
+     * @throws IOException on error writing the file or reading from {@code source}
+     */
+    static void write(File file, DiskMemImage image, TiledImageFile source) throws IOException {
+        SampleModel sm = image.getSampleModel();
+        DataBuffer db = sm.createDataBuffer();
+        int tileBytes = checkTileBytes(db);
+
+        int minTileX = image.getMinTileX();
+        int minTileY = image.getMinTileY();
+        int numXTiles = image.getNumXTiles();
+        int numYTiles = image.getNumYTiles();
+        long[] offsets = new long[numXTiles * numYTiles];
+
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(image.getMinX());
+            out.writeInt(image.getMinY());
+            out.writeInt(image.getWidth());
+            out.writeInt(image.getHeight());
+            out.writeInt(image.getTileGridXOffset());
+            out.writeInt(image.getTileGridYOffset());
+            writeSampleModel(out, sm);
+            writeColorModel(out, image.getColorModel());
+            out.writeInt(minTileX);
+            out.writeInt(minTileY);
+            out.writeInt(numXTiles);
+            out.writeInt(numYTiles);
+
+            long tablePos = out.getFilePointer();
+            long pos = tablePos + 8L * offsets.length;
+
+            FileChannel outChannel = out.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate(tileBytes).order(ByteOrder.BIG_ENDIAN);
+
+            int k = 0;
+            for (int y = minTileY; y < minTileY + numYTiles; y++) {
+                for (int x = minTileX; x < minTileX + numXTiles; x++, k++) {
+                    buf.clear();
+                    Raster tile = image.getCreatedTile(x, y);
+                    if (tile != null) {
+                        DataBufferIO.put(buf, tile.getDataBuffer());
+                    } else if (source != null && source.hasTile(x, y)) {
+                        source.readTileBytes(x, y, buf);
+                    } else {
+                        continue;
+                    }
+
+                    buf.flip();
+                    writeFully(outChannel, buf, pos);
+                    offsets[k] = pos;
+                    pos += tileBytes;
+                }
+            }
+
+            out.seek(tablePos);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+
+            outChannel.force(true);
+
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Gets the file.
+     *
+     * @return the file
+     */
+    File getFile() {
+        return file;
+    }
+
+    /** Gets the x coordinate of the upper-left image pixel. */
+    int getMinX() {
+        return minX;
+    }
+
+    /** Gets the y coordinate of the upper-left image pixel. */
+    int getMinY() {
+        return minY;
+    }
+
+    /** Gets the image width. */
+    int getWidth() {
+        return width;
+    }
+
+    /** Gets the image height. */
+    int getHeight() {
+        return height;
+    }
+
+    /** Gets the x coordinate of the upper-left pixel of the upper-left tile. */
+    int getTileGridXOffset() {
+        return tileGridXOffset;
+    }
+
+    /** Gets the y coordinate of the upper-left pixel of the upper-left tile. */
+    int getTileGridYOffset() {
+        return tileGridYOffset;
+    }
+
+    /** Gets the tile sample model. */
+    SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    /** Gets the colour model (may be {@code null}). */
+    ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    /**
+     * Tests whether the file holds data for the given tile.
+     *
+     * @param tileX tile column
+     * @param tileY tile row
+     * @return {@code true} if the tile is present
+     */
+    boolean hasTile(int tileX, int tileY) {
+        return tileGrid.contains(tileX, tileY) && offsets[index(tileX, tileY)] > 0;
+    }
+
+    /**
+     * Reads a tile's data into a new raster.
+     *
+     * @param tileX tile column
+     * @param tileY tile row
+     * @param location the upper-left pixel position for the new raster
+     * @return the tile
+     * @throws IOException on error reading the file
+     */
+    WritableRaster readTile(int tileX, int tileY, Point location) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(tileBytes).order(ByteOrder.BIG_ENDIAN);
+        readTileBytes(tileX, tileY, buf);
+        buf.flip();
+
+        DataBuffer data = DataBufferIO.get(buf, sampleModel.getDataType(), numBanks, bankSize);
+        return Raster.createWritableRaster(sampleModel, data, location);
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException on error closing the file
+     */
+    void close() throws IOException {
+        raf.close();
+    }
+
+    private void readTileBytes(int tileX, int tileY, ByteBuffer buf) throws IOException {
+        long pos = offsets[index(tileX, tileY)];
+        buf.limit(buf.position() + tileBytes);
+        synchronized (channel) {
+            while (buf.hasRemaining()) {
+                int n = channel.read(buf, pos);
+                if (n < 0) {
+                    throw new EOFException("Truncated tile data in " + file);
+                }
+                pos += n;
+            }
+        }
+    }
+
+    private int index(int tileX, int tileY) {
+        return (tileY - tileGrid.y) * tileGrid.width + (tileX - tileGrid.x);
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+    }
+
+    private static int checkTileBytes(DataBuffer db) throws IOException {
+        long n = DataBufferIO.byteSize(db.getDataType(), db.getNumBanks(), db.getSize());
+        if (n > Integer.MAX_VALUE) {
+            throw new IOException("Tile too large: " + n + " bytes");
+        }
+        return (int) n;
+    }
+
+    private static void writeSampleModel(RandomAccessFile out, SampleModel sm) throws IOException {
+        if (sm instanceof ComponentSampleModel) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            int kind = SM_COMPONENT;
+            if (sm.getClass() == BandedSampleModel.class) {
+                kind = SM_BANDED;
+            } else if (sm.getClass() == PixelInterleavedSampleModel.class) {
+                kind = SM_PIXEL_INTERLEAVED;
+            }
+
+            writeModelHeader(out, kind, sm);
+            out.writeInt(csm.getPixelStride());
+            out.writeInt(csm.getScanlineStride());
+            writeInts(out, csm.getBankIndices());
+            writeInts(out, csm.getBandOffsets());
+
+        } else if (sm instanceof SinglePixelPackedSampleModel) {
+            SinglePixelPackedSampleModel spp = (SinglePixelPackedSampleModel) sm;
+            writeModelHeader(out, SM_SINGLE_PIXEL_PACKED, sm);
+            out.writeInt(spp.getScanlineStride());
+            writeInts(out, spp.getBitMasks());
+
+        } else if (sm instanceof MultiPixelPackedSampleModel) {
+            MultiPixelPackedSampleModel mpp = (MultiPixelPackedSampleModel) sm;
+            writeModelHeader(out, SM_MULTI_PIXEL_PACKED, sm);
+            out.writeInt(mpp.getPixelBitStride());
+            out.writeInt(mpp.getScanlineStride());
+            out.writeInt(mpp.getDataBitOffset());
+
+        } else {
+            throw new IOException("Unsupported sample model: " + sm.getClass().getName());
+        }
+    }
+
+    private static void writeModelHeader(RandomAccessFile out, int kind, SampleModel sm)
+            throws IOException {
+        out.writeInt(kind);
+        out.writeInt(sm.getDataType());
+        out.writeInt(sm.getWidth());
+        out.writeInt(sm.getHeight());
+    }
+
+    private static SampleModel readSampleModel(RandomAccessFile in) throws IOException {
+        int kind = in.readInt();
+        int dataType = in.readInt();
+        int w = in.readInt();
+        int h = in.readInt();
+
+        switch (kind) {
+            case SM_COMPONENT:
+            case SM_BANDED:
+            case SM_PIXEL_INTERLEAVED: {
+                int pixelStride = in.readInt();
+                int scanlineStride = in.readInt();
+                int[] bankIndices = readInts(in);
+                int[] bandOffsets = readInts(in);
+
+                if (kind == SM_BANDED) {
+                    return new BandedSampleModel(dataType, w, h, scanlineStride,
+                            bankIndices, bandOffsets);
+                } else if (kind == SM_PIXEL_INTERLEAVED) {
+                    return new PixelInterleavedSampleModel(dataType, w, h,
+                            pixelStride, scanlineStride, bandOffsets);
+                } else {
+                    return new ComponentSampleModel(dataType, w, h,
+                            pixelStride, scanlineStride, bankIndices, bandOffsets);
+                }
+            }
+
+            case SM_SINGLE_PIXEL_PACKED: {
+                int scanlineStride = in.readInt();
+                int[] masks = readInts(in);
+                return new SinglePixelPackedSampleModel(dataType, w, h, scanlineStride, masks);
+            }
+
+            case SM_MULTI_PIXEL_PACKED: {
+                int numBits = in.readInt();
+                int scanlineStride = in.readInt();
+                int dataBitOffset = in.readInt();
+                return new MultiPixelPackedSampleModel(dataType, w, h,
+                        numBits, scanlineStride, dataBitOffset);
+            }
+
+            default:
+                throw new IOException("Unknown sample model type: " + kind);
+        }
+    }
+
+    private static void writeColorModel(RandomAccessFile out, ColorModel cm) throws IOException {
+        if (cm == null) {
+            out.writeInt(CM_NONE);
+
+        } else if (cm instanceof DirectColorModel && cm.getColorSpace().isCS_sRGB()) {
+            DirectColorModel dcm = (DirectColorModel) cm;
+            out.writeInt(CM_DIRECT);
+            out.writeInt(dcm.getPixelSize());
+            out.writeInt(dcm.getRedMask());
+            out.writeInt(dcm.getGreenMask());
+            out.writeInt(dcm.getBlueMask());
+            out.writeInt(dcm.getAlphaMask());
+
+        } else {
+            out.writeInt(CM_DERIVED);
+        }
+    }
+
+    private static ColorModel readColorModel(RandomAccessFile in, SampleModel sm)
+            throws IOException {
+        int kind = in.readInt();
+        switch (kind) {
+            case CM_NONE:
+                return null;
+
+            case CM_DIRECT:
+                return new DirectColorModel(in.readInt(),
+                        in.readInt(), in.readInt(), in.readInt(), in.readInt());
+
+            case CM_DERIVED:
+                return PlanarImage.createColorModel(sm);
+
+            default:
+                throw new IOException("Unknown colour model type: " + kind);
+        }
+    }
+
+    private static void writeInts(RandomAccessFile out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(RandomAccessFile in) throws IOException {
+        int n = in.readInt();
+        if (n < 0 || n > 65536) {
+            throw new IOException("Invalid array length in header: " + n);
+        }
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,241 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.numeric;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the primitive histogram classes.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class AbstractHistogramTest {
+
+    private static final double TOL = 1.0E-8;
+
+    private final Random rr = new Random(42);
+
+    @Test
+    public void fixedWidthBins() {
+        FixedWidthHistogram hist = new FixedWidthHistogram(0, 10, 10);
+        assertEquals(10, hist.getNumBins());
+        assertEquals(1.0, hist.getBinWidth(), TOL);
+
+        assertEquals(0, hist.add(0.0));
+        assertEquals(0, hist.add(0.999));
+        assertEquals(1, hist.add(1.0));
+        assertEquals(9, hist.add(10.0));
+        assertEquals(AbstractHistogram.NO_BIN, hist.add(-0.001));
+        assertEquals(AbstractHistogram.NO_BIN, hist.add(10.001));
+        assertEquals(AbstractHistogram.NO_BIN, hist.add(Double.NaN));
+
+        assertEquals(4, hist.getTotal());
+        assertEquals(1, hist.getNumBelow());
+        assertEquals(1, hist.getNumAbove());
+        assertEquals(1, hist.getNumNaN());
+    }
+
+    @Test
+    public void fixedWidthMatchesEdges() {
+        // bin edges that are not exactly representable
+        FixedWidthHistogram hist = new FixedWidthHistogram(0.1, 0.7, 6);
+        for (int i = 0; i < 100000; i++) {
+            double v = 0.1 + 0.6 * rr.nextDouble();
+            int bin = hist.getBin(v);
+            assertTrue(v >= hist.getBinMin(bin));
+            assertTrue(v < hist.getBinMax(bin) || bin == 5);
+        }
+
+        for (int i = 0; i < hist.getNumBins(); i++) {
+            assertEquals(i, hist.getBin(hist.getBinMin(i)));
+        }
+    }
+
+    @Test
+    public void edgeBins() {
+        EdgeHistogram hist = new EdgeHistogram(
+                Double.NEGATIVE_INFINITY, 0, 10, 50, 100, Double.POSITIVE_INFINITY);
+        assertEquals(5, hist.getNumBins());
+
+        assertEquals(0, hist.add(Double.NEGATIVE_INFINITY));
+        assertEquals(0, hist.add(-1.0));
+        assertEquals(1, hist.add(0.0));
+        assertEquals(2, hist.add(49.9));
+        assertEquals(3, hist.add(50.0));
+        assertEquals(4, hist.add(100.0));
+        assertEquals(4, hist.add(Double.POSITIVE_INFINITY));
+        assertEquals(7, hist.getTotal());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void edgesNotIncreasing() {
+        new EdgeHistogram(0, 1, 1, 2);
+    }
+
+    @Test
+    public void logBins() {
+        LogHistogram hist = new LogHistogram(1, 1000, 3);
+        assertEquals(10.0, hist.getBinRatio(), TOL);
+        assertEquals(10.0, hist.getBinMax(0), TOL);
+
+        assertEquals(0, hist.add(1.0));
+        assertEquals(0, hist.add(9.99));
+        assertEquals(1, hist.add(10.0));
+        assertEquals(2, hist.add(1000.0));
+        assertEquals(AbstractHistogram.NO_BIN, hist.add(0.0));
+        assertEquals(AbstractHistogram.NO_BIN, hist.add(-5.0));
+        assertEquals(2, hist.getNumBelow());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void logNonPositiveMin() {
+        new LogHistogram(0, 10, 5);
+    }
+
+    @Test
+    public void bulkAddMatchesSingle() {
+        double[] data = new double[10000];
+        float[] fdata = new float[data.length];
+        int[] idata = new int[data.length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i % 97 == 0 ? Double.NaN : 120 * rr.nextDouble() - 10;
+            fdata[i] = (float) data[i];
+            idata[i] = (int) Math.floor(120 * rr.nextDouble() - 10);
+        }
+
+        AbstractHistogram[] hists = {
+            new FixedWidthHistogram(0, 100, 20),
+            new EdgeHistogram(0, 1, 5, 20, 50, 100),
+            new LogHistogram(1, 100, 20)
+        };
+
+        for (AbstractHistogram h : hists) {
+            AbstractHistogram single = copy(h);
+            AbstractHistogram bulk = copy(h);
+            bulk.add(data, 0, data.length);
+            for (double v : data) {
+                single.add(v);
+            }
+            assertHistEquals(single, bulk);
+
+            single.clear();
+            bulk.clear();
+            bulk.add(fdata, 0, fdata.length);
+            for (float v : fdata) {
+                single.add(v);
+            }
+            assertHistEquals(single, bulk);
+
+            single.clear();
+            bulk.clear();
+            bulk.add(idata, 100, 5000);
+            for (int i = 100; i < 5100; i++) {
+                single.add(idata[i]);
+            }
+            assertHistEquals(single, bulk);
+        }
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void bulkAddOutOfBounds() {
+        new FixedWidthHistogram(0, 1, 10).add(new double[10], 5, 6);
+    }
+
+    @Test
+    public void merge() {
+        FixedWidthHistogram whole = new FixedWidthHistogram(-3, 3, 60);
+        FixedWidthHistogram merged = new FixedWidthHistogram(-3, 3, 60);
+        for (int part = 0; part < 5; part++) {
+            FixedWidthHistogram h = new FixedWidthHistogram(-3, 3, 60);
+            for (int i = 0; i < 1000; i++) {
+                double v = rr.nextGaussian();
+                h.add(v);
+                whole.add(v);
+            }
+            merged.merge(h);
+        }
+        assertHistEquals(whole, merged);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void mergeDifferentBins() {
+        new FixedWidthHistogram(0, 10, 10).merge(new FixedWidthHistogram(0, 10, 20));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void mergeDifferentClass() {
+        new EdgeHistogram(0, 1).merge(new FixedWidthHistogram(0, 1, 1));
+    }
+
+    @Test
+    public void cumulativeCounts() {
+        FixedWidthHistogram hist = new FixedWidthHistogram(0, 4, 4);
+        hist.add(new int[] {0, 1, 1, 2, 2, 2, 3, 3, 3, 3}, 0, 10);
+
+        assertTrue(Arrays.equals(new long[] {1, 2, 3, 4}, hist.getCounts()));
+        assertTrue(Arrays.equals(new long[] {1, 3, 6, 10}, hist.getCumulativeCounts()));
+    }
+
+    @Test
+    public void quantile() {
+        FixedWidthHistogram hist = new FixedWidthHistogram(0, 1, 1000);
+        double[] data = new double[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = rr.nextDouble();
+        }
+        hist.add(data, 0, data.length);
+        Arrays.sort(data);
+
+        for (double p : new double[] {0.01, 0.25, 0.5, 0.75, 0.99}) {
+            assertEquals(data[(int) (p * data.length)], hist.getQuantile(p), 0.002);
+        }
+        assertEquals(0.0, hist.getQuantile(0.0), 0.001);
+        assertEquals(1.0, hist.getQuantile(1.0), 0.001);
+        assertTrue(Double.isNaN(new FixedWidthHistogram(0, 1, 10).getQuantile(0.5)));
+    }
+
+    private AbstractHistogram copy(AbstractHistogram h) {
+        if (h instanceof FixedWidthHistogram) {
+            return new FixedWidthHistogram((FixedWidthHistogram) h);
+        } else if (h instanceof EdgeHistogram) {
+            return new EdgeHistogram((EdgeHistogram) h);
+        } else {
+            return new LogHistogram((LogHistogram) h);
+        }
+    }
+
+    private void assertHistEquals(AbstractHistogram expected, AbstractHistogram actual) {
+        assertTrue(Arrays.equals(expected.getCounts(), actual.getCounts()));
+        assertEquals(expected.getNumBelow(), actual.getNumBelow());
+        assertEquals(expected.getNumAbove(), actual.getNumAbove());
+        assertEquals(expected.getNumNaN(), actual.getNumNaN());
+    }
+}
@@ -0,0 +1,158 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.numeric;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for DistinctCounter and DistinctCountProcessor.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class DistinctCounterTest {
+
+    @Test
+    public void exactForSmallCounts() {
+        DistinctCounter counter = new DistinctCounter();
+        for (int i = 0; i < 10000; i++) {
+            counter.add(i % 1000);
+        }
+        counter.add(-0.0);
+        counter.add(Double.NaN);
+        counter.add(Double.NaN);
+
+        assertTrue(counter.isExact());
+        assertEquals(1001, counter.getCount());
+    }
+
+    @Test
+    public void estimateWithinError() {
+        Random rr = new Random(42);
+        for (int precision : new int[] {10, 12, 14}) {
+            DistinctCounter counter = new DistinctCounter(precision);
+            int n = 200000;
+            for (int i = 0; i < n; i++) {
+                counter.add(i * 0.5);
+                // repeats do not change the count
+                counter.add(rr.nextInt(i + 1) * 0.5);
+            }
+
+            assertFalse(counter.isExact());
+            double error = Math.abs(counter.getCount() - n) / (double) n;
+            assertTrue(error < 4 * counter.getRelativeError());
+        }
+    }
+
+    @Test
+    public void smallCountsAfterSwitch() {
+        // linear counting keeps the estimate close just beyond the exact limit
+        DistinctCounter counter = new DistinctCounter(12);
+        int n = 1500;
+        for (int i = 0; i < n; i++) {
+            counter.add(i);
+        }
+
+        assertFalse(counter.isExact());
+        assertEquals(n, counter.getCount(), 0.05 * n);
+    }
+
+    @Test
+    public void merge() {
+        DistinctCounter all = new DistinctCounter();
+        DistinctCounter c1 = new DistinctCounter();
+        DistinctCounter c2 = new DistinctCounter();
+        DistinctCounter small = new DistinctCounter();
+        for (int i = 0; i < 50000; i++) {
+            all.add(i);
+            if (i < 30000) {
+                c1.add(i);
+            } else {
+                c2.add(i);
+            }
+        }
+        for (int i = 0; i < 10; i++) {
+            small.add(100000 + i);
+            all.add(100000 + i);
+        }
+
+        // merging registers is exactly the same as adding all values
+        DistinctCounter copy = new DistinctCounter(c1);
+        c1.merge(c2);
+        c1.merge(small);
+        assertEquals(all.getCount(), c1.getCount());
+        assertEquals(30000, copy.getCount(), 0.05 * 30000);
+
+        // exact counter merged with an estimating one
+        small.merge(c2);
+        assertFalse(small.isExact());
+        assertEquals(20010, small.getCount(), 0.05 * 20010);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void mergeDifferentPrecision() {
+        new DistinctCounter(10).merge(new DistinctCounter(12));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void invalidPrecision() {
+        new DistinctCounter(DistinctCounter.MAX_PRECISION + 1);
+    }
+
+    @Test
+    public void processor() {
+        StreamingSampleStats sss = new StreamingSampleStats();
+        sss.setStatistics(new Statistic[] {Statistic.APPROX_VARIETY, Statistic.VARIETY});
+        sss.addNoDataValue(0.0);
+
+        DistinctCountProcessor p = (DistinctCountProcessor)
+                sss.getProcessor(Statistic.APPROX_VARIETY);
+        p.setPrecision(14);
+
+        for (int i = 0; i < 5000; i++) {
+            sss.offer(i % 500);
+        }
+        assertEquals(499.0, sss.getStatisticValue(Statistic.APPROX_VARIETY), 0.0);
+        assertEquals(499.0, sss.getStatisticValue(Statistic.VARIETY), 0.0);
+        assertEquals(14, p.getCounter().getPrecision());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void setPrecisionAfterOffer() {
+        DistinctCountProcessor p = new DistinctCountProcessor();
+        p.offer(1.0);
+        p.setPrecision(10);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void mergeProcessorsDifferentPrecision() {
+        DistinctCountProcessor p1 = new DistinctCountProcessor(10);
+        p1.merge(new DistinctCountProcessor(12));
+    }
+}
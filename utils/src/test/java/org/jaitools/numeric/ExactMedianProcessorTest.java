@@ -0,0 +1,156 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.numeric;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for ExactMedianProcessor.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class ExactMedianProcessorTest {
+
+    private static final double TOL = 1.0E-8;
+
+    private final Random rr = new Random(42);
+
+    @Test
+    public void doubleValues() {
+        for (int n : new int[] {1, 2, 3, 17, 100, 1001, 50000}) {
+            double[] data = new double[n];
+            for (int i = 0; i < n; i++) {
+                data[i] = rr.nextGaussian();
+            }
+            assertMedian(data);
+        }
+    }
+
+    @Test
+    public void floatValues() {
+        double[] data = new double[10001];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (float) rr.nextGaussian();
+        }
+        assertMedian(data);
+    }
+
+    @Test
+    public void integralValues() {
+        // few distinct values: uses counting
+        double[] data = new double[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = rr.nextInt(100) - 50;
+        }
+        assertMedian(data);
+
+        // widely spread integers: uses selection
+        for (int i = 0; i < data.length; i++) {
+            data[i] = rr.nextInt();
+        }
+        assertMedian(data);
+    }
+
+    @Test
+    public void manyDuplicates() {
+        double[] data = new double[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = rr.nextInt(3) + 0.5;
+        }
+        assertMedian(data);
+    }
+
+    @Test
+    public void switchToDoubleStorage() {
+        ExactMedianProcessor p = new ExactMedianProcessor();
+        double[] data = new double[2000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i < 1000 ? i : i + 0.1;
+            p.offer(data[i]);
+        }
+
+        assertEquals(expectedMedian(data), p.get(Statistic.MEDIAN), TOL);
+    }
+
+    @Test
+    public void quantile() {
+        Double[] values = new Double[999];
+        ExactMedianProcessor p = new ExactMedianProcessor();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rr.nextDouble();
+            p.offer(values[i]);
+        }
+
+        for (double prob : new double[] {0.0, 0.01, 0.25, 0.5, 0.75, 0.99, 1.0}) {
+            assertEquals(SampleStats.quantile(values, prob, true), p.getQuantile(prob), TOL);
+        }
+    }
+
+    @Test
+    public void emptyProcessor() {
+        ExactMedianProcessor p = new ExactMedianProcessor();
+        assertTrue(Double.isNaN(p.get(Statistic.MEDIAN)));
+        assertTrue(Double.isNaN(p.getQuantile(0.5)));
+    }
+
+    @Test
+    public void sampleStatsMedian() {
+        Double[] values = {3.0, Double.NaN, 1.0, 2.0};
+        assertEquals(2.0, SampleStats.median(values, true), TOL);
+
+        // NaN values sort last when not ignored
+        assertEquals(2.5, SampleStats.median(values, false), TOL);
+        values[2] = Double.NaN;
+        assertTrue(Double.isNaN(SampleStats.median(values, false)));
+    }
+
+    private void assertMedian(double[] data) {
+        ExactMedianProcessor p = new ExactMedianProcessor();
+        p.offer(data, 0, data.length);
+        assertEquals(expectedMedian(data), p.get(Statistic.MEDIAN), TOL);
+
+        Double[] values = new Double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            values[i] = data[i];
+        }
+        assertEquals(expectedMedian(data), SampleStats.median(values, true), TOL);
+    }
+
+    private double expectedMedian(double[] data) {
+        double[] sorted = data.clone();
+        Arrays.sort(sorted);
+        int n0 = sorted.length / 2;
+        if (sorted.length % 2 == 1) {
+            return sorted[n0];
+        }
+        return (sorted[n0] + sorted[n0 - 1]) / 2;
+    }
+}
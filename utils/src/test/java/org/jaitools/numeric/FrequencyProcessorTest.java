@@ -0,0 +1,88 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.numeric;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for FrequencyProcessor and the most and least frequent
+ * values of FrequencyTable.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class FrequencyProcessorTest {
+
+    @Test
+    public void frequencyTableMostAndLeastFrequent() {
+        FrequencyTable table = new FrequencyTable();
+        assertTrue(Double.isNaN(table.getMostFrequent()));
+
+        table.add(5.0, 3);
+        table.add(1.0, 3);
+        table.add(3.0, 3);
+        table.add(2.0, 1);
+        table.add(4.0, 1);
+        assertEquals(3.0, table.getMostFrequent(), 0.0);
+        assertEquals(2.0, table.getLeastFrequent(), 0.0);
+    }
+
+    @Test
+    public void frequencyProcessorMatchesSampleStats() {
+        Random rr = new Random(42);
+        Double[] values = new Double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (double) rr.nextInt(20);
+        }
+
+        StreamingSampleStats sss = new StreamingSampleStats();
+        sss.setStatistics(new Statistic[] {Statistic.MODE, Statistic.MINORITY, Statistic.VARIETY});
+        sss.offer(values);
+
+        assertEquals(SampleStats.mode(values, true), sss.getStatisticValue(Statistic.MODE), 0.0);
+        assertEquals(SampleStats.minority(values, true), sss.getStatisticValue(Statistic.MINORITY), 0.0);
+        assertEquals(SampleStats.variety(values, true), sss.getStatisticValue(Statistic.VARIETY), 0.0);
+    }
+
+    @Test
+    public void frequencyProcessorMerge() {
+        FrequencyProcessor p1 = new FrequencyProcessor();
+        FrequencyProcessor p2 = new FrequencyProcessor();
+        p1.offer(1.0);
+        p1.offer(2.0);
+        p2.offer(2.0);
+        p2.offer(3.0);
+
+        p1.merge(p2);
+        assertEquals(2.0, p1.get(Statistic.MODE), 0.0);
+        assertEquals(1.0, p1.get(Statistic.MINORITY), 0.0);
+        assertEquals(3.0, p1.get(Statistic.VARIETY), 0.0);
+        assertEquals(4, p1.getFrequencyTable().getTotal());
+    }
+}
@@ -0,0 +1,186 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.numeric;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for FrequencyTable and HistogramProcessor.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class HistogramProcessorTest {
+
+    @Test
+    public void frequencyTableCounts() {
+        FrequencyTable table = new FrequencyTable();
+        Random rr = new Random(42);
+        long[] expected = new long[100];
+        for (int i = 0; i < 10000; i++) {
+            int value = rr.nextInt(100);
+            expected[value]++;
+            table.add(value - 50);
+        }
+
+        assertEquals(10000, table.getTotal());
+        double[] values = table.getValues();
+        long[] counts = table.getCounts();
+        assertEquals(table.size(), values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                assertTrue(values[i] > values[i - 1]);
+            }
+            assertEquals(expected[(int) values[i] + 50], counts[i]);
+            assertEquals(counts[i], table.getCount(values[i]));
+        }
+        assertEquals(0, table.getCount(1000));
+    }
+
+    @Test
+    public void frequencyTableSpecialValues() {
+        FrequencyTable table = new FrequencyTable();
+        table.add(0.0);
+        table.add(-0.0);
+        table.add(Double.NaN);
+        table.add(Double.POSITIVE_INFINITY, 3);
+
+        assertEquals(3, table.size());
+        assertEquals(2, table.getCount(0.0));
+        assertEquals(1, table.getCount(Double.NaN));
+        assertEquals(3, table.getCount(Double.POSITIVE_INFINITY));
+        assertEquals(6, table.getTotal());
+    }
+
+    @Test
+    public void frequencyTableMerge() {
+        FrequencyTable t1 = new FrequencyTable();
+        FrequencyTable t2 = new FrequencyTable();
+        t1.add(1.0);
+        t1.add(2.0);
+        t2.add(2.0);
+        t2.add(3.0, 5);
+
+        FrequencyTable copy = new FrequencyTable(t1);
+        t1.merge(t2);
+        assertEquals(3, t1.size());
+        assertEquals(2, t1.getCount(2.0));
+        assertEquals(5, t1.getCount(3.0));
+        assertEquals(8, t1.getTotal());
+
+        // the copy is unaffected
+        assertEquals(2, copy.getTotal());
+
+        t1.clear();
+        assertTrue(t1.isEmpty());
+        assertEquals(0, t1.getTotal());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void frequencyTableNegativeCount() {
+        new FrequencyTable().add(1.0, -1);
+    }
+
+    @Test
+    public void exactCounts() {
+        StreamingSampleStats sss = new StreamingSampleStats();
+        sss.setStatistics(new Statistic[] {Statistic.HISTOGRAM, Statistic.MEAN});
+        sss.addNoDataValue(-1.0);
+        sss.offer(new Double[] {1.0, 2.0, 2.0, 3.0, -1.0, Double.NaN, 3.0, 3.0});
+
+        assertEquals(3.0, sss.getStatisticValue(Statistic.HISTOGRAM), 0.0);
+
+        HistogramProcessor hp = (HistogramProcessor) sss.getProcessor(Statistic.HISTOGRAM);
+        assertNull(hp.getHistogram());
+        FrequencyTable table = hp.getFrequencyTable();
+        assertArrayEquals(new long[] {1, 2, 3}, table.getCounts());
+        assertEquals(6, table.getTotal());
+    }
+
+    @Test
+    public void binnedCounts() {
+        HistogramProcessor hp = new HistogramProcessor();
+        AbstractHistogram template = new FixedWidthHistogram(0, 10, 5);
+        template.add(1.0);
+        hp.setBins(template);
+
+        double[] values = {0.5, 1.5, 2.5, 9.5, 20.0};
+        hp.offer(values, 0, values.length);
+        assertNull(hp.getFrequencyTable());
+
+        AbstractHistogram h = hp.getHistogram();
+        assertArrayEquals(new long[] {2, 1, 0, 0, 1}, h.getCounts());
+        assertEquals(1, h.getNumAbove());
+        assertEquals(3.0, hp.get(Statistic.HISTOGRAM), 0.0);
+
+        // the template is not modified and the result is a copy
+        assertEquals(1, template.getTotal());
+        h.clear();
+        assertEquals(4, hp.getHistogram().getTotal());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void setBinsAfterOffer() {
+        HistogramProcessor hp = new HistogramProcessor();
+        hp.offer(1.0);
+        hp.setBins(new FixedWidthHistogram(0, 10, 5));
+    }
+
+    @Test
+    public void merge() {
+        HistogramProcessor p1 = new HistogramProcessor();
+        HistogramProcessor p2 = new HistogramProcessor();
+        p1.setBins(new EdgeHistogram(0, 1, 5, 10));
+        p2.setBins(new EdgeHistogram(0, 1, 5, 10));
+        p1.offer(0.5);
+        p1.offer(2.0);
+        p2.offer(3.0);
+        p2.offer(7.0);
+
+        p1.merge(p2);
+        assertEquals(4, p1.getNumAccepted());
+        assertArrayEquals(new long[] {1, 2, 1}, p1.getHistogram().getCounts());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void mergeDifferentBins() {
+        HistogramProcessor p1 = new HistogramProcessor();
+        HistogramProcessor p2 = new HistogramProcessor();
+        p1.setBins(new FixedWidthHistogram(0, 10, 5));
+        p2.setBins(new FixedWidthHistogram(0, 10, 10));
+        p1.merge(p2);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void mergeBinnedWithExact() {
+        HistogramProcessor p1 = new HistogramProcessor();
+        p1.setBins(new FixedWidthHistogram(0, 10, 5));
+        p1.merge(new HistogramProcessor());
+    }
+}
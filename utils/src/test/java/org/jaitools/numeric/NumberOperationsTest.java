@@ -389,4 +389,46 @@ public class NumberOperationsTest {
         assertEquals(-1, NumberOperations.compare(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
     }
 
+    @Test
+    public void testPrimitiveComparisonTolerance() {
+        double dtol = NumberOperations.getDoubleTolerance();
+        assertEquals(0, NumberOperations.compare(1.0, 1.0 + dtol / 2));
+        assertEquals(-1, NumberOperations.compare(1.0, 1.0 + dtol * 2));
+
+        float ftol = NumberOperations.getFloatTolerance();
+        assertEquals(0, NumberOperations.compare(1.0f, 1.0f + ftol / 2));
+        assertEquals(1, NumberOperations.compare(1.0f + ftol * 2, 1.0f));
+
+        assertEquals(-1, NumberOperations.compare(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(0, NumberOperations.compare(42L, 42L));
+    }
+
+    @Test
+    public void testPrimitiveComparisonMatchesNumber() {
+        Number[] values = {
+            Byte.valueOf((byte) -1), Short.valueOf((short) 3), Integer.valueOf(3),
+            Long.valueOf(Long.MAX_VALUE), Float.valueOf(2.5f), Float.NaN,
+            Double.valueOf(3.0), Double.NEGATIVE_INFINITY, Double.NaN
+        };
+
+        for (Number n1 : values) {
+            for (Number n2 : values) {
+                Class<? extends Number> clazz = NumberOperations.highestClass(n1, n2);
+                // byte values are treated as unsigned by the conversion methods
+                int expected;
+                if (clazz == Double.class) {
+                    expected = NumberOperations.compare(
+                            NumberOperations.doubleValue(n1), NumberOperations.doubleValue(n2));
+                } else if (clazz == Float.class) {
+                    expected = NumberOperations.compare(
+                            NumberOperations.floatValue(n1), NumberOperations.floatValue(n2));
+                } else {
+                    expected = NumberOperations.compare(
+                            NumberOperations.longValue(n1), NumberOperations.longValue(n2));
+                }
+                assertEquals(n1 + " vs " + n2, expected, NumberOperations.compare(n1, n2));
+            }
+        }
+    }
+
 }
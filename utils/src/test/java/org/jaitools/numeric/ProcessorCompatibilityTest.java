@@ -0,0 +1,212 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.numeric;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for processors written against the boxed sample methods
+ * of earlier versions.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class ProcessorCompatibilityTest {
+
+    private static final double TOL = 1.0E-6;
+
+    @Test
+    public void legacyUpdateMethodIsCalled() {
+        LegacySumProcessor proc = new LegacySumProcessor();
+        proc.addNoDataValue(-1.0);
+
+        proc.offer(Double.valueOf(1.0));
+        proc.offer(2.0);
+        proc.offer(new double[] {-1.0, 3.0, 4.0, Double.NaN}, 0, 4);
+
+        assertEquals(6, proc.getNumOffered());
+        assertEquals(4, proc.getNumAccepted());
+        assertEquals(1, proc.getNumNaN());
+        assertEquals(2, proc.getNumNoData());
+        assertEquals(10.0, proc.get(Statistic.SUM), TOL);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void processorWithoutUpdateMethod() {
+        AbstractProcessor proc = new AbstractProcessor() {
+            public Collection<Statistic> getSupported() {
+                return Collections.singleton(Statistic.SUM);
+            }
+
+            public Double get(Statistic stat) {
+                return Double.NaN;
+            }
+        };
+
+        proc.offer(1.0);
+    }
+
+    @Test
+    public void interfaceDefaultsUseBoxedMethods() {
+        SumProcessor target = new SumProcessor();
+        target.addRange(Range.create(0.0, true, 10.0, true), Range.Type.INCLUDE);
+        Processor proc = new BoxedOnlyProcessor(target);
+
+        assertTrue(proc.isAccepted(5.0));
+        assertFalse(proc.isAccepted(20.0));
+
+        proc.offer(1.0);
+        proc.offer(new double[] {99.0, 2.0, 3.0, 99.0}, 1, 2);
+
+        assertEquals(3, proc.getNumOffered());
+        assertEquals(3, proc.getNumAccepted());
+        assertEquals(6.0, proc.get(Statistic.SUM), TOL);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void interfaceDefaultOfferArrayOutOfBounds() {
+        Processor proc = new BoxedOnlyProcessor(new SumProcessor());
+        proc.offer(new double[10], 5, 6);
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void interfaceDefaultMergeNotSupported() {
+        Processor proc = new BoxedOnlyProcessor(new SumProcessor());
+        proc.merge(new BoxedOnlyProcessor(new SumProcessor()));
+    }
+
+    /*
+     * A processor written before update(double) was added
+     */
+    private static class LegacySumProcessor extends AbstractProcessor {
+        private double sum = 0.0;
+
+        public Collection<Statistic> getSupported() {
+            return Collections.singleton(Statistic.SUM);
+        }
+
+        @Override
+        protected boolean update(Double sample) {
+            if (isAccepted(sample)) {
+                sum += sample;
+                return true;
+            }
+            return false;
+        }
+
+        public Double get(Statistic stat) {
+            return getNumAccepted() == 0 ? Double.NaN : sum;
+        }
+    }
+
+    /*
+     * A processor which only implements the methods of the interface
+     * that have no default implementation
+     */
+    private static class BoxedOnlyProcessor implements Processor {
+        private final Processor delegate;
+
+        BoxedOnlyProcessor(Processor delegate) {
+            this.delegate = delegate;
+        }
+
+        public Collection<Statistic> getSupported() {
+            return delegate.getSupported();
+        }
+
+        public void addNoDataRange(Range<Double> noData) {
+            delegate.addNoDataRange(noData);
+        }
+
+        public void addNoDataValue(Double noData) {
+            delegate.addNoDataValue(noData);
+        }
+
+        public void addRange(Range<Double> range, Range.Type rangeType) {
+            delegate.addRange(range, rangeType);
+        }
+
+        public void addRange(Range<Double> range) {
+            delegate.addRange(range);
+        }
+
+        public void setRangesType(Range.Type rangeType) {
+            delegate.setRangesType(rangeType);
+        }
+
+        public Range.Type getRangesType() {
+            return delegate.getRangesType();
+        }
+
+        public List<Range<Double>> getNoDataRanges() {
+            return delegate.getNoDataRanges();
+        }
+
+        public List<Range<Double>> getRanges() {
+            return delegate.getRanges();
+        }
+
+        public boolean isAccepted(Double sample) {
+            return delegate.isAccepted(sample);
+        }
+
+        public void offer(Double sample) {
+            delegate.offer(sample);
+        }
+
+        public long getNumOffered() {
+            return delegate.getNumOffered();
+        }
+
+        public long getNumAccepted() {
+            return delegate.getNumAccepted();
+        }
+
+        public long getNumNaN() {
+            return delegate.getNumNaN();
+        }
+
+        public long getNumNoData() {
+            return delegate.getNumNoData();
+        }
+
+        public Double get(Statistic stat) {
+            return delegate.get(stat);
+        }
+
+        public Map<Statistic, Double> get() {
+            return delegate.get();
+        }
+    }
+
+}
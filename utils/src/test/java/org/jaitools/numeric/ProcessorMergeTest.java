@@ -0,0 +1,242 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.numeric;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of merging statistics processors and samplers.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class ProcessorMergeTest {
+
+    private static final double TOL = 1.0E-6;
+    private static final int NUM_SAMPLES = 10000;
+    private static final int NUM_PARTS = 7;
+
+    private double[] samples;
+
+    @Before
+    public void setup() {
+        Random rr = new Random(42);
+        samples = new double[NUM_SAMPLES];
+        for (int i = 0; i < NUM_SAMPLES; i++) {
+            samples[i] = 100 + 10 * rr.nextGaussian();
+            if (i % 50 == 0) {
+                samples[i] = Double.NaN;
+            }
+        }
+    }
+
+    @Test
+    public void sum() {
+        assertMergedEquals(new SumProcessor(), new SumProcessor(), Statistic.SUM);
+    }
+
+    @Test
+    public void extrema() {
+        for (Statistic stat : new Statistic[] {Statistic.MIN, Statistic.MAX, Statistic.RANGE}) {
+            assertMergedEquals(new ExtremaProcessor(), new ExtremaProcessor(), stat);
+        }
+    }
+
+    @Test
+    public void meanVariance() {
+        for (Statistic stat : new Statistic[] {Statistic.MEAN, Statistic.VARIANCE, Statistic.SDEV}) {
+            assertMergedEquals(new MeanVarianceProcessor(), new MeanVarianceProcessor(), stat);
+        }
+    }
+
+    @Test
+    public void exactMedian() {
+        assertMergedEquals(new ExactMedianProcessor(), new ExactMedianProcessor(), Statistic.MEDIAN);
+    }
+
+    @Test
+    public void approxMedian() {
+        Processor merged = mergeParts(new ApproxMedianProcessor());
+        Processor exact = new ExactMedianProcessor();
+        exact.offer(samples, 0, samples.length);
+
+        assertEquals(exact.getNumAccepted(), merged.getNumAccepted());
+        assertEquals(exact.get(Statistic.MEDIAN), merged.get(Statistic.APPROX_MEDIAN), 1.0);
+    }
+
+    @Test
+    public void mergeEmpty() {
+        Processor p = new MeanVarianceProcessor();
+        p.offer(samples, 0, 100);
+        double mean = p.get(Statistic.MEAN);
+
+        p.merge(new MeanVarianceProcessor());
+        assertEquals(mean, p.get(Statistic.MEAN), TOL);
+
+        Processor empty = new MeanVarianceProcessor();
+        empty.merge(p);
+        assertEquals(mean, empty.get(Statistic.MEAN), TOL);
+        assertEquals(p.getNumAccepted(), empty.getNumAccepted());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void differentClass() {
+        new SumProcessor().merge(new ExtremaProcessor());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void differentRanges() {
+        Processor p1 = new SumProcessor();
+        Processor p2 = new SumProcessor();
+        p2.addNoDataValue(0.0);
+        p1.merge(p2);
+    }
+
+    @Test
+    public void supportsMerge() {
+        ProcessorFactory factory = new ProcessorFactory();
+        for (Statistic stat : Statistic.values()) {
+            Processor p = factory.getForStatistic(stat);
+            if (p != null) {
+                assertTrue(stat.toString(), p.supportsMerge());
+            }
+        }
+
+        assertFalse(new UnmergeableProcessor().supportsMerge());
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void unsupportedMerge() {
+        new UnmergeableProcessor().merge(new UnmergeableProcessor());
+    }
+
+    @Test
+    public void streamingSampleStats() {
+        Statistic[] stats = {
+            Statistic.MEAN, Statistic.SDEV, Statistic.RANGE,
+            Statistic.SUM, Statistic.MEDIAN
+        };
+
+        StreamingSampleStats all = createSampler(stats);
+        all.offer(samples, 0, samples.length);
+
+        StreamingSampleStats merged = createSampler(stats);
+        int partLen = NUM_SAMPLES / NUM_PARTS + 1;
+        for (int offset = 0; offset < NUM_SAMPLES; offset += partLen) {
+            StreamingSampleStats part = createSampler(stats);
+            part.offer(samples, offset, Math.min(partLen, NUM_SAMPLES - offset));
+            merged.merge(part);
+        }
+
+        for (Statistic stat : stats) {
+            assertEquals(all.getNumOffered(stat), merged.getNumOffered(stat));
+            assertEquals(all.getNumAccepted(stat), merged.getNumAccepted(stat));
+            assertEquals(all.getNumNoData(stat), merged.getNumNoData(stat));
+            assertEquals(all.getStatisticValue(stat), merged.getStatisticValue(stat), TOL);
+        }
+    }
+
+    @Test
+    public void streamingSampleStatsDifferentStatistics() {
+        StreamingSampleStats s1 = createSampler(new Statistic[] {Statistic.MEAN});
+        StreamingSampleStats s2 = createSampler(new Statistic[] {Statistic.MEAN, Statistic.SUM});
+        s1.offer(100.0);
+
+        try {
+            s1.merge(s2);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        assertEquals(100.0, s1.getStatisticValue(Statistic.MEAN), TOL);
+    }
+
+    private StreamingSampleStats createSampler(Statistic[] stats) {
+        StreamingSampleStats sss = new StreamingSampleStats();
+        sss.setStatistics(stats);
+        sss.addNoDataRange(Range.create(null, false, 80.0, false));
+        return sss;
+    }
+
+    private void assertMergedEquals(Processor all, Processor empty, Statistic stat) {
+        all.offer(samples, 0, samples.length);
+        Processor merged = mergeParts(empty);
+
+        assertEquals(all.getNumOffered(), merged.getNumOffered());
+        assertEquals(all.getNumAccepted(), merged.getNumAccepted());
+        assertEquals(all.getNumNaN(), merged.getNumNaN());
+        assertEquals(all.get(stat), merged.get(stat), TOL);
+    }
+
+    /*
+     * Offers the samples to separate processors, part by part, and
+     * merges them into the given processor
+     */
+    private Processor mergeParts(Processor target) {
+        int partLen = NUM_SAMPLES / NUM_PARTS + 1;
+        for (int offset = 0; offset < NUM_SAMPLES; offset += partLen) {
+            Processor part;
+            try {
+                part = target.getClass().newInstance();
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+            // offer some samples singly and some as an array
+            int len = Math.min(partLen, NUM_SAMPLES - offset);
+            for (int i = 0; i < 10; i++) {
+                part.offer(samples[offset + i]);
+            }
+            part.offer(samples, offset + 10, len - 10);
+            target.merge(part);
+        }
+        return target;
+    }
+
+    /*
+     * A processor which does not override mergeData
+     */
+    private static class UnmergeableProcessor extends AbstractProcessor {
+        public Collection<Statistic> getSupported() {
+            return Collections.singleton(Statistic.SUM);
+        }
+
+        @Override
+        protected boolean update(double sample) {
+            return isAccepted(sample);
+        }
+
+        public Double get(Statistic stat) {
+            return Double.NaN;
+        }
+    }
+
+}
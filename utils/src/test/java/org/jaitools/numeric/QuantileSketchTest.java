@@ -0,0 +1,191 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.numeric;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of {@link QuantileSketch} and {@link QuantileSketchProcessor}.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class QuantileSketchTest {
+
+    private static final double TOL = 1.0E-8;
+    private static final int NUM_SAMPLES = 100000;
+    private static final double[] PROBS = {0.01, 0.05, 0.1, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99};
+
+    private double[] samples;
+    private double[] sorted;
+
+    @Before
+    public void setup() {
+        Random rr = new Random(42);
+        samples = new double[NUM_SAMPLES];
+        for (int i = 0; i < NUM_SAMPLES; i++) {
+            samples[i] = 100 + 10 * rr.nextGaussian();
+        }
+        sorted = samples.clone();
+        Arrays.sort(sorted);
+    }
+
+    @Test
+    public void exactForSmallSamples() {
+        QuantileSketch sketch = new QuantileSketch();
+        Double[] values = new Double[QuantileSketch.DEFAULT_K / 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = samples[i];
+            sketch.update(samples[i]);
+        }
+
+        for (double p : PROBS) {
+            assertEquals(SampleStats.quantile(values, p, true), sketch.getQuantile(p), TOL);
+        }
+    }
+
+    @Test
+    public void rankErrorWithinBound() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.update(samples, 0, samples.length);
+
+        assertEquals(NUM_SAMPLES, sketch.getN());
+        assertTrue(sketch.getNumRetained() < NUM_SAMPLES / 10);
+        assertEquals(sorted[0], sketch.getMin(), TOL);
+        assertEquals(sorted[NUM_SAMPLES - 1], sketch.getMax(), TOL);
+        assertRankError(sketch);
+    }
+
+    @Test
+    public void extremeProbabilities() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.update(samples, 0, samples.length);
+
+        assertEquals(sorted[0], sketch.getQuantile(0.0), TOL);
+        assertEquals(sorted[NUM_SAMPLES - 1], sketch.getQuantile(1.0), TOL);
+    }
+
+    @Test
+    public void ignoresNaN() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.update(Double.NaN);
+        assertTrue(sketch.isEmpty());
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+    }
+
+    @Test
+    public void merge() {
+        final int numParts = 7;
+        QuantileSketch merged = new QuantileSketch();
+        int from = 0;
+        for (int i = 0; i < numParts; i++) {
+            int to = (i + 1) * NUM_SAMPLES / numParts;
+            QuantileSketch part = new QuantileSketch();
+            part.update(samples, from, to - from);
+            merged.merge(part);
+            from = to;
+        }
+
+        assertEquals(NUM_SAMPLES, merged.getN());
+        assertRankError(merged);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void mergeDifferentK() {
+        new QuantileSketch(100).merge(new QuantileSketch(200));
+    }
+
+    @Test
+    public void serialization() {
+        QuantileSketch sketch = new QuantileSketch(64);
+        sketch.update(samples, 0, samples.length);
+
+        QuantileSketch copy = QuantileSketch.fromByteArray(sketch.toByteArray());
+        assertEquals(sketch.getK(), copy.getK());
+        assertEquals(sketch.getN(), copy.getN());
+        for (double p : PROBS) {
+            assertEquals(sketch.getQuantile(p), copy.getQuantile(p), TOL);
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void deserializeBadData() {
+        QuantileSketch.fromByteArray(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    }
+
+    @Test
+    public void percentileStatistics() {
+        StreamingSampleStats sss = new StreamingSampleStats();
+        sss.setStatistics(new Statistic[] {Statistic.PERCENTILE_5, Statistic.PERCENTILE_95});
+        sss.offer(samples, 0, samples.length);
+
+        double eps = 2 * new QuantileSketch().getNormalizedRankError();
+        assertWithinRank(0.05, sss.getStatisticValue(Statistic.PERCENTILE_5), eps);
+        assertWithinRank(0.95, sss.getStatisticValue(Statistic.PERCENTILE_95), eps);
+    }
+
+    @Test
+    public void processorAccuracy() {
+        StreamingSampleStats sss = new StreamingSampleStats();
+        sss.setStatistic(Statistic.PERCENTILE_75);
+
+        QuantileSketchProcessor p =
+                (QuantileSketchProcessor) sss.getProcessor(Statistic.PERCENTILE_75);
+        p.setAccuracy(50);
+        sss.offer(samples, 0, samples.length);
+
+        assertEquals(50, p.getSketch().getK());
+        assertWithinRank(0.75, sss.getStatisticValue(Statistic.PERCENTILE_75),
+                2 * p.getSketch().getNormalizedRankError());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void accuracyAfterOffer() {
+        QuantileSketchProcessor p = new QuantileSketchProcessor();
+        p.offer(1.0);
+        p.setAccuracy(50);
+    }
+
+    private void assertRankError(QuantileSketch sketch) {
+        // the normalized error bound holds with high probability; allow
+        // twice that for a fixed-seed test
+        double eps = 2 * sketch.getNormalizedRankError();
+        for (double p : PROBS) {
+            assertWithinRank(p, sketch.getQuantile(p), eps);
+        }
+    }
+
+    private void assertWithinRank(double p, double value, double eps) {
+        int lo = Math.max(0, (int) Math.floor((p - eps) * NUM_SAMPLES));
+        int hi = Math.min(NUM_SAMPLES - 1, (int) Math.ceil((p + eps) * NUM_SAMPLES));
+        assertTrue("quantile " + p, value >= sorted[lo] && value <= sorted[hi]);
+    }
+}
@@ -0,0 +1,177 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.numeric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for RangeSet.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class RangeSetTest {
+
+    private static final double TOL = NumberOperations.getDoubleTolerance();
+
+    @Test
+    public void empty() {
+        RangeSet set = RangeSet.create(new ArrayList<Range<Double>>());
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0.0));
+        assertFalse(set.contains(Double.NaN));
+        assertEquals(-1, set.indexOf(0.0));
+    }
+
+    @Test
+    public void matchesRangeContains() {
+        Random rr = new Random(42);
+        for (int trial = 0; trial < 200; trial++) {
+            List<Range<Double>> ranges = new ArrayList<Range<Double>>();
+            int n = 1 + rr.nextInt(8);
+            for (int i = 0; i < n; i++) {
+                ranges.add(randomRange(rr));
+            }
+
+            RangeSet set = RangeSet.create(ranges);
+            for (int k = 0; k < 200; k++) {
+                double value = rr.nextInt(41) - 20 + (rr.nextBoolean() ? 0 : 0.5);
+                assertEquals(ranges.toString() + " " + value,
+                        anyContains(ranges, value), set.contains(value));
+            }
+
+            for (double value : new double[] {
+                    Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NaN}) {
+                assertEquals(ranges.toString() + " " + value,
+                        anyContains(ranges, value), set.contains(value));
+            }
+        }
+    }
+
+    @Test
+    public void tolerance() {
+        List<Range<Double>> ranges = new ArrayList<Range<Double>>();
+        ranges.add(Range.create(1.0, true, 2.0, false));
+        ranges.add(Range.create(5.0));
+        ranges.add(Range.create(8.0, false, 9.0, true));
+        RangeSet set = RangeSet.create(ranges);
+
+        assertTrue(set.contains(1.0 - TOL / 2));
+        assertFalse(set.contains(2.0 - TOL / 2));
+        assertTrue(set.contains(5.0 + TOL / 2));
+        assertFalse(set.contains(5.0 + 2 * TOL));
+        assertFalse(set.contains(8.0 + TOL / 2));
+        assertTrue(set.contains(9.0 + TOL / 2));
+    }
+
+    @Test
+    public void indexed() {
+        List<Range<Integer>> ranges = new ArrayList<Range<Integer>>();
+        ranges.add(Range.create(10, true, 20, false));
+        ranges.add(Range.create(0, true, 10, false));
+        ranges.add(Range.create(20, true, null, false));
+        ranges.add(Range.create(null, false, 0, false));
+
+        RangeSet set = RangeSet.createIndexed(ranges, TOL);
+        assertEquals(4, set.size());
+        assertEquals(3, set.indexOf(-5));
+        assertEquals(1, set.indexOf(0));
+        assertEquals(1, set.indexOf(9.5));
+        assertEquals(0, set.indexOf(10));
+        assertEquals(2, set.indexOf(20));
+        assertEquals(2, set.indexOf(Double.POSITIVE_INFINITY));
+        assertEquals(-1, set.indexOf(Double.NaN));
+    }
+
+    @Test
+    public void indexedNaN() {
+        List<Range<Double>> ranges = new ArrayList<Range<Double>>();
+        ranges.add(Range.create(0.0, true, 1.0, true));
+        ranges.add(Range.create(Double.NaN));
+
+        RangeSet set = RangeSet.createIndexed(ranges, TOL);
+        assertEquals(1, set.indexOf(Double.NaN));
+        assertEquals(0, set.indexOf(0.5));
+        assertEquals(-1, set.indexOf(2.0));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void indexedOverlap() {
+        List<Range<Integer>> ranges = new ArrayList<Range<Integer>>();
+        ranges.add(Range.create(0, true, 10, true));
+        ranges.add(Range.create(10, true, 20, true));
+        RangeSet.createIndexed(ranges, TOL);
+    }
+
+    @Test
+    public void points() {
+        RangeSet set = RangeSet.createPoints(Arrays.asList(
+                Double.NaN, 0.0, -1.0, Double.POSITIVE_INFINITY), TOL);
+
+        assertTrue(set.contains(Double.NaN));
+        assertTrue(set.contains(0.0));
+        assertTrue(set.contains(-1.0 + TOL / 2));
+        assertTrue(set.contains(Double.POSITIVE_INFINITY));
+        assertFalse(set.contains(Double.NEGATIVE_INFINITY));
+        assertFalse(set.contains(1.0));
+    }
+
+    private Range<Double> randomRange(Random rr) {
+        switch (rr.nextInt(6)) {
+            case 0:
+                return Range.create((double) (rr.nextInt(41) - 20));
+
+            case 1:
+                return Range.create(Double.NaN);
+
+            case 2:
+                return Range.create(null, false, (double) (rr.nextInt(41) - 20), rr.nextBoolean());
+
+            case 3:
+                return Range.create((double) (rr.nextInt(41) - 20), rr.nextBoolean(), null, false);
+
+            default:
+                double a = rr.nextInt(41) - 20;
+                double b = a + rr.nextInt(10);
+                return Range.create(a, rr.nextBoolean(), b, rr.nextBoolean());
+        }
+    }
+
+    private boolean anyContains(List<Range<Double>> ranges, double value) {
+        for (Range<Double> r : ranges) {
+            if (r.contains(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -148,4 +148,60 @@ public class RangeTest {
         Range<Integer> r = Range.create(null, true, 10, true);
         assertEquals("(-Inf, 10]", r.toString());
     }
+
+    @Test
+    public void testDoubleRangeMatchesRange() {
+        double[] testValues = {
+            Double.NEGATIVE_INFINITY, -1.0, 0.0, 0.5, 1.0, 2.0,
+            Double.POSITIVE_INFINITY, Double.NaN
+        };
+
+        Range[] ranges = {
+            Range.create(0.0, true, 1.0, true),
+            Range.create(0.0, false, 1.0, false),
+            Range.create(null, false, 1.0, true),
+            Range.create(0.0, true, Double.POSITIVE_INFINITY, false),
+            Range.create(0.5),
+            Range.create(Double.NaN),
+            Range.create(Double.POSITIVE_INFINITY)
+        };
+
+        for (Range r : ranges) {
+            DoubleRange dr = new DoubleRange((Range<Double>) r);
+            assertEquals(r, dr);
+            for (double x : testValues) {
+                assertEquals(r + " contains " + x, r.contains(x), dr.contains(x));
+            }
+        }
+
+        DoubleRange dr = new DoubleRange(0.0, true, 1.0, false);
+        assertTrue(dr.contains(0.0));
+        assertFalse(dr.contains(1.0));
+        assertTrue(new DoubleRange(Double.NaN).contains(Double.NaN));
+    }
+
+    @Test
+    public void testIntRangeMatchesRange() {
+        int[] testValues = {Integer.MIN_VALUE, -1, 0, 5, 10, 11, Integer.MAX_VALUE};
+
+        Range[] ranges = {
+            Range.create(0, true, 10, true),
+            Range.create(0, false, 10, false),
+            Range.create(null, false, 10, true),
+            Range.create(0, true, null, false),
+            Range.create(5),
+            Range.create(null, Range.INF)
+        };
+
+        for (Range r : ranges) {
+            IntRange ir = new IntRange((Range<Integer>) r);
+            assertEquals(r, ir);
+            for (int x : testValues) {
+                assertEquals(r + " contains " + x, r.contains(x), ir.contains(x));
+            }
+        }
+
+        assertTrue(new IntRange(-3).contains(-3));
+        assertFalse(new IntRange(-3, true, 3, false).contains(3));
+    }
 }
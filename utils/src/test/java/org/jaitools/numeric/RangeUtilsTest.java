@@ -251,6 +251,18 @@ public class RangeUtilsTest {
         assertEquals(new Range<Integer>(20, true, 30, true), result.get(1));
     }
 
+    @Test
+    public void testSimplifyKeepsGapAtExcludedPoint() {
+        List<Range<Integer>> inputs = CollectionFactory.list();
+        inputs.add( Range.create(0, true, 5, false));
+        inputs.add( Range.create(5, false, 10, true));
+
+        List<Range<Integer>> result = RangeUtils.simplify(inputs);
+        assertEquals(2, result.size());
+        assertFalse(result.get(0).contains(5));
+        assertFalse(result.get(1).contains(5));
+    }
+
     @Test
     public void testIntersection() {
         // System.out.println("   testIntersection");
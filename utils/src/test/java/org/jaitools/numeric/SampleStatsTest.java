@@ -142,4 +142,40 @@ public class SampleStatsTest {
         assertTrue(Double.isNaN(SampleStats.variance(singleValue, true)));
     }
 
+    @Test
+    public void testMode() {
+        Double[] data = {3.0, 1.0, 2.0, 3.0, Double.NaN, 2.0, 3.0};
+        assertEquals(3.0, SampleStats.mode(data, true), TOL);
+    }
+
+    @Test
+    public void testModeTies() {
+        // 1, 2 and 4 all occur twice: odd number of ties gives their median
+        Double[] odd = {4.0, 1.0, 2.0, 4.0, 2.0, 1.0, 3.0};
+        assertEquals(2.0, SampleStats.mode(odd, true), TOL);
+
+        // even number of ties gives the value below the mid-point
+        Double[] even = {4.0, 1.0, 2.0, 4.0, 2.0, 1.0, 3.0, 3.0};
+        assertEquals(2.0, SampleStats.mode(even, true), TOL);
+    }
+
+    @Test
+    public void testMinority() {
+        Double[] data = {3.0, 1.0, 2.0, 3.0, Double.NaN, 2.0, 3.0, 2.0};
+        assertEquals(1.0, SampleStats.minority(data, true), TOL);
+
+        // NaN values are each distinct, and sort last, when not ignored
+        assertEquals(1.0, SampleStats.minority(data, false), TOL);
+        Double[] data2 = {3.0, 3.0, Double.NaN};
+        assertTrue(Double.isNaN(SampleStats.minority(data2, false)));
+    }
+
+    @Test
+    public void testVariety() {
+        assertEquals(10.0, SampleStats.variety(values, true), TOL);
+        assertTrue(Double.isNaN(SampleStats.variety(values, false)));
+        assertEquals(1.0, SampleStats.variety(singleValue, true), TOL);
+        assertEquals(0.0, SampleStats.variety(new Double[0], true), TOL);
+    }
+
 }
@@ -321,4 +321,180 @@ public class StreamingSampleStatsTest {
 
         assertEquals(7, streamStats.getNumNoData(Statistic.SUM));
     }
+
+    @Test
+    public void testOfferArrayPortion() {
+        // System.out.println("   testOfferArrayPortion");
+
+        Statistic[] stats = {
+            Statistic.MEAN, Statistic.MIN, Statistic.MAX,
+            Statistic.SUM, Statistic.MEDIAN, Statistic.APPROX_MEDIAN
+        };
+
+        StreamingSampleStats bulk = new StreamingSampleStats();
+        StreamingSampleStats single = new StreamingSampleStats();
+        for (StreamingSampleStats sss : new StreamingSampleStats[] {bulk, single}) {
+            sss.setStatistics(stats);
+            sss.addRange(Range.create(10.0, true, 20.0, false));
+            sss.addNoDataValue(-1.0);
+        }
+
+        Random rr = new Random(42);
+        double[] samples = new double[1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (i % 17 == 0) ? -1.0 : rr.nextInt(100);
+        }
+        samples[500] = Double.NaN;
+
+        bulk.offer(samples, 100, 800);
+        for (int i = 100; i < 900; i++) {
+            single.offer(samples[i]);
+        }
+
+        for (Statistic stat : stats) {
+            assertEquals(single.getNumOffered(stat), bulk.getNumOffered(stat));
+            assertEquals(single.getNumAccepted(stat), bulk.getNumAccepted(stat));
+            assertEquals(single.getNumNoData(stat), bulk.getNumNoData(stat));
+            assertEquals(single.getStatisticValue(stat), bulk.getStatisticValue(stat), TOL);
+        }
+        assertEquals(800, bulk.getNumOffered(Statistic.SUM));
+        assertEquals(1, bulk.getNumNaN(Statistic.SUM));
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testOfferArrayPortionOutOfBounds() {
+        // System.out.println("   testOfferArrayPortionOutOfBounds");
+
+        StreamingSampleStats streamStats = new StreamingSampleStats();
+        streamStats.setStatistic(Statistic.SUM);
+        streamStats.offer(new double[10], 5, 6);
+    }
+
+    @Test
+    public void testPrimitiveAcceptanceMatchesRanges() {
+        // System.out.println("   testPrimitiveAcceptanceMatchesRanges");
+
+        List<Range<Double>> ranges = CollectionFactory.list();
+        ranges.add(Range.create(null, false, -10.0, true));
+        ranges.add(Range.create(-1.0, false, 1.0, false));
+        ranges.add(Range.create(0.5, true, 2.0, true));
+        ranges.add(Range.create(5.0));
+        ranges.add(Range.create(100.0, false, null, false));
+
+        for (Range.Type type : new Range.Type[] {Range.Type.INCLUDE, Range.Type.EXCLUDE}) {
+            SumProcessor p = new SumProcessor();
+            for (Range<Double> r : ranges) {
+                p.addRange(r, type);
+            }
+
+            double eps = NumberOperations.getDoubleTolerance() / 2;
+            double[] values = {
+                Double.NEGATIVE_INFINITY, -20, -10 - eps, -10, -10 + eps, -9.99,
+                -1 - eps, -1, -1 + 0.01, 0, 1, 1 + eps, 1.5, 2, 2 + eps, 3,
+                5 - eps, 5, 5 + 1.0e-6, 100, 100 + 0.01, Double.POSITIVE_INFINITY
+            };
+
+            for (double value : values) {
+                boolean inRange = false;
+                for (Range<Double> r : ranges) {
+                    inRange |= r.contains(value);
+                }
+                boolean expected = (type == Range.Type.INCLUDE) == inRange;
+                assertEquals("value " + value + " type " + type, expected, p.isAccepted(value));
+                assertEquals(expected, p.isAccepted(Double.valueOf(value)));
+            }
+        }
+    }
+
+    @Test
+    public void testOfferArrayInStrips() {
+        // System.out.println("   testOfferArrayInStrips");
+
+        Statistic[] stats = {
+            Statistic.MEAN, Statistic.VARIANCE, Statistic.RANGE,
+            Statistic.SUM, Statistic.MEDIAN
+        };
+
+        StreamingSampleStats strips = new StreamingSampleStats();
+        strips.setStatistics(stats);
+        strips.addNoDataRange(Range.create(null, false, 0.0, true));
+
+        double[] samples = new double[10000];
+        Random rr = new Random(42);
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = 1.0e6 + rr.nextGaussian();
+            if (i % 100 == 0) {
+                samples[i] = -1;
+            }
+        }
+
+        StreamingSampleStats single = new StreamingSampleStats();
+        single.setStatistics(stats);
+        single.addNoDataRange(Range.create(null, false, 0.0, true));
+        for (double d : samples) {
+            single.offer(d);
+        }
+
+        for (int offset = 0; offset < samples.length; offset += 333) {
+            strips.offer(samples, offset, Math.min(333, samples.length - offset));
+        }
+
+        for (Statistic stat : stats) {
+            assertEquals(9900, strips.getNumAccepted(stat));
+            assertEquals(100, strips.getNumNoData(stat));
+            assertEquals(single.getStatisticValue(stat), strips.getStatisticValue(stat), 1.0e-6);
+        }
+    }
+
+    @Test
+    public void testOfferArrayWithDifferingRangeTypes() {
+        // System.out.println("   testOfferArrayWithDifferingRangeTypes");
+
+        StreamingSampleStats bulk = createWithMixedRanges();
+        StreamingSampleStats single = createWithMixedRanges();
+
+        double[] samples = {-5, 0, 5, 10, 15};
+        bulk.offer(samples, 0, samples.length);
+        for (double d : samples) {
+            single.offer(d);
+        }
+
+        for (Statistic stat : new Statistic[] {Statistic.SUM, Statistic.MAX}) {
+            assertEquals(single.getNumAccepted(stat), bulk.getNumAccepted(stat));
+            assertEquals(single.getStatisticValue(stat), bulk.getStatisticValue(stat), TOL);
+        }
+    }
+
+    @Test
+    public void testOfferArrayAfterProcessorRangesChange() {
+        // System.out.println("   testOfferArrayAfterProcessorRangesChange");
+
+        StreamingSampleStats bulk = new StreamingSampleStats();
+        bulk.setStatistics(new Statistic[] {Statistic.SUM, Statistic.MAX});
+
+        double[] samples = {1, 2, 3, 4, 5};
+        bulk.offer(samples, 0, samples.length);
+
+        // ranges changed on one processor after the filter was first shared
+        bulk.getProcessor(Statistic.SUM).addNoDataRange(Range.create(4.0, true, null, false));
+        bulk.offer(samples, 0, samples.length);
+
+        assertEquals(10, bulk.getNumAccepted(Statistic.MAX));
+        assertEquals(5.0, bulk.getStatisticValue(Statistic.MAX), TOL);
+        assertEquals(8, bulk.getNumAccepted(Statistic.SUM));
+        assertEquals(2, bulk.getNumNoData(Statistic.SUM));
+        assertEquals(15.0 + 6.0, bulk.getStatisticValue(Statistic.SUM), TOL);
+    }
+
+    /*
+     * Creates a sampler whose processors end up with different range
+     * types, so that samples cannot be filtered once for all of them
+     */
+    private StreamingSampleStats createWithMixedRanges() {
+        StreamingSampleStats streamStats = new StreamingSampleStats(Range.Type.INCLUDE);
+        streamStats.setStatistic(Statistic.SUM);
+        streamStats.addRange(Range.create(0.0, true, 10.0, true));
+        streamStats.setStatistic(Statistic.MAX);
+        return streamStats;
+    }
 }
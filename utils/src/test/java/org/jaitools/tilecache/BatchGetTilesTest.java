@@ -0,0 +1,136 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.media.jai.TiledImage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for batch loading of tiles with
+ * {@code DiskMemTileCache.getTiles(RenderedImage, Point[])}.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class BatchGetTilesTest {
+
+    private static final int TILE_WIDTH = 32;
+    private static final long TILE_BYTES = TILE_WIDTH * TILE_WIDTH * 4;
+    private static final int NUM_TILES = 8;
+
+    private MappedTileStore store;
+    private DiskMemTileCache cache;
+    private TiledImage image;
+
+    @Before
+    public void setup() {
+        store = new MappedTileStore();
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(DiskMemTileCache.KEY_INITIAL_MEMORY_CAPACITY, 4 * TILE_BYTES);
+        params.put(DiskMemTileCache.KEY_TILE_STORE, store);
+        cache = new DiskMemTileCache(params);
+
+        SampleModel sm = new BandedSampleModel(DataBuffer.TYPE_INT, TILE_WIDTH, TILE_WIDTH, 1);
+        image = new TiledImage(0, 0, TILE_WIDTH * NUM_TILES, TILE_WIDTH * 2, 0, 0, sm, null);
+        for (int x = 0; x < NUM_TILES; x++) {
+            WritableRaster r = image.getWritableTile(x, 0);
+            r.setSample(r.getMinX(), r.getMinY(), 0, x + 1);
+            cache.add(image, x, 0, r);
+        }
+    }
+
+    @After
+    public void cleanup() {
+        cache.dispose();
+        store.dispose();
+    }
+
+    @Test
+    public void testGetTiles() {
+        // tiles 0-3 have been swapped out to disk
+        Point[] indices = new Point[NUM_TILES + 1];
+        for (int x = 0; x < NUM_TILES; x++) {
+            indices[x] = new Point(x, 0);
+        }
+        indices[NUM_TILES] = new Point(0, 1);  // not cached
+
+        cache.resetStatistics();
+        Raster[] tiles = cache.getTiles(image, indices);
+
+        assertEquals(indices.length, tiles.length);
+        for (int x = 0; x < NUM_TILES; x++) {
+            assertNotNull(tiles[x]);
+            assertEquals(x + 1, tiles[x].getSample(tiles[x].getMinX(), tiles[x].getMinY(), 0));
+        }
+        assertNull(tiles[NUM_TILES]);
+
+        CacheStatistics stats = cache.getStatistics();
+        assertEquals(4, stats.getHitCount());
+        assertEquals(4, stats.getMissCount());
+        assertEquals(1, stats.getNotCachedCount());
+        assertEquals(4, stats.getDiskReadCount());
+
+        // tiles read from disk were made resident in place of the others
+        assertEquals(4, cache.getNumResidentTiles());
+        for (int x = 0; x < 4; x++) {
+            assertTrue(cache.getTiles(image, new Point[] {new Point(x, 0)})[0] != null);
+        }
+        assertEquals(4, cache.getStatistics().getDiskReadCount());
+    }
+
+    @Test
+    public void testMoreTilesThanMemory() {
+        cache.setMemoryCapacity(2 * TILE_BYTES);
+
+        Point[] indices = new Point[NUM_TILES];
+        for (int x = 0; x < NUM_TILES; x++) {
+            indices[x] = new Point(x, 0);
+        }
+        
+        Raster[] tiles = cache.getTiles(image, indices);
+        for (int x = 0; x < NUM_TILES; x++) {
+            assertEquals(x + 1, tiles[x].getSample(tiles[x].getMinX(), tiles[x].getMinY(), 0));
+        }
+        assertEquals(2, cache.getNumResidentTiles());
+        assertTrue(cache.getCurrentMemory() <= cache.getMemoryCapacity());
+    }
+
+}
@@ -0,0 +1,141 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.media.jai.TiledImage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for the statistics maintained by {@code DiskMemTileCache}.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class CacheStatisticsTest {
+
+    private static final int TILE_WIDTH = 32;
+    private static final long TILE_BYTES = TILE_WIDTH * TILE_WIDTH * 4;
+    private static final int NUM_TILES = 4;
+
+    private DiskMemTileCache cache;
+    private TiledImage image;
+
+    @Before
+    public void setup() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(DiskMemTileCache.KEY_INITIAL_MEMORY_CAPACITY, 2 * TILE_BYTES);
+        cache = new DiskMemTileCache(params);
+
+        SampleModel sm = new BandedSampleModel(DataBuffer.TYPE_INT, TILE_WIDTH, TILE_WIDTH, 1);
+        image = new TiledImage(0, 0, TILE_WIDTH * NUM_TILES, TILE_WIDTH, 0, 0, sm, null);
+        for (int x = 0; x < NUM_TILES; x++) {
+            cache.add(image, x, 0, image.getWritableTile(x, 0));
+        }
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        cache.dispose();
+    }
+
+    @Test
+    public void testCounters() {
+        CacheStatistics stats = cache.getStatistics();
+        assertEquals(NUM_TILES, stats.getNumTiles());
+        assertEquals(2, stats.getNumResidentTiles());
+        assertEquals(NUM_TILES - 2, stats.getEvictionCount());
+        assertEquals(NUM_TILES - 2, stats.getDiskWriteCount());
+        assertEquals((NUM_TILES - 2) * TILE_BYTES, stats.getBytesSwappedOut());
+
+        cache.resetStatistics();
+
+        // tiles 2 and 3 are resident
+        assertNotNull(cache.getTile(image, 3, 0));
+        assertNotNull(cache.getTile(image, 0, 0));
+        assertNull(cache.getTile(image, 0, 1));
+
+        stats = cache.getStatistics();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(1, stats.getNotCachedCount());
+        assertEquals(3, stats.getRequestCount());
+        assertEquals(1.0 / 3, stats.getHitRatio(), 1.0e-8);
+        assertEquals(1, stats.getDiskReadCount());
+        assertEquals(TILE_BYTES, stats.getBytesSwappedIn());
+        assertEquals(1, stats.getEvictionCount());
+
+        assertEquals(2, stats.getTileLatency().getCount());
+        assertEquals(1, stats.getReadLatency().getCount());
+        assertTrue(stats.getReadLatency().getPercentileNanos(100) > 0);
+    }
+
+    @Test
+    public void testLatencyHistogram() {
+        long[] counts = new long[LatencyHistogram.NUM_BUCKETS];
+        counts[LatencyHistogram.bucketFor(100)] = 90;
+        counts[LatencyHistogram.bucketFor(5000)] = 10;
+        LatencyHistogram h = new LatencyHistogram(counts, 90 * 100 + 10 * 5000);
+
+        assertEquals(100, h.getCount());
+        assertEquals(590.0, h.getMeanNanos(), 1.0e-8);
+        assertEquals(127, h.getPercentileNanos(50));
+        assertEquals(127, h.getPercentileNanos(90));
+        assertEquals(8191, h.getPercentileNanos(99));
+
+        assertEquals(0, LatencyHistogram.bucketFor(0));
+        assertEquals(1, LatencyHistogram.bucketFor(1));
+        assertEquals(LatencyHistogram.NUM_BUCKETS - 1, LatencyHistogram.bucketFor(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        ObjectName name = cache.registerMBean("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(server.isRegistered(name));
+
+        cache.getTile(image, 3, 0);
+        assertEquals(1L, server.getAttribute(name, "HitCount"));
+        assertEquals(NUM_TILES, server.getAttribute(name, "NumTiles"));
+
+        cache.unregisterMBean();
+        assertFalse(server.isRegistered(name));
+    }
+
+}
@@ -0,0 +1,165 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+
+import javax.media.jai.TiledImage;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@code DeflateTileCodec}.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class DeflateTileCodecTest {
+
+    private static final int TILE_WIDTH = 32;
+    private static final int NUM_BANKS = 3;
+
+    private final TileCodec codec = new DeflateTileCodec();
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        testEncodeDecodeType(DataBuffer.TYPE_BYTE);
+        testEncodeDecodeType(DataBuffer.TYPE_DOUBLE);
+        testEncodeDecodeType(DataBuffer.TYPE_FLOAT);
+        testEncodeDecodeType(DataBuffer.TYPE_INT);
+        testEncodeDecodeType(DataBuffer.TYPE_SHORT);
+        testEncodeDecodeType(DataBuffer.TYPE_USHORT);
+    }
+
+    @Test
+    public void testConstantTile() throws Exception {
+        WritableRaster r = createRaster(DataBuffer.TYPE_DOUBLE);
+        for (int b = 0; b < NUM_BANKS; b++) {
+            for (int y = 0; y < TILE_WIDTH; y++) {
+                for (int x = 0; x < TILE_WIDTH; x++) {
+                    r.setSample(x, y, b, b + 0.5);
+                }
+            }
+        }
+
+        DataBuffer encoded = codec.encode(r.getDataBuffer());
+        assertEquals(1 + 8 * NUM_BANKS, encoded.getSize());
+
+        Raster decoded = decode(r, encoded);
+        for (int b = 0; b < NUM_BANKS; b++) {
+            assertEquals(b + 0.5, decoded.getSampleDouble(TILE_WIDTH - 1, TILE_WIDTH - 1, b), 0.0);
+        }
+    }
+
+    @Test
+    public void testIncompressibleTile() throws Exception {
+        WritableRaster r = createRaster(DataBuffer.TYPE_BYTE);
+        Random rand = new Random(42);
+        for (int b = 0; b < NUM_BANKS; b++) {
+            for (int y = 0; y < TILE_WIDTH; y++) {
+                for (int x = 0; x < TILE_WIDTH; x++) {
+                    r.setSample(x, y, b, rand.nextInt(256));
+                }
+            }
+        }
+
+        // data should be stored uncompressed with a one byte header
+        DataBuffer encoded = codec.encode(r.getDataBuffer());
+        assertEquals(TILE_WIDTH * TILE_WIDTH * NUM_BANKS + 1, encoded.getSize());
+        assertRasterEquals(r, decode(r, encoded));
+    }
+
+    @Test
+    public void testWithTile() throws Exception {
+        SampleModel sm = new BandedSampleModel(
+                DataBuffer.TYPE_INT, TILE_WIDTH, TILE_WIDTH, NUM_BANKS);
+        TiledImage img = new TiledImage(0, 0, TILE_WIDTH, TILE_WIDTH, 0, 0, sm, null);
+        WritableRaster r = img.getWritableTile(0, 0);
+        fill(r);
+
+        DiskCachedTile tile = new DiskCachedTile(
+                Integer.valueOf(1234), img, 0, 0, r, true, null, null, codec);
+
+        assertTrue(tile.cachedToDisk());
+        assertTrue(tile.getStoredSize() < tile.getTileSize());
+        assertRasterEquals(r, tile.readData());
+        tile.deleteDiskCopy();
+    }
+
+    private void testEncodeDecodeType(int dataType) throws Exception {
+        WritableRaster r = createRaster(dataType);
+        fill(r);
+
+        DataBuffer encoded = codec.encode(r.getDataBuffer());
+        assertTrue(encoded.getSize() < DataBuffer.getDataTypeSize(dataType) / 8 * 
+                TILE_WIDTH * TILE_WIDTH * NUM_BANKS);
+
+        Raster decoded = decode(r, encoded);
+        assertEquals(dataType, decoded.getDataBuffer().getDataType());
+        assertRasterEquals(r, decoded);
+    }
+
+    private Raster decode(Raster r, DataBuffer encoded) throws Exception {
+        DataBuffer db = codec.decode(encoded, r.getDataBuffer().getDataType(), 
+                NUM_BANKS, TILE_WIDTH * TILE_WIDTH);
+        return Raster.createRaster(r.getSampleModel(), db, new Point(0, 0));
+    }
+
+    private WritableRaster createRaster(int dataType) {
+        SampleModel sm = new BandedSampleModel(dataType, TILE_WIDTH, TILE_WIDTH, NUM_BANKS);
+        return Raster.createWritableRaster(sm, new Point(0, 0));
+    }
+
+    private void fill(WritableRaster r) {
+        for (int b = 0; b < NUM_BANKS; b++) {
+            for (int y = 0; y < TILE_WIDTH; y++) {
+                for (int x = 0; x < TILE_WIDTH; x++) {
+                    r.setSample(x, y, b, (x + b) % 10);
+                }
+            }
+        }
+    }
+
+    private void assertRasterEquals(Raster expected, Raster actual) {
+        assertNotNull(actual);
+        for (int b = 0; b < NUM_BANKS; b++) {
+            for (int y = 0; y < TILE_WIDTH; y++) {
+                for (int x = 0; x < TILE_WIDTH; x++) {
+                    assertEquals(expected.getSample(x, y, b), actual.getSample(x, y, b));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,336 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.media.jai.TiledImage;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@code EvictionPolicy} implementations.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class EvictionPolicyTest {
+
+    private static final int NUM_TILES = 64;
+
+    private DiskCachedTile[] tiles;
+
+    @Before
+    public void setup() throws Exception {
+        SampleModel sm = new BandedSampleModel(DataBuffer.TYPE_BYTE, 2, 2, 1);
+        TiledImage img = new TiledImage(0, 0, 2 * NUM_TILES, 2, 0, 0, sm, null);
+
+        tiles = new DiskCachedTile[NUM_TILES];
+        for (int i = 0; i < NUM_TILES; i++) {
+            tiles[i] = new DiskCachedTile(
+                    Integer.valueOf(i), img, i, 0, img.getWritableTile(i, 0), false, null);
+        }
+    }
+
+    @Test
+    public void testLRU() {
+        EvictionPolicy policy = new LRUEvictionPolicy();
+        assertNull(policy.nextVictim());
+
+        for (int i = 0; i < 3; i++) {
+            policy.tileAdded(tiles[i]);
+        }
+        assertSame(tiles[0], policy.nextVictim());
+
+        policy.tileAccessed(tiles[0]);
+        assertSame(tiles[1], policy.nextVictim());
+
+        policy.tileRemoved(tiles[1]);
+        assertSame(tiles[2], policy.nextVictim());
+
+        // access to a tile that is not resident should be ignored
+        policy.tileAccessed(tiles[5]);
+        policy.tileRemoved(tiles[2]);
+        assertSame(tiles[0], policy.nextVictim());
+    }
+
+    /**
+     * Recording an access with the default policy must not wait for
+     * a thread that is choosing a victim (holding the policy's lock)
+     */
+    @Test
+    public void testLRUAccessDoesNotLock() throws Exception {
+        final LRUEvictionPolicy policy = new LRUEvictionPolicy();
+        for (int i = 0; i < NUM_TILES; i++) {
+            policy.tileAdded(tiles[i]);
+        }
+
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < NUM_TILES / 2; i++) {
+                    policy.tileAccessed(tiles[i]);
+                }
+                done.countDown();
+            }
+        });
+
+        synchronized (policy) {
+            reader.start();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        // buffered accesses are applied when a victim is next chosen
+        assertSame(tiles[NUM_TILES / 2], policy.nextVictim());
+    }
+
+    /**
+     * Many threads recording accesses while tiles are added and evicted
+     */
+    @Test
+    public void testLRUConcurrentAccess() throws Exception {
+        final LRUEvictionPolicy policy = new LRUEvictionPolicy();
+        final Set<DiskCachedTile> resident = new HashSet<DiskCachedTile>();
+        for (int i = 0; i < NUM_TILES / 2; i++) {
+            policy.tileAdded(tiles[i]);
+            resident.add(tiles[i]);
+        }
+
+        final int numThreads = 4;
+        final CountDownLatch done = new CountDownLatch(numThreads);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        for (int t = 0; t < numThreads; t++) {
+            final Random rand = new Random(t);
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 100000; i++) {
+                            policy.tileAccessed(tiles[rand.nextInt(NUM_TILES)]);
+                        }
+                    } catch (Throwable ex) {
+                        error.set(ex);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        // swap tiles in and out while the accesses are being recorded
+        int next = NUM_TILES / 2;
+        while (done.getCount() > 0) {
+            DiskCachedTile victim = policy.nextVictim();
+            assertTrue(resident.remove(victim));
+            policy.tileRemoved(victim);
+
+            DiskCachedTile tile = tiles[next];
+            next = (next + 1) % NUM_TILES;
+            while (resident.contains(tile)) {
+                tile = tiles[next];
+                next = (next + 1) % NUM_TILES;
+            }
+            policy.tileAdded(tile);
+            resident.add(tile);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNull(error.get());
+
+        // every resident tile is evicted exactly once
+        for (int i = 0; i < NUM_TILES / 2; i++) {
+            DiskCachedTile victim = policy.nextVictim();
+            assertTrue(resident.remove(victim));
+            policy.tileRemoved(victim);
+        }
+        assertNull(policy.nextVictim());
+    }
+
+    @Test
+    public void testClock() {
+        EvictionPolicy policy = new ClockEvictionPolicy();
+        assertNull(policy.nextVictim());
+
+        for (int i = 0; i < 3; i++) {
+            policy.tileAdded(tiles[i]);
+        }
+        assertSame(tiles[0], policy.nextVictim());
+
+        // accessed tiles get a second chance
+        policy.tileAccessed(tiles[0]);
+        policy.tileAccessed(tiles[1]);
+        assertSame(tiles[2], policy.nextVictim());
+        policy.tileRemoved(tiles[2]);
+
+        // all flags now cleared
+        assertSame(tiles[0], policy.nextVictim());
+        policy.tileRemoved(tiles[0]);
+        policy.tileRemoved(tiles[1]);
+        assertNull(policy.nextVictim());
+    }
+
+    @Test
+    public void testComparator() {
+        EvictionPolicy policy = new ComparatorEvictionPolicy(new TileAccessTimeComparator());
+        for (int i = 0; i < 3; i++) {
+            tiles[i].setTileTimeStamp(100 - i);
+            policy.tileAdded(tiles[i]);
+        }
+        assertSame(tiles[2], policy.nextVictim());
+
+        tiles[2].setTileTimeStamp(200);
+        policy.tileAccessed(tiles[2]);
+        assertSame(tiles[1], policy.nextVictim());
+    }
+
+    @Test
+    public void testTinyLFUFrequency() {
+        TinyLFUEvictionPolicy policy = new TinyLFUEvictionPolicy();
+        policy.tileAdded(tiles[0]);
+        for (int i = 0; i < 5; i++) {
+            policy.tileAccessed(tiles[0]);
+        }
+        assertTrue(policy.frequency(tiles[0]) >= 6);
+        assertEquals(0, policy.frequency(tiles[1]));
+    }
+
+    @Test
+    public void testTinyLFUAccessDoesNotLock() throws Exception {
+        final TinyLFUEvictionPolicy policy = new TinyLFUEvictionPolicy();
+        policy.tileAdded(tiles[0]);
+        policy.tileAdded(tiles[1]);
+
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < 5; i++) {
+                    policy.tileAccessed(tiles[0]);
+                }
+                done.countDown();
+            }
+        });
+
+        synchronized (policy) {
+            reader.start();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        // buffered accesses are applied to the sketch when next drained
+        assertTrue(policy.frequency(tiles[0]) >= 6);
+        assertEquals(1, policy.frequency(tiles[1]));
+    }
+
+    /**
+     * A small set of frequently used tiles, interleaved with a scan through
+     * all tiles, should stay resident with TinyLFU but not with LRU
+     */
+    @Test
+    public void testTinyLFUScanResistance() {
+        final int capacity = 10;
+        final int hotSetSize = 8;
+
+        int[] trace = new int[4000];
+        Random rand = new Random(42);
+        int scan = hotSetSize;
+        for (int i = 0; i < trace.length; i++) {
+            if (i % 2 == 0) {
+                trace[i] = rand.nextInt(hotSetSize);
+            } else {
+                trace[i] = scan;
+                scan = scan + 1 < NUM_TILES ? scan + 1 : hotSetSize;
+            }
+        }
+
+        int lruHits = simulate(new LRUEvictionPolicy(), trace, capacity);
+        int lfuHits = simulate(new TinyLFUEvictionPolicy(), trace, capacity);
+
+        assertTrue(lfuHits > lruHits);
+        assertTrue(lfuHits > trace.length / 3);
+    }
+
+    @Test
+    public void testAllPoliciesStayConsistent() {
+        EvictionPolicy[] policies = {
+            new LRUEvictionPolicy(),
+            new ClockEvictionPolicy(),
+            new TinyLFUEvictionPolicy(),
+            new ComparatorEvictionPolicy(new TileAccessTimeComparator())
+        };
+
+        int[] trace = new int[2000];
+        Random rand = new Random(1);
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = rand.nextInt(NUM_TILES);
+        }
+
+        for (EvictionPolicy policy : policies) {
+            int hits = simulate(policy, trace, 16);
+            assertTrue(hits > 0 && hits < trace.length);
+        }
+    }
+
+    /*
+     * Runs a trace of tile accesses against a policy for a cache
+     * holding at most capacity tiles and returns the number of hits.
+     */
+    private int simulate(EvictionPolicy policy, int[] trace, int capacity) {
+        Set<DiskCachedTile> resident = new HashSet<DiskCachedTile>();
+        int hits = 0;
+        long time = 0;
+
+        for (int index : trace) {
+            DiskCachedTile tile = tiles[index];
+            tile.setTileTimeStamp(++time);
+
+            if (resident.contains(tile)) {
+                hits++;
+                policy.tileAccessed(tile);
+
+            } else {
+                if (resident.size() == capacity) {
+                    DiskCachedTile victim = policy.nextVictim();
+                    assertTrue(resident.remove(victim));
+                    policy.tileRemoved(victim);
+                }
+                resident.add(tile);
+                policy.tileAdded(tile);
+            }
+        }
+
+        return hits;
+    }
+
+}
@@ -0,0 +1,240 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+
+import javax.media.jai.TiledImage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@code MappedTileStore}.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class MappedTileStoreTest {
+
+    private static final int TILE_WIDTH = 32;
+    private static final int NUM_BANKS = 3;
+
+    private MappedTileStore store;
+
+    @Before
+    public void setup() {
+        store = new MappedTileStore(null, 64 * 1024);
+    }
+
+    @After
+    public void cleanup() {
+        store.dispose();
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        testReadWriteType(DataBuffer.TYPE_BYTE);
+        testReadWriteType(DataBuffer.TYPE_DOUBLE);
+        testReadWriteType(DataBuffer.TYPE_FLOAT);
+        testReadWriteType(DataBuffer.TYPE_INT);
+        testReadWriteType(DataBuffer.TYPE_SHORT);
+        testReadWriteType(DataBuffer.TYPE_USHORT);
+    }
+
+    @Test
+    public void testSlotReuse() throws Exception {
+        WritableRaster r = createRaster(DataBuffer.TYPE_INT);
+
+        Object handle = store.write(null, r.getDataBuffer());
+        long used = store.getUsedBytes();
+        assertTrue(used > 0);
+
+        // rewriting the same tile should reuse its slot
+        assertSame(handle, store.write(handle, r.getDataBuffer()));
+        assertEquals(used, store.getUsedBytes());
+
+        // a deleted slot should be reused by the next tile
+        store.delete(handle);
+        assertEquals(0, store.getUsedBytes());
+        store.write(null, r.getDataBuffer());
+        assertEquals(used, store.getUsedBytes());
+        assertEquals(1, store.getNumSegments());
+    }
+
+    @Test
+    public void testNewSegments() throws Exception {
+        WritableRaster r = createRaster(DataBuffer.TYPE_DOUBLE);
+        for (int i = 0; i < 10; i++) {
+            store.write(null, r.getDataBuffer());
+        }
+
+        assertTrue(store.getNumSegments() > 1);
+        assertTrue(store.getCapacity() >= store.getUsedBytes());
+    }
+
+    @Test
+    public void testFailedWriteKeepsSlot() throws Exception {
+        File dir = File.createTempFile("mtstest", "");
+        assertTrue(dir.delete() && dir.mkdir());
+        store.dispose();
+        store = new MappedTileStore(dir, 64 * 1024);
+
+        // leave too little room in the first segment for a double tile
+        WritableRaster big = createRaster(DataBuffer.TYPE_DOUBLE);
+        store.write(null, big.getDataBuffer());
+        store.write(null, big.getDataBuffer());
+
+        WritableRaster small = createRaster(DataBuffer.TYPE_BYTE);
+        Object handle = store.write(null, small.getDataBuffer());
+        long used = store.getUsedBytes();
+
+        // moving the folder makes creating a new segment fail
+        File moved = new File(dir.getPath() + "-moved");
+        assertTrue(dir.renameTo(moved));
+        try {
+            store.write(handle, big.getDataBuffer());
+            fail("Expected IOException");
+        } catch (IOException ex) {
+            // expected
+        } finally {
+            assertTrue(moved.renameTo(dir));
+        }
+
+        // the handle still refers to the tile's original data
+        assertEquals(used, store.getUsedBytes());
+        assertRasterEquals(small, Raster.createRaster(
+                small.getSampleModel(), store.read(handle), new Point(0, 0)));
+
+        // deleting twice must not free the slot twice (the tile fits in one block)
+        store.delete(handle);
+        store.delete(handle);
+        assertEquals(used - MappedTileStore.BLOCK_SIZE, store.getUsedBytes());
+
+        store.dispose();
+        assertTrue(dir.delete());
+    }
+
+    @Test
+    public void testDispose() throws Exception {
+        WritableRaster r = createRaster(DataBuffer.TYPE_BYTE);
+        Object handle = store.write(null, r.getDataBuffer());
+        File file = store.getFile(handle);
+        assertTrue(file.exists());
+
+        store.dispose();
+        assertFalse(file.exists());
+        assertEquals(0, store.getNumSegments());
+    }
+
+    @Test
+    public void testWithTile() throws Exception {
+        SampleModel sm = new BandedSampleModel(
+                DataBuffer.TYPE_FLOAT, TILE_WIDTH, TILE_WIDTH, NUM_BANKS);
+        TiledImage img = new TiledImage(0, 0, TILE_WIDTH, TILE_WIDTH, 0, 0, sm, null);
+        WritableRaster r = img.getWritableTile(0, 0);
+        fill(r);
+
+        DiskCachedTile tile = new DiskCachedTile(
+                Integer.valueOf(1234), img, 0, 0, r, true, null, store);
+
+        assertTrue(tile.cachedToDisk());
+        assertTrue(tile.getFile().exists());
+        assertRasterEquals(r, tile.readData());
+
+        tile.deleteDiskCopy();
+        assertFalse(tile.cachedToDisk());
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    @Test
+    public void testTileFileOffsets() throws Exception {
+        SampleModel sm = new BandedSampleModel(
+                DataBuffer.TYPE_INT, TILE_WIDTH, TILE_WIDTH, NUM_BANKS);
+        TiledImage img = new TiledImage(0, 0, 2 * TILE_WIDTH, TILE_WIDTH, 0, 0, sm, null);
+
+        DiskCachedTile t0 = new DiskCachedTile(
+                Integer.valueOf(0), img, 0, 0, img.getWritableTile(0, 0), true, null, store);
+        DiskCachedTile t1 = new DiskCachedTile(
+                Integer.valueOf(1), img, 1, 0, img.getWritableTile(1, 0), true, null, store);
+
+        assertEquals(0, t0.getFileOffset());
+        assertTrue(t1.getFileOffset() > t0.getFileOffset());
+
+        t1.deleteDiskCopy();
+        assertEquals(0, t1.getFileOffset());
+    }
+
+    private void testReadWriteType(int dataType) throws Exception {
+        WritableRaster r = createRaster(dataType);
+
+        Object handle = store.write(null, r.getDataBuffer());
+        DataBuffer db = store.read(handle);
+
+        assertEquals(dataType, db.getDataType());
+        assertEquals(NUM_BANKS, db.getNumBanks());
+        assertRasterEquals(r, Raster.createRaster(r.getSampleModel(), db, new Point(0, 0)));
+    }
+
+    private WritableRaster createRaster(int dataType) {
+        SampleModel sm = new BandedSampleModel(dataType, TILE_WIDTH, TILE_WIDTH, NUM_BANKS);
+        WritableRaster r = Raster.createWritableRaster(sm, new Point(0, 0));
+        fill(r);
+        return r;
+    }
+
+    private void fill(WritableRaster r) {
+        for (int b = 0; b < NUM_BANKS; b++) {
+            for (int y = 0; y < TILE_WIDTH; y++) {
+                for (int x = 0; x < TILE_WIDTH; x++) {
+                    r.setSample(x, y, b, (x + y * TILE_WIDTH + b) % 100);
+                }
+            }
+        }
+    }
+
+    private void assertRasterEquals(Raster expected, Raster actual) {
+        assertNotNull(actual);
+        for (int b = 0; b < NUM_BANKS; b++) {
+            for (int y = 0; y < TILE_WIDTH; y++) {
+                for (int x = 0; x < TILE_WIDTH; x++) {
+                    assertEquals(expected.getSample(x, y, b), actual.getSample(x, y, b));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.Point;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+
+import javax.media.jai.TiledImage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@code OffHeapTileStore}.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class OffHeapTileStoreTest {
+
+    private static final int TILE_WIDTH = 32;
+    
+    // int data, 1 bank: exactly one 4096 byte block per tile
+    private static final int TILE_BYTES = TILE_WIDTH * TILE_WIDTH * 4;
+
+    private OffHeapTileStore store;
+
+    @Before
+    public void setup() {
+        store = new OffHeapTileStore(2 * TILE_BYTES, TILE_BYTES, null);
+    }
+
+    @After
+    public void cleanup() {
+        store.dispose();
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        WritableRaster r = createRaster(1);
+        Object handle = store.write(null, r.getDataBuffer());
+
+        assertNull(store.getFile(handle));
+        assertEquals(1, store.getNumTiles());
+        assertEquals(TILE_BYTES, store.getUsedBytes());
+        assertRasterEquals(r, store.read(handle));
+
+        store.delete(handle);
+        assertEquals(0, store.getNumTiles());
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    @Test
+    public void testSpillToOverflow() throws Exception {
+        WritableRaster[] rasters = new WritableRaster[3];
+        Object[] handles = new Object[3];
+        for (int i = 0; i < 2; i++) {
+            rasters[i] = createRaster(i);
+            handles[i] = store.write(null, rasters[i].getDataBuffer());
+        }
+
+        // reading the first tile makes the second least recently used
+        store.read(handles[0]);
+
+        rasters[2] = createRaster(2);
+        handles[2] = store.write(null, rasters[2].getDataBuffer());
+
+        assertEquals(1, store.getNumSpilledTiles());
+        assertEquals(2, store.getNumTiles());
+        assertTrue(store.getUsedBytes() <= store.getMaxCapacity());
+        assertNull(store.getFile(handles[0]));
+        assertNotNull(store.getFile(handles[1]));
+
+        for (int i = 0; i < 3; i++) {
+            assertRasterEquals(rasters[i], store.read(handles[i]));
+        }
+
+        for (Object handle : handles) {
+            store.delete(handle);
+        }
+    }
+
+    @Test
+    public void testTileLargerThanCapacity() throws Exception {
+        store.dispose();
+        store = new OffHeapTileStore(TILE_BYTES / 2, TILE_BYTES, null);
+
+        WritableRaster r = createRaster(1);
+        Object handle = store.write(null, r.getDataBuffer());
+        assertNotNull(store.getFile(handle));
+        assertEquals(0, store.getUsedBytes());
+        assertRasterEquals(r, store.read(handle));
+        store.delete(handle);
+    }
+
+    @Test
+    public void testMixedTileSizesAtCapacity() throws Exception {
+        store.dispose();
+        store = new OffHeapTileStore(4 * TILE_BYTES, 4 * TILE_BYTES, null);
+
+        WritableRaster[] rasters = new WritableRaster[6];
+        Object[] handles = new Object[6];
+        for (int i = 0; i < 4; i++) {
+            rasters[i] = createRaster(i);
+            handles[i] = store.write(null, rasters[i].getDataBuffer());
+        }
+        assertEquals(4 * TILE_BYTES, store.getUsedBytes());
+
+        // a double-size tile should only displace the two oldest tiles, 
+        // whose slots are adjacent
+        rasters[4] = createRaster(4, 2 * TILE_WIDTH);
+        handles[4] = store.write(null, rasters[4].getDataBuffer());
+        assertEquals(2, store.getNumSpilledTiles());
+        assertNull(store.getFile(handles[4]));
+        assertNotNull(store.getFile(handles[0]));
+        assertNotNull(store.getFile(handles[1]));
+
+        // a single-size tile displaces one more
+        rasters[5] = createRaster(5);
+        handles[5] = store.write(null, rasters[5].getDataBuffer());
+        assertEquals(3, store.getNumSpilledTiles());
+        assertNull(store.getFile(handles[5]));
+        assertEquals(3, store.getNumTiles());
+        assertEquals(store.getMaxCapacity(), store.getUsedBytes());
+
+        for (int i = 0; i < rasters.length; i++) {
+            assertRasterEquals(rasters[i], store.read(handles[i]));
+        }
+
+        for (Object handle : handles) {
+            store.delete(handle);
+        }
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    @Test
+    public void testTileLargerThanSegments() throws Exception {
+        WritableRaster[] rasters = new WritableRaster[3];
+        Object[] handles = new Object[3];
+        for (int i = 0; i < 2; i++) {
+            rasters[i] = createRaster(i);
+            handles[i] = store.write(null, rasters[i].getDataBuffer());
+        }
+
+        // no segment can hold this tile so it should go straight to the
+        // overflow store without displacing the others
+        rasters[2] = createRaster(2, 2 * TILE_WIDTH);
+        handles[2] = store.write(null, rasters[2].getDataBuffer());
+        assertEquals(0, store.getNumSpilledTiles());
+        assertEquals(2, store.getNumTiles());
+        assertNotNull(store.getFile(handles[2]));
+
+        for (int i = 0; i < rasters.length; i++) {
+            assertRasterEquals(rasters[i], store.read(handles[i]));
+        }
+
+        for (Object handle : handles) {
+            store.delete(handle);
+        }
+    }
+
+    @Test
+    public void testWithTile() throws Exception {
+        SampleModel sm = new BandedSampleModel(DataBuffer.TYPE_INT, TILE_WIDTH, TILE_WIDTH, 1);
+        TiledImage img = new TiledImage(0, 0, TILE_WIDTH, TILE_WIDTH, 0, 0, sm, null);
+        WritableRaster r = img.getWritableTile(0, 0);
+        r.setRect(createRaster(3));
+
+        DiskCachedTile tile = new DiskCachedTile(
+                Integer.valueOf(1234), img, 0, 0, r, true, null, store);
+
+        assertTrue(tile.cachedToDisk());
+        Raster copy = tile.readData();
+        assertRasterEquals(r, copy.getDataBuffer());
+
+        tile.deleteDiskCopy();
+        assertEquals(0, store.getUsedBytes());
+    }
+
+    private WritableRaster createRaster(int value) {
+        return createRaster(value, TILE_WIDTH);
+    }
+
+    private WritableRaster createRaster(int value, int height) {
+        SampleModel sm = new BandedSampleModel(DataBuffer.TYPE_INT, TILE_WIDTH, height, 1);
+        WritableRaster r = Raster.createWritableRaster(sm, new Point(0, 0));
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < TILE_WIDTH; x++) {
+                r.setSample(x, y, 0, value * 1000 + x + y);
+            }
+        }
+        return r;
+    }
+
+    private void assertRasterEquals(Raster expected, DataBuffer actual) {
+        assertNotNull(actual);
+        assertEquals(DataBuffer.TYPE_INT, actual.getDataType());
+        Raster r = Raster.createRaster(expected.getSampleModel(), actual, new Point(0, 0));
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < TILE_WIDTH; x++) {
+                assertEquals(expected.getSample(x, y, 0), r.getSample(x, y, 0));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.Raster;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.media.jai.TiledImage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for per-image quotas in {@code DiskMemTileCache}.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class OwnerQuotaTest {
+
+    private static final int TILE_WIDTH = 32;
+    private static final long TILE_BYTES = TILE_WIDTH * TILE_WIDTH * 4;
+
+    private DiskMemTileCache cache;
+
+    @Before
+    public void setup() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(DiskMemTileCache.KEY_INITIAL_MEMORY_CAPACITY, 4 * TILE_BYTES);
+        cache = new DiskMemTileCache(params);
+    }
+
+    @After
+    public void cleanup() {
+        cache.dispose();
+    }
+
+    @Test
+    public void testHardLimit() {
+        TiledImage image = TileCacheTestHelper.createImage(TILE_WIDTH, 4);
+        cache.setOwnerQuota(image, new TileQuota(TILE_BYTES, 2 * TILE_BYTES, TileQuota.Priority.NORMAL));
+
+        for (int x = 0; x < 4; x++) {
+            cache.add(image, x, 0, TileCacheTestHelper.createTile(image, x));
+        }
+        assertEquals(2 * TILE_BYTES, cache.getOwnerMemory(image));
+        assertEquals(2, cache.getNumResidentTiles());
+
+        // tiles swapped out to honour the quota can still be retrieved
+        for (int x = 0; x < 4; x++) {
+            Raster r = cache.getTile(image, x, 0);
+            assertNotNull(r);
+            assertEquals(x, r.getSample(r.getMinX(), r.getMinY(), 0));
+            assertTrue(cache.getOwnerMemory(image) <= 2 * TILE_BYTES);
+        }
+    }
+
+    @Test
+    public void testHardLimitSwapsLeastRecentlyAccessed() throws Exception {
+        TiledImage image = TileCacheTestHelper.createImage(TILE_WIDTH, 3);
+        cache.setOwnerQuota(image, new TileQuota(TILE_BYTES, 2 * TILE_BYTES, TileQuota.Priority.NORMAL));
+
+        cache.add(image, 0, 0, TileCacheTestHelper.createTile(image, 0));
+        cache.add(image, 1, 0, TileCacheTestHelper.createTile(image, 1));
+
+        // access time stamps have millisecond resolution
+        Thread.sleep(5);
+        assertNotNull(cache.getTile(image, 0, 0));
+
+        cache.add(image, 2, 0, TileCacheTestHelper.createTile(image, 2));
+        assertTrue(cache.containsResidentTile(image, 0, 0));
+        assertFalse(cache.containsResidentTile(image, 1, 0));
+        assertTrue(cache.containsResidentTile(image, 2, 0));
+    }
+
+    @Test
+    public void testReducedHardLimit() {
+        TiledImage image = TileCacheTestHelper.createImage(TILE_WIDTH, 4);
+        for (int x = 0; x < 4; x++) {
+            cache.add(image, x, 0, TileCacheTestHelper.createTile(image, x));
+        }
+        assertEquals(4 * TILE_BYTES, cache.getOwnerMemory(image));
+
+        cache.setOwnerQuota(image, new TileQuota(0, TILE_BYTES, TileQuota.Priority.NORMAL));
+        assertEquals(TILE_BYTES, cache.getOwnerMemory(image));
+    }
+
+    @Test
+    public void testSoftLimit() {
+        TiledImage a = TileCacheTestHelper.createImage(TILE_WIDTH, 3);
+        TiledImage b = TileCacheTestHelper.createImage(TILE_WIDTH, 2);
+        cache.setOwnerQuota(a, new TileQuota(TILE_BYTES, TileQuota.UNLIMITED, TileQuota.Priority.NORMAL));
+
+        cache.add(b, 0, 0, TileCacheTestHelper.createTile(b, 0));
+        for (int x = 0; x < 3; x++) {
+            cache.add(a, x, 0, TileCacheTestHelper.createTile(a, x));
+        }
+
+        // LRU alone would swap out b's first tile here
+        cache.add(b, 1, 0, TileCacheTestHelper.createTile(b, 1));
+        assertEquals(2 * TILE_BYTES, cache.getOwnerMemory(b));
+        assertEquals(2 * TILE_BYTES, cache.getOwnerMemory(a));
+    }
+
+    @Test
+    public void testPriority() {
+        TiledImage interactive = TileCacheTestHelper.createImage(TILE_WIDTH, 2);
+        TiledImage batch = TileCacheTestHelper.createImage(TILE_WIDTH, 8);
+        cache.setOwnerQuota(interactive, new TileQuota(TileQuota.Priority.HIGH));
+        
+        for (int x = 0; x < 2; x++) {
+            cache.add(interactive, x, 0, TileCacheTestHelper.createTile(interactive, x));
+        }
+        for (int x = 0; x < 8; x++) {
+            cache.add(batch, x, 0, TileCacheTestHelper.createTile(batch, x));
+        }
+
+        assertEquals(2 * TILE_BYTES, cache.getOwnerMemory(interactive));
+        assertEquals(2 * TILE_BYTES, cache.getOwnerMemory(batch));
+    }
+
+    @Test
+    public void testRemoveQuota() {
+        TiledImage image = TileCacheTestHelper.createImage(TILE_WIDTH, 2);
+        TileQuota quota = new TileQuota(TileQuota.Priority.LOW);
+        cache.setOwnerQuota(image, quota);
+        assertEquals(quota, cache.getOwnerQuota(image));
+
+        cache.add(image, 0, 0, TileCacheTestHelper.createTile(image, 0));
+        cache.setOwnerQuota(image, null);
+        assertNull(cache.getOwnerQuota(image));
+        assertEquals(TILE_BYTES, cache.getOwnerMemory(image));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuota() {
+        new TileQuota(2 * TILE_BYTES, TILE_BYTES, TileQuota.Priority.NORMAL);
+    }
+
+}
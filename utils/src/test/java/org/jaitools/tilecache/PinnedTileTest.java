@@ -0,0 +1,152 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tilecache;
+
+import java.awt.image.Raster;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.media.jai.TiledImage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for pinning tiles in {@code DiskMemTileCache}.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class PinnedTileTest {
+
+    private static final int TILE_WIDTH = 32;
+    private static final long TILE_BYTES = TILE_WIDTH * TILE_WIDTH * 4;
+
+    private DiskMemTileCache cache;
+
+    @Before
+    public void setup() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(DiskMemTileCache.KEY_INITIAL_MEMORY_CAPACITY, 2 * TILE_BYTES);
+        cache = new DiskMemTileCache(params);
+    }
+
+    @After
+    public void cleanup() {
+        cache.dispose();
+    }
+
+    @Test
+    public void pinnedTileNotSwappedOut() {
+        TiledImage image = TileCacheTestHelper.createImage(TILE_WIDTH, 4);
+        cache.add(image, 0, 0, TileCacheTestHelper.createTile(image, 0));
+
+        PinnedTile pin = cache.pinTile(image, 0, 0);
+        assertNotNull(pin);
+        assertTrue(cache.isTilePinned(image, 0, 0));
+        assertEquals(1, cache.getNumPinnedTiles());
+
+        for (int x = 1; x < 4; x++) {
+            cache.add(image, x, 0, TileCacheTestHelper.createTile(image, x));
+            assertTrue(cache.containsResidentTile(image, 0, 0));
+        }
+        assertSame(pin.getRaster(), cache.getTile(image, 0, 0));
+
+        pin.close();
+        assertFalse(cache.isTilePinned(image, 0, 0));
+        assertEquals(0, cache.getNumPinnedTiles());
+
+        // now the tile can be swapped out again
+        for (int x = 1; x < 4; x++) {
+            cache.getTile(image, x, 0);
+        }
+        assertFalse(cache.containsResidentTile(image, 0, 0));
+    }
+
+    @Test
+    public void pinsAreCounted() {
+        TiledImage image = TileCacheTestHelper.createImage(TILE_WIDTH, 1);
+        cache.add(image, 0, 0, TileCacheTestHelper.createTile(image, 0));
+
+        PinnedTile pin1 = cache.pinTile(image, 0, 0);
+        PinnedTile pin2 = cache.pinTile(image, 0, 0);
+
+        pin1.close();
+        pin1.close();   // no further effect
+        assertTrue(cache.isTilePinned(image, 0, 0));
+
+        pin2.close();
+        assertFalse(cache.isTilePinned(image, 0, 0));
+    }
+
+    @Test
+    public void pinLoadsNonResidentTile() {
+        TiledImage image = TileCacheTestHelper.createImage(TILE_WIDTH, 3);
+        for (int x = 0; x < 3; x++) {
+            cache.add(image, x, 0, TileCacheTestHelper.createTile(image, x));
+        }
+        assertFalse(cache.containsResidentTile(image, 0, 0));
+
+        PinnedTile pin = cache.pinTile(image, 0, 0);
+        try {
+            assertTrue(cache.containsResidentTile(image, 0, 0));
+            Raster r = pin.getRaster();
+            assertEquals(0, r.getSample(r.getMinX(), r.getMinY(), 0));
+
+        } finally {
+            pin.close();
+        }
+    }
+
+    @Test
+    public void pinnedTileKeptByFlushMemory() {
+        TiledImage image = TileCacheTestHelper.createImage(TILE_WIDTH, 2);
+        cache.add(image, 0, 0, TileCacheTestHelper.createTile(image, 0));
+        cache.add(image, 1, 0, TileCacheTestHelper.createTile(image, 1));
+
+        PinnedTile pin = cache.pinTile(image, 1, 0);
+        cache.flushMemory();
+
+        assertEquals(1, cache.getNumResidentTiles());
+        assertEquals(TILE_BYTES, cache.getCurrentMemory());
+        assertTrue(cache.containsResidentTile(image, 1, 0));
+        pin.close();
+    }
+
+    @Test
+    public void pinUnknownTile() {
+        TiledImage image = TileCacheTestHelper.createImage(TILE_WIDTH, 1);
+        assertNull(cache.pinTile(image, 0, 0));
+
+        // unpinning a tile that is not pinned does nothing
+        cache.unpinTile(image, 0, 0);
+        assertEquals(0, cache.getNumPinnedTiles());
+    }
+
+}
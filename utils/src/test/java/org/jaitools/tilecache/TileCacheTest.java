@@ -25,7 +25,19 @@
 
 package org.jaitools.tilecache;
 
+import java.awt.Point;
+import java.awt.image.Raster;
 import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jaitools.CollectionFactory;
 
 import javax.media.jai.JAI;
 import javax.media.jai.RenderedOp;
@@ -74,7 +86,7 @@ public class TileCacheTest {
 
     @After
     public void cleanup() {
-        cache.flush();
+        cache.dispose();
     }
 
     /**
@@ -300,5 +312,157 @@ public class TileCacheTest {
         helper.stopObserving(cache);
     }
 
+    /**
+     * Test that concurrent requests for tiles, with memory swapping,
+     * always return correct tile data
+     */
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        System.out.println("   concurrent tile access");
+
+        final RenderedOp op = helper.simpleJAIOp(4, 4);
+        cache.setMemoryCapacity(helper.getTileMemSize() * 3);
+        op.getTiles();
+
+        final int numThreads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<Boolean>> results = CollectionFactory.list();
+
+        try {
+            for (int i = 0; i < numThreads; i++) {
+                final long seed = i;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        Random rand = new Random(seed);
+                        for (int k = 0; k < 200; k++) {
+                            int tileX = rand.nextInt(4);
+                            int tileY = rand.nextInt(4);
+                            Raster tile = op.getTile(tileX, tileY);
+                            if (tile == null || 
+                                    tile.getSampleDouble(tile.getMinX(), tile.getMinY(), 0) != 2.0) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+
+        } finally {
+            executor.shutdown();
+        }
+
+        assertTrue(cache.getNumTiles() == 16);
+        assertTrue(cache.getCurrentMemory() <= cache.getMemoryCapacity());
+    }
+
+    /**
+     * Test that tiles swapped out of memory and written by background
+     * threads can be read back correctly
+     */
+    @Test
+    public void testWriteBehind() throws Exception {
+        System.out.println("   write-behind of swapped tiles");
+
+        cache.dispose();
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(DiskMemTileCache.KEY_IO_THREADS, 2);
+        cache = new DiskMemTileCache(params);
+        JAI.getDefaultInstance().setTileCache(cache);
+
+        RenderedOp op = helper.simpleJAIOp(4, 4);
+        cache.setMemoryCapacity(helper.getTileMemSize() * 3);
+        op.getTiles();
+
+        cache.writePendingTiles();
+        assertEquals(0, cache.getNumPendingWrites());
+
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                Raster tile = op.getTile(x, y);
+                assertEquals(2.0, tile.getSampleDouble(tile.getMinX(), tile.getMinY(), 0), FLOAT_TOL);
+            }
+        }
+        assertEquals(16, cache.getNumTiles());
+    }
+
+    /**
+     * Test that neighbours of requested tiles are loaded by prefetching
+     */
+    @Test
+    public void testPrefetch() throws Exception {
+        System.out.println("   prefetching neighbouring tiles");
+
+        /*
+         * The LRU policy orders tiles by the sequence in which they are
+         * added and accessed rather than by time stamps, so prefetched
+         * tiles always follow the tiles already resident
+         */
+        cache.setEvictionPolicy(new LRUEvictionPolicy());
+
+        RenderedOp op = helper.simpleJAIOp(4, 4);
+        cache.setMemoryCapacity(helper.getTileMemSize() * 4);
+        op.getTiles();
+        assertFalse(cache.containsResidentTile(op, 1, 0));
+
+        cache.prefetchTiles(op, new Point[]{new Point(0, 0)});
+
+        assertEquals(3, cache.getNumPrefetchedTiles());
+        assertTrue(cache.containsResidentTile(op, 1, 0));
+        assertTrue(cache.containsResidentTile(op, 0, 1));
+        assertTrue(cache.containsResidentTile(op, 1, 1));
+    }
+
+    /**
+     * Test that disposing of a cache stops its background threads
+     */
+    @Test
+    public void testDispose() throws Exception {
+        System.out.println("   disposing of a cache");
+
+        int numThreads = countCacheThreads();
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(DiskMemTileCache.KEY_AUTO_FLUSH_MEMORY_ENABLED, Boolean.TRUE);
+        params.put(DiskMemTileCache.KEY_IO_THREADS, 2);
+        DiskMemTileCache other = new DiskMemTileCache(params);
+        assertTrue(awaitCacheThreads(numThreads, false));
+
+        other.dispose();
+        assertEquals(0, other.getNumTiles());
+        assertFalse(other.isAutoFlushMemoryEnabled());
+
+        // shut-down threads may take a moment to terminate
+        assertTrue(awaitCacheThreads(numThreads, true));
+    }
+
+    /*
+     * Waits for the number of live cache threads to be equal to, or
+     * greater than, the given number
+     */
+    private boolean awaitCacheThreads(int n, boolean equal) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            int count = countCacheThreads();
+            if (equal ? count == n : count > n) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    private int countCacheThreads() {
+        int n = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.isAlive() && t.getName().startsWith("cache-")) {
+                n++;
+            }
+        }
+        return n;
+    }
 
 }
@@ -26,6 +26,10 @@
 package org.jaitools.tilecache;
 
 import java.awt.RenderingHints;
+import java.awt.image.BandedSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -38,6 +42,7 @@ import javax.media.jai.ImageLayout;
 import javax.media.jai.JAI;
 import javax.media.jai.ParameterBlockJAI;
 import javax.media.jai.RenderedOp;
+import javax.media.jai.TiledImage;
 
 import org.jaitools.CollectionFactory;
 
@@ -127,6 +132,36 @@ class TileCacheTestHelper implements Observer {
         return op2;
     }
 
+    /**
+     * Creates a single band, integer image which is one tile high.
+     *
+     * @param tileWidth tile width and height
+     * @param numTiles image width as number of tiles
+     * @return a new TiledImage instance
+     */
+    static TiledImage createImage(int tileWidth, int numTiles) {
+        SampleModel sm = new BandedSampleModel(DataBuffer.TYPE_INT, tileWidth, tileWidth, 1);
+        return new TiledImage(0, 0, tileWidth * numTiles, tileWidth, 0, 0, sm, null);
+    }
+
+    /**
+     * Gets a tile of an image created with {@link #createImage(int, int)}
+     * and fills it with the tile's X index.
+     *
+     * @param image the image
+     * @param tileX tile X index
+     * @return the tile
+     */
+    static WritableRaster createTile(TiledImage image, int tileX) {
+        WritableRaster r = image.getWritableTile(tileX, 0);
+        for (int y = r.getMinY(); y < r.getMinY() + r.getHeight(); y++) {
+            for (int x = r.getMinX(); x < r.getMinX() + r.getWidth(); x++) {
+                r.setSample(x, y, 0, tileX);
+            }
+        }
+        return r;
+    }
+
     Collection<DiskCachedTile> getTiles() {
         return Collections.unmodifiableCollection(tiles);
     }
@@ -80,7 +80,7 @@ public class TileCacheVisitorTest {
     @After
     public void tearDown() {
         JAI.getDefaultInstance().setTileCache(origCache);
-        cache.flush();
+        cache.dispose();
     }
 
     @Test
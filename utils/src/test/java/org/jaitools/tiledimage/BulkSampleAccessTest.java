@@ -0,0 +1,143 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.tiledimage;
+
+import java.awt.Point;
+import java.awt.image.TileObserver;
+import java.awt.image.WritableRenderedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of DiskMemImage: reading and writing regions of
+ * sample values as primitive arrays
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class BulkSampleAccessTest extends TiledImageTestBase {
+
+    private static final int TILE_WIDTH = 32;
+    private static final int XTILES = 3;
+    private static final int YTILES = 2;
+
+    private DiskMemImage image;
+
+    @Before
+    public void setup() {
+        image = makeImage(TILE_WIDTH, XTILES, YTILES);
+    }
+
+    @Test
+    public void setAndGetInt() {
+        // region spanning all tiles
+        int x = TILE_WIDTH / 2;
+        int y = TILE_WIDTH / 3;
+        int w = TILE_WIDTH * 2;
+        int h = TILE_WIDTH;
+
+        int[] data = new int[w * h];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i % 256;
+        }
+
+        image.setSamples(x, y, w, h, 1, data);
+
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                assertEquals(data[row * w + col], image.getSample(x + col, y + row, 1));
+            }
+        }
+
+        int[] result = image.getSamples(x, y, w, h, 1, (int[]) null);
+        assertArrayEquals(data, result);
+
+        // other bands untouched
+        assertEquals(0, image.getSample(x + 1, y + 1, 0));
+        assertFalse(image.hasTileWriters());
+    }
+
+    @Test
+    public void setAndGetFloatAndDouble() {
+        int w = image.getWidth();
+        int h = image.getHeight();
+
+        float[] fdata = new float[w * h];
+        for (int i = 0; i < fdata.length; i++) {
+            fdata[i] = (i * 7) % 256;
+        }
+        image.setSamples(0, 0, w, h, 2, fdata);
+
+        double[] ddata = image.getSamples(0, 0, w, h, 2, new double[w * h]);
+        for (int i = 0; i < fdata.length; i++) {
+            assertEquals(fdata[i], ddata[i], 0.0);
+        }
+
+        float[] fresult = image.getSamples(0, 0, w, h, 2, (float[]) null);
+        for (int i = 0; i < fdata.length; i++) {
+            assertEquals(fdata[i], fresult[i], 0.0f);
+        }
+    }
+
+    @Test
+    public void eachTileRetrievedOnce() {
+        final Map<Point, Integer> checkouts = new HashMap<Point, Integer>();
+        image.addTileObserver(new TileObserver() {
+            public void tileUpdate(WritableRenderedImage source,
+                    int tileX, int tileY, boolean willBeWritable) {
+                if (willBeWritable) {
+                    Point p = new Point(tileX, tileY);
+                    Integer n = checkouts.get(p);
+                    checkouts.put(p, n == null ? 1 : n + 1);
+                }
+            }
+        });
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+        image.setSamples(0, 0, w, h, 0, new int[w * h]);
+
+        assertEquals(XTILES * YTILES, checkouts.size());
+        for (Integer n : checkouts.values()) {
+            assertEquals(Integer.valueOf(1), n);
+        }
+    }
+
+    @Test(expected=PixelOutsideImageException.class)
+    public void regionOutsideImage() {
+        image.getSamples(1, 1, image.getWidth(), 1, 0, (int[]) null);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void arrayTooSmall() {
+        image.setSamples(0, 0, 10, 10, 0, new int[99]);
+    }
+
+}
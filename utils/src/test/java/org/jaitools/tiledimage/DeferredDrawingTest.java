@@ -0,0 +1,168 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.tiledimage;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.Raster;
+import java.awt.image.TileObserver;
+import java.awt.image.WritableRenderedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for deferred drawing with DiskMemImageGraphics.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class DeferredDrawingTest extends TiledImageTestBase {
+
+    private static final int TILE_WIDTH = 64;
+    private static final int XTILES = 4;
+    private static final int YTILES = 3;
+
+    @Test
+    public void sameResultAsImmediateDrawing() {
+        DiskMemImage immediate = drawTestPattern(false);
+        DiskMemImage deferred = drawTestPattern(true);
+
+        for (int y = 0; y < immediate.getHeight(); y++) {
+            for (int x = 0; x < immediate.getWidth(); x++) {
+                assertEquals("pixel " + x + "," + y,
+                        getARGB(immediate, x, y), getARGB(deferred, x, y));
+            }
+        }
+    }
+
+    @Test
+    public void nothingDrawnBeforeFlush() {
+        DiskMemImage image = makeImage(TILE_WIDTH, XTILES, YTILES);
+        DiskMemImageGraphics gr = (DiskMemImageGraphics) image.createGraphics();
+        gr.setDeferredDrawing(true);
+
+        gr.setColor(Color.RED);
+        gr.fillRect(0, 0, 10, 10);
+        assertEquals(0, getARGB(image, 5, 5));
+
+        gr.flush();
+        assertEquals(Color.RED.getRGB(), getARGB(image, 5, 5));
+    }
+
+    @Test
+    public void eachTileCheckedOutOnce() {
+        DiskMemImage image = makeImage(TILE_WIDTH, XTILES, YTILES);
+        final Map<Point, Integer> checkouts = new HashMap<Point, Integer>();
+        image.addTileObserver(new TileObserver() {
+            public void tileUpdate(WritableRenderedImage source,
+                    int tileX, int tileY, boolean willBeWritable) {
+                if (willBeWritable) {
+                    Point p = new Point(tileX, tileY);
+                    Integer n = checkouts.get(p);
+                    checkouts.put(p, n == null ? 1 : n + 1);
+                }
+            }
+        });
+
+        DiskMemImageGraphics gr = (DiskMemImageGraphics) image.createGraphics();
+        gr.setDeferredDrawing(true);
+        gr.setColor(Color.BLUE);
+
+        // many small rectangles within the first and last tiles
+        int offset = TILE_WIDTH * (XTILES - 1);
+        for (int i = 0; i < 50; i++) {
+            gr.fillRect(i, i, 2, 2);
+            gr.fillRect(offset + i, i, 2, 2);
+        }
+        gr.dispose();
+
+        assertEquals(2, checkouts.size());
+        assertEquals(Integer.valueOf(1), checkouts.get(new Point(0, 0)));
+        assertEquals(Integer.valueOf(1), checkouts.get(new Point(XTILES - 1, 0)));
+
+        assertEquals(Color.BLUE.getRGB(), getARGB(image, 10, 10));
+        assertEquals(Color.BLUE.getRGB(), getARGB(image, offset + 10, 10));
+    }
+
+    @Test
+    public void argumentsCopiedWhenQueued() {
+        DiskMemImage image = makeImage(TILE_WIDTH, XTILES, YTILES);
+        DiskMemImageGraphics gr = (DiskMemImageGraphics) image.createGraphics();
+        gr.setDeferredDrawing(true);
+        gr.setColor(Color.GREEN);
+
+        Rectangle rect = new Rectangle(0, 0, 4, 4);
+        gr.fill(rect);
+        rect.setLocation(100, 100);
+        gr.setDeferredDrawing(false);
+
+        assertEquals(Color.GREEN.getRGB(), getARGB(image, 1, 1));
+        assertEquals(0, getARGB(image, 101, 101));
+    }
+
+    private DiskMemImage drawTestPattern(boolean deferred) {
+        DiskMemImage image = makeImage(TILE_WIDTH, XTILES, YTILES);
+        DiskMemImageGraphics gr = (DiskMemImageGraphics) image.createGraphics();
+        gr.setDeferredDrawing(deferred);
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+
+        gr.setColor(Color.YELLOW);
+        gr.fillRect(5, 5, w - 10, h - 10);
+
+        gr.setColor(Color.GREEN);
+        gr.fill(new Ellipse2D.Double(10, 10, w - 20, h - 20));
+
+        gr.setColor(Color.RED);
+        gr.setStroke(new BasicStroke(3.0f));
+        gr.drawLine(0, 0, w - 1, h - 1);
+
+        gr.translate(TILE_WIDTH / 2, TILE_WIDTH / 3);
+        gr.setColor(Color.BLUE);
+        gr.drawRect(0, 0, w / 2, h / 2);
+
+        gr.setClip(0, 0, w / 4, h / 4);
+        gr.setColor(Color.MAGENTA);
+        gr.fillRect(-10, -10, w, h);
+
+        gr.dispose();
+        return image;
+    }
+
+    private int getARGB(DiskMemImage image, int x, int y) {
+        Raster tile = image.getTile(image.XToTileX(x), image.YToTileY(y));
+        Object data = tile.getDataElements(x, y, null);
+        return image.getColorModel().getRGB(data);
+    }
+
+}
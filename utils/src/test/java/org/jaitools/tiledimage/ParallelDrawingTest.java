@@ -0,0 +1,120 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.tiledimage;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.Raster;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that drawing into tiles in parallel gives the same result
+ * as drawing into them one at a time.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class ParallelDrawingTest extends TiledImageTestBase {
+
+    private static final int TILE_WIDTH = 64;
+    private static final int XTILES = 4;
+    private static final int YTILES = 3;
+
+    @Test
+    public void sameResultAsSerialDrawing() {
+        DiskMemImage serial = drawTestPattern(false);
+        DiskMemImage parallel = drawTestPattern(true);
+
+        assertImagesEqual(serial, parallel);
+    }
+
+    @Test
+    public void repeatedDrawingReusesTiles() {
+        DiskMemImage image = makeImage(TILE_WIDTH, XTILES, YTILES);
+        DiskMemImageGraphics gr = (DiskMemImageGraphics) image.createGraphics();
+
+        gr.setColor(Color.RED);
+        gr.fillRect(0, 0, image.getWidth(), image.getHeight());
+        gr.setColor(Color.BLUE);
+        gr.fillRect(0, 0, image.getWidth(), image.getHeight());
+        gr.dispose();
+
+        int blue = Color.BLUE.getRGB();
+        for (int y = 0; y < image.getHeight(); y += 7) {
+            for (int x = 0; x < image.getWidth(); x += 7) {
+                assertEquals(blue, getARGB(image, x, y));
+            }
+        }
+
+        assertFalse(image.hasTileWriters());
+    }
+
+    private DiskMemImage drawTestPattern(boolean parallel) {
+        DiskMemImage image = makeImage(TILE_WIDTH, XTILES, YTILES);
+        DiskMemImageGraphics gr = (DiskMemImageGraphics) image.createGraphics();
+        gr.setParallelDrawing(parallel);
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+
+        gr.setColor(Color.YELLOW);
+        gr.fillRect(5, 5, w - 10, h - 10);
+
+        gr.setColor(Color.GREEN);
+        gr.fill(new Ellipse2D.Double(10, 10, w - 20, h - 20));
+
+        gr.setColor(Color.RED);
+        gr.setStroke(new BasicStroke(3.0f));
+        gr.drawLine(0, 0, w - 1, h - 1);
+        gr.drawOval(20, 20, w - 40, h - 40);
+
+        gr.translate(TILE_WIDTH / 2, TILE_WIDTH / 3);
+        gr.setColor(Color.BLUE);
+        gr.drawRect(0, 0, w / 2, h / 2);
+
+        gr.dispose();
+        return image;
+    }
+
+    private void assertImagesEqual(DiskMemImage expected, DiskMemImage actual) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("pixel " + x + "," + y,
+                        getARGB(expected, x, y), getARGB(actual, x, y));
+            }
+        }
+    }
+
+    private int getARGB(DiskMemImage image, int x, int y) {
+        Raster tile = image.getTile(image.XToTileX(x), image.YToTileY(y));
+        Object data = tile.getDataElements(x, y, null);
+        return image.getColorModel().getRGB(data);
+    }
+
+}
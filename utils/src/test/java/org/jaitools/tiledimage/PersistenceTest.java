@@ -0,0 +1,123 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+
+package org.jaitools.tiledimage;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests for checkpointing a DiskMemImage to a tiled file and reopening it.
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class PersistenceTest extends TiledImageTestBase {
+
+    private static final int TILE_WIDTH = 32;
+
+    private File file;
+
+    @Before
+    public void setup() throws Exception {
+        file = File.createTempFile("jaitools", ".tim");
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    @Test
+    public void checkpointAndReopen() throws Exception {
+        DiskMemImage image = makeImage(TILE_WIDTH, 3, 2);
+        fill(image, 2 * TILE_WIDTH, 2 * TILE_WIDTH);
+        image.checkpoint(file);
+        assertEquals(file, image.getBackingFile());
+        image.dispose();
+
+        DiskMemImage reopened = DiskMemImage.open(file);
+        assertEquals(image.getBounds(), reopened.getBounds());
+        assertEquals(image.getTileWidth(), reopened.getTileWidth());
+        assertEquals(image.getSampleModel().getDataType(), reopened.getSampleModel().getDataType());
+        assertEquals(image.getColorModel(), reopened.getColorModel());
+
+        // tiles are read lazily
+        assertEquals(0, reopened.getTileCache().getNumTiles());
+
+        for (int y = 0; y < 2 * TILE_WIDTH; y++) {
+            for (int x = 0; x < 2 * TILE_WIDTH; x++) {
+                assertEquals(value(x, y), reopened.getSample(x, y, 1));
+            }
+        }
+
+        // tile that was never created
+        assertEquals(0, reopened.getSample(2 * TILE_WIDTH + 1, 1, 1));
+        reopened.dispose();
+    }
+
+    @Test
+    public void checkpointReopenedImage() throws Exception {
+        DiskMemImage image = makeImage(TILE_WIDTH, 3, 2);
+        fill(image, 2 * TILE_WIDTH, 2 * TILE_WIDTH);
+        image.checkpoint(file);
+        image.dispose();
+
+        DiskMemImage reopened = DiskMemImage.open(file);
+        reopened.setSample(2 * TILE_WIDTH + 1, 1, 1, 42);
+        reopened.checkpoint();
+        reopened.dispose();
+
+        // tiles not touched since reopening must have been carried over
+        DiskMemImage again = DiskMemImage.open(file);
+        assertEquals(42, again.getSample(2 * TILE_WIDTH + 1, 1, 1));
+        assertEquals(value(TILE_WIDTH + 3, TILE_WIDTH + 5),
+                again.getSample(TILE_WIDTH + 3, TILE_WIDTH + 5, 1));
+        again.dispose();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void checkpointWithoutFile() throws Exception {
+        makeImage(TILE_WIDTH, 1, 1).checkpoint();
+    }
+
+    private void fill(DiskMemImage image, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setSample(x, y, 1, value(x, y));
+            }
+        }
+    }
+
+    private int value(int x, int y) {
+        return (x * 7 + y) & 0xff;
+    }
+
+}
@@ -0,0 +1,146 @@
+/* 
+ *  Copyright (c) 2013, Michael Bedward. All rights reserved. 
+ *   
+ *  Redistribution and use in source and binary forms, with or without modification, 
+ *  are permitted provided that the following conditions are met: 
+ *   
+ *  - Redistributions of source code must retain the above copyright notice, this  
+ *    list of conditions and the following disclaimer. 
+ *   
+ *  - Redistributions in binary form must reproduce the above copyright notice, this 
+ *    list of conditions and the following disclaimer in the documentation and/or 
+ *    other materials provided with the distribution.   
+ *   
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ *  DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ *  ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON 
+ *  ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ */   
+package org.jaitools.tiledimage;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.Raster;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests of DiskMemImage: copy-on-write snapshots
+ *
+ * @author Michael Bedward
+ * @since 1.7
+ * @version $Id$
+ */
+public class SnapshotTest extends TiledImageTestBase {
+
+    private static final int TILE_WIDTH = 32;
+    private static final int XTILES = 3;
+    private static final int YTILES = 2;
+
+    private DiskMemImage image;
+
+    @Before
+    public void setup() {
+        image = makeImage(TILE_WIDTH, XTILES, YTILES);
+        fill(image, 0, 1);
+    }
+
+    @Test
+    public void tilesSharedUntilWritten() {
+        DiskMemImage snap = image.createSnapshot();
+        assertSame(image, snap.getSnapshotSource());
+        assertSame(image.getTileCache(), snap.getTileCache());
+
+        for (int y = 0; y < YTILES; y++) {
+            for (int x = 0; x < XTILES; x++) {
+                assertFalse(snap.isTileCopied(x, y));
+                assertFalse(snap.getTileCache().containsTile(snap, x, y));
+                assertSame(image.getTile(x, y), snap.getTile(x, y));
+            }
+        }
+
+        image.setSample(0, 0, 0, 99);
+        assertTrue(snap.isTileCopied(0, 0));
+        assertFalse(snap.isTileCopied(1, 0));
+        assertTrue(snap.getTileCache().containsTile(snap, 0, 0));
+    }
+
+    @Test
+    public void snapshotUnaffectedBySourceWrites() {
+        DiskMemImage snap = image.createSnapshot();
+        Raster before = snap.getTile(1, 1);
+
+        Graphics2D gr = image.createGraphics();
+        gr.setColor(Color.WHITE);
+        gr.fillRect(0, 0, image.getWidth(), image.getHeight());
+        gr.dispose();
+        assertEquals(255, image.getSample(0, 0, 0));
+        fill(image, 0, 2);
+
+        assertEquals(2, image.getSample(TILE_WIDTH + 1, TILE_WIDTH + 1, 0));
+        assertEquals(1, snap.getSample(TILE_WIDTH + 1, TILE_WIDTH + 1, 0));
+        assertEquals(1, before.getSample(TILE_WIDTH + 1, TILE_WIDTH + 1, 0));
+        assertAll(snap, 0, 1);
+    }
+
+    @Test
+    public void sourceUnaffectedBySnapshotWrites() {
+        DiskMemImage snap = image.createSnapshot();
+        fill(snap, 0, 3);
+
+        assertAll(snap, 0, 3);
+        assertAll(image, 0, 1);
+    }
+
+    @Test
+    public void snapshotOfSnapshot() {
+        DiskMemImage snap1 = image.createSnapshot();
+        DiskMemImage snap2 = snap1.createSnapshot();
+        assertSame(snap1, snap2.getSnapshotSource());
+
+        fill(image, 0, 2);
+        assertAll(snap1, 0, 1);
+        assertAll(snap2, 0, 1);
+
+        fill(snap1, 0, 3);
+        assertAll(image, 0, 2);
+        assertAll(snap2, 0, 1);
+    }
+
+    @Test
+    public void disposeSource() {
+        DiskMemImage snap = image.createSnapshot();
+        image.dispose();
+
+        for (int y = 0; y < YTILES; y++) {
+            for (int x = 0; x < XTILES; x++) {
+                assertTrue(snap.isTileCopied(x, y));
+            }
+        }
+        assertAll(snap, 0, 1);
+    }
+
+    private void fill(DiskMemImage img, int band, int value) {
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                img.setSample(x, y, band, value);
+            }
+        }
+    }
+
+    private void assertAll(DiskMemImage img, int band, int value) {
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) {
+                assertEquals(value, img.getSample(x, y, band));
+            }
+        }
+    }
+}